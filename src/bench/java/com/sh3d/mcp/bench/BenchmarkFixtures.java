@@ -0,0 +1,40 @@
+package com.sh3d.mcp.bench;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.command.GetStateHandler;
+import com.sh3d.mcp.protocol.JsonUtil;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Общие данные для бенчмарков: синтетическая сцена и её get_state payload.
+ */
+final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+    }
+
+    static HomeAccessor accessor(String size) {
+        Home home = SyntheticHomeBuilder.preset(size).build();
+        return new HomeAccessor(home, null);
+    }
+
+    /** Result data of get_state for a scene of the given size. */
+    static Map<String, Object> stateData(String size) {
+        Response response = new GetStateHandler().execute(
+                new Request("get_state", Collections.emptyMap()), accessor(size));
+        if (response.isError()) {
+            throw new IllegalStateException("get_state failed: " + response.getMessage());
+        }
+        return response.getData();
+    }
+
+    /** Serialized get_state payload for a scene of the given size. */
+    static String stateJson(String size) {
+        return JsonUtil.serialize(stateData(size));
+    }
+}
@@ -0,0 +1,63 @@
+package com.sh3d.mcp.bench;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.command.CreateWallsHandler;
+import com.sh3d.mcp.command.GetStateHandler;
+import com.sh3d.mcp.command.ListLevelsHandler;
+import com.sh3d.mcp.command.PlaceFurnitureHandler;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Накладные расходы {@link CommandRegistry#dispatch} и разрешения tool name
+ * на реестре с несколькими реальными командами.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CommandRegistryBenchmark {
+
+    private CommandRegistry registry;
+    private HomeAccessor accessor;
+    private Request pingRequest;
+    private Request unknownRequest;
+
+    @Setup
+    public void setUp() {
+        registry = new CommandRegistry();
+        registry.register("create_walls", new CreateWallsHandler());
+        registry.register("get_state", new GetStateHandler());
+        registry.register("list_levels", new ListLevelsHandler());
+        registry.register("place_furniture", new PlaceFurnitureHandler());
+        registry.register("bench_noop", (request, acc) -> Response.ok(Collections.emptyMap()));
+        accessor = BenchmarkFixtures.accessor("small");
+        pingRequest = new Request("bench_noop", Collections.emptyMap());
+        unknownRequest = new Request("no_such_action", Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Response dispatchNoop() {
+        return registry.dispatch(pingRequest, accessor);
+    }
+
+    @Benchmark
+    public Response dispatchUnknown() {
+        return registry.dispatch(unknownRequest, accessor);
+    }
+
+    @Benchmark
+    public String resolveToolName() {
+        return registry.resolveAction("get_state");
+    }
+}
@@ -0,0 +1,52 @@
+package com.sh3d.mcp.bench;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.command.GetStateHandler;
+import com.sh3d.mcp.protocol.JsonUtil;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GetStateHandler} на синтетических сценах: snapshot модели через EDT
+ * и полный путь до сериализованного JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class GetStateHandlerBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private GetStateHandler handler;
+    private HomeAccessor accessor;
+    private Request request;
+
+    @Setup
+    public void setUp() {
+        handler = new GetStateHandler();
+        accessor = BenchmarkFixtures.accessor(size);
+        request = new Request("get_state", Collections.emptyMap());
+    }
+
+    @Benchmark
+    public Response execute() {
+        return handler.execute(request, accessor);
+    }
+
+    @Benchmark
+    public String executeAndSerialize() {
+        return JsonUtil.serialize(handler.execute(request, accessor).getData());
+    }
+}
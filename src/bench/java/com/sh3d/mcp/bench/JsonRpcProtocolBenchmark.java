@@ -0,0 +1,51 @@
+package com.sh3d.mcp.bench;
+
+import com.sh3d.mcp.http.JsonRpcProtocol;
+import com.sh3d.mcp.protocol.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonRpcProtocol#formatToolCallResult}: оборачивание результата команды в MCP-ответ.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JsonRpcProtocolBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private Response stateResponse;
+    private Response smallResponse;
+
+    @Setup
+    public void setUp() {
+        stateResponse = Response.ok(BenchmarkFixtures.stateData(size));
+        smallResponse = Response.ok(Collections.singletonMap("id", "wall-1"));
+    }
+
+    @Benchmark
+    public String formatStateResult() {
+        return JsonRpcProtocol.formatToolCallResult(7, stateResponse);
+    }
+
+    @Benchmark
+    public String formatSmallResult() {
+        return JsonRpcProtocol.formatToolCallResult(7, smallResponse);
+    }
+
+    @Benchmark
+    public String formatError() {
+        return JsonRpcProtocol.formatToolCallResult(7, Response.error("Wall not found: wall-404"));
+    }
+}
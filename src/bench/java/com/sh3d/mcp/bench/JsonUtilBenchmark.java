@@ -0,0 +1,55 @@
+package com.sh3d.mcp.bench;
+
+import com.sh3d.mcp.protocol.JsonUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonUtil#parse} и {@link JsonUtil#serialize} на get_state payload'ах разного размера
+ * и на типичном теле tools/call запроса.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JsonUtilBenchmark {
+
+    private static final String TOOLS_CALL_REQUEST = "{\"jsonrpc\":\"2.0\",\"id\":42,\"method\":\"tools/call\","
+            + "\"params\":{\"name\":\"create_walls\",\"arguments\":{\"x\":0,\"y\":0,"
+            + "\"width\":500.5,\"height\":400,\"thickness\":10,\"label\":\"Кухня \\u2014 \\\"A\\\"\"}}}";
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private Map<String, Object> stateData;
+    private String stateJson;
+
+    @Setup
+    public void setUp() {
+        stateData = BenchmarkFixtures.stateData(size);
+        stateJson = JsonUtil.serialize(stateData);
+    }
+
+    @Benchmark
+    public Object parseState() {
+        return JsonUtil.parse(stateJson);
+    }
+
+    @Benchmark
+    public String serializeState() {
+        return JsonUtil.serialize(stateData);
+    }
+
+    @Benchmark
+    public Object parseToolsCallRequest() {
+        return JsonUtil.parse(TOOLS_CALL_REQUEST);
+    }
+}
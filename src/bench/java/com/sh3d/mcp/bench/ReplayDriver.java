@@ -0,0 +1,382 @@
+package com.sh3d.mcp.bench;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.bridge.ModelExecutor;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.http.HttpMcpServer;
+import com.sh3d.mcp.metrics.Histogram;
+import com.sh3d.mcp.plugin.SH3DMcpPlugin;
+import com.sh3d.mcp.protocol.JsonUtil;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Воспроизводит захваченный трафик MCP ({@code sh3d-mcp-capture.jsonl}) против сервера.
+ * <p>
+ * Requests are grouped into streams by recorded session; each stream is replayed in order
+ * on one thread, mapping recorded Mcp-Session-Id values to the IDs the live server issues.
+ * Arrival times are kept, divided by {@code --speedup} ({@code 0} = no pauses). With
+ * {@code --clients N} the whole capture is replayed N times concurrently as independent
+ * clients. Without {@code --url} the driver starts an embedded {@link HttpMcpServer} over a
+ * synthetic scene, with the plugin's own command registry (headless, no SH3D UI: plan export
+ * reports that the plan view is unavailable); the model runs on a {@link ModelExecutor} thread
+ * like the headless launcher, or on the EDT with {@code --edt}.
+ * Prints throughput and p50/p90/p99 latency, overall and per RPC method / tool.
+ * <pre>
+ * ./mvnw -Pbench test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.sh3d.mcp.bench.ReplayDriver \
+ *     -Dexec.args="sh3d-mcp-capture.jsonl --clients 4 --speedup 10 --scene medium"
+ * </pre>
+ */
+public final class ReplayDriver {
+
+    private static final String USAGE = "Usage: ReplayDriver <capture.jsonl> [--clients N] [--concurrency N]"
+            + " [--speedup X] [--scene small|medium|large] [--url http://127.0.0.1:9877/mcp]"
+            + " [--http-backend jdk|nio] [--rate-limits] [--edt]";
+
+    private final List<List<CapturedRequest>> streams;
+    private final URI target;
+    private final int clients;
+    private final int concurrency;
+    private final double speedup;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final Map<String, Histogram> latencyByLabel = new ConcurrentHashMap<>();
+    private final Histogram latency = new Histogram();
+    private final AtomicLong httpErrors = new AtomicLong();
+    private final AtomicLong rpcErrors = new AtomicLong();
+    private final AtomicLong toolErrors = new AtomicLong();
+    private final AtomicLong ioErrors = new AtomicLong();
+
+    ReplayDriver(List<List<CapturedRequest>> streams, URI target, int clients, int concurrency,
+                 double speedup) {
+        this.streams = streams;
+        this.target = target;
+        this.clients = clients;
+        this.concurrency = concurrency;
+        this.speedup = speedup;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> options = parseOptions(args);
+        String capture = options.get("capture");
+        if (capture == null) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        List<CapturedRequest> requests = load(Paths.get(capture));
+        List<List<CapturedRequest>> streams = groupBySession(requests);
+        int clients = Integer.parseInt(options.getOrDefault("clients", "1"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency",
+                String.valueOf(clients * streams.size())));
+        double speedup = Double.parseDouble(options.getOrDefault("speedup", "1"));
+
+        EmbeddedServer server = null;
+        URI target;
+        if (options.containsKey("url")) {
+            target = URI.create(options.get("url"));
+        } else {
+            server = EmbeddedServer.start(options.getOrDefault("scene", "medium"),
+                    options.getOrDefault("http-backend", PluginConfig.HTTP_BACKEND_JDK),
+                    options.containsKey("rate-limits"), options.containsKey("edt"));
+            target = URI.create("http://127.0.0.1:" + server.http.getPort() + "/mcp");
+        }
+
+        System.out.printf(Locale.ROOT, "Replaying %d request(s) in %d session stream(s) x %d client(s),"
+                        + " concurrency %d, speedup %s, target %s%n",
+                requests.size(), streams.size(), clients, concurrency,
+                speedup <= 0 ? "max" : String.valueOf(speedup), target);
+        try {
+            new ReplayDriver(streams, target, clients, concurrency, speedup).run();
+        } finally {
+            if (server != null) {
+                server.close();
+            }
+        }
+    }
+
+    void run() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        long startedAt = System.nanoTime();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < clients; c++) {
+                for (List<CapturedRequest> stream : streams) {
+                    futures.add(pool.submit(() -> replayStream(stream, startedAt)));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        report(System.nanoTime() - startedAt);
+    }
+
+    private void replayStream(List<CapturedRequest> stream, long startedAt) {
+        String liveSession = null;
+        for (CapturedRequest request : stream) {
+            if (speedup > 0) {
+                long due = startedAt + (long) (request.t * 1_000_000L / speedup);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            String session = request.session == null ? null
+                    : liveSession != null ? liveSession : request.session;
+            HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                    .timeout(Duration.ofSeconds(60))
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "application/json, text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(request.body, StandardCharsets.UTF_8));
+            if (session != null) {
+                builder.header("Mcp-Session-Id", session);
+            }
+
+            long sentAt = System.nanoTime();
+            HttpResponse<String> response;
+            try {
+                response = client.send(builder.build(), HttpResponse.BodyHandlers.ofString());
+            } catch (IOException e) {
+                ioErrors.incrementAndGet();
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            long micros = (System.nanoTime() - sentAt) / 1000;
+            latency.record(micros);
+            latencyByLabel.computeIfAbsent(request.label, k -> new Histogram()).record(micros);
+
+            if (response.statusCode() >= 400) {
+                httpErrors.incrementAndGet();
+            } else if (response.body().contains("\"error\":{")) {
+                rpcErrors.incrementAndGet();
+            } else if (response.body().contains("\"isError\":true")) {
+                toolErrors.incrementAndGet();
+            }
+            if (request.newSession != null) {
+                liveSession = response.headers().firstValue("Mcp-Session-Id").orElse(liveSession);
+            }
+        }
+    }
+
+    private void report(long elapsedNanos) {
+        Histogram.Snapshot total = latency.snapshot();
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%nCompleted %d request(s) in %.2f s: %.1f req/s%n",
+                total.getCount(), seconds, total.getCount() / seconds);
+        System.out.printf(Locale.ROOT, "Errors: http=%d rpc=%d tool=%d io=%d%n",
+                httpErrors.get(), rpcErrors.get(), toolErrors.get(), ioErrors.get());
+        System.out.printf(Locale.ROOT, "%n%-40s %8s %9s %9s %9s %9s%n",
+                "request", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        printRow("ALL", total);
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(latencyByLabel).entrySet()) {
+            printRow(entry.getKey(), entry.getValue().snapshot());
+        }
+    }
+
+    private static void printRow(String label, Histogram.Snapshot snapshot) {
+        System.out.printf(Locale.ROOT, "%-40s %8d %9.2f %9.2f %9.2f %9.2f%n", label,
+                snapshot.getCount(), snapshot.getQuantile(0.5) / 1000.0,
+                snapshot.getQuantile(0.9) / 1000.0, snapshot.getQuantile(0.99) / 1000.0,
+                snapshot.getMax() / 1000.0);
+    }
+
+    // === Capture loading ===
+
+    /** Reads a capture file and orders the requests by arrival time. */
+    static List<CapturedRequest> load(Path file) throws IOException {
+        List<CapturedRequest> requests = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                requests.add(CapturedRequest.parse(line));
+            }
+        }
+        requests.sort(Comparator.comparingLong(r -> r.t));
+        return requests;
+    }
+
+    /**
+     * Splits requests into per-session streams: an initialize opens the stream of the
+     * session it created, later requests join the stream of their Mcp-Session-Id.
+     * Requests without a session (e.g. a stray ping) each form their own stream.
+     */
+    static List<List<CapturedRequest>> groupBySession(List<CapturedRequest> requests) {
+        Map<String, List<CapturedRequest>> bySession = new LinkedHashMap<>();
+        List<List<CapturedRequest>> streams = new ArrayList<>();
+        for (CapturedRequest request : requests) {
+            String key = request.newSession != null ? request.newSession : request.session;
+            if (key == null) {
+                List<CapturedRequest> single = new ArrayList<>();
+                single.add(request);
+                streams.add(single);
+                continue;
+            }
+            List<CapturedRequest> stream = bySession.get(key);
+            if (stream == null) {
+                stream = new ArrayList<>();
+                bySession.put(key, stream);
+                streams.add(stream);
+            }
+            stream.add(request);
+        }
+        return streams;
+    }
+
+    /** One line of {@code sh3d-mcp-capture.jsonl}. */
+    static final class CapturedRequest {
+        final long t;
+        final String session;
+        final String newSession;
+        final String body;
+        /** RPC method, or {@code tools/call:<tool>} — the row of the latency report. */
+        final String label;
+
+        CapturedRequest(long t, String session, String newSession, String body) {
+            this.t = t;
+            this.session = session;
+            this.newSession = newSession;
+            this.body = body;
+            this.label = labelOf(body);
+        }
+
+        static CapturedRequest parse(String line) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> record = (Map<String, Object>) JsonUtil.parse(line);
+            return new CapturedRequest(((Number) record.get("t")).longValue(),
+                    (String) record.get("session"), (String) record.get("newSession"),
+                    (String) record.get("body"));
+        }
+
+        @SuppressWarnings("unchecked")
+        private static String labelOf(String body) {
+            try {
+                Map<String, Object> rpc = (Map<String, Object>) JsonUtil.parse(body);
+                Object method = rpc.get("method");
+                if ("tools/call".equals(method) && rpc.get("params") instanceof Map) {
+                    return "tools/call:" + ((Map<String, Object>) rpc.get("params")).get("name");
+                }
+                return String.valueOf(method);
+            } catch (RuntimeException e) {
+                return "(invalid)";
+            }
+        }
+    }
+
+    // === Embedded server ===
+
+    /** In-process server over a synthetic scene, built like {@code HeadlessLauncher}. */
+    private static final class EmbeddedServer implements AutoCloseable {
+        final HomeRegistry homes;
+        final HttpMcpServer http;
+
+        private EmbeddedServer(HomeRegistry homes, HttpMcpServer http) {
+            this.homes = homes;
+            this.http = http;
+        }
+
+        static EmbeddedServer start(String scene, String backend, boolean rateLimits,
+                                    boolean edt) throws Exception {
+            System.setProperty("sh3d.mcp.port", String.valueOf(freePort()));
+            System.setProperty("sh3d.mcp.http.backend", backend);
+            System.setProperty("sh3d.mcp.rateLimit.enabled", String.valueOf(rateLimits));
+            PluginConfig config = PluginConfig.load();
+
+            HomeAccessor accessor = new HomeAccessor(SyntheticHomeBuilder.preset(scene).build(), null,
+                    edt ? null : new ModelExecutor());
+            HomeRegistry homes = HomeRegistry.fromConfig(accessor, config);
+            homes.start();
+            CommandRegistry registry = SH3DMcpPlugin.createCommandRegistry(null, homes, config);
+            EmbeddedServer server = new EmbeddedServer(homes, new HttpMcpServer(config, registry, homes));
+            try {
+                server.awaitRunning();
+            } catch (Exception e) {
+                server.close();
+                throw e;
+            }
+            return server;
+        }
+
+        private void awaitRunning() throws Exception {
+            http.start();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (!http.isRunning()) {
+                if (http.getLastStartupError() != null) {
+                    throw http.getLastStartupError();
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Embedded server did not start: " + http.getState());
+                }
+                Thread.sleep(10);
+            }
+        }
+
+        @Override
+        public void close() {
+            http.stop();
+            homes.close();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--rate-limits") || arg.equals("--edt")) {
+                options.put(arg.substring(2), "true");
+            } else if (arg.startsWith("--")) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + arg + "\n" + USAGE);
+                }
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                options.put("capture", arg);
+            }
+        }
+        return options;
+    }
+}
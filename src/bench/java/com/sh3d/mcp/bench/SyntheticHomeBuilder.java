@@ -0,0 +1,150 @@
+package com.sh3d.mcp.bench;
+
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.DimensionLine;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+
+/**
+ * Строит синтетические {@link Home} заданного размера без UI Sweet Home 3D.
+ * <p>
+ * Objects are laid out on a deterministic grid per level, so the same parameters
+ * always produce the same scene. Counts are per level.
+ */
+public final class SyntheticHomeBuilder {
+
+    private static final float CELL = 400;
+    private static final float LEVEL_HEIGHT = 250;
+
+    private int levels = 1;
+    private int wallsPerLevel = 40;
+    private int roomsPerLevel = 10;
+    private int furniturePerLevel = 50;
+    private int labelsPerLevel = 0;
+    private int dimensionLinesPerLevel = 0;
+
+    public SyntheticHomeBuilder levels(int levels) {
+        this.levels = levels;
+        return this;
+    }
+
+    public SyntheticHomeBuilder wallsPerLevel(int walls) {
+        this.wallsPerLevel = walls;
+        return this;
+    }
+
+    public SyntheticHomeBuilder roomsPerLevel(int rooms) {
+        this.roomsPerLevel = rooms;
+        return this;
+    }
+
+    public SyntheticHomeBuilder furniturePerLevel(int furniture) {
+        this.furniturePerLevel = furniture;
+        return this;
+    }
+
+    public SyntheticHomeBuilder labelsPerLevel(int labels) {
+        this.labelsPerLevel = labels;
+        return this;
+    }
+
+    public SyntheticHomeBuilder dimensionLinesPerLevel(int dimensionLines) {
+        this.dimensionLinesPerLevel = dimensionLines;
+        return this;
+    }
+
+    /**
+     * Preset sizes used by the benchmarks: {@code small}, {@code medium}, {@code large}.
+     */
+    public static SyntheticHomeBuilder preset(String size) {
+        switch (size) {
+            case "small":
+                return new SyntheticHomeBuilder().levels(1).wallsPerLevel(12).roomsPerLevel(4)
+                        .furniturePerLevel(15).labelsPerLevel(2).dimensionLinesPerLevel(2);
+            case "medium":
+                return new SyntheticHomeBuilder().levels(2).wallsPerLevel(80).roomsPerLevel(20)
+                        .furniturePerLevel(150).labelsPerLevel(10).dimensionLinesPerLevel(10);
+            case "large":
+                return new SyntheticHomeBuilder().levels(4).wallsPerLevel(400).roomsPerLevel(100)
+                        .furniturePerLevel(1000).labelsPerLevel(50).dimensionLinesPerLevel(50);
+            default:
+                throw new IllegalArgumentException("Unknown size preset: " + size);
+        }
+    }
+
+    public Home build() {
+        Home home = new Home();
+        CatalogPieceOfFurniture catalogPiece = new CatalogPieceOfFurniture(
+                "Box", null, null, 60, 60, 80, 0, true, null, null, false, 0, false);
+        int gridSize = (int) Math.ceil(Math.sqrt(Math.max(1, roomsPerLevel)));
+
+        for (int l = 0; l < levels; l++) {
+            if (levels > 1) {
+                Level level = new Level("Level " + l, l * LEVEL_HEIGHT, 12, LEVEL_HEIGHT);
+                home.addLevel(level);
+                home.setSelectedLevel(level);
+            }
+            addWalls(home, gridSize);
+            addRooms(home, gridSize);
+            addFurniture(home, catalogPiece, gridSize);
+            for (int i = 0; i < labelsPerLevel; i++) {
+                home.addLabel(new Label("Label " + i, (i % gridSize) * CELL + 50, (i / gridSize) * CELL + 50));
+            }
+            for (int i = 0; i < dimensionLinesPerLevel; i++) {
+                float y = i * 25;
+                home.addDimensionLine(new DimensionLine(0, y, gridSize * CELL, y, 20));
+            }
+        }
+        return home;
+    }
+
+    /** Horizontal and vertical wall segments along the grid lines, joined end to start. */
+    private void addWalls(Home home, int gridSize) {
+        Wall previous = null;
+        for (int i = 0; i < wallsPerLevel; i++) {
+            int line = i / gridSize;
+            int cell = i % gridSize;
+            boolean horizontal = (line % 2) == 0;
+            float a = (line / 2) * CELL;
+            float b = cell * CELL;
+            Wall wall = horizontal
+                    ? new Wall(b, a, b + CELL, a, 10, 250)
+                    : new Wall(a, b, a, b + CELL, 10, 250);
+            home.addWall(wall);
+            if (previous != null && cell != 0) {
+                previous.setWallAtEnd(wall);
+                wall.setWallAtStart(previous);
+            }
+            previous = wall;
+        }
+    }
+
+    private void addRooms(Home home, int gridSize) {
+        for (int i = 0; i < roomsPerLevel; i++) {
+            float x = (i % gridSize) * CELL;
+            float y = (i / gridSize) * CELL;
+            Room room = new Room(new float[][]{
+                    {x, y}, {x + CELL, y}, {x + CELL, y + CELL}, {x, y + CELL}});
+            room.setName("Room " + i);
+            home.addRoom(room);
+        }
+    }
+
+    private void addFurniture(Home home, CatalogPieceOfFurniture catalogPiece, int gridSize) {
+        int perCell = Math.max(1, furniturePerLevel / Math.max(1, gridSize * gridSize));
+        for (int i = 0; i < furniturePerLevel; i++) {
+            int cell = i / perCell;
+            int slot = i % perCell;
+            HomePieceOfFurniture piece = new HomePieceOfFurniture(catalogPiece);
+            piece.setName("Piece " + i);
+            piece.setX((cell % gridSize) * CELL + 40 + (slot % 5) * 70);
+            piece.setY((cell / gridSize) * CELL + 40 + (slot / 5) * 70);
+            piece.setAngle((float) Math.toRadians((i * 15) % 360));
+            home.addPieceOfFurniture(piece);
+        }
+    }
+}
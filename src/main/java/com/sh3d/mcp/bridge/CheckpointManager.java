@@ -173,6 +173,15 @@ public class CheckpointManager {
         return maxDepth;
     }
 
+    /**
+     * Timeline of the given home: its own manager if the home has one (homes created via
+     * {@link HomeRegistry}), otherwise {@code fallback} — the timeline of the default home.
+     */
+    public static CheckpointManager forHome(HomeAccessor accessor, CheckpointManager fallback) {
+        CheckpointManager own = accessor.getCheckpointManager();
+        return own != null ? own : fallback;
+    }
+
     /**
      * Returns true if JVM free memory is below {@link #LOW_MEMORY_THRESHOLD}.
      * Package-private for testing.
@@ -0,0 +1,321 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Пересечения мебели со стенами и другой мебелью в плане.
+ * <p>
+ * Broad phase: the level's {@link SpatialIndex} cells around the footprint's bounding box.
+ * Narrow phase: separating axis test on the oriented footprints from {@code getPoints()}, which
+ * also yields the penetration depth and the shortest push-out direction; non-convex footprints
+ * (arc walls) fall back to an {@link Area} intersection. Objects whose height ranges do not
+ * overlap (a shelf above a desk) and doors or windows against walls are not collisions;
+ * contact up to {@link #TOLERANCE} is not either, so pieces may stand flush against a wall.
+ * <p>
+ * Use on the model thread, like the index itself.
+ */
+public final class CollisionDetector {
+
+    /** Overlap in cm still treated as touching. */
+    public static final float TOLERANCE = 0.5f;
+    /** How far placement with {@code avoidCollisions} may move a piece, in cm. */
+    public static final float MAX_SHIFT = 200;
+    /** Spacing of the candidate offsets tried when pushing out along SAT axes fails, in cm. */
+    public static final float SEARCH_STEP = 10;
+
+    private final Home home;
+    private final SpatialIndex index;
+
+    public CollisionDetector(Home home, SpatialIndex index) {
+        this.home = home;
+        this.index = index;
+    }
+
+    /** Walls and visible pieces the piece overlaps in its current position. */
+    public List<Collision> findCollisions(HomePieceOfFurniture piece) {
+        return findCollisions(piece, piece.getPoints());
+    }
+
+    /**
+     * Walls and visible pieces on the piece's level that its footprint would overlap if it
+     * were {@code footprint} (same height range). The piece itself is never reported.
+     */
+    public List<Collision> findCollisions(HomePieceOfFurniture piece, float[][] footprint) {
+        List<Collision> result = new ArrayList<>();
+        float[] box = bounds(footprint);
+        for (Selectable other : index.query(piece.getLevel(), box[0], box[1], box[2], box[3])) {
+            if (other == piece || !canCollide(piece, other)) {
+                continue;
+            }
+            float[] overlap = overlap(footprint, other.getPoints());
+            if (overlap != null) {
+                result.add(new Collision(piece, other, overlap[0]));
+            }
+        }
+        Collections.sort(result, (a, b) -> Float.compare(b.depth, a.depth));
+        return result;
+    }
+
+    /** Every colliding pair on the level whose first object is a piece, each pair once. */
+    public List<Collision> findAllCollisions(Level level) {
+        List<Collision> result = new ArrayList<>();
+        Set<Selectable> done = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (HomePieceOfFurniture piece : home.getFurniture()) {
+            if (piece.getLevel() != level || !piece.isVisible()) {
+                continue;
+            }
+            done.add(piece);
+            for (Collision collision : findCollisions(piece)) {
+                if (!done.contains(collision.other)) {
+                    result.add(collision);
+                }
+            }
+        }
+        Collections.sort(result, (a, b) -> Float.compare(b.depth, a.depth));
+        return result;
+    }
+
+    /**
+     * Nearest translation (dx, dy) of the piece that leaves it free of collisions, at most
+     * {@code maxShift} cm away; {@code {0, 0}} if it is free already, null if nothing within
+     * reach is. Tries the SAT push-out vectors first (exact for contact with a wall or one
+     * piece), then rings of candidate offsets every {@code step} cm.
+     */
+    public float[] findFreeOffset(HomePieceOfFurniture piece, float[][] footprint, float maxShift, float step) {
+        float dx = 0;
+        float dy = 0;
+        for (int i = 0; i < 8; i++) {
+            float[] push = deepestPush(piece, translate(footprint, dx, dy));
+            if (push == null) {
+                return Math.hypot(dx, dy) <= maxShift ? new float[] {dx, dy} : ringSearch(piece, footprint, maxShift, step);
+            }
+            if (push[0] == 0 && push[1] == 0) {
+                break;
+            }
+            dx += push[0];
+            dy += push[1];
+        }
+        return ringSearch(piece, footprint, maxShift, step);
+    }
+
+    private float[] ringSearch(HomePieceOfFurniture piece, float[][] footprint, float maxShift, float step) {
+        for (float radius = step; radius <= maxShift; radius += step) {
+            int samples = Math.max(8, (int) Math.ceil(2 * Math.PI * radius / step));
+            for (int k = 0; k < samples; k++) {
+                double angle = 2 * Math.PI * k / samples;
+                float dx = (float) (radius * Math.cos(angle));
+                float dy = (float) (radius * Math.sin(angle));
+                if (findCollisions(piece, translate(footprint, dx, dy)).isEmpty()) {
+                    return new float[] {dx, dy};
+                }
+            }
+        }
+        return null;
+    }
+
+    /** Push-out vector for the deepest collision, or null when the footprint is free. */
+    private float[] deepestPush(HomePieceOfFurniture piece, float[][] footprint) {
+        float[] box = bounds(footprint);
+        float[] deepest = null;
+        for (Selectable other : index.query(piece.getLevel(), box[0], box[1], box[2], box[3])) {
+            if (other == piece || !canCollide(piece, other)) {
+                continue;
+            }
+            float[] overlap = overlap(footprint, other.getPoints());
+            if (overlap != null && (deepest == null || overlap[0] > deepest[0])) {
+                deepest = overlap;
+            }
+        }
+        if (deepest == null) {
+            return null;
+        }
+        // A non-convex overlap has no direction, so this is {0, 0} and the ring search takes over
+        float distance = deepest[0] + TOLERANCE;
+        return new float[] {deepest[1] * distance, deepest[2] * distance};
+    }
+
+    private boolean canCollide(HomePieceOfFurniture piece, Selectable other) {
+        float bottom = piece.getElevation();
+        float top = bottom + piece.getHeight();
+        if (other instanceof Wall) {
+            if (piece.isDoorOrWindow()) {
+                return false;
+            }
+            Wall wall = (Wall) other;
+            float height = wall.getHeight() != null ? wall.getHeight() : home.getWallHeight();
+            if (wall.getHeightAtEnd() != null) {
+                height = Math.max(height, wall.getHeightAtEnd());
+            }
+            return bottom < height - TOLERANCE && top > TOLERANCE;
+        }
+        if (other instanceof HomePieceOfFurniture) {
+            HomePieceOfFurniture otherPiece = (HomePieceOfFurniture) other;
+            if (!otherPiece.isVisible()) {
+                return false;
+            }
+            float otherBottom = otherPiece.getElevation();
+            return bottom < otherBottom + otherPiece.getHeight() - TOLERANCE
+                    && top > otherBottom + TOLERANCE;
+        }
+        return false;
+    }
+
+    // --- Narrow phase ---
+
+    /**
+     * Overlap of two footprints: {@code {depth, nx, ny}} where (nx, ny) is the unit direction
+     * that pushes {@code a} out of {@code b} by {@code depth}, or null when they are separated
+     * or only touch. Non-convex footprints yield a zero direction.
+     */
+    static float[] overlap(float[][] a, float[][] b) {
+        if (a.length < 3 || b.length < 3) {
+            return null;
+        }
+        if (!isConvex(a) || !isConvex(b)) {
+            return areaOverlap(a, b);
+        }
+        float depth = Float.MAX_VALUE;
+        float nx = 0;
+        float ny = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            float[][] shape = pass == 0 ? a : b;
+            for (int i = 0; i < shape.length; i++) {
+                float[] p1 = shape[i];
+                float[] p2 = shape[(i + 1) % shape.length];
+                float ax = p1[1] - p2[1];
+                float ay = p2[0] - p1[0];
+                float length = (float) Math.hypot(ax, ay);
+                if (length == 0) {
+                    continue;
+                }
+                ax /= length;
+                ay /= length;
+                float[] pa = project(a, ax, ay);
+                float[] pb = project(b, ax, ay);
+                float overlap = Math.min(pa[1], pb[1]) - Math.max(pa[0], pb[0]);
+                if (overlap <= TOLERANCE) {
+                    return null;
+                }
+                if (overlap < depth) {
+                    depth = overlap;
+                    // Direction from b towards a along the axis
+                    boolean flip = (pa[0] + pa[1]) < (pb[0] + pb[1]);
+                    nx = flip ? -ax : ax;
+                    ny = flip ? -ay : ay;
+                }
+            }
+        }
+        return new float[] {depth, nx, ny};
+    }
+
+    private static float[] project(float[][] shape, float ax, float ay) {
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (float[] pt : shape) {
+            float d = pt[0] * ax + pt[1] * ay;
+            min = Math.min(min, d);
+            max = Math.max(max, d);
+        }
+        return new float[] {min, max};
+    }
+
+    static boolean isConvex(float[][] shape) {
+        int sign = 0;
+        for (int i = 0; i < shape.length; i++) {
+            float[] p0 = shape[i];
+            float[] p1 = shape[(i + 1) % shape.length];
+            float[] p2 = shape[(i + 2) % shape.length];
+            float cross = (p1[0] - p0[0]) * (p2[1] - p1[1]) - (p1[1] - p0[1]) * (p2[0] - p1[0]);
+            if (Math.abs(cross) < 1e-3f) {
+                continue;
+            }
+            int s = cross > 0 ? 1 : -1;
+            if (sign != 0 && s != sign) {
+                return false;
+            }
+            sign = s;
+        }
+        return true;
+    }
+
+    private static float[] areaOverlap(float[][] a, float[][] b) {
+        Area area = new Area(path(a));
+        area.intersect(new Area(path(b)));
+        if (area.isEmpty()) {
+            return null;
+        }
+        Rectangle2D box = area.getBounds2D();
+        float depth = (float) Math.min(box.getWidth(), box.getHeight());
+        return depth > TOLERANCE ? new float[] {depth, 0, 0} : null;
+    }
+
+    private static Path2D.Float path(float[][] shape) {
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(shape[0][0], shape[0][1]);
+        for (int i = 1; i < shape.length; i++) {
+            path.lineTo(shape[i][0], shape[i][1]);
+        }
+        path.closePath();
+        return path;
+    }
+
+    static float[][] translate(float[][] shape, float dx, float dy) {
+        float[][] moved = new float[shape.length][];
+        for (int i = 0; i < shape.length; i++) {
+            moved[i] = new float[] {shape[i][0] + dx, shape[i][1] + dy};
+        }
+        return moved;
+    }
+
+    private static float[] bounds(float[][] shape) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (float[] pt : shape) {
+            minX = Math.min(minX, pt[0]);
+            minY = Math.min(minY, pt[1]);
+            maxX = Math.max(maxX, pt[0]);
+            maxY = Math.max(maxY, pt[1]);
+        }
+        return new float[] {minX, minY, maxX, maxY};
+    }
+
+    /** Пересечение предмета мебели с другим объектом. */
+    public static final class Collision {
+        private final HomePieceOfFurniture piece;
+        private final Selectable other;
+        private final float depth;
+
+        Collision(HomePieceOfFurniture piece, Selectable other, float depth) {
+            this.piece = piece;
+            this.other = other;
+            this.depth = depth;
+        }
+
+        public HomePieceOfFurniture getPiece() {
+            return piece;
+        }
+
+        /** Wall or piece of furniture. */
+        public Selectable getOther() {
+            return other;
+        }
+
+        /** Penetration depth in cm: how far the footprints overlap along the shallowest axis. */
+        public float getDepth() {
+            return depth;
+        }
+    }
+}
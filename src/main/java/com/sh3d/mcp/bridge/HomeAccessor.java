@@ -5,6 +5,9 @@ import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.TexturesCatalog;
 import com.eteks.sweethome3d.model.UserPreferences;
 import com.sh3d.mcp.command.CommandException;
+import com.sh3d.mcp.metrics.CallTimer;
+import com.sh3d.mcp.metrics.EdtWatchdog;
+import com.sh3d.mcp.trace.Trace;
 
 import javax.swing.SwingUtilities;
 import java.lang.reflect.InvocationTargetException;
@@ -13,16 +16,36 @@ import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Потокобезопасная обёртка над Home и UserPreferences.
- * Все мутации модели выполняются в EDT через {@link SwingUtilities#invokeAndWait}.
+ * Все мутации модели выполняются в EDT через {@link SwingUtilities#invokeAndWait},
+ * а в headless-режиме — в потоке {@link ModelExecutor}.
  */
 public class HomeAccessor {
 
     private final Home home;
     private final UserPreferences userPreferences;
+    /** Поток модели в headless-режиме; null — задачи идут в EDT. */
+    private final ModelExecutor modelExecutor;
+    /** Детектор зависаний EDT; null — задачи не отслеживаются. */
+    private volatile EdtWatchdog edtWatchdog;
+    /** Собственная история чекпоинтов дома; null — используется общая (дом по умолчанию). */
+    private volatile CheckpointManager checkpointManager;
+    /** Счётчики ревизий коллекций; создаются при первом обращении в потоке модели. */
+    private HomeRevisions revisions;
+    /** Пространственный индекс объектов; создаётся при первом обращении в потоке модели. */
+    private SpatialIndex spatialIndex;
 
     public HomeAccessor(Home home, UserPreferences userPreferences) {
+        this(home, userPreferences, null);
+    }
+
+    /**
+     * @param modelExecutor thread that owns the model instead of the EDT (headless mode),
+     *                      or null to use the EDT
+     */
+    public HomeAccessor(Home home, UserPreferences userPreferences, ModelExecutor modelExecutor) {
         this.home = home;
         this.userPreferences = userPreferences;
+        this.modelExecutor = modelExecutor;
     }
 
     /** Returns the current Home model instance. */
@@ -45,11 +68,63 @@ public class HomeAccessor {
         return userPreferences.getTexturesCatalog();
     }
 
+    /** Returns the model executor in headless mode, or null when tasks run on the EDT. */
+    public ModelExecutor getModelExecutor() {
+        return modelExecutor;
+    }
+
+    /**
+     * Enables timing of tasks submitted through {@link #runOnEDT}. Pass null to disable.
+     */
+    public void setEdtWatchdog(EdtWatchdog edtWatchdog) {
+        this.edtWatchdog = edtWatchdog;
+    }
+
+    /** Returns the EDT watchdog, or null if EDT tasks are not tracked. */
+    public EdtWatchdog getEdtWatchdog() {
+        return edtWatchdog;
+    }
+
+    /**
+     * Returns the revision counters of this home's collections, attaching their listeners
+     * on first use. Call only on the model thread (inside {@link #runOnEDT}).
+     */
+    public HomeRevisions getRevisions() {
+        if (revisions == null) {
+            revisions = HomeRevisions.attach(home);
+        }
+        return revisions;
+    }
+
+    /**
+     * Returns the per-level spatial index of this home, building it and subscribing it to
+     * model changes on first use. Call only on the model thread (inside {@link #runOnEDT}).
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = SpatialIndex.attach(home);
+        }
+        return spatialIndex;
+    }
+
+    /** Returns the checkpoint timeline owned by this home, or null if it uses the shared one. */
+    public CheckpointManager getCheckpointManager() {
+        return checkpointManager;
+    }
+
+    /** Gives this home its own checkpoint timeline (see {@link HomeRegistry}). */
+    public void setCheckpointManager(CheckpointManager checkpointManager) {
+        this.checkpointManager = checkpointManager;
+    }
+
     /**
      * Выполняет задачу в EDT (Event Dispatch Thread) и возвращает результат.
+     * В headless-режиме вместо EDT используется поток {@link ModelExecutor}.
      * <p>
-     * Если текущий поток уже EDT — выполняет напрямую.
-     * Иначе — использует {@link SwingUtilities#invokeAndWait}.
+     * Если текущий поток уже EDT (поток модели) — выполняет напрямую.
+     * Иначе — использует {@link SwingUtilities#invokeAndWait}; время ожидания задачи
+     * в очереди EDT передаётся в {@link CallTimer} текущего вызова команды, а длительность
+     * самой задачи — в {@link EdtWatchdog} вместе с именем action.
      *
      * @param task задача для выполнения в EDT
      * @param <T>  тип результата
@@ -57,7 +132,7 @@ public class HomeAccessor {
      * @throws CommandException если выполнение прервано или завершилось с ошибкой
      */
     public <T> T runOnEDT(Callable<T> task) {
-        if (SwingUtilities.isEventDispatchThread()) {
+        if (isModelThread()) {
             try {
                 return task.call();
             } catch (Exception e) {
@@ -67,21 +142,46 @@ public class HomeAccessor {
 
         AtomicReference<T> resultRef = new AtomicReference<>();
         AtomicReference<Exception> errorRef = new AtomicReference<>();
+        long submittedAt = System.nanoTime();
+        long[] edtTimes = new long[2]; // [0] — старт задачи в EDT, [1] — её завершение
+        EdtWatchdog watchdog = edtWatchdog;
+        String action = watchdog != null ? CallTimer.currentAction() : null;
 
-        try {
-            SwingUtilities.invokeAndWait(() -> {
-                try {
-                    resultRef.set(task.call());
-                } catch (Exception e) {
-                    errorRef.set(e);
+        Runnable edtTask = () -> {
+            edtTimes[0] = System.nanoTime();
+            EdtWatchdog.Task tracked = watchdog != null ? watchdog.begin(action) : null;
+            try {
+                resultRef.set(task.call());
+            } catch (Exception e) {
+                errorRef.set(e);
+            } finally {
+                if (tracked != null) {
+                    watchdog.end(tracked);
                 }
-            });
+                edtTimes[1] = System.nanoTime();
+            }
+        };
+
+        try {
+            if (modelExecutor != null) {
+                modelExecutor.invokeAndWait(edtTask);
+            } else {
+                SwingUtilities.invokeAndWait(edtTask);
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new CommandException("EDT execution interrupted", e);
+        } catch (IllegalStateException e) {
+            throw new CommandException("Model executor unavailable: " + e.getMessage(), e);
         } catch (InvocationTargetException e) {
             throw new CommandException(
                     "EDT invocation failed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            if (edtTimes[0] != 0) {
+                CallTimer.recordEdtWait(edtTimes[0] - submittedAt);
+                Trace.record("edt_wait", submittedAt, edtTimes[0]);
+                Trace.record("edt_task", edtTimes[0], edtTimes[1]);
+            }
         }
 
         if (errorRef.get() != null) {
@@ -91,4 +191,9 @@ public class HomeAccessor {
 
         return resultRef.get();
     }
+
+    /** True on the thread that owns the model: the EDT, or the model executor's thread. */
+    private boolean isModelThread() {
+        return modelExecutor != null ? modelExecutor.isModelThread() : SwingUtilities.isEventDispatchThread();
+    }
 }
@@ -0,0 +1,744 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.RecorderException;
+import com.eteks.sweethome3d.model.UserPreferences;
+import com.sh3d.mcp.command.CommandException;
+import com.sh3d.mcp.config.PluginConfig;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Реестр независимых Home для одного MCP-сервера: каждая сессия работает со своим домом.
+ * <p>
+ * The default home ({@value #DEFAULT_HOME_ID}) is the one the server was started with (the
+ * Sweet Home 3D window, or the headless launcher's home); it is never evicted. Sessions
+ * that never called {@code create_home} / {@code attach_home} use it. Every other home has
+ * its own {@link ModelExecutor} and {@link CheckpointManager}, so designs in different
+ * homes run in parallel on separate cores.
+ * <p>
+ * Memory is bounded two ways: at most {@code maxLoaded} extra homes stay in memory, and a
+ * new home is not loaded while heap usage is above {@code maxHeapPercent}. When a limit is
+ * hit the least recently used idle home is written to {@code swapDir} and unloaded; a
+ * background sweeper does the same for homes idle longer than {@code idleEvictMs}. An
+ * evicted home is read back from disk on its next use (its checkpoints are dropped).
+ * Tools run inside a {@link Lease}: a leased home is never evicted or released.
+ * <p>
+ * Swap files outlive the process: on start every {@code <id>.sh3d} in {@code swapDir} is
+ * registered again as an unloaded home, so sessions of the next run can attach to the homes
+ * saved on shutdown, and generated IDs skip the ones already taken. An unloaded home that no
+ * session is attached to and nobody used for {@code expireMs} is closed and its file deleted.
+ * <p>
+ * Loading a home (creating, or reading it back) and choosing which homes to evict happen
+ * under one registry lock, so concurrent loads cannot both take the last free slot.
+ */
+public class HomeRegistry implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(HomeRegistry.class.getName());
+
+    public static final String DEFAULT_HOME_ID = "default";
+    private static final Pattern HOME_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final Pattern GENERATED_ID = Pattern.compile("home-(\\d{1,9})");
+    private static final String SWAP_EXTENSION = ".sh3d";
+
+    /** Session of the tool call running on this thread, set by {@link #acquire(String)}. */
+    private static final ThreadLocal<String> CURRENT_SESSION = new ThreadLocal<>();
+
+    private final Entry defaultEntry;
+    private final UserPreferences preferences;
+    private final Path swapDir;
+    private final int maxLoaded;
+    private final long idleEvictMs;
+    private final long expireMs;
+    private final int maxHeapPercent;
+    private final LongSupplier clock;
+    private final IntSupplier heapPercent;
+
+    private final ConcurrentHashMap<String, Entry> homes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> sessionHomes = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong reloadedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    /** Guards capacity accounting: held from {@link #ensureCapacity} until the home is loaded. */
+    private final Object capacityLock = new Object();
+
+    private ScheduledExecutorService sweeper;
+
+    /**
+     * Single-home registry: every session uses {@code defaultAccessor}; creating homes is
+     * disabled.
+     */
+    public HomeRegistry(HomeAccessor defaultAccessor) {
+        this(defaultAccessor, null, 0, Long.MAX_VALUE, 100);
+    }
+
+    /**
+     * @param defaultAccessor home the server was started with
+     * @param swapDir         directory for evicted homes; null disables creating homes
+     * @param maxLoaded       extra homes kept in memory (the default home is not counted)
+     * @param idleEvictMs     unload homes idle for this long
+     * @param maxHeapPercent  do not load another home while the heap is fuller than this
+     */
+    public HomeRegistry(HomeAccessor defaultAccessor, Path swapDir, int maxLoaded,
+                        long idleEvictMs, int maxHeapPercent) {
+        this(defaultAccessor, swapDir, maxLoaded, idleEvictMs,
+                TimeUnit.MINUTES.toMillis(PluginConfig.DEFAULT_HOMES_EXPIRE_MINUTES), maxHeapPercent);
+    }
+
+    /**
+     * @param expireMs close unloaded homes without sessions that were not used for this long
+     */
+    public HomeRegistry(HomeAccessor defaultAccessor, Path swapDir, int maxLoaded,
+                        long idleEvictMs, long expireMs, int maxHeapPercent) {
+        this(defaultAccessor, swapDir, maxLoaded, idleEvictMs, expireMs, maxHeapPercent,
+                System::currentTimeMillis, HomeRegistry::usedHeapPercent);
+    }
+
+    HomeRegistry(HomeAccessor defaultAccessor, Path swapDir, int maxLoaded, long idleEvictMs,
+                 long expireMs, int maxHeapPercent, LongSupplier clock, IntSupplier heapPercent) {
+        this.defaultEntry = new Entry(DEFAULT_HOME_ID, true);
+        this.defaultEntry.accessor = defaultAccessor;
+        this.preferences = defaultAccessor != null ? defaultAccessor.getUserPreferences() : null;
+        this.swapDir = swapDir;
+        this.maxLoaded = swapDir != null ? maxLoaded : 0;
+        this.idleEvictMs = idleEvictMs;
+        this.expireMs = expireMs;
+        this.maxHeapPercent = maxHeapPercent;
+        this.clock = clock;
+        this.heapPercent = heapPercent;
+        homes.put(DEFAULT_HOME_ID, defaultEntry);
+        if (this.maxLoaded > 0) {
+            restoreSwappedHomes();
+        }
+    }
+
+    /**
+     * Registers the homes left in the swap directory by an earlier run as unloaded homes,
+     * and moves the generated-ID counter past their IDs.
+     */
+    private void restoreSwappedHomes() {
+        long now = clock.getAsLong();
+        int restored = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(swapDir, "*" + SWAP_EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(0, name.length() - SWAP_EXTENSION.length());
+                if (!HOME_ID.matcher(id).matches() || DEFAULT_HOME_ID.equals(id)) {
+                    continue;
+                }
+                Entry entry = new Entry(id, false);
+                entry.swapped = true;
+                entry.lastAccess = now;
+                homes.put(id, entry);
+                restored++;
+                Matcher generated = GENERATED_ID.matcher(id);
+                if (generated.matches()) {
+                    int n = Integer.parseInt(generated.group(1));
+                    nextId.accumulateAndGet(n, Math::max);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot list home swap directory " + swapDir, e);
+        }
+        if (restored > 0) {
+            LOG.info("Homes from an earlier run available to attach_home: " + restored + " in " + swapDir);
+        }
+    }
+
+    /**
+     * Creates a registry from {@code sh3d.mcp.homes.*} settings. Evicted homes go to
+     * {@code homes/} in the plugin directory, or to a temporary directory if it is unknown.
+     */
+    public static HomeRegistry fromConfig(HomeAccessor defaultAccessor, PluginConfig config) {
+        if (config.getHomesMaxLoaded() <= 0) {
+            return new HomeRegistry(defaultAccessor);
+        }
+        Path swapDir = PluginConfig.resolveHomesDir();
+        try {
+            swapDir = swapDir != null ? Files.createDirectories(swapDir)
+                    : Files.createTempDirectory("sh3d-mcp-homes");
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Cannot create home swap directory " + swapDir
+                    + ", multi-home disabled", e);
+            return new HomeRegistry(defaultAccessor);
+        }
+        return new HomeRegistry(defaultAccessor, swapDir, config.getHomesMaxLoaded(),
+                TimeUnit.MINUTES.toMillis(config.getHomesIdleEvictMinutes()),
+                TimeUnit.MINUTES.toMillis(config.getHomesExpireMinutes()),
+                config.getHomesMaxHeapPercent());
+    }
+
+    /**
+     * Starts the sweeper of idle and expired homes (single daemon thread). Idempotent; no-op
+     * in single-home mode.
+     */
+    public synchronized void start() {
+        if (sweeper != null || maxLoaded == 0) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sh3d-mcp-home-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, Math.min(idleEvictMs / 4, TimeUnit.MINUTES.toMillis(1)));
+        sweeper.scheduleWithFixedDelay(this::sweepSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the sweeper and the model threads of all extra homes. Homes only kept by this
+     * registry would be lost, so each loaded extra home is first written to the swap
+     * directory, where the next start finds it again; the log lists the file of every extra
+     * home, or what could not be written.
+     */
+    @Override
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+        for (Entry entry : homes.values()) {
+            if (!entry.pinned) {
+                entry.lock.lock();
+                try {
+                    saveOnClose(entry);
+                    entry.unload();
+                } finally {
+                    entry.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /** Writes a loaded extra home to its swap file before shutdown; caller holds the entry lock. */
+    private void saveOnClose(Entry entry) {
+        HomeAccessor accessor = entry.accessor;
+        if (accessor == null) {
+            if (entry.swapped && !entry.closed) {
+                LOG.info("Home " + entry.id + " stays on disk: " + swapFile(entry.id));
+            }
+            return;
+        }
+        Path file = swapFile(entry.id);
+        try {
+            accessor.runOnEDT(() -> {
+                new HomeFileRecorder().writeHome(accessor.getHome(), file.toString());
+                return null;
+            });
+            LOG.info("Home " + entry.id + " saved on shutdown: " + file);
+        } catch (CommandException e) {
+            LOG.log(Level.WARNING, "Home " + entry.id + " could not be saved on shutdown, "
+                    + "its unsaved changes are lost", e);
+        }
+    }
+
+    public boolean isMultiHome() {
+        return maxLoaded > 0;
+    }
+
+    // === Routing ===
+
+    /**
+     * Leases the home of the given session for one tool call, loading it from disk if it
+     * was evicted. Until the lease is closed the home stays loaded and
+     * {@link #currentSession()} returns {@code sessionId} on this thread.
+     *
+     * @param sessionId MCP session, or null for the default home
+     * @throws CommandException if the home has to be loaded but memory limits do not allow it
+     */
+    public Lease acquire(String sessionId) {
+        Entry entry;
+        do {
+            entry = resolve(sessionId);
+        } while (!tryUse(entry)); // closed since it was resolved: the session falls back
+        return new Lease(entry, sessionId);
+    }
+
+    private Entry resolve(String sessionId) {
+        if (sessionId != null) {
+            String homeId = sessionHomes.get(sessionId);
+            if (homeId != null) {
+                Entry bound = homes.get(homeId);
+                if (bound != null) {
+                    return bound;
+                }
+                sessionHomes.remove(sessionId, homeId); // home was closed
+            }
+        }
+        return defaultEntry;
+    }
+
+    /**
+     * Counts one more use of the home, reading it back first if it was evicted. State is
+     * checked again under the entry lock, as the home may have been closed or evicted after
+     * it was resolved.
+     *
+     * @return false if the home was closed
+     */
+    private boolean tryUse(Entry entry) {
+        entry.lock.lock();
+        try {
+            if (entry.closed) {
+                return false;
+            }
+            if (entry.accessor != null) {
+                entry.inUse++;
+                entry.lastAccess = clock.getAsLong();
+                return true;
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        synchronized (capacityLock) {
+            entry.lock.lock();
+            try {
+                if (entry.closed) {
+                    return false;
+                }
+                if (entry.accessor == null) {
+                    ensureCapacity(entry);
+                    load(entry);
+                }
+                entry.inUse++;
+                entry.lastAccess = clock.getAsLong();
+                return true;
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /** Session of the tool call on this thread (inside {@link #acquire}), or null. */
+    public static String currentSession() {
+        return CURRENT_SESSION.get();
+    }
+
+    /** Home ID the session is attached to ({@value #DEFAULT_HOME_ID} if none). */
+    public String getHomeId(String sessionId) {
+        String homeId = sessionId != null ? sessionHomes.get(sessionId) : null;
+        return homeId != null && homes.containsKey(homeId) ? homeId : DEFAULT_HOME_ID;
+    }
+
+    // === Management (create_home / attach_home / close_home / list_homes) ===
+
+    /**
+     * Creates an empty home and returns its ID.
+     *
+     * @param homeId requested ID, or null to generate one
+     * @throws IllegalArgumentException if the ID is invalid or taken
+     * @throws IllegalStateException    if multi-home is disabled
+     * @throws CommandException         if memory limits do not allow another home
+     */
+    public String createHome(String homeId) {
+        if (!isMultiHome()) {
+            throw new IllegalStateException("Multiple homes are disabled (sh3d.mcp.homes.maxLoaded=0)");
+        }
+        String id = homeId;
+        if (id == null) {
+            // Skips IDs taken by homes created with an explicit ID
+            do {
+                id = "home-" + nextId.incrementAndGet();
+            } while (homes.containsKey(id));
+        }
+        if (!HOME_ID.matcher(id).matches()) {
+            throw new IllegalArgumentException(
+                    "Invalid homeId '" + id + "': use 1-64 letters, digits, '-' or '_'");
+        }
+        Entry entry = new Entry(id, false);
+        synchronized (capacityLock) {
+            // Locked before it is published: acquire() waits until the home is attached
+            entry.lock.lock();
+            try {
+                if (homes.putIfAbsent(id, entry) != null) {
+                    throw new IllegalArgumentException("Home '" + id + "' already exists");
+                }
+                try {
+                    ensureCapacity(entry);
+                } catch (RuntimeException e) {
+                    entry.closed = true;
+                    homes.remove(id, entry);
+                    throw e;
+                }
+                float wallHeight = preferences != null ? preferences.getNewWallHeight() : 250;
+                entry.attach(new Home(wallHeight));
+                entry.lastAccess = clock.getAsLong();
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+        createdCount.incrementAndGet();
+        LOG.info("Home created: " + id);
+        return id;
+    }
+
+    /**
+     * Attaches a session to an existing home; {@value #DEFAULT_HOME_ID} detaches it.
+     *
+     * @throws IllegalArgumentException if there is no such home
+     */
+    public void attach(String sessionId, String homeId) {
+        if (sessionId == null) {
+            throw new IllegalStateException("No MCP session to attach");
+        }
+        if (DEFAULT_HOME_ID.equals(homeId)) {
+            sessionHomes.remove(sessionId);
+            return;
+        }
+        if (!homes.containsKey(homeId)) {
+            throw new IllegalArgumentException("Unknown home: " + homeId);
+        }
+        sessionHomes.put(sessionId, homeId);
+    }
+
+    /** Forgets a session's home binding (session removed or expired). */
+    public void detachSession(String sessionId) {
+        if (sessionId != null) {
+            sessionHomes.remove(sessionId);
+        }
+    }
+
+    /**
+     * Closes a home: attached sessions fall back to the default home, its model thread
+     * stops once no tool is running in it, and its swap file is deleted.
+     *
+     * @return false if there is no such home
+     * @throws IllegalArgumentException for the default home
+     */
+    public boolean closeHome(String homeId) {
+        if (DEFAULT_HOME_ID.equals(homeId)) {
+            throw new IllegalArgumentException("The default home cannot be closed");
+        }
+        Entry entry = homes.remove(homeId);
+        if (entry == null) {
+            return false;
+        }
+        sessionHomes.values().removeIf(homeId::equals);
+        entry.lock.lock();
+        try {
+            entry.closed = true;
+            if (entry.inUse == 0) {
+                entry.release();
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        LOG.info("Home closed: " + homeId);
+        return true;
+    }
+
+    /** All homes with their state, default first. */
+    public List<Map<String, Object>> list() {
+        Map<String, Integer> sessions = new LinkedHashMap<>();
+        for (String homeId : sessionHomes.values()) {
+            sessions.merge(homeId, 1, Integer::sum);
+        }
+        long now = clock.getAsLong();
+        List<Map<String, Object>> result = new ArrayList<>();
+        result.add(describe(defaultEntry, sessions, now));
+        for (Entry entry : homes.values()) {
+            if (!entry.pinned) {
+                result.add(describe(entry, sessions, now));
+            }
+        }
+        return result;
+    }
+
+    /** Counters for diagnostics: homes known and loaded, creations, evictions, reloads, rejections, expiries. */
+    public Map<String, Object> getCounters() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("homes", homes.size());
+        counters.put("loaded", loadedCount());
+        counters.put("maxLoaded", maxLoaded);
+        counters.put("sessionsAttached", sessionHomes.size());
+        counters.put("created", createdCount.get());
+        counters.put("evicted", evictedCount.get());
+        counters.put("reloaded", reloadedCount.get());
+        counters.put("rejected", rejectedCount.get());
+        counters.put("expired", expiredCount.get());
+        return counters;
+    }
+
+    // === Eviction ===
+
+    /**
+     * Unloads extra homes idle for longer than {@code idleEvictMs}.
+     *
+     * @return number of homes evicted
+     */
+    int evictIdle() {
+        long now = clock.getAsLong();
+        int evicted = 0;
+        for (Entry entry : homes.values()) {
+            if (!entry.pinned && now - entry.lastAccess >= idleEvictMs && evict(entry)) {
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Closes unloaded homes that no session is attached to and that were not used for
+     * {@code expireMs}, deleting their swap files.
+     *
+     * @return number of homes closed
+     */
+    int expireAbandoned() {
+        long now = clock.getAsLong();
+        int expired = 0;
+        for (Entry entry : homes.values()) {
+            if (entry.pinned || entry.accessor != null || entry.inUse > 0
+                    || now - entry.lastAccess < expireMs || sessionHomes.containsValue(entry.id)) {
+                continue;
+            }
+            if (closeHome(entry.id)) {
+                expiredCount.incrementAndGet();
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Makes room before loading {@code target}: evicts least recently used idle homes while
+     * the loaded count is at the limit, and one more if the heap is over its limit. Caller
+     * holds {@link #capacityLock} until {@code target} is loaded.
+     */
+    private void ensureCapacity(Entry target) {
+        while (loadedCount() >= maxLoaded) {
+            if (!evictLeastRecentlyUsed(target)) {
+                rejectedCount.incrementAndGet();
+                throw new CommandException("Home limit reached: " + maxLoaded
+                        + " homes loaded and all in use; close a home or retry later");
+            }
+        }
+        int heap = heapPercent.getAsInt();
+        if (heap > maxHeapPercent && !evictLeastRecentlyUsed(target)) {
+            rejectedCount.incrementAndGet();
+            throw new CommandException("Memory limit: heap " + heap + "% used (limit "
+                    + maxHeapPercent + "%) and no idle home to unload");
+        }
+    }
+
+    private boolean evictLeastRecentlyUsed(Entry except) {
+        List<Entry> candidates = new ArrayList<>();
+        for (Entry entry : homes.values()) {
+            if (!entry.pinned && entry != except && entry.accessor != null && entry.inUse == 0) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(a.lastAccess, b.lastAccess));
+        for (Entry entry : candidates) {
+            if (evict(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes an idle home to the swap directory and unloads it. Skips homes that are in
+     * use or locked by another thread, so eviction never waits on a running tool.
+     */
+    private boolean evict(Entry entry) {
+        if (!entry.lock.tryLock()) {
+            return false;
+        }
+        try {
+            HomeAccessor accessor = entry.accessor;
+            if (accessor == null || entry.inUse > 0 || entry.closed) {
+                return false;
+            }
+            Path file = swapFile(entry.id);
+            try {
+                accessor.runOnEDT(() -> {
+                    new HomeFileRecorder().writeHome(accessor.getHome(), file.toString());
+                    return null;
+                });
+            } catch (CommandException e) {
+                LOG.log(Level.WARNING, "Could not swap out home " + entry.id + ", keeping it loaded", e);
+                return false;
+            }
+            entry.unload();
+            entry.swapped = true;
+            evictedCount.incrementAndGet();
+            LOG.info("Home evicted to disk: " + entry.id + " (" + file + ")");
+            return true;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /** Reads an evicted home back; caller holds the entry lock. */
+    private void load(Entry entry) {
+        if (!entry.swapped) {
+            throw new CommandException("Home '" + entry.id + "' is no longer available");
+        }
+        try {
+            entry.attach(new HomeFileRecorder().readHome(swapFile(entry.id).toString()));
+        } catch (RecorderException e) {
+            throw new CommandException("Could not reload home '" + entry.id + "': " + e.getMessage(), e);
+        }
+        reloadedCount.incrementAndGet();
+        LOG.info("Home reloaded from disk: " + entry.id);
+    }
+
+    private Path swapFile(String homeId) {
+        return swapDir.resolve(homeId + SWAP_EXTENSION);
+    }
+
+    private int loadedCount() {
+        int loaded = 0;
+        for (Entry entry : homes.values()) {
+            if (!entry.pinned && entry.accessor != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    private Map<String, Object> describe(Entry entry, Map<String, Integer> sessions, long now) {
+        Map<String, Object> home = new LinkedHashMap<>();
+        home.put("homeId", entry.id);
+        home.put("loaded", entry.accessor != null);
+        home.put("sessions", sessions.getOrDefault(entry.id, 0));
+        home.put("busy", entry.inUse > 0);
+        if (!entry.pinned) {
+            home.put("idleSeconds", (now - entry.lastAccess) / 1000);
+        }
+        return home;
+    }
+
+    private void sweepSafely() {
+        try {
+            int evicted = evictIdle();
+            if (evicted > 0) {
+                LOG.fine("Evicted " + evicted + " idle home(s), loaded: " + loadedCount());
+            }
+            int expired = expireAbandoned();
+            if (expired > 0) {
+                LOG.info("Closed " + expired + " home(s) without sessions unused for "
+                        + TimeUnit.MILLISECONDS.toMinutes(expireMs) + " min");
+            }
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Idle home sweep failed", e);
+        }
+    }
+
+    private static int usedHeapPercent() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = runtime.totalMemory() - runtime.freeMemory();
+        return (int) (used * 100 / runtime.maxMemory());
+    }
+
+    /**
+     * The home of one tool call. Closing the lease lets the home be evicted again.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final String previousSession;
+        private boolean closed;
+
+        private Lease(Entry entry, String sessionId) {
+            this.entry = entry;
+            this.previousSession = CURRENT_SESSION.get();
+            CURRENT_SESSION.set(sessionId);
+        }
+
+        public HomeAccessor getAccessor() {
+            return entry.accessor;
+        }
+
+        public String getHomeId() {
+            return entry.id;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (previousSession != null) {
+                CURRENT_SESSION.set(previousSession);
+            } else {
+                CURRENT_SESSION.remove();
+            }
+            entry.lock.lock();
+            try {
+                entry.inUse--;
+                entry.lastAccess = clock.getAsLong();
+                if (entry.closed && entry.inUse == 0) {
+                    entry.release();
+                }
+            } finally {
+                entry.lock.unlock();
+            }
+        }
+    }
+
+    /** One home; mutable state is guarded by {@link #lock}, {@code accessor} is also read racily. */
+    private final class Entry {
+        final String id;
+        final boolean pinned;
+        final ReentrantLock lock = new ReentrantLock();
+        volatile HomeAccessor accessor;
+        volatile int inUse;
+        volatile long lastAccess;
+        boolean swapped;
+        boolean closed;
+
+        Entry(String id, boolean pinned) {
+            this.id = id;
+            this.pinned = pinned;
+        }
+
+        void attach(Home home) {
+            HomeAccessor created = new HomeAccessor(home, preferences, new ModelExecutor("sh3d-mcp-model-" + id));
+            created.setCheckpointManager(new CheckpointManager());
+            accessor = created;
+        }
+
+        void unload() {
+            HomeAccessor current = accessor;
+            accessor = null;
+            if (current != null && current.getModelExecutor() != null) {
+                current.getModelExecutor().close();
+            }
+        }
+
+        void release() {
+            unload();
+            if (swapped) {
+                try {
+                    Files.deleteIfExists(swapFile(id));
+                } catch (IOException e) {
+                    LOG.log(Level.FINE, "Could not delete swap file of home " + id, e);
+                }
+            }
+        }
+    }
+}
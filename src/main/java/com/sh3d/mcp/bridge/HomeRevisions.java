@@ -0,0 +1,145 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.CollectionEvent;
+import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.DimensionLine;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeEnvironment;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Polyline;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+
+import java.beans.PropertyChangeListener;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Счётчики ревизий коллекций Home: растут при любом изменении коллекции или её объектов.
+ * <p>
+ * Listens to the home's collection events and to property changes of every wall, piece,
+ * room, label, dimension line, polyline and level, and to the home environment (ground, sky, light),
+ * so a cache keyed by {@link #get(Kind)} is valid exactly while the counter is unchanged;
+ * a cache of the whole home keys on {@link #snapshot()}. Level changes bump every kind,
+ * because items report their level by name. Listeners run on the thread that mutates the model (EDT or
+ * {@link ModelExecutor}); counters may be read from any thread.
+ */
+public final class HomeRevisions {
+
+    /** Коллекции Home с отдельной ревизией. */
+    public enum Kind { WALLS, FURNITURE, ROOMS, LABELS, DIMENSION_LINES, POLYLINES, LEVELS, ENVIRONMENT }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final AtomicLongArray revisions = new AtomicLongArray(KINDS.length);
+
+    private HomeRevisions() {
+    }
+
+    /**
+     * Starts tracking a home. Call on the model thread, once per home —
+     * {@link HomeAccessor#getRevisions()} does both.
+     */
+    static HomeRevisions attach(Home home) {
+        HomeRevisions revisions = new HomeRevisions();
+        revisions.track(home);
+        return revisions;
+    }
+
+    /** Current revision of a collection. */
+    public long get(Kind kind) {
+        return revisions.get(kind.ordinal());
+    }
+
+    /** Current revisions of every collection, indexed by {@link Kind#ordinal()}. */
+    public long[] snapshot() {
+        long[] result = new long[KINDS.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = revisions.get(i);
+        }
+        return result;
+    }
+
+    private void bump(Kind kind) {
+        revisions.incrementAndGet(kind.ordinal());
+    }
+
+    private void bumpAll() {
+        for (Kind kind : KINDS) {
+            bump(kind);
+        }
+    }
+
+    private void track(Home home) {
+        PropertyChangeListener walls = ev -> bump(Kind.WALLS);
+        PropertyChangeListener furniture = ev -> bump(Kind.FURNITURE);
+        PropertyChangeListener rooms = ev -> bump(Kind.ROOMS);
+        PropertyChangeListener labels = ev -> bump(Kind.LABELS);
+        PropertyChangeListener dimensionLines = ev -> bump(Kind.DIMENSION_LINES);
+        PropertyChangeListener polylines = ev -> bump(Kind.POLYLINES);
+        PropertyChangeListener levels = ev -> bumpAll();
+
+        for (Wall wall : home.getWalls()) {
+            wall.addPropertyChangeListener(walls);
+        }
+        home.addWallsListener(collectionListener(Kind.WALLS, walls,
+                Wall::addPropertyChangeListener, Wall::removePropertyChangeListener));
+        for (HomePieceOfFurniture piece : home.getFurniture()) {
+            piece.addPropertyChangeListener(furniture);
+        }
+        home.addFurnitureListener(collectionListener(Kind.FURNITURE, furniture,
+                HomePieceOfFurniture::addPropertyChangeListener,
+                HomePieceOfFurniture::removePropertyChangeListener));
+        for (Room room : home.getRooms()) {
+            room.addPropertyChangeListener(rooms);
+        }
+        home.addRoomsListener(collectionListener(Kind.ROOMS, rooms,
+                Room::addPropertyChangeListener, Room::removePropertyChangeListener));
+        for (Label label : home.getLabels()) {
+            label.addPropertyChangeListener(labels);
+        }
+        home.addLabelsListener(collectionListener(Kind.LABELS, labels,
+                Label::addPropertyChangeListener, Label::removePropertyChangeListener));
+        for (DimensionLine line : home.getDimensionLines()) {
+            line.addPropertyChangeListener(dimensionLines);
+        }
+        home.addDimensionLinesListener(collectionListener(Kind.DIMENSION_LINES, dimensionLines,
+                DimensionLine::addPropertyChangeListener, DimensionLine::removePropertyChangeListener));
+        for (Polyline polyline : home.getPolylines()) {
+            polyline.addPropertyChangeListener(polylines);
+        }
+        home.addPolylinesListener(collectionListener(Kind.POLYLINES, polylines,
+                Polyline::addPropertyChangeListener, Polyline::removePropertyChangeListener));
+        for (Level level : home.getLevels()) {
+            level.addPropertyChangeListener(levels);
+        }
+        home.addLevelsListener(ev -> {
+            if (ev.getType() == CollectionEvent.Type.ADD) {
+                ev.getItem().addPropertyChangeListener(levels);
+            } else {
+                ev.getItem().removePropertyChangeListener(levels);
+            }
+            bumpAll();
+        });
+        home.addPropertyChangeListener(Home.Property.SELECTED_LEVEL, ev -> bump(Kind.LEVELS));
+        PropertyChangeListener environment = ev -> bump(Kind.ENVIRONMENT);
+        for (HomeEnvironment.Property property : HomeEnvironment.Property.values()) {
+            home.getEnvironment().addPropertyChangeListener(property, environment);
+        }
+    }
+
+    private <T> CollectionListener<T> collectionListener(Kind kind, PropertyChangeListener itemListener,
+                                                         BiConsumer<T, PropertyChangeListener> add,
+                                                         BiConsumer<T, PropertyChangeListener> remove) {
+        return ev -> {
+            if (ev.getType() == CollectionEvent.Type.ADD) {
+                add.accept(ev.getItem(), itemListener);
+            } else {
+                remove.accept(ev.getItem(), itemListener);
+            }
+            bump(kind);
+        };
+    }
+}
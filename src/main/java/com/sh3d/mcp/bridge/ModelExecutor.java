@@ -0,0 +1,85 @@
+package com.sh3d.mcp.bridge;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Выделенный однопоточный исполнитель модели для headless-режима (без Swing UI).
+ * <p>
+ * Plays the role of the EDT for {@link HomeAccessor} when there is no desktop SH3D: every
+ * model access runs on one thread, in submission order, so handlers keep the same
+ * single-writer guarantee without an AWT event loop. {@link #invokeAndWait} mirrors
+ * {@link javax.swing.SwingUtilities#invokeAndWait} so the accessor handles both alike.
+ */
+public class ModelExecutor implements AutoCloseable {
+
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final ThreadPoolExecutor executor;
+    private volatile Thread thread;
+
+    public ModelExecutor() {
+        this("sh3d-mcp-model");
+    }
+
+    public ModelExecutor(String threadName) {
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, threadName);
+                    t.setDaemon(true);
+                    thread = t;
+                    return t;
+                });
+        executor.prestartCoreThread();
+    }
+
+    /** True if the caller is the model thread (re-entrant calls run directly). */
+    public boolean isModelThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Runs the task on the model thread and waits for it.
+     *
+     * @throws InvocationTargetException if the task threw; the cause is the task's exception
+     * @throws InterruptedException      if the caller was interrupted while waiting
+     * @throws IllegalStateException     if the executor is closed
+     */
+    public void invokeAndWait(Runnable task) throws InterruptedException, InvocationTargetException {
+        Future<?> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new IllegalStateException("Model executor is closed", e);
+        }
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            throw new InvocationTargetException(e.getCause());
+        }
+    }
+
+    /** Tasks waiting for the model thread. */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /** Finishes queued tasks (up to 5 seconds) and stops the model thread. */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
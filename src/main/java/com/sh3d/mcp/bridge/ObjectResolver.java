@@ -3,6 +3,7 @@ package com.sh3d.mcp.bridge;
 import com.eteks.sweethome3d.model.DimensionLine;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
 import com.eteks.sweethome3d.model.Level;
 import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Wall;
@@ -90,4 +91,18 @@ public final class ObjectResolver {
         }
         return null;
     }
+
+    /**
+     * Находит текстовую метку по ID.
+     *
+     * @return Label или null если не найдена
+     */
+    public static Label findLabel(Home home, String id) {
+        for (Label l : home.getLabels()) {
+            if (l.getId().equals(id)) {
+                return l;
+            }
+        }
+        return null;
+    }
 }
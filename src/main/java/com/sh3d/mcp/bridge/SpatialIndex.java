@@ -0,0 +1,660 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.CollectionEvent;
+import com.eteks.sweethome3d.model.CollectionListener;
+import com.eteks.sweethome3d.model.DimensionLine;
+import com.eteks.sweethome3d.model.Elevatable;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeFurnitureGroup;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+
+import java.beans.PropertyChangeListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Пространственный индекс объектов Home по уровням: равномерная сетка footprint'ов.
+ * <p>
+ * Indexes walls, furniture, rooms, labels and dimension lines by the bounding box of their
+ * plan points, one grid per level, and keeps itself current through the home's collection
+ * events and the property changes of every object. Each level also keeps aggregate
+ * bounding boxes of its walls and rooms and of its visible furniture, extended on insert and recomputed
+ * lazily after a removal, so scene bounds cost one union per level instead of a pass over
+ * every object. The scene bounds themselves are memoized behind a dirty flag raised by any
+ * insert or removal, and each entry memoizes its own bounds for {@link #getItemBounds}: the
+ * entry is rebuilt on every geometry change, so repeated renders of an unchanged home
+ * recompute nothing.
+ * <p>
+ * Like {@link HomeRevisions}, use only on the model thread; {@link HomeAccessor#getSpatialIndex()}
+ * creates it there on first use.
+ */
+public final class SpatialIndex {
+
+    /** Grid cell side in cm — about a room-sized piece of plan. */
+    static final float CELL_SIZE = 200;
+    /** Objects spanning more cells than this are kept in a per-level list scanned by every query. */
+    static final int MAX_CELLS_PER_ENTRY = 64;
+
+    private final Home home;
+    private final Map<Level, LevelGrid> grids = new HashMap<>();
+    private final Map<Selectable, Entry> entries = new IdentityHashMap<>();
+    private final PropertyChangeListener itemListener = ev -> update((Selectable) ev.getSource());
+    private Bounds sceneBounds;
+    private boolean sceneBoundsStale = true;
+
+    private SpatialIndex(Home home) {
+        this.home = home;
+    }
+
+    /**
+     * Indexes a home and starts following its changes. Call on the model thread, once per
+     * home — {@link HomeAccessor#getSpatialIndex()} does both.
+     */
+    static SpatialIndex attach(Home home) {
+        SpatialIndex index = new SpatialIndex(home);
+        index.track();
+        return index;
+    }
+
+    // --- Queries ---
+
+    /**
+     * Bounds of walls, visible furniture and rooms on levels accepted by the filter
+     * ({@code null} level means a home without levels); {@code null} if there are none.
+     */
+    public Bounds getBounds(Predicate<Level> levelFilter) {
+        return getBounds(levelFilter, levelFilter);
+    }
+
+    /**
+     * Bounds of walls and rooms on levels accepted by {@code structureLevels} and of visible
+     * furniture on levels accepted by {@code furnitureLevels}; {@code null} if there are none.
+     * Sweet Home 3D's OBJ export, for one, takes furniture of viewable levels but walls and
+     * rooms only of viewable and visible ones.
+     */
+    public Bounds getBounds(Predicate<Level> structureLevels, Predicate<Level> furnitureLevels) {
+        Bounds result = null;
+        for (Map.Entry<Level, LevelGrid> grid : grids.entrySet()) {
+            if (structureLevels.test(grid.getKey())) {
+                result = Bounds.union(result, grid.getValue().aggregate(LevelGrid.STRUCTURE));
+            }
+            if (furnitureLevels.test(grid.getKey())) {
+                result = Bounds.union(result, grid.getValue().aggregate(LevelGrid.FURNITURE));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bounds of what the 3D view shows: levels that are viewable and visible. Memoized until
+     * the next change to an indexed object or a level.
+     */
+    public Bounds getSceneBounds() {
+        if (sceneBoundsStale) {
+            sceneBounds = getBounds(level -> level == null || level.isViewableAndVisible());
+            sceneBoundsStale = false;
+        }
+        return sceneBounds;
+    }
+
+    /**
+     * Bounding box of one object's plan points, with the top of the object as its maximum
+     * height (0 for rooms, labels, dimension lines and hidden furniture); {@code null} if the
+     * object is not indexed. Memoized per object and dropped when it changes.
+     */
+    public Bounds getItemBounds(Selectable item) {
+        Entry entry = entries.get(item);
+        return entry != null ? entry.itemBounds() : null;
+    }
+
+    /**
+     * Objects on the level whose footprint bounding box overlaps the rectangle,
+     * in no particular order.
+     */
+    public List<Selectable> query(Level level, float minX, float minY, float maxX, float maxY) {
+        LevelGrid grid = grids.get(level);
+        if (grid == null) {
+            return Collections.emptyList();
+        }
+        List<Selectable> result = new ArrayList<>();
+        for (Entry entry : grid.candidates(minX, minY, maxX, maxY)) {
+            if (entry.overlaps(minX, minY, maxX, maxY)) {
+                result.add(entry.item);
+            }
+        }
+        return result;
+    }
+
+    /** {@link #query(Level, float, float, float, float)} over every level. */
+    public List<Selectable> query(float minX, float minY, float maxX, float maxY) {
+        List<Selectable> result = new ArrayList<>();
+        for (Level level : grids.keySet()) {
+            result.addAll(query(level, minX, minY, maxX, maxY));
+        }
+        return result;
+    }
+
+    /**
+     * Up to {@code count} objects on the level nearest to the point, closest first, by the
+     * distance to their footprint bounding box (0 inside it). Searches rings of cells outwards
+     * and stops once no unvisited cell can hold anything closer.
+     */
+    public List<Selectable> nearest(Level level, float x, float y, int count, Predicate<Selectable> filter) {
+        LevelGrid grid = grids.get(level);
+        if (grid == null || count <= 0) {
+            return Collections.emptyList();
+        }
+        PriorityQueue<Candidate> best = new PriorityQueue<>((a, b) -> Double.compare(b.distance, a.distance));
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Entry entry : grid.large) {
+            offer(best, seen, entry, x, y, count, filter);
+        }
+        int cx = cell(x);
+        int cy = cell(y);
+        int maxRing = grid.maxRing(cx, cy);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            if (best.size() == count && best.peek().distance <= (ring - 1) * (double) CELL_SIZE) {
+                break;
+            }
+            for (int i = cx - ring; i <= cx + ring; i++) {
+                for (int j = cy - ring; j <= cy + ring; j++) {
+                    if (Math.max(Math.abs(i - cx), Math.abs(j - cy)) != ring) {
+                        continue;
+                    }
+                    List<Entry> cell = grid.cells.get(key(i, j));
+                    if (cell != null) {
+                        for (Entry entry : cell) {
+                            offer(best, seen, entry, x, y, count, filter);
+                        }
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort((a, b) -> Double.compare(a.distance, b.distance));
+        List<Selectable> result = new ArrayList<>(sorted.size());
+        for (Candidate candidate : sorted) {
+            result.add(candidate.entry.item);
+        }
+        return result;
+    }
+
+    private static void offer(PriorityQueue<Candidate> best, Set<Entry> seen, Entry entry,
+                              float x, float y, int count, Predicate<Selectable> filter) {
+        if (!seen.add(entry) || (filter != null && !filter.test(entry.item))) {
+            return;
+        }
+        double distance = entry.distanceTo(x, y);
+        if (best.size() < count) {
+            best.add(new Candidate(entry, distance));
+        } else if (distance < best.peek().distance) {
+            best.poll();
+            best.add(new Candidate(entry, distance));
+        }
+    }
+
+    /** Number of indexed objects (for tests and metrics). */
+    public int size() {
+        return entries.size();
+    }
+
+    // --- Maintenance ---
+
+    private void track() {
+        for (Wall wall : home.getWalls()) {
+            add(wall);
+        }
+        for (HomePieceOfFurniture piece : home.getFurniture()) {
+            add(piece);
+        }
+        for (Room room : home.getRooms()) {
+            add(room);
+        }
+        for (Label label : home.getLabels()) {
+            add(label);
+        }
+        for (DimensionLine line : home.getDimensionLines()) {
+            add(line);
+        }
+        home.addWallsListener(collectionListener());
+        home.addFurnitureListener(collectionListener());
+        home.addRoomsListener(collectionListener());
+        home.addLabelsListener(collectionListener());
+        home.addDimensionLinesListener(collectionListener());
+
+        // Elevation and wall heights depend on the level: rebuild its objects when it changes
+        PropertyChangeListener levelListener = ev -> refreshLevel((Level) ev.getSource());
+        for (Level level : home.getLevels()) {
+            level.addPropertyChangeListener(levelListener);
+        }
+        home.addLevelsListener(ev -> {
+            sceneBoundsStale = true;
+            if (ev.getType() == CollectionEvent.Type.ADD) {
+                ev.getItem().addPropertyChangeListener(levelListener);
+            } else {
+                ev.getItem().removePropertyChangeListener(levelListener);
+            }
+        });
+    }
+
+    private <T extends Selectable> CollectionListener<T> collectionListener() {
+        return ev -> {
+            if (ev.getType() == CollectionEvent.Type.ADD) {
+                add(ev.getItem());
+            } else {
+                remove(ev.getItem());
+            }
+        };
+    }
+
+    private void add(Selectable item) {
+        addPropertyChangeListener(item);
+        insert(item);
+    }
+
+    private void remove(Selectable item) {
+        removePropertyChangeListener(item);
+        Entry entry = entries.remove(item);
+        if (entry != null) {
+            sceneBoundsStale = true;
+            entry.grid.remove(entry);
+            dropIfEmpty(entry.grid);
+        }
+        if (item instanceof Wall) {
+            refreshJoinedWalls((Wall) item);
+        }
+    }
+
+    private void update(Selectable item) {
+        Entry entry = entries.remove(item);
+        if (entry == null) {
+            return;
+        }
+        entry.grid.remove(entry);
+        insert(item);
+        dropIfEmpty(entry.grid);
+        if (item instanceof Wall) {
+            // Joined walls share their corner points
+            refreshJoinedWalls((Wall) item);
+        }
+    }
+
+    private void refreshJoinedWalls(Wall wall) {
+        for (Wall joined : new Wall[] {wall.getWallAtStart(), wall.getWallAtEnd()}) {
+            Entry entry = joined != null ? entries.remove(joined) : null;
+            if (entry != null) {
+                entry.grid.remove(entry);
+                insert(joined);
+                dropIfEmpty(entry.grid);
+            }
+        }
+    }
+
+    private void refreshLevel(Level level) {
+        LevelGrid grid = grids.get(level);
+        if (grid == null) {
+            return;
+        }
+        // Visibility changes move the level in or out of the scene even if nothing is rebuilt
+        sceneBoundsStale = true;
+        for (Entry entry : new ArrayList<>(grid.all)) {
+            entries.remove(entry.item);
+            grid.remove(entry);
+            insert(entry.item);
+        }
+        dropIfEmpty(grid);
+    }
+
+    private void insert(Selectable item) {
+        // Every update and refresh goes through here after removing the old entry
+        sceneBoundsStale = true;
+        Entry entry = Entry.of(item, home);
+        if (entry == null) {
+            return;
+        }
+        LevelGrid grid = grids.computeIfAbsent(entry.level, l -> new LevelGrid());
+        entry.grid = grid;
+        grid.add(entry);
+        entries.put(item, entry);
+    }
+
+    private void dropIfEmpty(LevelGrid grid) {
+        if (grid.all.isEmpty()) {
+            grids.values().remove(grid);
+        }
+    }
+
+    private void addPropertyChangeListener(Selectable item) {
+        if (item instanceof Wall) {
+            ((Wall) item).addPropertyChangeListener(itemListener);
+        } else if (item instanceof HomePieceOfFurniture) {
+            ((HomePieceOfFurniture) item).addPropertyChangeListener(itemListener);
+        } else if (item instanceof Room) {
+            ((Room) item).addPropertyChangeListener(itemListener);
+        } else if (item instanceof Label) {
+            ((Label) item).addPropertyChangeListener(itemListener);
+        } else if (item instanceof DimensionLine) {
+            ((DimensionLine) item).addPropertyChangeListener(itemListener);
+        }
+    }
+
+    private void removePropertyChangeListener(Selectable item) {
+        if (item instanceof Wall) {
+            ((Wall) item).removePropertyChangeListener(itemListener);
+        } else if (item instanceof HomePieceOfFurniture) {
+            ((HomePieceOfFurniture) item).removePropertyChangeListener(itemListener);
+        } else if (item instanceof Room) {
+            ((Room) item).removePropertyChangeListener(itemListener);
+        } else if (item instanceof Label) {
+            ((Label) item).removePropertyChangeListener(itemListener);
+        } else if (item instanceof DimensionLine) {
+            ((DimensionLine) item).removePropertyChangeListener(itemListener);
+        }
+    }
+
+    // --- Grid ---
+
+    private static int cell(float coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /** Cells of one level, plus the aggregate bounds of the objects that count for scene bounds. */
+    private static final class LevelGrid {
+        /** Aggregate of walls and rooms. */
+        static final int STRUCTURE = 0;
+        /** Aggregate of visible furniture. */
+        static final int FURNITURE = 1;
+
+        final Map<Long, List<Entry>> cells = new HashMap<>();
+        final List<Entry> large = new ArrayList<>();
+        final Set<Entry> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        int minCx = Integer.MAX_VALUE, minCy = Integer.MAX_VALUE;
+        int maxCx = Integer.MIN_VALUE, maxCy = Integer.MIN_VALUE;
+        private final Bounds[] aggregates = new Bounds[2];
+        private final boolean[] aggregateStale = new boolean[2];
+
+        void add(Entry entry) {
+            all.add(entry);
+            if (entry.cellCount() > MAX_CELLS_PER_ENTRY) {
+                large.add(entry);
+            } else {
+                for (int i = entry.minCx; i <= entry.maxCx; i++) {
+                    for (int j = entry.minCy; j <= entry.maxCy; j++) {
+                        cells.computeIfAbsent(key(i, j), k -> new ArrayList<>(4)).add(entry);
+                    }
+                }
+                minCx = Math.min(minCx, entry.minCx);
+                minCy = Math.min(minCy, entry.minCy);
+                maxCx = Math.max(maxCx, entry.maxCx);
+                maxCy = Math.max(maxCy, entry.maxCy);
+            }
+            int category = entry.category();
+            if (entry.bounds != null && !aggregateStale[category]) {
+                aggregates[category] = Bounds.union(aggregates[category], entry.bounds);
+            }
+        }
+
+        void remove(Entry entry) {
+            all.remove(entry);
+            if (!large.remove(entry)) {
+                for (int i = entry.minCx; i <= entry.maxCx; i++) {
+                    for (int j = entry.minCy; j <= entry.maxCy; j++) {
+                        long key = key(i, j);
+                        List<Entry> cell = cells.get(key);
+                        if (cell != null) {
+                            cell.remove(entry);
+                            if (cell.isEmpty()) {
+                                cells.remove(key);
+                            }
+                        }
+                    }
+                }
+            }
+            if (entry.bounds != null) {
+                aggregateStale[entry.category()] = true;
+            }
+        }
+
+        Bounds aggregate(int category) {
+            if (aggregateStale[category]) {
+                Bounds result = null;
+                for (Entry entry : all) {
+                    if (entry.category() == category) {
+                        result = Bounds.union(result, entry.bounds);
+                    }
+                }
+                aggregates[category] = result;
+                aggregateStale[category] = false;
+            }
+            return aggregates[category];
+        }
+
+        /** Entries that may overlap the rectangle; each at most once. */
+        Iterable<Entry> candidates(float minX, float minY, float maxX, float maxY) {
+            Set<Entry> result = Collections.newSetFromMap(new IdentityHashMap<>());
+            result.addAll(large);
+            int fromX = Math.max(cell(minX), minCx);
+            int fromY = Math.max(cell(minY), minCy);
+            int toX = Math.min(cell(maxX), maxCx);
+            int toY = Math.min(cell(maxY), maxCy);
+            if (fromX > toX || fromY > toY) {
+                return result;
+            }
+            long span = (long) (toX - fromX + 1) * (toY - fromY + 1);
+            if (span > cells.size()) {
+                // Query covers more cells than are occupied: walk the occupied ones
+                for (Map.Entry<Long, List<Entry>> cell : cells.entrySet()) {
+                    int cx = (int) (cell.getKey() >> 32);
+                    int cy = (int) (long) cell.getKey();
+                    if (cx >= fromX && cx <= toX && cy >= fromY && cy <= toY) {
+                        result.addAll(cell.getValue());
+                    }
+                }
+            } else {
+                for (int i = fromX; i <= toX; i++) {
+                    for (int j = fromY; j <= toY; j++) {
+                        List<Entry> cell = cells.get(key(i, j));
+                        if (cell != null) {
+                            result.addAll(cell);
+                        }
+                    }
+                }
+            }
+            return result;
+        }
+
+        /** Ring beyond which no occupied cell lies, seen from the given cell. */
+        int maxRing(int cx, int cy) {
+            if (cells.isEmpty()) {
+                return -1;
+            }
+            return Math.max(Math.max(Math.abs(cx - minCx), Math.abs(cx - maxCx)),
+                    Math.max(Math.abs(cy - minCy), Math.abs(cy - maxCy)));
+        }
+    }
+
+    /** One indexed object: its footprint box, cells and, if it counts for scene bounds, its bounds. */
+    private static final class Entry {
+        final Selectable item;
+        final Level level;
+        final float minX, minY, maxX, maxY;
+        final int minCx, minCy, maxCx, maxCy;
+        /** Contribution to the level's aggregate, or null (labels, dimension lines, hidden furniture). */
+        final Bounds bounds;
+        LevelGrid grid;
+        private Bounds itemBounds;
+
+        private Entry(Selectable item, Level level, float minX, float minY, float maxX, float maxY, Bounds bounds) {
+            this.item = item;
+            this.level = level;
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.minCx = cell(minX);
+            this.minCy = cell(minY);
+            this.maxCx = cell(maxX);
+            this.maxCy = cell(maxY);
+            this.bounds = bounds;
+        }
+
+        /** Builds the entry, or returns null for an object without plan points. */
+        static Entry of(Selectable item, Home home) {
+            float[][] points = item.getPoints();
+            if (points == null || points.length == 0) {
+                return null;
+            }
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (float[] pt : points) {
+                minX = Math.min(minX, pt[0]);
+                minY = Math.min(minY, pt[1]);
+                maxX = Math.max(maxX, pt[0]);
+                maxY = Math.max(maxY, pt[1]);
+            }
+            Level level = item instanceof Elevatable ? ((Elevatable) item).getLevel() : null;
+            return new Entry(item, level, minX, minY, maxX, maxY,
+                    sceneBounds(item, home, minX, minY, maxX, maxY));
+        }
+
+        /** Same rules as the scene bounds of the overhead render and the OBJ ground. */
+        private static Bounds sceneBounds(Selectable item, Home home,
+                                          float minX, float minY, float maxX, float maxY) {
+            if (item instanceof Wall) {
+                Wall wall = (Wall) item;
+                Float wallHeight = wall.getHeight();
+                float h = wallHeight != null ? wallHeight : home.getWallHeight();
+                float baseElevation = wall.getLevel() != null ? wall.getLevel().getElevation() : 0;
+                return new Bounds(minX, minY, maxX, maxY, baseElevation + h);
+            }
+            if (item instanceof HomeFurnitureGroup) {
+                HomeFurnitureGroup group = (HomeFurnitureGroup) item;
+                if (!group.isVisible()) {
+                    return null;
+                }
+                Bounds result = null;
+                for (HomePieceOfFurniture child : group.getFurniture()) {
+                    if (child.isVisible()) {
+                        result = Bounds.union(result,
+                                pointsBounds(child.getPoints(), child.getElevation() + child.getHeight()));
+                    }
+                }
+                return result;
+            }
+            if (item instanceof HomePieceOfFurniture) {
+                HomePieceOfFurniture piece = (HomePieceOfFurniture) item;
+                return piece.isVisible()
+                        ? new Bounds(minX, minY, maxX, maxY, piece.getElevation() + piece.getHeight())
+                        : null;
+            }
+            if (item instanceof Room) {
+                return new Bounds(minX, minY, maxX, maxY, 0);
+            }
+            return null;
+        }
+
+        private static Bounds pointsBounds(float[][] points, float maxZ) {
+            Bounds result = null;
+            for (float[] pt : points) {
+                result = Bounds.union(result, new Bounds(pt[0], pt[1], pt[0], pt[1], maxZ));
+            }
+            return result;
+        }
+
+        /** Level aggregate the bounds go to: {@link LevelGrid#FURNITURE} or {@link LevelGrid#STRUCTURE}. */
+        int category() {
+            return item instanceof HomePieceOfFurniture ? LevelGrid.FURNITURE : LevelGrid.STRUCTURE;
+        }
+
+        Bounds itemBounds() {
+            if (itemBounds == null) {
+                itemBounds = new Bounds(minX, minY, maxX, maxY, bounds != null ? bounds.getMaxZ() : 0);
+            }
+            return itemBounds;
+        }
+
+        long cellCount() {
+            return (long) (maxCx - minCx + 1) * (maxCy - minCy + 1);
+        }
+
+        boolean overlaps(float qMinX, float qMinY, float qMaxX, float qMaxY) {
+            return minX <= qMaxX && maxX >= qMinX && minY <= qMaxY && maxY >= qMinY;
+        }
+
+        double distanceTo(float x, float y) {
+            double dx = Math.max(0, Math.max(minX - x, x - maxX));
+            double dy = Math.max(0, Math.max(minY - y, y - maxY));
+            return Math.hypot(dx, dy);
+        }
+    }
+
+    private static final class Candidate {
+        final Entry entry;
+        final double distance;
+
+        Candidate(Entry entry, double distance) {
+            this.entry = entry;
+            this.distance = distance;
+        }
+    }
+
+    /** Неизменяемый bounding box в плане плюс максимальная высота, в см. */
+    public static final class Bounds {
+        private final float minX, minY, maxX, maxY, maxZ;
+
+        public Bounds(float minX, float minY, float maxX, float maxY, float maxZ) {
+            this.minX = minX;
+            this.minY = minY;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+        }
+
+        static Bounds union(Bounds a, Bounds b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return new Bounds(Math.min(a.minX, b.minX), Math.min(a.minY, b.minY),
+                    Math.max(a.maxX, b.maxX), Math.max(a.maxY, b.maxY), Math.max(a.maxZ, b.maxZ));
+        }
+
+        public float getMinX() {
+            return minX;
+        }
+
+        public float getMinY() {
+            return minY;
+        }
+
+        public float getMaxX() {
+            return maxX;
+        }
+
+        public float getMaxY() {
+            return maxY;
+        }
+
+        public float getMaxZ() {
+            return maxZ;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обработчик команды "attach_home".
+ * Переключает текущую MCP-сессию на существующий дом (или обратно на дом по умолчанию).
+ */
+public class AttachHomeHandler implements CommandHandler, CommandDescriptor {
+
+    private final HomeRegistry homes;
+
+    public AttachHomeHandler(HomeRegistry homes) {
+        this.homes = homes;
+    }
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        String sessionId = HomeRegistry.currentSession();
+        if (sessionId == null) {
+            return Response.error("attach_home requires an MCP session");
+        }
+        String homeId = request.getString("homeId");
+        if (homeId == null || homeId.isEmpty()) {
+            return Response.error("Parameter 'homeId' is required");
+        }
+        try {
+            homes.attach(sessionId, homeId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return Response.error(e.getMessage());
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("homeId", homeId);
+        data.put("attached", true);
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Switches this MCP session to another home created with create_home (by any "
+                + "session, also before a server restart), so following tools act on it. Use homeId \"" + HomeRegistry.DEFAULT_HOME_ID
+                + "\" to return to the home open in the Sweet Home 3D window. See list_homes.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("homeId", prop("string", "Home to switch to"));
+        schema.put("properties", properties);
+        schema.put("required", Collections.singletonList("homeId"));
+        return schema;
+    }
+}
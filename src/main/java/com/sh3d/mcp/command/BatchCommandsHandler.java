@@ -88,8 +88,14 @@ public class BatchCommandsHandler implements CommandHandler, CommandDescriptor {
             }
 
             String action = actionObj.toString();
+            String resolved = registry.resolveAction(action);
+            if (resolved == null) {
+                results.add(errorResult(i, action, "Unknown action: " + action));
+                failed++;
+                continue;
+            }
 
-            if (ACTION_NAME.equals(action)) {
+            if (ACTION_NAME.equals(resolved)) {
                 results.add(errorResult(i, action,
                         "Nested batch_commands is not allowed"));
                 failed++;
@@ -102,7 +108,7 @@ public class BatchCommandsHandler implements CommandHandler, CommandDescriptor {
                     ? (Map<String, Object>) cmdMap.get("params")
                     : Collections.emptyMap();
 
-            Request subRequest = new Request(action, params);
+            Request subRequest = new Request(resolved, params);
             Response subResponse = registry.dispatch(subRequest, accessor);
 
             Map<String, Object> resultEntry = new LinkedHashMap<>();
@@ -128,6 +134,40 @@ public class BatchCommandsHandler implements CommandHandler, CommandDescriptor {
         return Response.ok(data);
     }
 
+    /**
+     * Батч стоит как самая дорогая из его команд: с одним render_photo внутри
+     * он расходует HEAVY-квоту, иначе квоту можно обойти, завернув рендер в батч.
+     */
+    @Override
+    public CostClass getCostClass(Map<String, Object> params) {
+        Object commandsObj = params.get("commands");
+        if (!(commandsObj instanceof List)) {
+            return CostClass.LIGHT;
+        }
+        for (Object item : (List<?>) commandsObj) {
+            if (!(item instanceof Map)) {
+                continue;
+            }
+            Object actionObj = ((Map<?, ?>) item).get("action");
+            String resolved = actionObj != null ? registry.resolveAction(actionObj.toString()) : null;
+            if (resolved == null || ACTION_NAME.equals(resolved)) {
+                continue;
+            }
+            CommandHandler handler = registry.getHandlers().get(resolved);
+            if (handler instanceof CommandDescriptor) {
+                Object subParams = ((Map<?, ?>) item).get("params");
+                @SuppressWarnings("unchecked")
+                Map<String, Object> paramsMap = subParams instanceof Map
+                        ? (Map<String, Object>) subParams
+                        : Collections.emptyMap();
+                if (((CommandDescriptor) handler).getCostClass(paramsMap) == CostClass.HEAVY) {
+                    return CostClass.HEAVY;
+                }
+            }
+        }
+        return CostClass.LIGHT;
+    }
+
     @Override
     public String getDescription() {
         return "Executes multiple commands in a single request. "
@@ -153,7 +193,7 @@ public class BatchCommandsHandler implements CommandHandler, CommandDescriptor {
         itemSchema.put("type", "object");
 
         Map<String, Object> itemProps = new LinkedHashMap<>();
-        itemProps.put("action", prop("string", "Command action name (e.g. 'create_wall')"));
+        itemProps.put("action", prop("string", "Command action or tool name (e.g. 'create_wall')"));
         itemProps.put("params", prop("object", "Command parameters (varies per action)"));
         itemSchema.put("properties", itemProps);
         itemSchema.put("required", Arrays.asList("action"));
@@ -167,12 +207,13 @@ public class BatchCommandsHandler implements CommandHandler, CommandDescriptor {
     }
 
     private void autoCheckpoint(HomeAccessor accessor, int commandCount) {
-        if (checkpointManager == null) {
+        CheckpointManager checkpoints = CheckpointManager.forHome(accessor, checkpointManager);
+        if (checkpoints == null) {
             return;
         }
         try {
             Home clonedHome = accessor.runOnEDT(() -> accessor.getHome().clone());
-            checkpointManager.push(clonedHome,
+            checkpoints.push(clonedHome,
                     "Auto: before batch_commands (" + commandCount + " commands)");
             LOG.info("Auto-checkpoint created before batch_commands (" + commandCount + " commands)");
         } catch (Exception e) {
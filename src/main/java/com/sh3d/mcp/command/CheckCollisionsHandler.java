@@ -0,0 +1,112 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeObject;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.CollisionDetector;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.ObjectResolver;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обработчик команды "check_collisions".
+ * Находит мебель, пересекающую стены или другую мебель.
+ *
+ * <pre>
+ * Параметры:
+ *   id      — проверить один предмет (опционально)
+ *   levelId — уровень для полной проверки (по умолчанию выбранный)
+ * </pre>
+ */
+public class CheckCollisionsHandler implements CommandHandler, CommandDescriptor {
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        String id = request.getString("id");
+        String levelId = request.getString("levelId");
+        if (id != null && levelId != null) {
+            return Response.error("Parameters 'id' and 'levelId' are mutually exclusive");
+        }
+
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
+            CollisionDetector detector = new CollisionDetector(home, accessor.getSpatialIndex());
+            List<CollisionDetector.Collision> collisions;
+            Level level;
+            if (id != null) {
+                HomePieceOfFurniture piece = ObjectResolver.findFurniture(home, id);
+                if (piece == null) {
+                    return Response.error("Furniture not found: " + id);
+                }
+                level = piece.getLevel();
+                collisions = detector.findCollisions(piece);
+            } else {
+                level = levelId != null ? ObjectResolver.findLevel(home, levelId) : home.getSelectedLevel();
+                if (levelId != null && level == null) {
+                    return Response.error("Level not found: " + levelId);
+                }
+                collisions = detector.findAllCollisions(level);
+            }
+
+            List<Object> items = new ArrayList<>();
+            for (CollisionDetector.Collision collision : collisions) {
+                items.add(describe(collision));
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("levelId", level != null ? level.getId() : null);
+            data.put("count", items.size());
+            data.put("collisions", items);
+            return Response.ok(data);
+        });
+    }
+
+    static Map<String, Object> describe(CollisionDetector.Collision collision) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", collision.getPiece().getId());
+        item.put("name", collision.getPiece().getName());
+        item.put("otherId", ((HomeObject) collision.getOther()).getId());
+        if (collision.getOther() instanceof Wall) {
+            item.put("otherType", "wall");
+        } else {
+            item.put("otherType", "furniture");
+            item.put("otherName", ((HomePieceOfFurniture) collision.getOther()).getName());
+        }
+        item.put("depth", round2(collision.getDepth()));
+        return item;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Finds furniture that overlaps walls or other furniture in plan, using the pieces' "
+                + "rotated footprints. Pieces at non-overlapping heights (a shelf above a desk), "
+                + "doors and windows in walls, and pieces merely touching (within 0.5 cm) are not "
+                + "collisions. Without 'id' checks every piece on the level; with 'id' checks one piece. "
+                + "Each result gives both ids and the overlap depth in cm, so the piece can be moved "
+                + "with modify_furniture. Cheaper than render_photo for spotting placement mistakes.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("id", prop("string", "ID of one piece to check (default: every piece on the level)"));
+        properties.put("levelId", prop("string", "Level to check (default: selected level)"));
+
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>());
+        return schema;
+    }
+}
@@ -27,6 +27,7 @@ public class CheckpointHandler implements CommandHandler, CommandDescriptor {
 
     @Override
     public Response execute(Request request, HomeAccessor accessor) {
+        CheckpointManager checkpoints = CheckpointManager.forHome(accessor, checkpointManager);
         String description = request.getString("description");
 
         // Clone Home on EDT + build auto-description if needed
@@ -43,13 +44,13 @@ public class CheckpointHandler implements CommandHandler, CommandDescriptor {
         Home clonedHome = (Home) result[0];
         String finalDescription = (String) result[1];
 
-        CheckpointManager.SnapshotInfo info = checkpointManager.push(clonedHome, finalDescription);
+        CheckpointManager.SnapshotInfo info = checkpoints.push(clonedHome, finalDescription);
 
         Map<String, Object> data = new LinkedHashMap<>();
         data.put("id", info.getId());
         data.put("description", info.getDescription());
-        data.put("depth", checkpointManager.size());
-        data.put("maxDepth", checkpointManager.getMaxDepth());
+        data.put("depth", checkpoints.size());
+        data.put("maxDepth", checkpoints.getMaxDepth());
         return Response.ok(data);
     }
 
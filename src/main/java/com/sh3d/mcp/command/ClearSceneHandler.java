@@ -118,7 +118,8 @@ public class ClearSceneHandler implements CommandHandler, CommandDescriptor {
     private void autoCheckpoint(HomeAccessor accessor) {
         try {
             Home clonedHome = accessor.runOnEDT(() -> accessor.getHome().clone());
-            checkpointManager.push(clonedHome, "Auto: before clear_scene");
+            CheckpointManager.forHome(accessor, checkpointManager)
+                    .push(clonedHome, "Auto: before clear_scene");
             LOG.info("Auto-checkpoint created before clear_scene");
         } catch (Exception e) {
             LOG.log(Level.WARNING, "Failed to create auto-checkpoint before clear_scene", e);
@@ -0,0 +1,64 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обработчик команды "close_home".
+ * Закрывает дом, созданный create_home; подключённые сессии возвращаются к дому по умолчанию.
+ */
+public class CloseHomeHandler implements CommandHandler, CommandDescriptor {
+
+    private final HomeRegistry homes;
+
+    public CloseHomeHandler(HomeRegistry homes) {
+        this.homes = homes;
+    }
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        String homeId = request.getString("homeId");
+        if (homeId == null || homeId.isEmpty()) {
+            homeId = homes.getHomeId(HomeRegistry.currentSession());
+        }
+        boolean closed;
+        try {
+            closed = homes.closeHome(homeId);
+        } catch (IllegalArgumentException e) {
+            return Response.error(e.getMessage());
+        }
+        if (!closed) {
+            return Response.error("Unknown home: " + homeId);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("homeId", homeId);
+        data.put("closed", true);
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Closes a home created with create_home and frees its memory. Unsaved changes are "
+                + "lost — call save_home first to keep them. Sessions attached to it return to the "
+                + "default home. Without homeId closes this session's current home.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("homeId", prop("string", "Home to close; defaults to this session's home"));
+        schema.put("properties", properties);
+        schema.put("required", Collections.emptyList());
+        return schema;
+    }
+}
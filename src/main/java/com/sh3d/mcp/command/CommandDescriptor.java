@@ -20,6 +20,22 @@ public interface CommandDescriptor {
         return null;
     }
 
+    /**
+     * Класс стоимости команды для per-session квот (rate limit, max in-flight).
+     * Рендеринг и экспорт переопределяют на {@link CostClass#HEAVY}.
+     */
+    default CostClass getCostClass() {
+        return CostClass.LIGHT;
+    }
+
+    /**
+     * Класс стоимости конкретного вызова. По умолчанию не зависит от аргументов;
+     * мета-команды (batch_commands) переопределяют, чтобы учесть вложенные команды.
+     */
+    default CostClass getCostClass(Map<String, Object> params) {
+        return getCostClass();
+    }
+
     /**
      * Описание для Claude (на английском, 1-3 предложения).
      */
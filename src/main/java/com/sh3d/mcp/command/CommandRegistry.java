@@ -1,8 +1,12 @@
 package com.sh3d.mcp.command;
 
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.CallTimer;
+import com.sh3d.mcp.metrics.MetricsRegistry;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
+import com.sh3d.mcp.trace.Span;
+import com.sh3d.mcp.trace.Trace;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -10,16 +14,41 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Реестр команд: связывает имя action с обработчиком CommandHandler.
  */
 public class CommandRegistry {
 
+    private static final Logger LOG = Logger.getLogger(CommandRegistry.class.getName());
+
     private final Map<String, CommandHandler> handlers = new LinkedHashMap<>();
 
+    /**
+     * MCP tool name → action, for handlers whose {@link CommandDescriptor#getToolName()}
+     * differs from the registry action. Built at registration time so that
+     * {@link #resolveAction(String)} is a single lookup.
+     */
+    private final Map<String, String> toolNameAliases = new ConcurrentHashMap<>();
+
+    /** Monotonic counter bumped on every registration; keys caches derived from the handler set. */
+    private volatile long version;
+
+    private final List<Runnable> changeListeners = new CopyOnWriteArrayList<>();
+
+    /** Per-action call metrics; null — dispatch is not measured. */
+    private volatile MetricsRegistry metrics;
+
     /**
      * Регистрирует обработчик для указанного имени команды.
+     * Повторная регистрация того же action заменяет обработчик.
+     *
+     * @throws IllegalArgumentException if the action or the handler's tool name collides
+     *         with an action or tool name of another registered handler
      */
     public void register(String action, CommandHandler handler) {
         if (action == null || action.isEmpty()) {
@@ -28,7 +57,32 @@ public class CommandRegistry {
         if (handler == null) {
             throw new IllegalArgumentException("Handler must not be null");
         }
-        handlers.put(action, handler);
+        String aliasOwner = toolNameAliases.get(action);
+        if (aliasOwner != null && !aliasOwner.equals(action)) {
+            throw new IllegalArgumentException("Action '" + action
+                    + "' collides with the tool name of action '" + aliasOwner + "'");
+        }
+        String toolName = aliasOf(action, handler);
+        if (toolName != null) {
+            if (handlers.containsKey(toolName)) {
+                throw new IllegalArgumentException("Tool name '" + toolName + "' of action '"
+                        + action + "' collides with registered action '" + toolName + "'");
+            }
+            String owner = toolNameAliases.get(toolName);
+            if (owner != null && !owner.equals(action)) {
+                throw new IllegalArgumentException("Tool name '" + toolName + "' of action '"
+                        + action + "' is already used by action '" + owner + "'");
+            }
+        }
+
+        if (handlers.put(action, handler) != null) {
+            toolNameAliases.values().removeIf(action::equals);
+        }
+        if (toolName != null) {
+            toolNameAliases.put(toolName, action);
+        }
+        version++;
+        fireHandlersChanged();
     }
 
     /**
@@ -42,6 +96,27 @@ public class CommandRegistry {
         if (handler == null) {
             return Response.error("Unknown action: " + action);
         }
+        MetricsRegistry metrics = this.metrics;
+        CallTimer timer = CallTimer.start(action);
+        long start = System.nanoTime();
+        Response response = null;
+        try (Span span = Trace.span("execute").attr("action", action)) {
+            response = execute(handler, request, accessor);
+            if (response.isError()) {
+                span.attr("error", true);
+            }
+            return response;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            long edtWait = timer.stop();
+            if (metrics != null) {
+                metrics.forAction(action).recordCall(edtWait, elapsed - edtWait,
+                        response == null || response.isError());
+            }
+        }
+    }
+
+    private Response execute(CommandHandler handler, Request request, HomeAccessor accessor) {
         try {
             Response response = handler.execute(request, accessor);
             return appendWarnings(request, response);
@@ -52,6 +127,18 @@ public class CommandRegistry {
         }
     }
 
+    /**
+     * Enables per-action call metrics for {@link #dispatch}. Pass null to disable.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /** Returns the metrics registry used by {@link #dispatch}, or null if metrics are disabled. */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
     /**
      * Checks for unrecognized parameters after handler execution.
      * If any are found, adds a {@code _warnings} field to the response data.
@@ -72,6 +159,22 @@ public class CommandRegistry {
         return Response.ok(newData);
     }
 
+    /**
+     * Resolves an action name or MCP tool name to the registered action.
+     * Used by tools/call dispatch and batch_commands.
+     *
+     * @return the action, or null if neither an action nor a tool name matches
+     */
+    public String resolveAction(String name) {
+        if (name == null) {
+            return null;
+        }
+        if (handlers.containsKey(name)) {
+            return name;
+        }
+        return toolNameAliases.get(name);
+    }
+
     /**
      * Проверяет, зарегистрирован ли обработчик для данной команды.
      */
@@ -86,4 +189,45 @@ public class CommandRegistry {
     public Map<String, CommandHandler> getHandlers() {
         return Collections.unmodifiableMap(handlers);
     }
+
+    /**
+     * Returns the registry version. Incremented on every {@link #register} call,
+     * so derived data (e.g. the serialized tools/list) can be cached per version.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Adds a listener notified after each handler registration.
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(Runnable listener) {
+        changeListeners.remove(listener);
+    }
+
+    /** Returns the handler's tool name if it differs from the action, otherwise null. */
+    private static String aliasOf(String action, CommandHandler handler) {
+        if (!(handler instanceof CommandDescriptor)) {
+            return null;
+        }
+        String toolName = ((CommandDescriptor) handler).getToolName();
+        if (toolName == null || toolName.isEmpty() || toolName.equals(action)) {
+            return null;
+        }
+        return toolName;
+    }
+
+    private void fireHandlersChanged() {
+        for (Runnable listener : changeListeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                LOG.log(Level.WARNING, "Registry change listener error", e);
+            }
+        }
+    }
 }
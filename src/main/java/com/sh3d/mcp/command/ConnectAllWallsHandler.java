@@ -0,0 +1,295 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.ObjectResolver;
+import com.sh3d.mcp.bridge.SpatialIndex;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обработчик команды "connect_all_walls".
+ * Соединяет все совпадающие концы стен за один проход (например, после импорта плана).
+ *
+ * <pre>
+ * Параметры:
+ *   tolerance — максимальное расстояние между концами, см (default 1, max 100)
+ *   levelId   — только этот уровень (по умолчанию все)
+ *   dryRun    — только отчёт, без изменений
+ * </pre>
+ * Free ends (no wall attached at that end) are bucketed into a hash grid with cells of the
+ * tolerance, so each end only meets the ends in its 3x3 neighbourhood; close pairs are joined
+ * nearest first, each end at most once, like {@link ConnectWallsHandler} does for one pair.
+ * Ends left over are reported as T-junctions when they touch the middle of another wall
+ * (found through the {@link SpatialIndex}) and as dangling otherwise.
+ */
+public class ConnectAllWallsHandler implements CommandHandler, CommandDescriptor {
+
+    static final float DEFAULT_TOLERANCE = 1f;
+    static final float MAX_TOLERANCE = 100f;
+    /** Longest list of each kind in the response; the counts are always complete. */
+    static final int MAX_REPORTED = 500;
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        float tolerance = request.getFloat("tolerance", DEFAULT_TOLERANCE);
+        if (tolerance < 0 || tolerance > MAX_TOLERANCE) {
+            return Response.error("Parameter 'tolerance' must be between 0 and " + (int) MAX_TOLERANCE
+                    + ", got " + tolerance);
+        }
+        String levelId = request.getString("levelId");
+        boolean dryRun = Boolean.TRUE.equals(request.getBoolean("dryRun"));
+
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
+            Level onlyLevel = null;
+            if (levelId != null) {
+                onlyLevel = ObjectResolver.findLevel(home, levelId);
+                if (onlyLevel == null) {
+                    return Response.error("Level not found: " + levelId);
+                }
+            }
+
+            // Свободные концы по уровням
+            Map<Level, List<End>> endsByLevel = new LinkedHashMap<>();
+            int alreadyConnected = 0;
+            for (Wall wall : home.getWalls()) {
+                if (onlyLevel != null && wall.getLevel() != onlyLevel) {
+                    continue;
+                }
+                List<End> ends = endsByLevel.computeIfAbsent(wall.getLevel(), l -> new ArrayList<>());
+                if (wall.getWallAtStart() == null) {
+                    ends.add(new End(wall, true, ends.size()));
+                } else {
+                    alreadyConnected++;
+                }
+                if (wall.getWallAtEnd() == null) {
+                    ends.add(new End(wall, false, ends.size()));
+                } else {
+                    alreadyConnected++;
+                }
+            }
+
+            List<Pair> joined = new ArrayList<>();
+            List<End> leftover = new ArrayList<>();
+            for (List<End> ends : endsByLevel.values()) {
+                joined.addAll(match(ends, tolerance));
+                for (End end : ends) {
+                    if (!end.matched) {
+                        leftover.add(end);
+                    }
+                }
+            }
+
+            if (!dryRun) {
+                for (Pair pair : joined) {
+                    ConnectWallsHandler.setConnection(pair.a.wall, pair.a.label(), pair.b.wall);
+                    ConnectWallsHandler.setConnection(pair.b.wall, pair.b.label(), pair.a.wall);
+                }
+            }
+
+            SpatialIndex index = accessor.getSpatialIndex();
+            List<Object> junctions = new ArrayList<>();
+            List<Object> dangling = new ArrayList<>();
+            int junctionCount = 0;
+            for (End end : leftover) {
+                Wall host = findHostWall(index, end, tolerance);
+                if (host != null) {
+                    junctionCount++;
+                    if (junctions.size() < MAX_REPORTED) {
+                        Map<String, Object> item = end.describe();
+                        item.put("hostWallId", host.getId());
+                        junctions.add(item);
+                    }
+                } else if (dangling.size() < MAX_REPORTED) {
+                    dangling.add(end.describe());
+                }
+            }
+
+            List<Object> connections = new ArrayList<>();
+            for (Pair pair : joined.subList(0, Math.min(MAX_REPORTED, joined.size()))) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("wall1Id", pair.a.wall.getId());
+                item.put("wall1End", pair.a.label());
+                item.put("wall2Id", pair.b.wall.getId());
+                item.put("wall2End", pair.b.label());
+                item.put("gap", round2(pair.distance));
+                connections.add(item);
+            }
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("dryRun", dryRun);
+            data.put("connectedCount", joined.size());
+            data.put("alreadyConnectedEnds", alreadyConnected);
+            data.put("tJunctionCount", junctionCount);
+            data.put("danglingCount", leftover.size() - junctionCount);
+            data.put("connections", connections);
+            data.put("tJunctions", junctions);
+            data.put("danglingEnds", dangling);
+            data.put("truncated", Math.max(joined.size(), leftover.size()) > MAX_REPORTED);
+            return Response.ok(data);
+        });
+    }
+
+    /**
+     * Pairs ends of different walls at most {@code tolerance} apart, closest pairs first,
+     * marking matched ends. Expected O(n) for ends spread over the plan: each end is compared
+     * only with the ends hashed into its own and the eight neighbouring cells.
+     */
+    static List<Pair> match(List<End> ends, float tolerance) {
+        float cellSize = Math.max(tolerance, 0.01f);
+        Map<Long, List<End>> grid = new HashMap<>();
+        for (End end : ends) {
+            grid.computeIfAbsent(key(cell(end.x, cellSize), cell(end.y, cellSize)), k -> new ArrayList<>()).add(end);
+        }
+        List<Pair> candidates = new ArrayList<>();
+        for (End end : ends) {
+            long cx = cell(end.x, cellSize);
+            long cy = cell(end.y, cellSize);
+            for (long i = cx - 1; i <= cx + 1; i++) {
+                for (long j = cy - 1; j <= cy + 1; j++) {
+                    List<End> cell = grid.get(key(i, j));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (End other : cell) {
+                        // Each pair once: from the end listed first
+                        if (other.order <= end.order || other.wall == end.wall) {
+                            continue;
+                        }
+                        double distance = Math.hypot(other.x - end.x, other.y - end.y);
+                        if (distance <= tolerance) {
+                            candidates.add(new Pair(end, other, distance));
+                        }
+                    }
+                }
+            }
+        }
+        candidates.sort((a, b) -> Double.compare(a.distance, b.distance));
+        List<Pair> joined = new ArrayList<>();
+        for (Pair pair : candidates) {
+            if (!pair.a.matched && !pair.b.matched) {
+                pair.a.matched = true;
+                pair.b.matched = true;
+                joined.add(pair);
+            }
+        }
+        return joined;
+    }
+
+    /** Wall whose middle the end touches (within its half thickness plus tolerance), or null. */
+    private static Wall findHostWall(SpatialIndex index, End end, float tolerance) {
+        Level level = end.wall.getLevel();
+        for (Selectable item : index.query(level, end.x - tolerance, end.y - tolerance,
+                end.x + tolerance, end.y + tolerance)) {
+            if (!(item instanceof Wall) || item == end.wall) {
+                continue;
+            }
+            Wall wall = (Wall) item;
+            float reach = wall.getThickness() / 2 + tolerance;
+            double distance = Line2D.ptSegDist(wall.getXStart(), wall.getYStart(),
+                    wall.getXEnd(), wall.getYEnd(), end.x, end.y);
+            boolean nearEnds = Math.hypot(wall.getXStart() - end.x, wall.getYStart() - end.y) <= reach
+                    || Math.hypot(wall.getXEnd() - end.x, wall.getYEnd() - end.y) <= reach;
+            if (distance <= reach && !nearEnds) {
+                return wall;
+            }
+        }
+        return null;
+    }
+
+    private static long cell(float coordinate, float cellSize) {
+        return (long) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+    }
+
+    /** Свободный конец стены. */
+    static final class End {
+        final Wall wall;
+        final boolean start;
+        final float x;
+        final float y;
+        final int order;
+        boolean matched;
+
+        End(Wall wall, boolean start, int order) {
+            this.wall = wall;
+            this.start = start;
+            this.order = order;
+            this.x = start ? wall.getXStart() : wall.getXEnd();
+            this.y = start ? wall.getYStart() : wall.getYEnd();
+        }
+
+        String label() {
+            return start ? "start" : "end";
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("wallId", wall.getId());
+            item.put("end", label());
+            item.put("x", round2(x));
+            item.put("y", round2(y));
+            return item;
+        }
+    }
+
+    static final class Pair {
+        final End a;
+        final End b;
+        final double distance;
+
+        Pair(End a, End b, double distance) {
+            this.a = a;
+            this.b = b;
+            this.distance = distance;
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Connects every pair of wall ends that meet (within 'tolerance' cm) in one call, "
+                + "for proper corner rendering after creating or importing many walls with create_wall. "
+                + "Only ends not yet connected are considered; each end joins its closest match. "
+                + "Also reports T-junctions (an end touching the middle of another wall, which Sweet Home 3D "
+                + "does not join) and dangling ends that meet nothing. Use dryRun to preview. "
+                + "Use connect_walls to join two specific walls instead.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Map<String, Object> toleranceProp = new LinkedHashMap<>();
+        toleranceProp.put("type", "number");
+        toleranceProp.put("minimum", 0);
+        toleranceProp.put("maximum", MAX_TOLERANCE);
+        toleranceProp.put("default", DEFAULT_TOLERANCE);
+        toleranceProp.put("description", "Maximum distance in cm between two wall ends to join them");
+        properties.put("tolerance", toleranceProp);
+        properties.put("levelId", prop("string", "Only connect walls on this level (default: all levels)"));
+        properties.put("dryRun", prop("boolean", "Report what would be connected without changing walls"));
+
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>());
+        return schema;
+    }
+}
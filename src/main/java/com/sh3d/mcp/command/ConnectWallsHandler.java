@@ -129,7 +129,7 @@ public class ConnectWallsHandler implements CommandHandler, CommandDescriptor {
         return new String[]{bestW1, bestW2};
     }
 
-    private static void setConnection(Wall wall, String end, Wall other) {
+    static void setConnection(Wall wall, String end, Wall other) {
         if ("start".equals(end)) {
             wall.setWallAtStart(other);
         } else {
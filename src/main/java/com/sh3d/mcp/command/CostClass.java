@@ -0,0 +1,14 @@
+package com.sh3d.mcp.command;
+
+/**
+ * Класс стоимости команды. Определяет, какая per-session квота
+ * (rate limit и max in-flight) применяется к вызову tools/call.
+ */
+public enum CostClass {
+
+    /** Быстрые операции над моделью: создание, изменение, запросы состояния. */
+    LIGHT,
+
+    /** Ресурсоёмкие операции: рендеринг фото, экспорт изображений и 3D-моделей. */
+    HEAVY
+}
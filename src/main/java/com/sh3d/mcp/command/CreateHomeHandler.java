@@ -0,0 +1,67 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обработчик команды "create_home".
+ * Создаёт пустой дом со своим потоком модели и подключает к нему текущую MCP-сессию.
+ */
+public class CreateHomeHandler implements CommandHandler, CommandDescriptor {
+
+    private final HomeRegistry homes;
+
+    public CreateHomeHandler(HomeRegistry homes) {
+        this.homes = homes;
+    }
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        String sessionId = HomeRegistry.currentSession();
+        if (sessionId == null) {
+            return Response.error("create_home requires an MCP session");
+        }
+        String homeId;
+        try {
+            homeId = homes.createHome(request.getString("homeId"));
+            homes.attach(sessionId, homeId);
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            return Response.error(e.getMessage());
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("homeId", homeId);
+        data.put("attached", true);
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Creates a new empty home, separate from the one open in the Sweet Home 3D window, "
+                + "and switches this MCP session to it: all following tools (walls, furniture, "
+                + "checkpoints, render_photo, save_home...) act on the new home. Homes run in "
+                + "parallel, so several designs can be built at once. Idle homes are saved to disk "
+                + "and reloaded transparently. Plan exports work only for the default home. "
+                + "Use attach_home to switch back (homeId \"default\") and close_home when done; "
+                + "a home no session is attached to is closed after a day without use (by default).";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("homeId", prop("string",
+                "ID for the new home: 1-64 letters, digits, '-' or '_'. Generated if omitted"));
+        schema.put("properties", properties);
+        schema.put("required", Collections.emptyList());
+        return schema;
+    }
+}
@@ -0,0 +1,238 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.ObjectResolver;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.awt.geom.Path2D;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обработчик команды "detect_rooms".
+ * Находит замкнутые контуры стен уровня и создаёт по комнате на каждый.
+ *
+ * <pre>
+ * Параметры:
+ *   levelId   — уровень (по умолчанию выбранный)
+ *   tolerance — зазор между концами стен, который ещё считается стыком, см (default 1)
+ *   minArea   — минимальная площадь комнаты, м² (default 0.5)
+ *   inset     — комнаты по внутренним граням стен (default true) или по осям
+ *   dryRun    — только отчёт, без создания комнат
+ * </pre>
+ * Faces come from {@link WallGraph}; a face whose interior point already lies inside a room
+ * of the level is skipped, so running the tool again after adding walls only fills the gaps.
+ * All rooms are added in one model-thread task.
+ * <p>
+ * Rooms are simple polygons: a separate loop of walls standing inside an enclosed area (a
+ * free-standing shaft or closet not joined to the surrounding walls) is not cut out of the
+ * surrounding room. It gets a room of its own, which overlaps the surrounding one.
+ */
+public class DetectRoomsHandler implements CommandHandler, CommandDescriptor {
+
+    static final float DEFAULT_TOLERANCE = 1f;
+    static final float MAX_TOLERANCE = 100f;
+    static final float DEFAULT_MIN_AREA = 0.5f;
+    /** Longest room list in the response; the counts are always complete. */
+    static final int MAX_REPORTED = 500;
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        float tolerance = request.getFloat("tolerance", DEFAULT_TOLERANCE);
+        if (tolerance < 0 || tolerance > MAX_TOLERANCE) {
+            return Response.error("Parameter 'tolerance' must be between 0 and " + (int) MAX_TOLERANCE
+                    + ", got " + tolerance);
+        }
+        float minArea = request.getFloat("minArea", DEFAULT_MIN_AREA);
+        if (minArea < 0) {
+            return Response.error("Parameter 'minArea' must be >= 0, got " + minArea);
+        }
+        Boolean insetParam = request.getBoolean("inset");
+        boolean inset = insetParam == null || insetParam;
+        boolean dryRun = Boolean.TRUE.equals(request.getBoolean("dryRun"));
+        // м² -> см²
+        double minAreaCm = minArea * 10000.0;
+        String levelId = request.getString("levelId");
+
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
+            Level level = home.getSelectedLevel();
+            if (levelId != null) {
+                level = ObjectResolver.findLevel(home, levelId);
+                if (level == null) {
+                    return Response.error("Level not found: " + levelId);
+                }
+            }
+            List<Wall> walls = new ArrayList<>();
+            for (Wall wall : home.getWalls()) {
+                if (wall.getLevel() == level) {
+                    walls.add(wall);
+                }
+            }
+            List<Path2D> existing = new ArrayList<>();
+            for (Room room : home.getRooms()) {
+                if (room.getLevel() == level) {
+                    existing.add(path(room.getPoints()));
+                }
+            }
+
+            List<Room> created = new ArrayList<>();
+            int skippedExisting = 0;
+            int skippedSmall = 0;
+            for (WallGraph.Face face : WallGraph.faces(walls, tolerance)) {
+                double[][] outline = inset ? WallGraph.inset(face) : face.points;
+                if (outline == null || WallGraph.signedArea(outline) < minAreaCm) {
+                    skippedSmall++;
+                    continue;
+                }
+                double[] inside = interiorPoint(outline);
+                boolean covered = false;
+                for (Path2D room : existing) {
+                    if (room.contains(inside[0], inside[1])) {
+                        covered = true;
+                        break;
+                    }
+                }
+                if (covered) {
+                    skippedExisting++;
+                    continue;
+                }
+                float[][] points = new float[outline.length][];
+                for (int i = 0; i < outline.length; i++) {
+                    points[i] = new float[] {(float) outline[i][0], (float) outline[i][1]};
+                }
+                created.add(new Room(points));
+            }
+            if (!dryRun) {
+                for (Room room : created) {
+                    home.addRoom(room);
+                    // addRoom puts the room on the selected level
+                    room.setLevel(level);
+                }
+            }
+
+            List<Object> rooms = new ArrayList<>();
+            for (Room room : created.subList(0, Math.min(MAX_REPORTED, created.size()))) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                if (!dryRun) {
+                    item.put("id", room.getId());
+                }
+                item.put("area", round2(room.getArea() / 10000f));
+                item.put("xCenter", round2(room.getXCenter()));
+                item.put("yCenter", round2(room.getYCenter()));
+                item.put("pointCount", room.getPoints().length);
+                rooms.add(item);
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("dryRun", dryRun);
+            data.put("levelId", level != null ? level.getId() : null);
+            data.put("wallCount", walls.size());
+            data.put("createdCount", created.size());
+            data.put("skippedExisting", skippedExisting);
+            data.put("skippedSmall", skippedSmall);
+            data.put("rooms", rooms);
+            data.put("truncated", created.size() > MAX_REPORTED);
+            return Response.ok(data);
+        });
+    }
+
+    /**
+     * A point strictly inside the polygon: the midpoint of the widest horizontal chord through
+     * the middle of its bounding box (the centroid can fall outside an L-shaped room).
+     */
+    static double[] interiorPoint(double[][] polygon) {
+        double minY = Double.MAX_VALUE;
+        double maxY = -Double.MAX_VALUE;
+        for (double[] p : polygon) {
+            minY = Math.min(minY, p[1]);
+            maxY = Math.max(maxY, p[1]);
+        }
+        double y = (minY + maxY) / 2;
+        List<Double> crossings = new ArrayList<>();
+        for (int i = 0; i < polygon.length; i++) {
+            double[] a = polygon[i];
+            double[] b = polygon[(i + 1) % polygon.length];
+            if ((a[1] <= y) != (b[1] <= y)) {
+                crossings.add(a[0] + (y - a[1]) * (b[0] - a[0]) / (b[1] - a[1]));
+            }
+        }
+        crossings.sort(null);
+        double bestX = polygon[0][0];
+        double bestWidth = -1;
+        for (int i = 0; i + 1 < crossings.size(); i += 2) {
+            double width = crossings.get(i + 1) - crossings.get(i);
+            if (width > bestWidth) {
+                bestWidth = width;
+                bestX = (crossings.get(i) + crossings.get(i + 1)) / 2;
+            }
+        }
+        return new double[] {bestX, y};
+    }
+
+    private static Path2D path(float[][] points) {
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(points[0][0], points[0][1]);
+        for (int i = 1; i < points.length; i++) {
+            path.lineTo(points[i][0], points[i][1]);
+        }
+        path.closePath();
+        return path;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Creates a room for every area enclosed by walls on a level (default: the selected one), in one call: "
+                + "walls are joined where their ends meet (within 'tolerance' cm), cross, or form T-junctions, "
+                + "and each enclosed region becomes a room following the inner sides of its walls "
+                + "(inset=false follows the wall centerlines). Regions smaller than minArea (m²) and "
+                + "regions already covered by a room are skipped, so it is safe to run again. "
+                + "Use dryRun to preview. Name or color the rooms afterwards with modify_room. "
+                + "Limitation: rooms have no holes, so a separate loop of walls standing inside a region "
+                + "(not joined to the walls around it) gets its own room overlapping the surrounding one.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        Map<String, Object> toleranceProp = new LinkedHashMap<>();
+        toleranceProp.put("type", "number");
+        toleranceProp.put("minimum", 0);
+        toleranceProp.put("maximum", MAX_TOLERANCE);
+        toleranceProp.put("default", DEFAULT_TOLERANCE);
+        toleranceProp.put("description", "Largest gap in cm between wall ends that still closes a room");
+        properties.put("tolerance", toleranceProp);
+
+        Map<String, Object> minAreaProp = new LinkedHashMap<>();
+        minAreaProp.put("type", "number");
+        minAreaProp.put("minimum", 0);
+        minAreaProp.put("default", DEFAULT_MIN_AREA);
+        minAreaProp.put("description", "Smallest room area to create, in m²");
+        properties.put("minArea", minAreaProp);
+
+        Map<String, Object> insetProp = new LinkedHashMap<>();
+        insetProp.put("type", "boolean");
+        insetProp.put("default", true);
+        insetProp.put("description", "Follow the inner sides of the walls (false: wall centerlines)");
+        properties.put("inset", insetProp);
+
+        properties.put("levelId", prop("string", "Level to detect rooms on (default: the selected level)"));
+        properties.put("dryRun", prop("boolean", "Report the rooms that would be created without adding them"));
+
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>());
+        return schema;
+    }
+}
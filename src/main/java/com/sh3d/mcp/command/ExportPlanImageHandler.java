@@ -5,21 +5,19 @@ import com.eteks.sweethome3d.model.Selectable;
 import com.eteks.sweethome3d.viewcontroller.ExportableView;
 import com.eteks.sweethome3d.viewcontroller.TransferableView;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.EncodedImage;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 
 import static com.sh3d.mcp.command.SchemaUtil.prop;
 
-import javax.imageio.ImageIO;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -35,6 +33,7 @@ import java.util.logging.Logger;
  * <pre>
  * Параметры:
  *   width — целевая ширина в пикселях (опционально, масштабирует пропорционально)
+ *   pngCompression — уровень deflate 0..9 (опционально; 0-3 быстрее, 9 компактнее)
  * Возвращает: base64-encoded PNG
  * </pre>
  */
@@ -57,10 +56,20 @@ public class ExportPlanImageHandler implements CommandHandler, CommandDescriptor
             return Response.error("Parameter 'width' must be between 1 and " + MAX_DIMENSION
                     + ", got " + requestedWidth);
         }
+        int pngCompression = (int) request.getFloat("pngCompression", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        if (request.getParams().containsKey("pngCompression")
+                && (pngCompression < 0 || pngCompression > ImageEncoder.MAX_PNG_COMPRESSION)) {
+            return Response.error("Parameter 'pngCompression' must be between 0 and "
+                    + ImageEncoder.MAX_PNG_COMPRESSION + ", got " + pngCompression);
+        }
 
         if (planView == null) {
             return Response.error("PlanView is not available — plan image export requires SH3D UI");
         }
+        if (accessor.getModelExecutor() != null) {
+            return Response.error("PlanView shows only the default home — plan image export is not available"
+                    + " for homes created with create_home");
+        }
 
         if (!(planView instanceof TransferableView)) {
             return Response.error("PlanView does not support image export");
@@ -106,34 +115,32 @@ public class ExportPlanImageHandler implements CommandHandler, CommandDescriptor
                 if (parent != null) {
                     Files.createDirectories(parent);
                 }
-                ImageIO.write(image, "png", path.toFile());
+                int size = ImageEncoder.write(image, "png", pngCompression, path);
 
                 Map<String, Object> data = new LinkedHashMap<>();
                 data.put("filePath", path.toString());
                 data.put("width", image.getWidth());
                 data.put("height", image.getHeight());
-                data.put("size_bytes", (int) Files.size(path));
+                data.put("size_bytes", size);
 
                 LOG.info("Exported plan image to " + path + " " + image.getWidth() + "x" + image.getHeight()
-                        + ", size=" + Files.size(path) + " bytes");
+                        + ", size=" + size + " bytes");
 
                 return Response.ok(data);
             }
 
-            // Inline mode: base64
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos);
-            String base64 = Base64.getEncoder().encodeToString(baos.toByteArray());
+            // Inline mode: base64, encoded when the response is written
+            EncodedImage encoded = ImageEncoder.encode(image, "png", pngCompression);
 
             Map<String, Object> data = new LinkedHashMap<>();
-            data.put("_image", base64);
-            data.put("_mimeType", "image/png");
+            data.put("_image", encoded);
+            data.put("_mimeType", encoded.getMimeType());
             data.put("width", image.getWidth());
             data.put("height", image.getHeight());
-            data.put("size_bytes", baos.size());
+            data.put("size_bytes", encoded.size());
 
             LOG.info("Exported plan image " + image.getWidth() + "x" + image.getHeight()
-                    + ", size=" + baos.size() + " bytes");
+                    + ", size=" + encoded.size() + " bytes");
 
             return Response.ok(data);
         } catch (Exception e) {
@@ -156,6 +163,11 @@ public class ExportPlanImageHandler implements CommandHandler, CommandDescriptor
         return scaled;
     }
 
+    @Override
+    public CostClass getCostClass() {
+        return CostClass.HEAVY;
+    }
+
     @Override
     public String getDescription() {
         return "Exports the current 2D floor plan as a PNG image (base64-encoded). "
@@ -177,6 +189,12 @@ public class ExportPlanImageHandler implements CommandHandler, CommandDescriptor
         widthProp.put("description", "Target image width in pixels (height scales proportionally). "
                 + "If omitted, returns at the natural plan view size.");
         properties.put("width", widthProp);
+        Map<String, Object> pngCompressionProp = prop("integer",
+                "PNG deflate level: 0-3 encode large plans several times faster but bigger, "
+                        + "9 is smallest. Default: the encoder's balanced level (4).");
+        pngCompressionProp.put("minimum", 0);
+        pngCompressionProp.put("maximum", ImageEncoder.MAX_PNG_COMPRESSION);
+        properties.put("pngCompression", pngCompressionProp);
         properties.put("filePath", prop("string",
                 "Absolute path to save the PNG file. Extension is auto-corrected to .png. "
                         + "If provided, returns metadata only (no base64 image data)."));
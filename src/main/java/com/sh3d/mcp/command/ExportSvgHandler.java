@@ -42,6 +42,10 @@ public class ExportSvgHandler implements CommandHandler, CommandDescriptor {
         if (planView == null) {
             return Response.error("PlanView is not available — SVG export requires SH3D UI");
         }
+        if (accessor.getModelExecutor() != null) {
+            return Response.error("PlanView shows only the default home — SVG export is not available"
+                    + " for homes created with create_home");
+        }
 
         try {
             String svgContent = accessor.runOnEDT(() -> {
@@ -83,6 +87,11 @@ public class ExportSvgHandler implements CommandHandler, CommandDescriptor {
         }
     }
 
+    @Override
+    public CostClass getCostClass() {
+        return CostClass.HEAVY;
+    }
+
     @Override
     public String getDescription() {
         return "Exports the current 2D floor plan as SVG (Scalable Vector Graphics). "
@@ -4,17 +4,16 @@ import com.eteks.sweethome3d.j3d.Ground3D;
 import com.eteks.sweethome3d.j3d.OBJWriter;
 import com.eteks.sweethome3d.j3d.Object3DBranchFactory;
 import com.eteks.sweethome3d.model.DimensionLine;
-import com.eteks.sweethome3d.model.Elevatable;
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomeFurnitureGroup;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
 import com.eteks.sweethome3d.model.Selectable;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.SpatialIndex;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 
 import javax.media.j3d.Node;
-import java.awt.geom.Rectangle2D;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
@@ -53,8 +52,13 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
 
     @Override
     public Response execute(Request request, HomeAccessor accessor) {
-        // 1. Клонируем Home в EDT (чтобы не мутировать оригинал)
-        Home clonedHome = accessor.runOnEDT(() -> accessor.getHome().clone());
+        // 1. Клонируем Home в EDT (чтобы не мутировать оригинал); bounds земли — из индекса оригинала
+        ExportSource source = accessor.runOnEDT(() -> new ExportSource(
+                accessor.getHome().clone(),
+                accessor.getSpatialIndex().getBounds(
+                        level -> level == null || level.isViewableAndVisible(),
+                        level -> level == null || level.isViewable())));
+        Home clonedHome = source.home;
 
         Path tempDir = null;
         OBJWriter writer = null;
@@ -65,7 +69,7 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
 
             // 3. Экспортируем вне EDT (тяжёлая операция — создание 3D-геометрии)
             writer = new OBJWriter(objFilePath, OBJ_HEADER, -1);
-            exportHome(clonedHome, writer);
+            exportHome(clonedHome, source.groundBounds, writer);
             writer.close();
             writer = null;
 
@@ -119,7 +123,7 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
      * Экспортирует все объекты Home в OBJWriter.
      * Логика воспроизведена из SH3D HomePane.OBJExporter.exportHomeToFile().
      */
-    private void exportHome(Home home, OBJWriter writer) throws IOException {
+    private void exportHome(Home home, SpatialIndex.Bounds bounds, OBJWriter writer) throws IOException {
         Object3DBranchFactory factory = new Object3DBranchFactory();
 
         // Собираем все видимые элементы
@@ -150,12 +154,13 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
             }
         }
 
-        // Добавляем землю (ground)
-        Rectangle2D bounds = getExportedHomeBounds(home);
+        // Добавляем землю (ground): bounds экспортируемых объектов, как в SH3D
+        // HomePane.OBJExporter.getExportedHomeBounds() — стены и комнаты viewable и visible уровней,
+        // видимая мебель viewable-уровней
         if (bounds != null) {
             Ground3D ground = new Ground3D(home,
-                    (float) bounds.getX(), (float) bounds.getY(),
-                    (float) bounds.getWidth(), (float) bounds.getHeight(),
+                    bounds.getMinX(), bounds.getMinY(),
+                    bounds.getMaxX() - bounds.getMinX(), bounds.getMaxY() - bounds.getMinY(),
                     true);
             writer.writeNode(ground, "ground");
         }
@@ -175,60 +180,15 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
         }
     }
 
-    /**
-     * Вычисляет bounding box всех экспортируемых объектов.
-     * Логика воспроизведена из SH3D HomePane.OBJExporter.getExportedHomeBounds().
-     */
-    private Rectangle2D getExportedHomeBounds(Home home) {
-        Rectangle2D bounds = null;
-
-        // Bounds стен
-        bounds = updateBounds(bounds, home.getWalls());
-
-        // Bounds мебели
-        for (HomePieceOfFurniture piece : home.getFurniture()) {
-            if (!piece.isVisible()) continue;
-            if (piece.getLevel() != null && !piece.getLevel().isViewable()) continue;
-
-            if (piece instanceof HomeFurnitureGroup) {
-                for (HomePieceOfFurniture child : ((HomeFurnitureGroup) piece).getFurniture()) {
-                    if (child.isVisible()) {
-                        bounds = addPointsBounds(bounds, child.getPoints());
-                    }
-                }
-            } else {
-                bounds = addPointsBounds(bounds, piece.getPoints());
-            }
-        }
-
-        // Bounds комнат
-        bounds = updateBounds(bounds, home.getRooms());
-
-        return bounds;
-    }
+    /** Клон дома и bounds земли, снятые за один заход в EDT. */
+    private static final class ExportSource {
+        final Home home;
+        final SpatialIndex.Bounds groundBounds;
 
-    private Rectangle2D updateBounds(Rectangle2D bounds, java.util.Collection<? extends Selectable> items) {
-        for (Selectable item : items) {
-            if (item instanceof Elevatable) {
-                com.eteks.sweethome3d.model.Level level = ((Elevatable) item).getLevel();
-                if (level != null && !level.isViewableAndVisible()) {
-                    continue;
-                }
-            }
-            bounds = addPointsBounds(bounds, item.getPoints());
+        ExportSource(Home home, SpatialIndex.Bounds groundBounds) {
+            this.home = home;
+            this.groundBounds = groundBounds;
         }
-        return bounds;
-    }
-
-    private Rectangle2D addPointsBounds(Rectangle2D bounds, float[][] points) {
-        for (float[] point : points) {
-            if (bounds == null) {
-                bounds = new Rectangle2D.Float(point[0], point[1], 0, 0);
-            } else {
-                bounds.add(point[0], point[1]);
-            }
-        }
-        return bounds;
     }
 
     private void cleanupTempDir(Path dir) {
@@ -242,6 +202,11 @@ public class ExportToObjHandler implements CommandHandler, CommandDescriptor {
         }
     }
 
+    @Override
+    public CostClass getCostClass() {
+        return CostClass.HEAVY;
+    }
+
     @Override
     public String getDescription() {
         return "Exports the entire 3D scene to Wavefront OBJ format. "
@@ -0,0 +1,56 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.EdtWatchdog;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.SchemaUtil.propWithDefault;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обработчик команды "get_edt_stalls".
+ * Возвращает недавние зависания EDT, вызванные MCP-командами: action, длительность
+ * и стек EDT в момент зависания. Не использует EDT — работает и при замёрзшем UI.
+ */
+public class GetEdtStallsHandler implements CommandHandler, CommandDescriptor {
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        EdtWatchdog watchdog = accessor.getEdtWatchdog();
+        if (watchdog == null) {
+            return Response.error("EDT watchdog is not enabled");
+        }
+        Map<String, Object> data = watchdog.report();
+        if (Boolean.TRUE.equals(request.getBoolean("clear"))) {
+            watchdog.clear();
+            data.put("cleared", true);
+        }
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Diagnoses Sweet Home 3D UI freezes caused by MCP commands. Every command runs its "
+                + "model access on the Swing event thread (EDT); tasks that hold it longer than "
+                + "thresholdMs are stalls. Returns counters (tasks, stalls, maxTaskMs), the task "
+                + "running right now if any, and recentStalls sorted slowest first: action, "
+                + "durationMs, startedAt (epoch ms) and the EDT stack sampled during the stall. "
+                + "Set clear=true to reset after reading.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("clear", propWithDefault("boolean",
+                "Clear recorded stalls and counters after returning them", false));
+        schema.put("properties", properties);
+        schema.put("required", Collections.emptyList());
+        return schema;
+    }
+}
@@ -0,0 +1,58 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.SchemaUtil.propWithDefault;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Обработчик команды "get_metrics".
+ * Возвращает per-tool метрики (вызовы, ошибки, латентность по фазам, размеры payload)
+ * и счётчики подсистем. Не обращается к модели и не использует EDT.
+ */
+public class GetMetricsHandler implements CommandHandler, CommandDescriptor {
+
+    private final MetricsRegistry metrics;
+
+    public GetMetricsHandler(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        Map<String, Object> data = metrics.snapshot();
+        if (Boolean.TRUE.equals(request.getBoolean("reset"))) {
+            metrics.reset();
+            data.put("reset", true);
+        }
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Returns plugin performance metrics. For each tool: calls, errors, and latency "
+                + "summaries (count, mean, p50, p90, p99, max in milliseconds) for queueWaitMs "
+                + "(waiting for an HTTP worker), edtWaitMs (waiting for the Swing event thread) "
+                + "and executionMs (handler time), plus requestBytes/responseBytes size summaries. "
+                + "Also returns HTTP session counters. Set reset=true to clear tool metrics "
+                + "after reading them. The same data is served in Prometheus format at GET /metrics.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("reset", propWithDefault("boolean",
+                "Clear tool metrics after returning them", false));
+        schema.put("properties", properties);
+        schema.put("required", Collections.emptyList());
+        return schema;
+    }
+}
@@ -12,18 +12,30 @@ import com.eteks.sweethome3d.model.ObserverCamera;
 import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Wall;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRevisions;
+import com.sh3d.mcp.bridge.HomeRevisions.Kind;
+import com.sh3d.mcp.protocol.JsonFragment;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 
 import static com.sh3d.mcp.command.FormatUtil.colorToHex;
 import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
 
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Обработчик команды "get_state".
@@ -33,204 +45,353 @@ import java.util.Map;
  * Каждый объект получает стабильный строковый ID ({@code HomeObject.getId()}),
  * который не сдвигается при удалении других объектов и может использоваться
  * в последующих командах (delete, modify и т.д.).
+ * <p>
+ * Snapshot and serialization are split: the EDT task only copies changed collections into
+ * immutable primitive records; maps and JSON are built from them afterwards, one collection
+ * per builder thread. Each collection's result is cached as a {@link JsonFragment} keyed by
+ * its {@link HomeRevisions} counter, so unchanged collections cost neither EDT time nor
+ * encoding on the next call.
+ * <p>
+ * Optional parameters narrow the response: {@code include} picks sections, {@code fields}
+ * picks attributes per collection, {@code levelId} and {@code bbox} filter objects, and
+ * {@code limit}/{@code cursor} page through the matching objects of all included collections
+ * in response order. Only included collections are copied on the EDT.
  */
 public class GetStateHandler implements CommandHandler, CommandDescriptor {
 
+    /** Below this many objects to rebuild, collections are built on the calling thread. */
+    static final int PARALLEL_THRESHOLD = 256;
+
+    private static final ExecutorService BUILDERS = Executors.newFixedThreadPool(
+            Math.max(2, Math.min(Kind.values().length, Runtime.getRuntime().availableProcessors())),
+            new BuilderThreadFactory());
+
+    /** Collection sections of the response, in output (and pagination) order. */
+    private static final Map<String, Kind> SECTION_KINDS = new LinkedHashMap<>();
+
+    static {
+        SECTION_KINDS.put("walls", Kind.WALLS);
+        SECTION_KINDS.put("furniture", Kind.FURNITURE);
+        SECTION_KINDS.put("rooms", Kind.ROOMS);
+        SECTION_KINDS.put("labels", Kind.LABELS);
+        SECTION_KINDS.put("dimensionLines", Kind.DIMENSION_LINES);
+        SECTION_KINDS.put("levels", Kind.LEVELS);
+    }
+
+    /** Имена полей объектов по секциям — для проверки параметра fields. */
+    static final Map<String, List<String>> FIELDS;
+
+    static {
+        Map<String, List<String>> fields = new LinkedHashMap<>();
+        fields.put("walls", Arrays.asList("id", "xStart", "yStart", "xEnd", "yEnd", "thickness",
+                "height", "heightAtEnd", "length", "arcExtent", "leftSideColor", "rightSideColor",
+                "topColor", "leftSideShininess", "rightSideShininess", "leftSideTexture",
+                "rightSideTexture", "level"));
+        fields.put("furniture", Arrays.asList("id", "name", "catalogId", "x", "y", "elevation", "angle",
+                "width", "depth", "height", "isDoorOrWindow", "visible", "level"));
+        fields.put("rooms", Arrays.asList("id", "name", "area", "areaVisible", "floorVisible",
+                "ceilingVisible", "floorColor", "ceilingColor", "floorShininess", "ceilingShininess",
+                "floorTexture", "ceilingTexture", "xCenter", "yCenter", "points", "level"));
+        fields.put("labels", Arrays.asList("id", "text", "x", "y", "angle", "color", "level"));
+        fields.put("dimensionLines", Arrays.asList("id", "xStart", "yStart", "xEnd", "yEnd", "offset",
+                "length", "level"));
+        fields.put("levels", Arrays.asList("id", "name", "elevation", "height", "floorThickness",
+                "viewable", "selected"));
+        FIELDS = Collections.unmodifiableMap(fields);
+    }
+
+    /** Закэшированные коллекции по дому; слабые ключи не удерживают закрытые дома. */
+    private final Map<HomeRevisions, Map<Kind, Part>> caches = new WeakHashMap<>();
+
     @Override
     public Response execute(Request request, HomeAccessor accessor) {
-        Map<String, Object> data = accessor.runOnEDT(() -> {
-            Home home = accessor.getHome();
-            Map<String, Object> result = new LinkedHashMap<>();
-
-            // --- Walls ---
-            List<Object> wallList = buildWalls(home.getWalls());
-            result.put("wallCount", wallList.size());
-            result.put("walls", wallList);
-
-            // --- Furniture ---
-            List<Object> furnitureList = buildFurniture(home.getFurniture());
-            result.put("furnitureCount", furnitureList.size());
-            result.put("furniture", furnitureList);
-
-            // --- Rooms ---
-            List<Object> roomList = buildRooms(home.getRooms());
-            result.put("roomCount", roomList.size());
-            result.put("rooms", roomList);
-
-            // --- Labels ---
-            List<Object> labelList = buildLabels(home.getLabels());
-            result.put("labelCount", labelList.size());
-            result.put("labels", labelList);
-
-            // --- Dimension lines ---
-            List<Object> dimList = buildDimensionLines(home.getDimensionLines());
-            result.put("dimensionLineCount", dimList.size());
-            result.put("dimensionLines", dimList);
-
-            // --- Camera ---
-            result.put("camera", buildCamera(home));
-
-            // --- Stored cameras ---
-            List<Camera> storedCameras = home.getStoredCameras();
-            List<Object> storedCamList = new ArrayList<>();
-            for (Camera sc : storedCameras) {
-                Map<String, Object> cam = new LinkedHashMap<>();
-                cam.put("id", sc.getId());
-                cam.put("name", sc.getName());
-                storedCamList.add(cam);
+        StateQuery query;
+        try {
+            query = StateQuery.parse(request, FIELDS);
+        } catch (IllegalArgumentException e) {
+            return Response.error(e.getMessage());
+        }
+        Snapshot snapshot = accessor.runOnEDT(() -> capture(accessor, query));
+        Map<Kind, Part> parts = build(snapshot);
+
+        // Records of each included collection that pass the filters; null when nothing is filtered
+        Map<Kind, List<?>> selected = new EnumMap<>(Kind.class);
+        int total = 0;
+        int fingerprint = query.selectionHash();
+        for (Kind kind : SECTION_KINDS.values()) {
+            Part part = parts.get(kind);
+            if (part == null) {
+                continue;
             }
-            result.put("storedCameraCount", storedCamList.size());
-            result.put("storedCameras", storedCamList);
+            List<?> items = query.isFiltered() && kind != Kind.LEVELS ? filter(part.records, query) : null;
+            selected.put(kind, items);
+            total += items != null ? items.size() : part.records.size();
+            fingerprint = 31 * fingerprint + Long.hashCode(part.revision);
+        }
 
-            // --- Levels ---
-            List<Object> levelList = buildLevels(home.getLevels(), home.getSelectedLevel());
-            result.put("levelCount", levelList.size());
-            result.put("levels", levelList);
+        int start = 0;
+        int end = total;
+        if (query.isPaged()) {
+            if (query.hasCursor()) {
+                if (query.getCursorFingerprint() != fingerprint || query.getCursorPosition() > total) {
+                    return Response.error("Cursor is stale: the scene or the query changed since it was issued. "
+                            + "Request the first page again without 'cursor'");
+                }
+                start = query.getCursorPosition();
+            }
+            end = (int) Math.min((long) start + query.getLimit(), total);
+        }
 
-            // --- Environment ---
-            result.put("environment", buildEnvironment(home.getEnvironment()));
+        Map<String, Object> result = new LinkedHashMap<>();
+        int offset = 0;
+        for (String section : StateQuery.SECTIONS) {
+            if (!query.includes(section)) {
+                continue;
+            }
+            switch (section) {
+                case "camera":
+                    result.put("camera", snapshot.camera);
+                    break;
+                case "storedCameras":
+                    result.put("storedCameraCount", snapshot.storedCameras.size());
+                    result.put("storedCameras", snapshot.storedCameras);
+                    break;
+                case "environment":
+                    result.put("environment", snapshot.environment);
+                    break;
+                default:
+                    Kind kind = SECTION_KINDS.get(section);
+                    Part part = parts.get(kind);
+                    List<?> matched = selected.get(kind);
+                    int size = matched != null ? matched.size() : part.records.size();
+                    int from = Math.max(0, Math.min(start - offset, size));
+                    int to = Math.max(0, Math.min(end - offset, size));
+                    offset += size;
+
+                    result.put(countKey(section), size);
+                    Set<String> fields = query.fieldsOf(section);
+                    if (matched == null && fields == null && from == 0 && to == size) {
+                        result.put(section, part.items);
+                    } else {
+                        result.put(section, project(matched != null ? matched : part.records,
+                                from, to, fields));
+                    }
+            }
+        }
+        if (query.includes("walls")) {
+            // Bounds of the walls selected by levelId / bbox, of all walls otherwise
+            List<?> matchedWalls = selected.get(Kind.WALLS);
+            result.put("boundingBox", matchedWalls != null
+                    ? buildBoundingBox(matchedWalls) : parts.get(Kind.WALLS).boundingBox);
+        }
+        if (query.isPaged()) {
+            result.put("nextCursor", end < total ? StateQuery.cursor(fingerprint, end) : null);
+        }
+        return Response.ok(result);
+    }
 
-            // --- Bounding box ---
-            result.put("boundingBox", buildBoundingBox(home.getWalls()));
+    /** "walls" → "wallCount", "furniture" → "furnitureCount", … */
+    private static String countKey(String section) {
+        String singular = section.endsWith("s") ? section.substring(0, section.length() - 1) : section;
+        return singular + "Count";
+    }
 
-            return result;
-        });
+    private static List<Object> filter(List<?> records, StateQuery query) {
+        String levelId = query.getLevelId();
+        float[] box = query.getBbox();
+        List<Object> matched = new ArrayList<>();
+        for (Object item : records) {
+            StateRecord record = (StateRecord) item;
+            if (levelId != null && !levelId.equals(record.levelId())) {
+                continue;
+            }
+            if (box != null && !record.intersects(box[0], box[1], box[2], box[3])) {
+                continue;
+            }
+            matched.add(record);
+        }
+        return matched;
+    }
 
-        return Response.ok(data);
+    /** Builds maps for records [from, to), keeping only the selected fields when given. */
+    private static List<Object> project(List<?> records, int from, int to, Set<String> fields) {
+        List<Object> items = new ArrayList<>(to - from);
+        for (Object record : records.subList(from, to)) {
+            Map<String, Object> map = ((StateRecord) record).toMap();
+            if (fields != null) {
+                map.keySet().retainAll(fields);
+            }
+            items.add(map);
+        }
+        return items;
     }
 
-    // --- Wall builders ---
+    // --- Snapshot (EDT) ---
+
+    /**
+     * Copies included collections that changed since the cached parts into records. Runs on
+     * the model thread, so revisions read here match the objects copied.
+     */
+    private Snapshot capture(HomeAccessor accessor, StateQuery query) {
+        Home home = accessor.getHome();
+        HomeRevisions revisions = accessor.getRevisions();
+        Snapshot snapshot = new Snapshot(revisions);
+        Map<Kind, Part> cached = cachedParts(revisions);
+
+        for (Map.Entry<String, Kind> section : SECTION_KINDS.entrySet()) {
+            if (!query.includes(section.getKey())) {
+                continue;
+            }
+            Kind kind = section.getValue();
+            long revision = revisions.get(kind);
+            Part part = cached.get(kind);
+            if (part != null && part.revision == revision) {
+                snapshot.reused.put(kind, part);
+                continue;
+            }
+            snapshot.revisions.put(kind, revision);
+            snapshot.records.put(kind, captureRecords(kind, home));
+        }
 
-    private List<Object> buildWalls(Collection<Wall> walls) {
-        List<Object> list = new ArrayList<>();
-        for (Wall w : walls) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", w.getId());
-            item.put("xStart", round2(w.getXStart()));
-            item.put("yStart", round2(w.getYStart()));
-            item.put("xEnd", round2(w.getXEnd()));
-            item.put("yEnd", round2(w.getYEnd()));
-            item.put("thickness", round2(w.getThickness()));
-            item.put("height", w.getHeight() != null ? round2(w.getHeight()) : null);
-            item.put("heightAtEnd", w.getHeightAtEnd() != null ? round2(w.getHeightAtEnd()) : null);
-            item.put("length", round2(w.getLength()));
-            item.put("arcExtent", w.getArcExtent() != null
-                    ? round2(Math.toDegrees(w.getArcExtent())) : null);
-            item.put("leftSideColor", colorToHex(w.getLeftSideColor()));
-            item.put("rightSideColor", colorToHex(w.getRightSideColor()));
-            item.put("topColor", colorToHex(w.getTopColor()));
-            item.put("leftSideShininess", round2(w.getLeftSideShininess()));
-            item.put("rightSideShininess", round2(w.getRightSideShininess()));
-            item.put("leftSideTexture", textureName(w.getLeftSideTexture()));
-            item.put("rightSideTexture", textureName(w.getRightSideTexture()));
-            Level level = w.getLevel();
-            item.put("level", level != null ? level.getName() : null);
-            list.add(item);
-        }
-        return list;
-    }
-
-    // --- Furniture builders ---
-
-    private List<Object> buildFurniture(List<HomePieceOfFurniture> furniture) {
-        List<Object> list = new ArrayList<>();
-        for (HomePieceOfFurniture piece : furniture) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", piece.getId());
-            item.put("name", piece.getName());
-            item.put("catalogId", piece.getCatalogId());
-            item.put("x", round2(piece.getX()));
-            item.put("y", round2(piece.getY()));
-            item.put("elevation", round2(piece.getElevation()));
-            item.put("angle", round2(Math.toDegrees(piece.getAngle())));
-            item.put("width", round2(piece.getWidth()));
-            item.put("depth", round2(piece.getDepth()));
-            item.put("height", round2(piece.getHeight()));
-            item.put("isDoorOrWindow", piece.isDoorOrWindow());
-            item.put("visible", piece.isVisible());
-            Level level = piece.getLevel();
-            item.put("level", level != null ? level.getName() : null);
-            list.add(item);
-        }
-        return list;
-    }
-
-    // --- Room builders ---
-
-    private List<Object> buildRooms(List<Room> rooms) {
-        List<Object> list = new ArrayList<>();
-        for (Room room : rooms) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", room.getId());
-            item.put("name", room.getName());
-            item.put("area", round2(room.getArea()));
-            item.put("areaVisible", room.isAreaVisible());
-            item.put("floorVisible", room.isFloorVisible());
-            item.put("ceilingVisible", room.isCeilingVisible());
-            item.put("floorColor", colorToHex(room.getFloorColor()));
-            item.put("ceilingColor", colorToHex(room.getCeilingColor()));
-            item.put("floorShininess", round2(room.getFloorShininess()));
-            item.put("ceilingShininess", round2(room.getCeilingShininess()));
-            item.put("floorTexture", textureName(room.getFloorTexture()));
-            item.put("ceilingTexture", textureName(room.getCeilingTexture()));
-            item.put("xCenter", round2(room.getXCenter()));
-            item.put("yCenter", round2(room.getYCenter()));
+        if (query.includes("camera")) {
+            snapshot.camera = buildCamera(home);
+        }
+        if (query.includes("storedCameras")) {
+            List<Map<String, Object>> storedCameras = new ArrayList<>();
+            for (Camera sc : home.getStoredCameras()) {
+                Map<String, Object> cam = new LinkedHashMap<>();
+                cam.put("id", sc.getId());
+                cam.put("name", sc.getName());
+                storedCameras.add(cam);
+            }
+            snapshot.storedCameras = storedCameras;
+        }
+        if (query.includes("environment")) {
+            snapshot.environment = buildEnvironment(home.getEnvironment());
+        }
+        return snapshot;
+    }
 
-            // Points (polygon)
-            float[][] points = room.getPoints();
-            List<Object> pointList = new ArrayList<>();
-            for (float[] pt : points) {
-                Map<String, Object> p = new LinkedHashMap<>();
-                p.put("x", round2(pt[0]));
-                p.put("y", round2(pt[1]));
-                pointList.add(p);
+    private static List<?> captureRecords(Kind kind, Home home) {
+        switch (kind) {
+            case WALLS: {
+                List<WallRecord> list = new ArrayList<>(home.getWalls().size());
+                for (Wall w : home.getWalls()) {
+                    list.add(new WallRecord(w));
+                }
+                return list;
             }
-            item.put("points", pointList);
+            case FURNITURE: {
+                List<FurnitureRecord> list = new ArrayList<>(home.getFurniture().size());
+                for (HomePieceOfFurniture piece : home.getFurniture()) {
+                    list.add(new FurnitureRecord(piece));
+                }
+                return list;
+            }
+            case ROOMS: {
+                List<RoomRecord> list = new ArrayList<>(home.getRooms().size());
+                for (Room room : home.getRooms()) {
+                    list.add(new RoomRecord(room));
+                }
+                return list;
+            }
+            case LABELS: {
+                List<LabelRecord> list = new ArrayList<>(home.getLabels().size());
+                for (Label label : home.getLabels()) {
+                    list.add(new LabelRecord(label));
+                }
+                return list;
+            }
+            case DIMENSION_LINES: {
+                List<DimensionLineRecord> list = new ArrayList<>(home.getDimensionLines().size());
+                for (DimensionLine dim : home.getDimensionLines()) {
+                    list.add(new DimensionLineRecord(dim));
+                }
+                return list;
+            }
+            case LEVELS: {
+                Level selected = home.getSelectedLevel();
+                List<LevelRecord> list = new ArrayList<>(home.getLevels().size());
+                for (Level level : home.getLevels()) {
+                    list.add(new LevelRecord(level, level.equals(selected)));
+                }
+                return list;
+            }
+            default:
+                throw new IllegalArgumentException(kind.name());
+        }
+    }
 
-            Level level = room.getLevel();
-            item.put("level", level != null ? level.getName() : null);
-            list.add(item);
+    // --- Serialization (off EDT) ---
+
+    /**
+     * Builds the parts that were not reused, in parallel when there is enough work, and
+     * caches them under the revision they were captured at.
+     */
+    private Map<Kind, Part> build(Snapshot snapshot) {
+        Map<Kind, Part> parts = new EnumMap<>(snapshot.reused);
+        int objects = 0;
+        for (List<?> records : snapshot.records.values()) {
+            objects += records.size();
+        }
+        if (snapshot.records.size() > 1 && objects >= PARALLEL_THRESHOLD) {
+            Map<Kind, Future<Part>> futures = new EnumMap<>(Kind.class);
+            for (Map.Entry<Kind, List<?>> entry : snapshot.records.entrySet()) {
+                Kind kind = entry.getKey();
+                long revision = snapshot.revisions.get(kind);
+                futures.put(kind, BUILDERS.submit(() -> buildPart(kind, revision, entry.getValue())));
+            }
+            for (Map.Entry<Kind, Future<Part>> entry : futures.entrySet()) {
+                parts.put(entry.getKey(), await(entry.getValue()));
+            }
+        } else {
+            for (Map.Entry<Kind, List<?>> entry : snapshot.records.entrySet()) {
+                Kind kind = entry.getKey();
+                parts.put(kind, buildPart(kind, snapshot.revisions.get(kind), entry.getValue()));
+            }
         }
-        return list;
+        storeParts(snapshot.owner, parts);
+        return parts;
     }
 
-    // --- Label builders ---
+    private static Part await(Future<Part> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommandException("get_state interrupted", e);
+        } catch (ExecutionException e) {
+            throw new CommandException("get_state failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
 
-    private List<Object> buildLabels(Collection<Label> labels) {
-        List<Object> list = new ArrayList<>();
-        for (Label label : labels) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", label.getId());
-            item.put("text", label.getText());
-            item.put("x", round2(label.getX()));
-            item.put("y", round2(label.getY()));
-            item.put("angle", round2(Math.toDegrees(label.getAngle())));
-            item.put("color", colorToHex(label.getColor()));
-            Level level = label.getLevel();
-            item.put("level", level != null ? level.getName() : null);
-            list.add(item);
+    private static Part buildPart(Kind kind, long revision, List<?> records) {
+        List<Object> items = new ArrayList<>(records.size());
+        for (Object record : records) {
+            items.add(((StateRecord) record).toMap());
         }
-        return list;
+        Map<String, Object> boundingBox = kind == Kind.WALLS ? buildBoundingBox(records) : null;
+        return new Part(revision, records, JsonFragment.of(items), boundingBox);
     }
 
-    // --- Dimension line builders ---
+    private Map<Kind, Part> cachedParts(HomeRevisions revisions) {
+        synchronized (caches) {
+            Map<Kind, Part> cached = caches.get(revisions);
+            return cached != null ? new EnumMap<>(cached) : Collections.emptyMap();
+        }
+    }
 
-    private List<Object> buildDimensionLines(Collection<DimensionLine> dimensionLines) {
-        List<Object> list = new ArrayList<>();
-        for (DimensionLine dim : dimensionLines) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", dim.getId());
-            item.put("xStart", round2(dim.getXStart()));
-            item.put("yStart", round2(dim.getYStart()));
-            item.put("xEnd", round2(dim.getXEnd()));
-            item.put("yEnd", round2(dim.getYEnd()));
-            item.put("offset", round2(dim.getOffset()));
-            item.put("length", round2(dim.getLength()));
-            Level level = dim.getLevel();
-            item.put("level", level != null ? level.getName() : null);
-            list.add(item);
+    /** Keeps the newest part per collection; a slower concurrent call must not overwrite it. */
+    private void storeParts(HomeRevisions revisions, Map<Kind, Part> parts) {
+        synchronized (caches) {
+            Map<Kind, Part> cached = caches.computeIfAbsent(revisions, r -> new EnumMap<>(Kind.class));
+            for (Map.Entry<Kind, Part> entry : parts.entrySet()) {
+                Part current = cached.get(entry.getKey());
+                if (current == null || current.revision < entry.getValue().revision) {
+                    cached.put(entry.getKey(), entry.getValue());
+                }
+            }
         }
-        return list;
     }
 
     // --- Camera builder ---
@@ -248,24 +409,6 @@ public class GetStateHandler implements CommandHandler, CommandDescriptor {
         return info;
     }
 
-    // --- Level builders ---
-
-    private List<Object> buildLevels(List<Level> levels, Level selectedLevel) {
-        List<Object> list = new ArrayList<>();
-        for (Level level : levels) {
-            Map<String, Object> item = new LinkedHashMap<>();
-            item.put("id", level.getId());
-            item.put("name", level.getName());
-            item.put("elevation", round2(level.getElevation()));
-            item.put("height", round2(level.getHeight()));
-            item.put("floorThickness", round2(level.getFloorThickness()));
-            item.put("viewable", level.isViewable());
-            item.put("selected", level.equals(selectedLevel));
-            list.add(item);
-        }
-        return list;
-    }
-
     // --- Environment builder ---
 
     private Map<String, Object> buildEnvironment(HomeEnvironment env) {
@@ -284,17 +427,18 @@ public class GetStateHandler implements CommandHandler, CommandDescriptor {
 
     // --- Bounding box ---
 
-    private Map<String, Object> buildBoundingBox(Collection<Wall> walls) {
+    private static Map<String, Object> buildBoundingBox(List<?> walls) {
         if (walls.isEmpty()) {
             return null;
         }
         float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
         float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
-        for (Wall w : walls) {
-            minX = Math.min(minX, Math.min(w.getXStart(), w.getXEnd()));
-            minY = Math.min(minY, Math.min(w.getYStart(), w.getYEnd()));
-            maxX = Math.max(maxX, Math.max(w.getXStart(), w.getXEnd()));
-            maxY = Math.max(maxY, Math.max(w.getYStart(), w.getYEnd()));
+        for (Object record : walls) {
+            WallRecord w = (WallRecord) record;
+            minX = Math.min(minX, Math.min(w.xStart, w.xEnd));
+            minY = Math.min(minY, Math.min(w.yStart, w.yEnd));
+            maxX = Math.max(maxX, Math.max(w.xStart, w.xEnd));
+            maxY = Math.max(maxY, Math.max(w.yStart, w.yEnd));
         }
         Map<String, Object> bb = new LinkedHashMap<>();
         bb.put("minX", round2(minX));
@@ -304,12 +448,405 @@ public class GetStateHandler implements CommandHandler, CommandDescriptor {
         return bb;
     }
 
+    // --- Snapshot and records ---
+
+    /** What one call captured on the EDT: reused parts plus records of changed collections. */
+    private static final class Snapshot {
+        final HomeRevisions owner;
+        final Map<Kind, Part> reused = new EnumMap<>(Kind.class);
+        final Map<Kind, List<?>> records = new EnumMap<>(Kind.class);
+        final Map<Kind, Long> revisions = new EnumMap<>(Kind.class);
+        Map<String, Object> camera;
+        List<Map<String, Object>> storedCameras;
+        Map<String, Object> environment;
+
+        Snapshot(HomeRevisions owner) {
+            this.owner = owner;
+        }
+    }
+
+    /** Collection at a revision: its records for filtered queries, serialized items, walls' bounding box. */
+    private static final class Part {
+        final long revision;
+        final List<?> records;
+        final JsonFragment items;
+        final Map<String, Object> boundingBox;
+
+        Part(long revision, List<?> records, JsonFragment items, Map<String, Object> boundingBox) {
+            this.revision = revision;
+            this.records = records;
+            this.items = items;
+            this.boundingBox = boundingBox;
+        }
+    }
+
+    /** Immutable copy of one model object, converted to its response map off the EDT. */
+    private interface StateRecord {
+        Map<String, Object> toMap();
+
+        /** ID of the object's level, or {@code null}. */
+        String levelId();
+
+        /** Whether the object's plan footprint overlaps the box. */
+        boolean intersects(float minX, float minY, float maxX, float maxY);
+    }
+
+    private static boolean overlaps(float minX, float minY, float maxX, float maxY,
+                                    float boxMinX, float boxMinY, float boxMaxX, float boxMaxY) {
+        return minX <= boxMaxX && maxX >= boxMinX && minY <= boxMaxY && maxY >= boxMinY;
+    }
+
+    private static final class WallRecord implements StateRecord {
+        final String id;
+        final float xStart, yStart, xEnd, yEnd, thickness, length;
+        final Float height, heightAtEnd, arcExtent;
+        final Integer leftSideColor, rightSideColor, topColor;
+        final float leftSideShininess, rightSideShininess;
+        final String leftSideTexture, rightSideTexture, level, levelId;
+
+        WallRecord(Wall w) {
+            id = w.getId();
+            xStart = w.getXStart();
+            yStart = w.getYStart();
+            xEnd = w.getXEnd();
+            yEnd = w.getYEnd();
+            thickness = w.getThickness();
+            length = w.getLength();
+            height = w.getHeight();
+            heightAtEnd = w.getHeightAtEnd();
+            arcExtent = w.getArcExtent();
+            leftSideColor = w.getLeftSideColor();
+            rightSideColor = w.getRightSideColor();
+            topColor = w.getTopColor();
+            leftSideShininess = w.getLeftSideShininess();
+            rightSideShininess = w.getRightSideShininess();
+            leftSideTexture = textureName(w.getLeftSideTexture());
+            rightSideTexture = textureName(w.getRightSideTexture());
+            level = levelName(w.getLevel());
+            levelId = levelIdOf(w.getLevel());
+        }
+
+        @Override
+        public String levelId() {
+            return levelId;
+        }
+
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            float half = thickness / 2;
+            return overlaps(Math.min(xStart, xEnd) - half, Math.min(yStart, yEnd) - half,
+                    Math.max(xStart, xEnd) + half, Math.max(yStart, yEnd) + half, minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("xStart", round2(xStart));
+            item.put("yStart", round2(yStart));
+            item.put("xEnd", round2(xEnd));
+            item.put("yEnd", round2(yEnd));
+            item.put("thickness", round2(thickness));
+            item.put("height", height != null ? round2(height) : null);
+            item.put("heightAtEnd", heightAtEnd != null ? round2(heightAtEnd) : null);
+            item.put("length", round2(length));
+            item.put("arcExtent", arcExtent != null ? round2(Math.toDegrees(arcExtent)) : null);
+            item.put("leftSideColor", colorToHex(leftSideColor));
+            item.put("rightSideColor", colorToHex(rightSideColor));
+            item.put("topColor", colorToHex(topColor));
+            item.put("leftSideShininess", round2(leftSideShininess));
+            item.put("rightSideShininess", round2(rightSideShininess));
+            item.put("leftSideTexture", leftSideTexture);
+            item.put("rightSideTexture", rightSideTexture);
+            item.put("level", level);
+            return item;
+        }
+    }
+
+    private static final class FurnitureRecord implements StateRecord {
+        final String id, name, catalogId, level, levelId;
+        final float x, y, elevation, angle, width, depth, height;
+        final boolean doorOrWindow, visible;
+
+        FurnitureRecord(HomePieceOfFurniture piece) {
+            id = piece.getId();
+            name = piece.getName();
+            catalogId = piece.getCatalogId();
+            x = piece.getX();
+            y = piece.getY();
+            elevation = piece.getElevation();
+            angle = piece.getAngle();
+            width = piece.getWidth();
+            depth = piece.getDepth();
+            height = piece.getHeight();
+            doorOrWindow = piece.isDoorOrWindow();
+            visible = piece.isVisible();
+            level = levelName(piece.getLevel());
+            levelId = levelIdOf(piece.getLevel());
+        }
+
+        @Override
+        public String levelId() {
+            return levelId;
+        }
+
+        /** Extent of the rotated width × depth rectangle. */
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            double cos = Math.abs(Math.cos(angle));
+            double sin = Math.abs(Math.sin(angle));
+            float halfX = (float) (width * cos + depth * sin) / 2;
+            float halfY = (float) (width * sin + depth * cos) / 2;
+            return overlaps(x - halfX, y - halfY, x + halfX, y + halfY, minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("name", name);
+            item.put("catalogId", catalogId);
+            item.put("x", round2(x));
+            item.put("y", round2(y));
+            item.put("elevation", round2(elevation));
+            item.put("angle", round2(Math.toDegrees(angle)));
+            item.put("width", round2(width));
+            item.put("depth", round2(depth));
+            item.put("height", round2(height));
+            item.put("isDoorOrWindow", doorOrWindow);
+            item.put("visible", visible);
+            item.put("level", level);
+            return item;
+        }
+    }
+
+    private static final class RoomRecord implements StateRecord {
+        final String id, name, floorTexture, ceilingTexture, level, levelId;
+        final float area, floorShininess, ceilingShininess, xCenter, yCenter;
+        final boolean areaVisible, floorVisible, ceilingVisible;
+        final Integer floorColor, ceilingColor;
+        final float[][] points;
+
+        RoomRecord(Room room) {
+            id = room.getId();
+            name = room.getName();
+            area = room.getArea();
+            areaVisible = room.isAreaVisible();
+            floorVisible = room.isFloorVisible();
+            ceilingVisible = room.isCeilingVisible();
+            floorColor = room.getFloorColor();
+            ceilingColor = room.getCeilingColor();
+            floorShininess = room.getFloorShininess();
+            ceilingShininess = room.getCeilingShininess();
+            floorTexture = textureName(room.getFloorTexture());
+            ceilingTexture = textureName(room.getCeilingTexture());
+            xCenter = room.getXCenter();
+            yCenter = room.getYCenter();
+            points = room.getPoints(); // Room returns a copy
+            level = levelName(room.getLevel());
+            levelId = levelIdOf(room.getLevel());
+        }
+
+        @Override
+        public String levelId() {
+            return levelId;
+        }
+
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            if (points.length == 0) {
+                return false;
+            }
+            float pMinX = Float.MAX_VALUE, pMinY = Float.MAX_VALUE;
+            float pMaxX = -Float.MAX_VALUE, pMaxY = -Float.MAX_VALUE;
+            for (float[] pt : points) {
+                pMinX = Math.min(pMinX, pt[0]);
+                pMinY = Math.min(pMinY, pt[1]);
+                pMaxX = Math.max(pMaxX, pt[0]);
+                pMaxY = Math.max(pMaxY, pt[1]);
+            }
+            return overlaps(pMinX, pMinY, pMaxX, pMaxY, minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("name", name);
+            item.put("area", round2(area));
+            item.put("areaVisible", areaVisible);
+            item.put("floorVisible", floorVisible);
+            item.put("ceilingVisible", ceilingVisible);
+            item.put("floorColor", colorToHex(floorColor));
+            item.put("ceilingColor", colorToHex(ceilingColor));
+            item.put("floorShininess", round2(floorShininess));
+            item.put("ceilingShininess", round2(ceilingShininess));
+            item.put("floorTexture", floorTexture);
+            item.put("ceilingTexture", ceilingTexture);
+            item.put("xCenter", round2(xCenter));
+            item.put("yCenter", round2(yCenter));
+
+            // Points (polygon)
+            List<Object> pointList = new ArrayList<>(points.length);
+            for (float[] pt : points) {
+                Map<String, Object> p = new LinkedHashMap<>();
+                p.put("x", round2(pt[0]));
+                p.put("y", round2(pt[1]));
+                pointList.add(p);
+            }
+            item.put("points", pointList);
+            item.put("level", level);
+            return item;
+        }
+    }
+
+    private static final class LabelRecord implements StateRecord {
+        final String id, text, level, levelId;
+        final float x, y, angle;
+        final Integer color;
+
+        LabelRecord(Label label) {
+            id = label.getId();
+            text = label.getText();
+            x = label.getX();
+            y = label.getY();
+            angle = label.getAngle();
+            color = label.getColor();
+            level = levelName(label.getLevel());
+            levelId = levelIdOf(label.getLevel());
+        }
+
+        @Override
+        public String levelId() {
+            return levelId;
+        }
+
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            return overlaps(x, y, x, y, minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("text", text);
+            item.put("x", round2(x));
+            item.put("y", round2(y));
+            item.put("angle", round2(Math.toDegrees(angle)));
+            item.put("color", colorToHex(color));
+            item.put("level", level);
+            return item;
+        }
+    }
+
+    private static final class DimensionLineRecord implements StateRecord {
+        final String id, level, levelId;
+        final float xStart, yStart, xEnd, yEnd, offset, length;
+
+        DimensionLineRecord(DimensionLine dim) {
+            id = dim.getId();
+            xStart = dim.getXStart();
+            yStart = dim.getYStart();
+            xEnd = dim.getXEnd();
+            yEnd = dim.getYEnd();
+            offset = dim.getOffset();
+            length = dim.getLength();
+            level = levelName(dim.getLevel());
+            levelId = levelIdOf(dim.getLevel());
+        }
+
+        @Override
+        public String levelId() {
+            return levelId;
+        }
+
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            return overlaps(Math.min(xStart, xEnd), Math.min(yStart, yEnd),
+                    Math.max(xStart, xEnd), Math.max(yStart, yEnd), minX, minY, maxX, maxY);
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("xStart", round2(xStart));
+            item.put("yStart", round2(yStart));
+            item.put("xEnd", round2(xEnd));
+            item.put("yEnd", round2(yEnd));
+            item.put("offset", round2(offset));
+            item.put("length", round2(length));
+            item.put("level", level);
+            return item;
+        }
+    }
+
+    private static final class LevelRecord implements StateRecord {
+        final String id, name;
+        final float elevation, height, floorThickness;
+        final boolean viewable, selected;
+
+        LevelRecord(Level level, boolean selected) {
+            id = level.getId();
+            name = level.getName();
+            elevation = level.getElevation();
+            height = level.getHeight();
+            floorThickness = level.getFloorThickness();
+            viewable = level.isViewable();
+            this.selected = selected;
+        }
+
+        @Override
+        public String levelId() {
+            return id;
+        }
+
+        /** Levels are not filtered by position. */
+        @Override
+        public boolean intersects(float minX, float minY, float maxX, float maxY) {
+            return true;
+        }
+
+        @Override
+        public Map<String, Object> toMap() {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("name", name);
+            item.put("elevation", round2(elevation));
+            item.put("height", round2(height));
+            item.put("floorThickness", round2(floorThickness));
+            item.put("viewable", viewable);
+            item.put("selected", selected);
+            return item;
+        }
+    }
+
+    private static final class BuilderThreadFactory implements java.util.concurrent.ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "sh3d-mcp-state-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     // --- Utilities ---
 
     private static String textureName(HomeTexture texture) {
         return texture != null ? texture.getName() : null;
     }
 
+    private static String levelName(Level level) {
+        return level != null ? level.getName() : null;
+    }
+
+    private static String levelIdOf(Level level) {
+        return level != null ? level.getId() : null;
+    }
+
     // --- Descriptor ---
 
     @Override
@@ -319,14 +856,72 @@ public class GetStateHandler implements CommandHandler, CommandDescriptor {
                 + "camera settings, environment (ground, sky, light, wallsAlpha, drawingMode), "
                 + "and levels. Each object has a stable string 'id' field that can be "
                 + "used in subsequent commands (delete, modify, etc.). Always call this before "
-                + "making changes to understand the current scene.";
+                + "making changes to understand the current scene. For large homes, narrow the result: "
+                + "'include' picks sections, 'fields' picks attributes per collection (e.g. "
+                + "{\"walls\": [\"xStart\", \"yStart\", \"xEnd\", \"yEnd\"]}), 'levelId' and 'bbox' "
+                + "filter objects, and 'limit' with 'cursor' pages through them. Counts such as "
+                + "'wallCount' are totals after filtering; pass 'nextCursor' to get the next page.";
     }
 
     @Override
     public Map<String, Object> getSchema() {
         Map<String, Object> schema = new LinkedHashMap<>();
         schema.put("type", "object");
-        schema.put("properties", new LinkedHashMap<>());
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+
+        Map<String, Object> sectionItem = new LinkedHashMap<>();
+        sectionItem.put("type", "string");
+        sectionItem.put("enum", StateQuery.SECTIONS);
+        Map<String, Object> includeProp = new LinkedHashMap<>();
+        includeProp.put("type", "array");
+        includeProp.put("items", sectionItem);
+        includeProp.put("description", "Sections to return (default: all). boundingBox comes with walls");
+        properties.put("include", includeProp);
+
+        Map<String, Object> fieldsProps = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : FIELDS.entrySet()) {
+            Map<String, Object> fieldItem = new LinkedHashMap<>();
+            fieldItem.put("type", "string");
+            fieldItem.put("enum", entry.getValue());
+            Map<String, Object> fieldList = new LinkedHashMap<>();
+            fieldList.put("type", "array");
+            fieldList.put("items", fieldItem);
+            fieldsProps.put(entry.getKey(), fieldList);
+        }
+        Map<String, Object> fieldsProp = new LinkedHashMap<>();
+        fieldsProp.put("type", "object");
+        fieldsProp.put("properties", fieldsProps);
+        fieldsProp.put("description", "Attributes to return per collection; 'id' is always included. "
+                + "Collections not listed return all attributes");
+        properties.put("fields", fieldsProp);
+
+        properties.put("levelId", prop("string",
+                "Only objects on this level (walls, furniture, rooms, labels, dimension lines)"));
+
+        Map<String, Object> bboxProps = new LinkedHashMap<>();
+        bboxProps.put("minX", prop("number", "Min X in cm"));
+        bboxProps.put("minY", prop("number", "Min Y in cm"));
+        bboxProps.put("maxX", prop("number", "Max X in cm"));
+        bboxProps.put("maxY", prop("number", "Max Y in cm"));
+        Map<String, Object> bboxProp = new LinkedHashMap<>();
+        bboxProp.put("type", "object");
+        bboxProp.put("properties", bboxProps);
+        bboxProp.put("required", Arrays.asList("minX", "minY", "maxX", "maxY"));
+        bboxProp.put("description", "Only objects whose plan footprint overlaps this rectangle");
+        properties.put("bbox", bboxProp);
+
+        Map<String, Object> limitProp = new LinkedHashMap<>();
+        limitProp.put("type", "integer");
+        limitProp.put("minimum", 1);
+        limitProp.put("maximum", StateQuery.MAX_LIMIT);
+        limitProp.put("description", "Page size: objects per page across the included collections, "
+                + "in response order");
+        properties.put("limit", limitProp);
+        properties.put("cursor", prop("string",
+                "'nextCursor' of the previous page; requires the same query and 'limit'"));
+
+        schema.put("properties", properties);
         schema.put("required", Collections.emptyList());
         return schema;
     }
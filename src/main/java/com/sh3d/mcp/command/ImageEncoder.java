@@ -0,0 +1,284 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.protocol.EncodedImage;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
+import javax.imageio.stream.ImageOutputStreamImpl;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Кодирование изображений ответа в PNG/JPEG.
+ * <p>
+ * {@code ImageIO.write} into a {@code ByteArrayOutputStream} looks up a writer on every call,
+ * goes through a temp-file or memory cache stream, and regrows the array as it fills; the
+ * result is then copied once more to size and again as a base64 string. Here each encoder
+ * keeps its {@link ImageWriter}s and a seekable growable buffer the writers write into
+ * directly; the only copy made is the exact-size array of the {@link EncodedImage}, which
+ * {@code JsonUtil} base64-encodes straight into the response. Idle encoders are pooled
+ * across calls. Call off the model thread: encoding a large frame takes a while.
+ */
+final class ImageEncoder {
+
+    /** JPEG compression quality (0.0-1.0). 0.85 balances file size and visual quality. */
+    static final float JPEG_QUALITY = 0.85f;
+    /** PNG compression level meaning "the writer's default" (deflate level 4 in the JDK writer). */
+    static final int DEFAULT_PNG_COMPRESSION = -1;
+    /** Highest PNG compression level (deflate 9: smallest, slowest). 0 stores without compression. */
+    static final int MAX_PNG_COMPRESSION = 9;
+    /** Idle encoders kept for reuse. */
+    static final int POOL_SIZE = 4;
+    /** A pooled buffer grown past this size is dropped back to the initial size. */
+    static final int MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+    private static final Deque<ImageEncoder> POOL = new ArrayDeque<>();
+
+    private final Buffer buffer = new Buffer();
+    private ImageWriter png;
+    private ImageWriter jpeg;
+
+    private ImageEncoder() {
+    }
+
+    /**
+     * Encodes the image in memory.
+     *
+     * @param format         "png" или "jpeg"
+     * @param pngCompression 0..{@link #MAX_PNG_COMPRESSION}, or {@link #DEFAULT_PNG_COMPRESSION}
+     */
+    static EncodedImage encode(BufferedImage image, String format, int pngCompression) throws IOException {
+        ImageEncoder encoder = acquire();
+        boolean ok = false;
+        try {
+            encoder.write(image, format, pngCompression);
+            EncodedImage encoded = new EncodedImage(encoder.buffer.toByteArray(), mimeType(format));
+            ok = true;
+            return encoded;
+        } finally {
+            release(encoder, ok);
+        }
+    }
+
+    /** Encodes the image into a file, replacing its contents; returns the size in bytes. */
+    static int write(BufferedImage image, String format, int pngCompression, Path path) throws IOException {
+        ImageEncoder encoder = acquire();
+        boolean ok = false;
+        try {
+            encoder.write(image, format, pngCompression);
+            try (OutputStream out = Files.newOutputStream(path)) {
+                encoder.buffer.writeTo(out);
+            }
+            ok = true;
+            return encoder.buffer.size();
+        } finally {
+            release(encoder, ok);
+        }
+    }
+
+    static String mimeType(String format) {
+        return "jpeg".equals(format) ? "image/jpeg" : "image/png";
+    }
+
+    private void write(BufferedImage image, String format, int pngCompression) throws IOException {
+        buffer.clear();
+        ImageWriter writer;
+        ImageWriteParam param;
+        if ("jpeg".equals(format)) {
+            if (jpeg == null) {
+                jpeg = writer("jpeg");
+            }
+            writer = jpeg;
+            image = ensureRgb(image);
+            param = new JPEGImageWriteParam(null);
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+        } else {
+            if (png == null) {
+                png = writer("png");
+            }
+            writer = png;
+            param = writer.getDefaultWriteParam();
+            if (pngCompression != DEFAULT_PNG_COMPRESSION && param.canWriteCompressed()) {
+                // JDK PNG writer: deflate level = (int) (9 * (1 - quality)); aim between two levels
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(0f, 1f - (pngCompression + 0.5f) / 9f));
+            }
+        }
+        try {
+            writer.setOutput(buffer);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.reset();
+        }
+    }
+
+    private static ImageWriter writer(String format) {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IllegalStateException("No " + format.toUpperCase() + " ImageWriter available");
+        }
+        return writers.next();
+    }
+
+    /** Конвертирует ARGB в RGB для JPEG (JPEG не поддерживает alpha). */
+    static BufferedImage ensureRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_ARGB
+                || image.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
+            BufferedImage rgb = new BufferedImage(
+                    image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = rgb.createGraphics();
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            return rgb;
+        }
+        return image;
+    }
+
+    private static ImageEncoder acquire() {
+        synchronized (POOL) {
+            ImageEncoder encoder = POOL.poll();
+            if (encoder != null) {
+                return encoder;
+            }
+        }
+        return new ImageEncoder();
+    }
+
+    /** Returns the encoder to the pool; one that failed mid-write is discarded. */
+    private static void release(ImageEncoder encoder, boolean ok) {
+        if (ok) {
+            encoder.buffer.trim();
+            synchronized (POOL) {
+                if (POOL.size() < POOL_SIZE) {
+                    POOL.push(encoder);
+                    return;
+                }
+            }
+        }
+        encoder.dispose();
+    }
+
+    private void dispose() {
+        if (png != null) {
+            png.dispose();
+        }
+        if (jpeg != null) {
+            jpeg.dispose();
+        }
+    }
+
+    /** Idle encoders in the pool (for tests). */
+    static int pooled() {
+        synchronized (POOL) {
+            return POOL.size();
+        }
+    }
+
+    /**
+     * Seekable in-memory output for the writers (PNG seeks back to patch chunk lengths).
+     * Reused after {@link #clear()}, so it is never closed.
+     */
+    static final class Buffer extends ImageOutputStreamImpl {
+
+        static final int INITIAL_CAPACITY = 64 * 1024;
+
+        private byte[] buf = new byte[INITIAL_CAPACITY];
+        private int length;
+
+        void clear() {
+            streamPos = 0;
+            flushedPos = 0;
+            bitOffset = 0;
+            length = 0;
+        }
+
+        /** Drops a buffer grown past {@link #MAX_RETAINED_BYTES}. */
+        void trim() {
+            if (buf.length > MAX_RETAINED_BYTES) {
+                buf = new byte[INITIAL_CAPACITY];
+            }
+            clear();
+        }
+
+        int size() {
+            return length;
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, length);
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            out.write(buf, 0, length);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + 1);
+            buf[(int) streamPos++] = (byte) b;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            flushBits();
+            ensureCapacity(streamPos + len);
+            System.arraycopy(b, off, buf, (int) streamPos, len);
+            streamPos += len;
+            length = Math.max(length, (int) streamPos);
+        }
+
+        @Override
+        public int read() {
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            return buf[(int) streamPos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            bitOffset = 0;
+            if (streamPos >= length) {
+                return -1;
+            }
+            int n = (int) Math.min(len, length - streamPos);
+            System.arraycopy(buf, (int) streamPos, b, off, n);
+            streamPos += n;
+            return n;
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        private void ensureCapacity(long needed) throws IOException {
+            if (needed > Integer.MAX_VALUE - 8) {
+                throw new IOException("Encoded image exceeds 2 GB");
+            }
+            if (needed > buf.length) {
+                long grown = Math.max(needed, Math.min((long) buf.length * 2, Integer.MAX_VALUE - 8));
+                buf = Arrays.copyOf(buf, (int) grown);
+            }
+        }
+    }
+}
@@ -25,7 +25,8 @@ public class ListCheckpointsHandler implements CommandHandler, CommandDescriptor
 
     @Override
     public Response execute(Request request, HomeAccessor accessor) {
-        List<CheckpointManager.SnapshotInfo> snapshots = checkpointManager.list();
+        CheckpointManager checkpoints = CheckpointManager.forHome(accessor, checkpointManager);
+        List<CheckpointManager.SnapshotInfo> snapshots = checkpoints.list();
 
         List<Object> items = new ArrayList<>();
         for (CheckpointManager.SnapshotInfo info : snapshots) {
@@ -34,8 +35,8 @@ public class ListCheckpointsHandler implements CommandHandler, CommandDescriptor
 
         Map<String, Object> data = new LinkedHashMap<>();
         data.put("count", snapshots.size());
-        data.put("cursor", checkpointManager.getCursor());
-        data.put("maxDepth", checkpointManager.getMaxDepth());
+        data.put("cursor", checkpoints.getCursor());
+        data.put("maxDepth", checkpoints.getMaxDepth());
         data.put("checkpoints", items);
         return Response.ok(data);
     }
@@ -0,0 +1,51 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Обработчик команды "list_homes".
+ * Возвращает все дома сервера и дом текущей сессии. Не использует EDT.
+ */
+public class ListHomesHandler implements CommandHandler, CommandDescriptor {
+
+    private final HomeRegistry homes;
+
+    public ListHomesHandler(HomeRegistry homes) {
+        this.homes = homes;
+    }
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        List<Map<String, Object>> list = homes.list();
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("current", homes.getHomeId(HomeRegistry.currentSession()));
+        data.put("count", list.size());
+        data.put("homes", list);
+        return Response.ok(data);
+    }
+
+    @Override
+    public String getDescription() {
+        return "Lists homes on this server: the default home (the Sweet Home 3D window) and homes "
+                + "created with create_home. For each: homeId, loaded (false if saved to disk while "
+                + "idle), number of attached sessions, busy, idleSeconds. 'current' is the home this "
+                + "session works on.";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+        schema.put("properties", new LinkedHashMap<>());
+        schema.put("required", Collections.emptyList());
+        return schema;
+    }
+}
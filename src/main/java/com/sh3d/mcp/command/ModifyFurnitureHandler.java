@@ -2,6 +2,7 @@ package com.sh3d.mcp.command;
 
 import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.sh3d.mcp.bridge.CollisionDetector;
 import com.sh3d.mcp.bridge.HomeAccessor;
 import com.sh3d.mcp.bridge.ObjectResolver;
 import com.sh3d.mcp.protocol.Request;
@@ -59,13 +60,17 @@ public class ModifyFurnitureHandler implements CommandHandler, CommandDescriptor
         final Integer colorToSet = parsedColor;
         final boolean doClearColor = clearColor;
 
-        Map<String, Object> data = accessor.runOnEDT(() -> {
+        final boolean avoidCollisions = Boolean.TRUE.equals(request.getBoolean("avoidCollisions"));
+
+        return accessor.runOnEDT(() -> {
             Home home = accessor.getHome();
             HomePieceOfFurniture piece = ObjectResolver.findFurniture(home, id);
 
             if (piece == null) {
-                return null;
+                return Response.error("Furniture not found: " + id);
             }
+            float[] previous = {piece.getX(), piece.getY(), piece.getAngle(), piece.getElevation(),
+                    piece.getWidth(), piece.getDepth(), piece.getHeight()};
 
             // Position
             if (params.containsKey("x")) {
@@ -92,6 +97,27 @@ public class ModifyFurnitureHandler implements CommandHandler, CommandDescriptor
                 piece.setHeight(request.getFloat("height"));
             }
 
+            // Collisions: move to the nearest free spot, or undo the geometry change
+            float[] offset = null;
+            if (avoidCollisions) {
+                offset = new CollisionDetector(home, accessor.getSpatialIndex()).findFreeOffset(
+                        piece, piece.getPoints(), CollisionDetector.MAX_SHIFT, CollisionDetector.SEARCH_STEP);
+                if (offset == null) {
+                    piece.setX(previous[0]);
+                    piece.setY(previous[1]);
+                    piece.setAngle(previous[2]);
+                    piece.setElevation(previous[3]);
+                    piece.setWidth(previous[4]);
+                    piece.setDepth(previous[5]);
+                    piece.setHeight(previous[6]);
+                    return Response.error("No collision-free position within "
+                            + (int) CollisionDetector.MAX_SHIFT + " cm; furniture left unchanged. "
+                            + "Use check_collisions to see what blocks it");
+                }
+                piece.setX(piece.getX() + offset[0]);
+                piece.setY(piece.getY() + offset[1]);
+            }
+
             // Appearance
             if (doClearColor) {
                 piece.setColor(null);
@@ -132,14 +158,11 @@ public class ModifyFurnitureHandler implements CommandHandler, CommandDescriptor
             result.put("color", color != null ? String.format("#%06X", color & 0xFFFFFF) : null);
             result.put("visible", piece.isVisible());
             result.put("mirrored", piece.isModelMirrored());
-            return result;
+            if (offset != null) {
+                result.put("collisionShift", round2(Math.hypot(offset[0], offset[1])));
+            }
+            return Response.ok(result);
         });
-
-        if (data == null) {
-            return Response.error("Furniture not found: " + id);
-        }
-
-        return Response.ok(data);
     }
 
     @Override
@@ -147,7 +170,10 @@ public class ModifyFurnitureHandler implements CommandHandler, CommandDescriptor
         return "Modifies properties of existing furniture by ID. Use get_state to find furniture IDs. "
                 + "Only provided properties are changed; omitted properties remain unchanged. "
                 + "Coordinates are in centimeters, angle in degrees. "
-                + "Color is a hex string like '#FF0000' (red) or null to reset to default.";
+                + "Color is a hex string like '#FF0000' (red) or null to reset to default. "
+                + "With avoidCollisions, a piece that would overlap walls or other furniture is moved "
+                + "to the nearest free position (reported as collisionShift in cm), or left unchanged "
+                + "with an error if there is none nearby.";
     }
 
     @Override
@@ -173,6 +199,8 @@ public class ModifyFurnitureHandler implements CommandHandler, CommandDescriptor
         properties.put("visible", prop("boolean", "Whether furniture is visible in the scene"));
         properties.put("mirrored", prop("boolean", "Whether furniture model is mirrored"));
         properties.put("name", prop("string", "New display name for the furniture"));
+        properties.put("avoidCollisions", prop("boolean",
+                "Shift the piece to the nearest position free of walls and other furniture"));
 
         schema.put("properties", properties);
         schema.put("required", Arrays.asList("id"));
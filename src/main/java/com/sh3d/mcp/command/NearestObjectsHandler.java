@@ -0,0 +1,220 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Elevatable;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Selectable;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.SpatialIndex;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Обработчик команды "nearest_objects".
+ * Возвращает k ближайших к точке или к объекту стен, мебели, комнат и подписей уровня.
+ *
+ * <pre>
+ * Параметры:
+ *   x, y        — точка (или id)
+ *   id          — объект: расстояние считается между footprint'ами, сам объект не возвращается
+ *   count       — сколько объектов вернуть (default 5, max 100)
+ *   maxDistance — не дальше, см (опционально)
+ *   levelId     — уровень (по умолчанию выбранный; у объекта — его уровень)
+ *   types       — ["wall", "furniture", "room", "label"] (по умолчанию все)
+ * </pre>
+ * The index ranks candidates by bounding box distance from the query center; exact footprint
+ * distances reorder them, and the candidate set is widened until no unseen object can be closer.
+ */
+public class NearestObjectsHandler implements CommandHandler, CommandDescriptor {
+
+    static final int DEFAULT_COUNT = 5;
+    static final int MAX_COUNT = 100;
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        Map<String, Object> params = request.getParams();
+        Set<String> types;
+        try {
+            types = SpatialQueries.parseTypes(request);
+        } catch (IllegalArgumentException e) {
+            return Response.error(e.getMessage());
+        }
+        int count = (int) request.getFloat("count", DEFAULT_COUNT);
+        if (count < 1 || count > MAX_COUNT) {
+            return Response.error("Parameter 'count' must be between 1 and " + MAX_COUNT + ", got " + count);
+        }
+        double maxDistance = params.containsKey("maxDistance")
+                ? request.getFloat("maxDistance") : Double.POSITIVE_INFINITY;
+        if (maxDistance < 0) {
+            return Response.error("Parameter 'maxDistance' must be >= 0, got " + maxDistance);
+        }
+        String levelId = request.getString("levelId");
+        String refId = request.getString("id");
+        boolean hasPoint = params.containsKey("x") || params.containsKey("y");
+        if (refId != null && hasPoint) {
+            return Response.error("Parameters 'id' and 'x'/'y' are mutually exclusive");
+        }
+        if (refId == null && (!params.containsKey("x") || !params.containsKey("y"))) {
+            return Response.error("Parameters 'x' and 'y' (or 'id') are required");
+        }
+        float pointX = refId == null ? request.getFloat("x") : 0;
+        float pointY = refId == null ? request.getFloat("y") : 0;
+
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
+            Selectable reference = null;
+            float[][] shape;
+            Level level;
+            if (refId != null) {
+                reference = SpatialQueries.findObject(home, refId);
+                if (reference == null) {
+                    return Response.error("Object not found: " + refId);
+                }
+                shape = reference.getPoints();
+                level = levelId != null ? SpatialQueries.resolveLevel(home, levelId)
+                        : ((Elevatable) reference).getLevel();
+            } else {
+                shape = new float[][] {{pointX, pointY}};
+                level = SpatialQueries.resolveLevel(home, levelId);
+            }
+            if (levelId != null && level == null) {
+                return Response.error("Level not found: " + levelId);
+            }
+
+            // Center of the reference's bounding box; the reference lies within 'reach' of it
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (float[] pt : shape) {
+                minX = Math.min(minX, pt[0]);
+                minY = Math.min(minY, pt[1]);
+                maxX = Math.max(maxX, pt[0]);
+                maxY = Math.max(maxY, pt[1]);
+            }
+            float cx = (minX + maxX) / 2;
+            float cy = (minY + maxY) / 2;
+            double reach = SpatialQueries.extent(shape, cx, cy);
+
+            Selectable excluded = reference;
+            Predicate<Selectable> filter = item -> item != excluded
+                    && types.contains(SpatialQueries.typeOf(item));
+            List<Match> matches = nearest(accessor.getSpatialIndex(), level, shape, cx, cy, reach,
+                    count, maxDistance, filter);
+
+            List<Object> objects = new ArrayList<>();
+            for (Match match : matches) {
+                Map<String, Object> info = SpatialQueries.describe(match.item, match.footprint);
+                info.put("distance", round2(match.distance));
+                objects.add(info);
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("levelId", level != null ? level.getId() : null);
+            data.put("count", objects.size());
+            data.put("objects", objects);
+            return Response.ok(data);
+        });
+    }
+
+    /**
+     * Exact k nearest by footprint distance. Every object the index has not returned yet is at
+     * least as far from (cx, cy) by bounding box as the last one returned, so its exact distance
+     * to the reference is at least that minus {@code reach}; the candidate count doubles until
+     * the k-th exact distance is within this bound or the level runs out of objects.
+     */
+    static List<Match> nearest(SpatialIndex index, Level level, float[][] shape, float cx, float cy,
+                               double reach, int count, double maxDistance, Predicate<Selectable> filter) {
+        List<Match> matches = new ArrayList<>();
+        for (int candidates = count; ; candidates *= 2) {
+            List<Selectable> found = index.nearest(level, cx, cy, candidates, filter);
+            matches.clear();
+            double lastBoxDistance = 0;
+            for (Selectable item : found) {
+                float[][] footprint = item.getPoints();
+                lastBoxDistance = boxDistance(footprint, cx, cy);
+                double distance = SpatialQueries.distance(shape, footprint);
+                if (distance <= maxDistance) {
+                    matches.add(new Match(item, footprint, distance));
+                }
+            }
+            matches.sort((a, b) -> Double.compare(a.distance, b.distance));
+            double unseenBound = lastBoxDistance - reach;
+            boolean exhausted = found.size() < candidates;
+            boolean settled = matches.size() >= count && matches.get(count - 1).distance <= unseenBound;
+            if (exhausted || settled || unseenBound > maxDistance) {
+                return matches.subList(0, Math.min(count, matches.size()));
+            }
+        }
+    }
+
+    private static double boxDistance(float[][] footprint, float x, float y) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (float[] pt : footprint) {
+            minX = Math.min(minX, pt[0]);
+            minY = Math.min(minY, pt[1]);
+            maxX = Math.max(maxX, pt[0]);
+            maxY = Math.max(maxY, pt[1]);
+        }
+        double dx = Math.max(0, Math.max(minX - x, x - maxX));
+        double dy = Math.max(0, Math.max(minY - y, y - maxY));
+        return Math.hypot(dx, dy);
+    }
+
+    static final class Match {
+        final Selectable item;
+        final float[][] footprint;
+        final double distance;
+
+        Match(Selectable item, float[][] footprint, double distance) {
+            this.item = item;
+            this.footprint = footprint;
+            this.distance = distance;
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Finds the walls, furniture, rooms and labels closest to a point ('x'/'y') or to an "
+                + "object ('id'; distances are measured between footprints and the object itself is "
+                + "excluded), closest first. Answers questions like 'which wall is nearest to the bed' "
+                + "without reading the whole scene. Returns ids, type, name/text, wall endpoints or "
+                + "positions, bounding boxes and the distance in cm. Searches the selected level unless "
+                + "'levelId' is given (with 'id', the object's level).";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("x", prop("number", "X of the point in cm"));
+        properties.put("y", prop("number", "Y of the point in cm"));
+        properties.put("id", prop("string", "ID of a wall, piece, room or label to measure from instead of a point"));
+
+        Map<String, Object> countProp = new LinkedHashMap<>();
+        countProp.put("type", "integer");
+        countProp.put("minimum", 1);
+        countProp.put("maximum", MAX_COUNT);
+        countProp.put("default", DEFAULT_COUNT);
+        countProp.put("description", "Number of objects to return");
+        properties.put("count", countProp);
+
+        properties.put("maxDistance", prop("number", "Ignore objects farther than this, in cm"));
+        properties.put("levelId", prop("string", "Level to search (default: selected level)"));
+        properties.put("types", QueryRegionHandler.typesProp());
+
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>());
+        return schema;
+    }
+}
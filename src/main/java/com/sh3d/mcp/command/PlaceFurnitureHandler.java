@@ -1,7 +1,9 @@
 package com.sh3d.mcp.command;
 
 import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.sh3d.mcp.bridge.CollisionDetector;
 import com.sh3d.mcp.bridge.HomeAccessor;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
@@ -58,8 +60,10 @@ public class PlaceFurnitureHandler implements CommandHandler, CommandDescriptor
         CatalogPieceOfFurniture found = searchResult.getFound();
 
         float angleRad = (float) Math.toRadians(angle);
+        boolean avoidCollisions = Boolean.TRUE.equals(request.getBoolean("avoidCollisions"));
 
-        HomePieceOfFurniture placed = accessor.runOnEDT(() -> {
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
             HomePieceOfFurniture piece = new HomePieceOfFurniture(found);
             piece.setX(x);
             piece.setY(y);
@@ -67,21 +71,36 @@ public class PlaceFurnitureHandler implements CommandHandler, CommandDescriptor
             if (hasElevation) {
                 piece.setElevation(elevation);
             }
-            accessor.getHome().addPieceOfFurniture(piece);
-            return piece;
+            float[] offset = null;
+            if (avoidCollisions) {
+                piece.setLevel(home.getSelectedLevel());
+                offset = new CollisionDetector(home, accessor.getSpatialIndex()).findFreeOffset(
+                        piece, piece.getPoints(), CollisionDetector.MAX_SHIFT, CollisionDetector.SEARCH_STEP);
+                if (offset == null) {
+                    return Response.error("No collision-free position within "
+                            + (int) CollisionDetector.MAX_SHIFT + " cm of (" + x + ", " + y
+                            + "); nothing placed. Use check_collisions or query_region to inspect the area");
+                }
+                piece.setX(x + offset[0]);
+                piece.setY(y + offset[1]);
+            }
+            home.addPieceOfFurniture(piece);
+
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("id", piece.getId());
+            data.put("name", piece.getName());
+            data.put("x", round2(piece.getX()));
+            data.put("y", round2(piece.getY()));
+            data.put("angle", round2(Math.toDegrees(piece.getAngle())));
+            data.put("elevation", round2(piece.getElevation()));
+            data.put("width", round2(piece.getWidth()));
+            data.put("depth", round2(piece.getDepth()));
+            data.put("height", round2(piece.getHeight()));
+            if (offset != null) {
+                data.put("collisionShift", round2(Math.hypot(offset[0], offset[1])));
+            }
+            return Response.ok(data);
         });
-
-        Map<String, Object> data = new LinkedHashMap<>();
-        data.put("id", placed.getId());
-        data.put("name", placed.getName());
-        data.put("x", round2(placed.getX()));
-        data.put("y", round2(placed.getY()));
-        data.put("angle", round2(Math.toDegrees(placed.getAngle())));
-        data.put("elevation", round2(placed.getElevation()));
-        data.put("width", round2(placed.getWidth()));
-        data.put("depth", round2(placed.getDepth()));
-        data.put("height", round2(placed.getHeight()));
-        return Response.ok(data);
     }
 
     @Override
@@ -91,6 +110,8 @@ public class PlaceFurnitureHandler implements CommandHandler, CommandDescriptor
                 + "Coordinates are in centimeters. "
                 + "Angle is in degrees (0 = default orientation, 90 = rotated clockwise). "
                 + "Use 'catalogId' for precise selection when multiple items share the same name. "
+                + "With avoidCollisions, a piece that would overlap walls or other furniture is placed "
+                + "at the nearest free position instead (collisionShift gives the distance in cm). "
                 + "Returns the furniture id for use with modify_furniture, delete_furniture.";
     }
 
@@ -120,6 +141,9 @@ public class PlaceFurnitureHandler implements CommandHandler, CommandDescriptor
         elevationProp.put("default", 0);
         properties.put("elevation", elevationProp);
 
+        properties.put("avoidCollisions", prop("boolean",
+                "Shift the piece to the nearest position free of walls and other furniture"));
+
         schema.put("properties", properties);
         schema.put("required", Arrays.asList("x", "y"));
         return schema;
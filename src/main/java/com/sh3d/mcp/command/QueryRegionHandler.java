@@ -0,0 +1,250 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Elevatable;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Selectable;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+import static com.sh3d.mcp.command.SchemaUtil.prop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Обработчик команды "query_region".
+ * Возвращает объекты уровня в прямоугольнике или в радиусе от точки / другого объекта.
+ *
+ * <pre>
+ * Параметры:
+ *   bbox     — {minX, minY, maxX, maxY}: объекты, footprint которых пересекает прямоугольник
+ *   x, y     — центр круга (вместе с radius)
+ *   id       — объект-центр (вместе с radius): расстояние считается от его footprint
+ *   radius   — радиус в см (0 — касание)
+ *   levelId  — уровень (по умолчанию выбранный; у объекта-центра — его уровень)
+ *   types    — ["wall", "furniture", "room", "label"] (по умолчанию все)
+ *   limit    — максимум объектов в ответе (default 200, max 1000)
+ * </pre>
+ * Candidates come from the home's {@link com.sh3d.mcp.bridge.SpatialIndex}; exact footprint
+ * distances are checked only for them.
+ */
+public class QueryRegionHandler implements CommandHandler, CommandDescriptor {
+
+    static final int DEFAULT_LIMIT = 200;
+    static final int MAX_LIMIT = 1000;
+
+    @Override
+    public Response execute(Request request, HomeAccessor accessor) {
+        Map<String, Object> params = request.getParams();
+        Set<String> types;
+        try {
+            types = SpatialQueries.parseTypes(request);
+        } catch (IllegalArgumentException e) {
+            return Response.error(e.getMessage());
+        }
+        int limit = (int) request.getFloat("limit", DEFAULT_LIMIT);
+        if (limit < 1 || limit > MAX_LIMIT) {
+            return Response.error("Parameter 'limit' must be between 1 and " + MAX_LIMIT + ", got " + limit);
+        }
+        String levelId = request.getString("levelId");
+        String refId = request.getString("id");
+
+        float[][] box = null;
+        Object bboxObj = params.get("bbox");
+        float radius = 0;
+        Float x = null;
+        Float y = null;
+        if (bboxObj != null) {
+            if (refId != null || params.containsKey("x") || params.containsKey("radius")) {
+                return Response.error("Use either 'bbox', or 'x'/'y' with 'radius', or 'id' with 'radius'");
+            }
+            if (!(bboxObj instanceof Map)) {
+                return Response.error("Parameter 'bbox' must be an object with minX, minY, maxX, maxY");
+            }
+            Map<?, ?> bbox = (Map<?, ?>) bboxObj;
+            float[] v = new float[4];
+            String[] keys = {"minX", "minY", "maxX", "maxY"};
+            for (int i = 0; i < keys.length; i++) {
+                if (!(bbox.get(keys[i]) instanceof Number)) {
+                    return Response.error("Parameter 'bbox' must have numeric '" + keys[i] + "'");
+                }
+                v[i] = ((Number) bbox.get(keys[i])).floatValue();
+            }
+            if (v[0] > v[2] || v[1] > v[3]) {
+                return Response.error("Parameter 'bbox' must have minX <= maxX and minY <= maxY");
+            }
+            box = SpatialQueries.rectangle(v[0], v[1], v[2], v[3]);
+        } else {
+            if (!params.containsKey("radius")) {
+                return Response.error("Missing query: pass 'bbox', or 'x'/'y' with 'radius', or 'id' with 'radius'");
+            }
+            radius = request.getFloat("radius");
+            if (radius < 0) {
+                return Response.error("Parameter 'radius' must be >= 0, got " + radius);
+            }
+            if (refId == null) {
+                if (!params.containsKey("x") || !params.containsKey("y")) {
+                    return Response.error("Parameters 'x' and 'y' (or 'id') are required with 'radius'");
+                }
+                x = request.getFloat("x");
+                y = request.getFloat("y");
+            } else if (params.containsKey("x") || params.containsKey("y")) {
+                return Response.error("Parameters 'id' and 'x'/'y' are mutually exclusive");
+            }
+        }
+
+        float[][] queryBox = box;
+        float queryRadius = radius;
+        Float pointX = x;
+        Float pointY = y;
+        return accessor.runOnEDT(() -> {
+            Home home = accessor.getHome();
+            Selectable reference = null;
+            float[][] shape;
+            Level level;
+            if (refId != null) {
+                reference = SpatialQueries.findObject(home, refId);
+                if (reference == null) {
+                    return Response.error("Object not found: " + refId);
+                }
+                shape = reference.getPoints();
+                level = levelId != null ? SpatialQueries.resolveLevel(home, levelId)
+                        : ((Elevatable) reference).getLevel();
+            } else {
+                shape = queryBox != null ? queryBox : new float[][] {{pointX, pointY}};
+                level = SpatialQueries.resolveLevel(home, levelId);
+            }
+            if (levelId != null && level == null) {
+                return Response.error("Level not found: " + levelId);
+            }
+
+            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+            for (float[] pt : shape) {
+                minX = Math.min(minX, pt[0]);
+                minY = Math.min(minY, pt[1]);
+                maxX = Math.max(maxX, pt[0]);
+                maxY = Math.max(maxY, pt[1]);
+            }
+            float centerX = (minX + maxX) / 2;
+            float centerY = (minY + maxY) / 2;
+
+            List<Match> matches = new ArrayList<>();
+            for (Selectable item : accessor.getSpatialIndex().query(level,
+                    minX - queryRadius, minY - queryRadius, maxX + queryRadius, maxY + queryRadius)) {
+                String type = SpatialQueries.typeOf(item);
+                if (item == reference || type == null || !types.contains(type)) {
+                    continue;
+                }
+                float[][] footprint = item.getPoints();
+                double distance = SpatialQueries.distance(shape, footprint);
+                if (distance <= queryRadius) {
+                    double fromCenter = SpatialQueries.distance(new float[][] {{centerX, centerY}}, footprint);
+                    matches.add(new Match(item, footprint, distance, fromCenter));
+                }
+            }
+            // Closest to the query first; ties by distance from its center
+            matches.sort((a, b) -> a.distance != b.distance
+                    ? Double.compare(a.distance, b.distance)
+                    : Double.compare(a.fromCenter, b.fromCenter));
+
+            List<Object> objects = new ArrayList<>();
+            for (Match match : matches.subList(0, Math.min(limit, matches.size()))) {
+                Map<String, Object> info = SpatialQueries.describe(match.item, match.footprint);
+                if (queryBox == null) {
+                    info.put("distance", round2(match.distance));
+                }
+                objects.add(info);
+            }
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("levelId", level != null ? level.getId() : null);
+            data.put("count", matches.size());
+            data.put("truncated", matches.size() > limit);
+            data.put("objects", objects);
+            return Response.ok(data);
+        });
+    }
+
+    private static final class Match {
+        final Selectable item;
+        final float[][] footprint;
+        final double distance;
+        final double fromCenter;
+
+        Match(Selectable item, float[][] footprint, double distance, double fromCenter) {
+            this.item = item;
+            this.footprint = footprint;
+            this.distance = distance;
+            this.fromCenter = fromCenter;
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Finds walls, furniture, rooms and labels on one level inside a region, without "
+                + "transferring the whole scene. Region is either 'bbox' (objects whose footprint "
+                + "overlaps the rectangle), 'x'/'y' with 'radius' (objects within radius cm of the point), "
+                + "or 'id' with 'radius' (objects within radius cm of that object's footprint, "
+                + "e.g. everything within 200 cm of a sofa). Returns ids, type, name/text, "
+                + "wall endpoints or positions and bounding boxes; use get_state for full details. "
+                + "Searches the selected level unless 'levelId' is given (with 'id', the object's level).";
+    }
+
+    @Override
+    public Map<String, Object> getSchema() {
+        Map<String, Object> schema = new LinkedHashMap<>();
+        schema.put("type", "object");
+
+        Map<String, Object> properties = new LinkedHashMap<>();
+
+        Map<String, Object> bboxProps = new LinkedHashMap<>();
+        bboxProps.put("minX", prop("number", "Min X in cm"));
+        bboxProps.put("minY", prop("number", "Min Y in cm"));
+        bboxProps.put("maxX", prop("number", "Max X in cm"));
+        bboxProps.put("maxY", prop("number", "Max Y in cm"));
+        Map<String, Object> bboxProp = new LinkedHashMap<>();
+        bboxProp.put("type", "object");
+        bboxProp.put("properties", bboxProps);
+        bboxProp.put("required", Arrays.asList("minX", "minY", "maxX", "maxY"));
+        bboxProp.put("description", "Rectangle to search");
+        properties.put("bbox", bboxProp);
+
+        properties.put("x", prop("number", "X of the circle center in cm (with radius)"));
+        properties.put("y", prop("number", "Y of the circle center in cm (with radius)"));
+        properties.put("id", prop("string", "ID of a wall, piece, room or label to search around (with radius)"));
+        properties.put("radius", prop("number", "Search radius in cm; 0 finds objects touching the point or object"));
+        properties.put("levelId", prop("string", "Level to search (default: selected level)"));
+        properties.put("types", typesProp());
+
+        Map<String, Object> limitProp = new LinkedHashMap<>();
+        limitProp.put("type", "integer");
+        limitProp.put("minimum", 1);
+        limitProp.put("maximum", MAX_LIMIT);
+        limitProp.put("default", DEFAULT_LIMIT);
+        limitProp.put("description", "Maximum number of objects returned, closest first");
+        properties.put("limit", limitProp);
+
+        schema.put("properties", properties);
+        schema.put("required", new ArrayList<>());
+        return schema;
+    }
+
+    /** Schema of the {@code types} filter, shared with nearest_objects. */
+    static Map<String, Object> typesProp() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("type", "string");
+        item.put("enum", SpatialQueries.TYPES);
+        Map<String, Object> types = new LinkedHashMap<>();
+        types.put("type", "array");
+        types.put("items", item);
+        types.put("description", "Object types to return (default: all)");
+        return types;
+    }
+}
@@ -0,0 +1,422 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Compass;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRevisions;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.protocol.EncodedImage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Кэш готовых изображений render_photo.
+ * <p>
+ * An image is addressed by the SHA-256 of everything it depends on: the home (an id per
+ * {@link HomeRevisions}) and its {@link HomeRevisions#snapshot()}, the compass (sun position),
+ * the scene variant, the camera, and the size, quality, format and tiling options. Any model
+ * change moves a revision, so a stale image is never returned — it just stops being asked
+ * for and ages out. Entries are kept in an LRU bounded by encoded bytes; when a disk
+ * directory is configured, evicted entries spill there under their own byte bound and are
+ * read back on a memory miss. Revisions restart with the process, so keys also carry a
+ * random per-instance token and files left by an earlier run are deleted on start.
+ * <p>
+ * The maps are guarded by the cache monitor, which is never held across file I/O: what to
+ * spill or delete is decided under it, and the files are written, read and deleted after
+ * it is released, under a separate disk lock. A file is deleted only while its key is not
+ * on the disk tier, so the order in which racing writes and deletes run does not matter
+ * (equal keys mean equal bytes). An entry whose file is still being written is served from
+ * the image it keeps until then.
+ */
+public final class RenderCache {
+
+    private static final Logger LOG = Logger.getLogger(RenderCache.class.getName());
+
+    /** SHA-256 hex plus the image extension: the only files this cache creates or deletes. */
+    private static final String FILE_PATTERN = "[0-9a-f]{64}\\.(png|jpg)";
+
+    private final long maxBytes;
+    private final Path diskDir;
+    private final long maxDiskBytes;
+    private final String instanceToken = UUID.randomUUID().toString();
+    /** Serializes file operations; taken without the cache monitor held. */
+    private final Object diskLock = new Object();
+
+    private final Map<HomeRevisions, Long> homeIds = new WeakHashMap<>();
+    private long nextHomeId;
+    /** Access-ordered: iteration starts at the least recently used entry. */
+    private final LinkedHashMap<String, EncodedImage> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private final LinkedHashMap<String, DiskEntry> disk = new LinkedHashMap<>(16, 0.75f, true);
+    private long diskBytes;
+    private long hits;
+    private long diskHits;
+    private long misses;
+
+    /**
+     * @param maxBytes     memory bound in encoded bytes; 0 disables the cache
+     * @param diskDir      directory for evicted entries, or null to drop them
+     * @param maxDiskBytes bound of the disk tier in bytes
+     */
+    RenderCache(long maxBytes, Path diskDir, long maxDiskBytes) {
+        this.maxBytes = maxBytes;
+        this.diskDir = maxBytes > 0 ? diskDir : null;
+        this.maxDiskBytes = maxDiskBytes;
+        if (this.diskDir != null) {
+            deleteStaleFiles(this.diskDir);
+        }
+    }
+
+    public static RenderCache fromConfig(PluginConfig config) {
+        Path dir = null;
+        if (config.getRenderCacheMaxBytes() > 0 && config.isRenderCacheDiskEnabled()) {
+            dir = PluginConfig.resolveRenderCacheDir();
+            try {
+                dir = dir != null ? Files.createDirectories(dir)
+                        : Files.createTempDirectory("sh3d-mcp-render-cache");
+            } catch (IOException e) {
+                LOG.log(Level.WARNING, "Cannot create render cache directory " + dir
+                        + ", disk spill disabled", e);
+                dir = null;
+            }
+        }
+        return new RenderCache(config.getRenderCacheMaxBytes(), dir, config.getRenderCacheMaxDiskBytes());
+    }
+
+    boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * Starts the lookups of one render_photo call. Call on the model thread, so the revisions
+     * and the compass are read together with the state the render will see.
+     *
+     * @param variant how the scene is prepared for rendering (e.g. overhead with hidden walls)
+     * @param refresh render again even on a hit; the new image replaces the cached one
+     */
+    Scope scope(HomeAccessor accessor, String variant, boolean refresh) {
+        return scope(accessor, accessor.getRevisions().snapshot(), variant, refresh);
+    }
+
+    /**
+     * Same, for an image rendered from a prepared clone: {@code snapshot} is the
+     * {@link RenderSceneCache.Scene#revisions} of that clone, so the key names the state the
+     * image shows. Call in the model-thread task that returned the clone (the compass is
+     * read here).
+     */
+    Scope scope(HomeAccessor accessor, long[] snapshot, String variant, boolean refresh) {
+        HomeRevisions revisions = accessor.getRevisions();
+        Compass compass = accessor.getHome().getCompass();
+        long homeId;
+        synchronized (this) {
+            homeId = homeIds.computeIfAbsent(revisions, r -> ++nextHomeId);
+        }
+        String scene = instanceToken + "|" + homeId + "|" + Arrays.toString(snapshot)
+                + "|" + compass.getLatitude() + "|" + compass.getLongitude()
+                + "|" + compass.getNorthDirection() + "|" + compass.getTimeZone() + "|" + variant;
+        return new Scope(scene, refresh);
+    }
+
+    EncodedImage get(String key) {
+        DiskEntry entry;
+        synchronized (this) {
+            EncodedImage image = memory.get(key);
+            if (image != null) {
+                hits++;
+                return image;
+            }
+            entry = diskDir != null ? disk.get(key) : null;
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+        }
+        EncodedImage image = readDisk(entry);
+        List<DiskOp> ops = new ArrayList<>();
+        synchronized (this) {
+            if (image == null) {
+                if (disk.get(key) == entry) {
+                    disk.remove(key);
+                    diskBytes -= entry.size;
+                }
+                ops.add(new DiskOp(entry, false));
+                misses++;
+            } else {
+                hits++;
+                diskHits++;
+                putMemory(key, image, ops);
+            }
+        }
+        runDiskOps(ops);
+        return image;
+    }
+
+    synchronized void recordMiss() {
+        misses++;
+    }
+
+    void put(String key, EncodedImage image) {
+        List<DiskOp> ops = new ArrayList<>();
+        synchronized (this) {
+            if (image.size() > maxBytes) {
+                spill(key, image, ops);
+            } else {
+                putMemory(key, image, ops);
+            }
+        }
+        runDiskOps(ops);
+    }
+
+    /** Caller holds the monitor; files to write or delete are added to {@code ops}. */
+    private void putMemory(String key, EncodedImage image, List<DiskOp> ops) {
+        EncodedImage previous = memory.put(key, image);
+        memoryBytes += image.size() - (previous != null ? previous.size() : 0);
+        Iterator<Map.Entry<String, EncodedImage>> eldest = memory.entrySet().iterator();
+        while (memoryBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, EncodedImage> entry = eldest.next();
+            if (entry.getKey().equals(key)) {
+                continue;
+            }
+            eldest.remove();
+            memoryBytes -= entry.getValue().size();
+            spill(entry.getKey(), entry.getValue(), ops);
+        }
+    }
+
+    /** Moves an image to the disk tier; caller holds the monitor and runs {@code ops} after. */
+    private void spill(String key, EncodedImage image, List<DiskOp> ops) {
+        if (diskDir == null || image.size() > maxDiskBytes) {
+            return;
+        }
+        if (disk.get(key) != null) {
+            // Already on disk since an earlier eviction; get() touched it as most recent
+            return;
+        }
+        String extension = "image/jpeg".equals(image.getMimeType()) ? ".jpg" : ".png";
+        DiskEntry added = new DiskEntry(key, diskDir.resolve(key + extension), image);
+        disk.put(key, added);
+        diskBytes += added.size;
+        ops.add(new DiskOp(added, true));
+        Iterator<DiskEntry> eldest = disk.values().iterator();
+        while (diskBytes > maxDiskBytes && eldest.hasNext()) {
+            DiskEntry entry = eldest.next();
+            eldest.remove();
+            diskBytes -= entry.size;
+            ops.add(new DiskOp(entry, false));
+        }
+    }
+
+    /** Performs the file operations decided under the monitor, in order. */
+    private void runDiskOps(List<DiskOp> ops) {
+        if (ops.isEmpty()) {
+            return;
+        }
+        synchronized (diskLock) {
+            for (DiskOp op : ops) {
+                if (op.write) {
+                    write(op.entry);
+                } else {
+                    deleteIfUnmapped(op.entry);
+                }
+            }
+        }
+    }
+
+    /** Caller holds {@link #diskLock}. */
+    private void write(DiskEntry entry) {
+        try (OutputStream out = Files.newOutputStream(entry.file)) {
+            entry.pending.writeTo(out);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Cannot spill render to " + entry.file, e);
+            synchronized (this) {
+                if (disk.get(entry.key) == entry) {
+                    disk.remove(entry.key);
+                    diskBytes -= entry.size;
+                }
+            }
+            deleteIfUnmapped(entry);
+            return;
+        }
+        entry.pending = null;
+        // Evicted again while it was being written
+        deleteIfUnmapped(entry);
+    }
+
+    /** Caller holds {@link #diskLock}. */
+    private void deleteIfUnmapped(DiskEntry entry) {
+        boolean mapped;
+        synchronized (this) {
+            mapped = disk.containsKey(entry.key);
+        }
+        if (!mapped) {
+            delete(entry.file);
+        }
+    }
+
+    private EncodedImage readDisk(DiskEntry entry) {
+        EncodedImage pending = entry.pending;
+        if (pending != null) {
+            return pending;
+        }
+        synchronized (diskLock) {
+            try {
+                return new EncodedImage(Files.readAllBytes(entry.file), entry.mimeType);
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Cannot read spilled render " + entry.file, e);
+                return null;
+            }
+        }
+    }
+
+    private static void deleteStaleFiles(Path dir) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                if (file.getFileName().toString().matches(FILE_PATTERN)) {
+                    delete(file);
+                }
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Cannot list render cache directory " + dir, e);
+        }
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Cannot delete " + file, e);
+        }
+    }
+
+    /** Counters for get_metrics. */
+    public synchronized Map<String, Object> getCounters() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("enabled", isEnabled());
+        counters.put("hits", hits);
+        counters.put("diskHits", diskHits);
+        counters.put("misses", misses);
+        counters.put("entries", memory.size());
+        counters.put("bytes", memoryBytes);
+        counters.put("maxBytes", maxBytes);
+        if (diskDir != null) {
+            counters.put("diskEntries", disk.size());
+            counters.put("diskBytes", diskBytes);
+            counters.put("maxDiskBytes", maxDiskBytes);
+        }
+        return counters;
+    }
+
+    static String digest(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is required on every Java platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Lookups of one render_photo call: the scene part of the key and this call's counts. */
+    final class Scope {
+        private final String scene;
+        private final boolean refresh;
+        private int callHits;
+        private int callMisses;
+
+        private Scope(String scene, boolean refresh) {
+            this.scene = scene;
+            this.refresh = refresh;
+        }
+
+        /** Content address of one image of the scene; {@code options} are joined in order. */
+        String key(Object... options) {
+            StringBuilder text = new StringBuilder(scene);
+            for (Object option : options) {
+                text.append('|').append(option);
+            }
+            return digest(text.toString());
+        }
+
+        /** Cached image, or null to render (always null with refresh). */
+        EncodedImage get(String key) {
+            EncodedImage image;
+            if (refresh) {
+                recordMiss();
+                image = null;
+            } else {
+                image = RenderCache.this.get(key);
+            }
+            if (image != null) {
+                callHits++;
+            } else {
+                callMisses++;
+            }
+            return image;
+        }
+
+        void put(String key, EncodedImage image) {
+            RenderCache.this.put(key, image);
+        }
+
+        /** Response metadata: this call's hits and misses plus the cache totals. */
+        Map<String, Object> describe() {
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("hits", callHits);
+            info.put("misses", callMisses);
+            synchronized (RenderCache.this) {
+                info.put("totalHits", hits);
+                info.put("totalMisses", misses);
+                info.put("entries", memory.size());
+            }
+            return info;
+        }
+    }
+
+    private static final class DiskEntry {
+        final String key;
+        final Path file;
+        final int size;
+        final String mimeType;
+        /** The image until its file is written; then null and reads go to the file. */
+        volatile EncodedImage pending;
+
+        DiskEntry(String key, Path file, EncodedImage image) {
+            this.key = key;
+            this.file = file;
+            this.size = image.size();
+            this.mimeType = image.getMimeType();
+            this.pending = image;
+        }
+    }
+
+    /** A file write or delete decided under the monitor. */
+    private static final class DiskOp {
+        final DiskEntry entry;
+        final boolean write;
+
+        DiskOp(DiskEntry entry, boolean write) {
+            this.entry = entry;
+            this.write = write;
+        }
+    }
+}
@@ -3,28 +3,22 @@ package com.sh3d.mcp.command;
 import com.eteks.sweethome3d.j3d.AbstractPhotoRenderer;
 import com.eteks.sweethome3d.j3d.PhotoRenderer;
 import com.eteks.sweethome3d.model.Camera;
-import com.eteks.sweethome3d.model.Elevatable;
 import com.eteks.sweethome3d.model.Home;
-import com.eteks.sweethome3d.model.HomeFurnitureGroup;
 import com.eteks.sweethome3d.model.HomePieceOfFurniture;
 import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
 import com.eteks.sweethome3d.model.Wall;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.SpatialIndex;
 import com.sh3d.mcp.bridge.ObjectResolver;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.protocol.EncodedImage;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriter;
-import javax.imageio.plugins.jpeg.JPEGImageWriteParam;
-import javax.imageio.stream.ImageOutputStream;
-import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -36,9 +30,7 @@ import static com.sh3d.mcp.command.SchemaUtil.propWithDefault;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Base64;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -65,6 +57,7 @@ import java.util.logging.Logger;
  *   height     — высота изображения в пикселях (default 600, max 4096)
  *   quality    — "low" (быстрый) или "high" (ray-trace) (default "low")
  *   format     — "jpeg" (default inline) или "png" (default filePath)
+ *   pngCompression — уровень deflate для PNG 0..9 (default: по умолчанию кодировщика)
  *   filePath   — путь для сохранения файла (опционально)
  *   view       — "overhead" для bird's eye orbit (опционально)
  *   focusOn    — "furniture:id" или "room:id" для зума на объект (требует overhead)
@@ -73,12 +66,26 @@ import java.util.logging.Logger;
  *   yaw        — горизонтальный поворот в градусах (стандартный режим)
  *   pitch      — вертикальный наклон в градусах (default 30 для overhead)
  *   fov        — угол обзора в градусах (default 63)
+ *   tiles      — рендер тайлами tiles×tiles на нескольких потоках (default 1, max 8)
+ *   region     — {x, y, width, height}: часть кадра (доли 0..1), увеличенная до width
+ *   refresh    — рендерить заново, даже если такое изображение есть в кэше
  * </pre>
+ * Overhead renders work on a prepared clone of the home from {@link RenderSceneCache}, so
+ * rendering the same unchanged scene again skips the clone and the wall/floor preprocessing.
+ * With {@code tiles} or {@code region} the image is assembled by {@link TiledRenderer}.
+ * Images are encoded by pooled {@link ImageEncoder}s outside the model thread. Each encoded
+ * image is kept in the {@link RenderCache}: the same scene, camera and options return it
+ * without rendering again ({@code cached} per image, {@code renderCache} counts in the response).
  */
 public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
 
     private static final Logger LOG = Logger.getLogger(RenderPhotoHandler.class.getName());
 
+    /** Подготовленные клоны дома для overhead-рендера, пока дом не изменился. */
+    private final RenderSceneCache sceneCache = new RenderSceneCache();
+    /** Готовые изображения по сцене, камере и опциям рендера. */
+    private final RenderCache renderCache;
+
     /** Default image width in pixels for standard and inline overhead modes. */
     private static final int DEFAULT_WIDTH = 800;
     /** Default image height in pixels for standard and inline overhead modes. */
@@ -113,7 +120,7 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
     static final float ROOM_PADDING = 50.0f;
 
     /** JPEG compression quality (0.0-1.0). 0.85 balances file size and visual quality. */
-    static final float JPEG_QUALITY = 0.85f;
+    static final float JPEG_QUALITY = ImageEncoder.JPEG_QUALITY;
 
     /** Yaw angles in degrees for the 4 overhead orbital positions (NW, SE, NE, SW). */
     static final float[] OVERHEAD_YAWS = {315f, 135f, 45f, 225f};
@@ -122,6 +129,15 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
             "NW_to_SE", "SE_to_NW", "NE_to_SW", "SW_to_NE"
     };
 
+    /** Default in-memory render cache of {@link PluginConfig#DEFAULT_RENDER_CACHE_MAX_BYTES}, no disk. */
+    public RenderPhotoHandler() {
+        this(new RenderCache(PluginConfig.DEFAULT_RENDER_CACHE_MAX_BYTES, null, 0));
+    }
+
+    public RenderPhotoHandler(RenderCache renderCache) {
+        this.renderCache = renderCache;
+    }
+
     @Override
     public Response execute(Request request, HomeAccessor accessor) {
         int width = (int) request.getFloat("width", DEFAULT_WIDTH);
@@ -159,6 +175,44 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         if (!"png".equals(format) && !"jpeg".equals(format)) {
             return Response.error("Parameter 'format' must be 'png' or 'jpeg', got '" + format + "'");
         }
+        int pngCompression = (int) request.getFloat("pngCompression", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        if (request.getParams().containsKey("pngCompression")
+                && (pngCompression < 0 || pngCompression > ImageEncoder.MAX_PNG_COMPRESSION)) {
+            return Response.error("Parameter 'pngCompression' must be between 0 and "
+                    + ImageEncoder.MAX_PNG_COMPRESSION + ", got " + pngCompression);
+        }
+
+        // Тайлы и region of interest
+        int tiles = (int) request.getFloat("tiles", 1);
+        if (tiles < 1 || tiles > TiledRenderer.MAX_TILES) {
+            return Response.error("Parameter 'tiles' must be between 1 and " + TiledRenderer.MAX_TILES
+                    + ", got " + tiles);
+        }
+        TiledRenderer.Region region = null;
+        if (request.getParams().get("region") != null) {
+            Object regionObj = request.getParams().get("region");
+            if (!(regionObj instanceof Map)) {
+                return Response.error("Parameter 'region' must be an object with x, y, width, height");
+            }
+            String[] keys = {"x", "y", "width", "height"};
+            float[] v = new float[4];
+            for (int i = 0; i < keys.length; i++) {
+                Object value = ((Map<?, ?>) regionObj).get(keys[i]);
+                if (!(value instanceof Number)) {
+                    return Response.error("Parameter 'region' must have numeric '" + keys[i] + "'");
+                }
+                v[i] = ((Number) value).floatValue();
+            }
+            region = new TiledRenderer.Region(v[0], v[1], v[2], v[3]);
+            String regionError = region.validate();
+            if (regionError != null) {
+                return Response.error(regionError);
+            }
+        }
+        TiledRenderer.Layout layout = tiles > 1 || region != null
+                ? new TiledRenderer.Layout(tiles, region != null ? region : TiledRenderer.Region.FULL)
+                : null;
+        boolean refresh = Boolean.TRUE.equals(request.getBoolean("refresh"));
 
         // Проверка view и focusOn
         String view = request.getString("view");
@@ -171,7 +225,8 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
 
         if (view != null) {
             if ("overhead".equalsIgnoreCase(view)) {
-                return executeOverhead(request, accessor, width, height, quality, qualityStr, filePath, format);
+                return executeOverhead(request, accessor, width, height, quality, qualityStr, filePath, format,
+                        pngCompression, layout, refresh);
             }
             return Response.error("Parameter 'view' must be 'overhead', got '" + view + "'");
         }
@@ -211,12 +266,24 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
             }
             return clone;
         });
+        if (layout != null) {
+            String lensError = TiledRenderer.validateLens(camera);
+            if (lensError != null) {
+                return Response.error(lensError);
+            }
+        }
 
+        RenderCache.Scope cacheScope = renderCache.isEnabled()
+                ? accessor.runOnEDT(() -> renderCache.scope(accessor, "standard", refresh))
+                : null;
         boolean supersample = "medium".equals(qualityStr);
         try {
             Map<String, Object> data = renderSingleImage(accessor.getHome(), camera,
-                    width, height, quality, filePath, format, supersample);
+                    width, height, quality, filePath, format, pngCompression, supersample, layout, cacheScope);
             data.put("quality", qualityStr);
+            if (cacheScope != null) {
+                data.put("renderCache", cacheScope.describe());
+            }
 
             LOG.info("Rendered photo " + width + "x" + height + " (" + qualityStr
                     + "), size=" + data.get("size_bytes") + " bytes"
@@ -239,7 +306,8 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                                      int width, int height,
                                      AbstractPhotoRenderer.Quality quality,
                                      String qualityStr, String filePath,
-                                     String format) {
+                                     String format, int pngCompression,
+                                     TiledRenderer.Layout layout, boolean refresh) {
         // Валидация: overhead несовместим с ручными координатами
         if (request.getParams().containsKey("x")
                 || request.getParams().containsKey("y")
@@ -335,6 +403,12 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
             }
             return cam.clone();
         });
+        if (layout != null) {
+            String lensError = TiledRenderer.validateLens(baseCamera);
+            if (lensError != null) {
+                return Response.error(lensError);
+            }
+        }
 
         // Вычисляем камеры для каждого ракурса
         List<Camera> cameras = new ArrayList<>();
@@ -344,24 +418,23 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         }
 
         // Clone the Home to avoid mutating the live object (a parallel get_state
-        // call would see walls with height 1cm if we modified the live Home)
+        // call would see walls with height 1cm if we modified the live Home).
+        // The prepared clone is reused while the home is unchanged. The cache scope is keyed
+        // by the clone's revisions in the same task, so a change made meanwhile cannot file
+        // an image of the old clone under the new state.
+        String variant = hideWalls ? "overhead:hideWalls" : "overhead";
         boolean finalHideWalls = hideWalls;
-        Home renderHome = accessor.runOnEDT(() -> {
-            Home clone = accessor.getHome().clone();
-            // Стены: уменьшить высоту до 1 см если hideWalls=true
-            if (finalHideWalls) {
-                for (Wall wall : clone.getWalls()) {
-                    wall.setHeight(OVERHEAD_WALL_HEIGHT);
-                }
-            }
-            // Полы: серый цвет для комнат без текстур
-            for (Room room : clone.getRooms()) {
-                if (room.getFloorColor() == null && room.getFloorTexture() == null) {
-                    room.setFloorColor(DEFAULT_FLOOR_COLOR);
-                }
+        RenderCache.Scope[] scopeHolder = new RenderCache.Scope[1];
+        RenderSceneCache.Scene scene = accessor.runOnEDT(() -> {
+            RenderSceneCache.Scene prepared = sceneCache.get(accessor, variant,
+                    () -> prepareOverheadHome(accessor.getHome(), finalHideWalls));
+            if (renderCache.isEnabled()) {
+                scopeHolder[0] = renderCache.scope(accessor, prepared.revisions, variant, refresh);
             }
-            return clone;
+            return prepared;
         });
+        Home renderHome = scene.home;
+        RenderCache.Scope cacheScope = scopeHolder[0];
 
         // Render loop
         List<Object> imagesMeta = new ArrayList<>();
@@ -382,7 +455,8 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
 
                 boolean overheadSupersample = "medium".equals(qualityStr);
                 Map<String, Object> imageResult = renderSingleImage(
-                        renderHome, cam, width, height, quality, currentFilePath, format, overheadSupersample);
+                        renderHome, cam, width, height, quality, currentFilePath, format, pngCompression,
+                        overheadSupersample, layout, cacheScope);
                 imageResult.put("index", i);
                 imageResult.put("direction", OVERHEAD_LABELS[i]);
 
@@ -432,6 +506,10 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         if (hideWalls) {
             data.put("hideWalls", true);
         }
+        data.put("sceneReused", scene.reused);
+        if (cacheScope != null) {
+            data.put("renderCache", cacheScope.describe());
+        }
         if (!mcpImages.isEmpty()) {
             data.put("_images", mcpImages);
         }
@@ -444,142 +522,86 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         return Response.ok(data);
     }
 
-    // --- Bounding box ---
-
-    /** Package-private для тестов. */
-    SceneBounds computeSceneBounds(HomeAccessor accessor) {
-        return accessor.runOnEDT(() -> {
-            Home home = accessor.getHome();
-            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
-            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
-            float maxZ = 0;
-            boolean hasContent = false;
-
-            // Стены
-            for (Wall wall : home.getWalls()) {
-                if (isLevelHidden(wall)) {
-                    continue;
-                }
-                float[][] points = wall.getPoints();
-                for (float[] pt : points) {
-                    minX = Math.min(minX, pt[0]);
-                    minY = Math.min(minY, pt[1]);
-                    maxX = Math.max(maxX, pt[0]);
-                    maxY = Math.max(maxY, pt[1]);
-                }
-                Float wallHeight = wall.getHeight();
-                float h = wallHeight != null ? wallHeight : home.getWallHeight();
-                float baseElevation = wall.getLevel() != null ? wall.getLevel().getElevation() : 0;
-                maxZ = Math.max(maxZ, baseElevation + h);
-                hasContent = true;
-            }
-
-            // Мебель
-            for (HomePieceOfFurniture piece : home.getFurniture()) {
-                if (!piece.isVisible()) {
-                    continue;
-                }
-                if (isLevelHidden(piece)) {
-                    continue;
-                }
-                if (piece instanceof HomeFurnitureGroup) {
-                    for (HomePieceOfFurniture child : ((HomeFurnitureGroup) piece).getFurniture()) {
-                        if (child.isVisible()) {
-                            float[][] pts = child.getPoints();
-                            for (float[] pt : pts) {
-                                minX = Math.min(minX, pt[0]);
-                                minY = Math.min(minY, pt[1]);
-                                maxX = Math.max(maxX, pt[0]);
-                                maxY = Math.max(maxY, pt[1]);
-                            }
-                            maxZ = Math.max(maxZ, child.getElevation() + child.getHeight());
-                            hasContent = true;
-                        }
-                    }
-                } else {
-                    float[][] pts = piece.getPoints();
-                    for (float[] pt : pts) {
-                        minX = Math.min(minX, pt[0]);
-                        minY = Math.min(minY, pt[1]);
-                        maxX = Math.max(maxX, pt[0]);
-                        maxY = Math.max(maxY, pt[1]);
-                    }
-                    maxZ = Math.max(maxZ, piece.getElevation() + piece.getHeight());
-                    hasContent = true;
-                }
+    /**
+     * Package-private для тестов. Клон дома для overhead-рендера: стены понижены до
+     * {@link #OVERHEAD_WALL_HEIGHT} (если hideWalls), полы без текстуры — серые.
+     */
+    static Home prepareOverheadHome(Home home, boolean hideWalls) {
+        Home clone = home.clone();
+        // Стены: уменьшить высоту до 1 см если hideWalls=true
+        if (hideWalls) {
+            for (Wall wall : clone.getWalls()) {
+                wall.setHeight(OVERHEAD_WALL_HEIGHT);
             }
-
-            // Комнаты
-            for (Room room : home.getRooms()) {
-                if (isLevelHidden(room)) {
-                    continue;
-                }
-                float[][] points = room.getPoints();
-                for (float[] pt : points) {
-                    minX = Math.min(minX, pt[0]);
-                    minY = Math.min(minY, pt[1]);
-                    maxX = Math.max(maxX, pt[0]);
-                    maxY = Math.max(maxY, pt[1]);
-                }
-                hasContent = true;
+        }
+        // Полы: серый цвет для комнат без текстур
+        for (Room room : clone.getRooms()) {
+            if (room.getFloorColor() == null && room.getFloorTexture() == null) {
+                room.setFloorColor(DEFAULT_FLOOR_COLOR);
             }
+        }
+        return clone;
+    }
 
-            if (!hasContent) {
-                return null;
-            }
+    // --- Bounding box ---
 
-            SceneBounds bounds = new SceneBounds();
-            bounds.minX = minX;
-            bounds.minY = minY;
-            bounds.maxX = maxX;
-            bounds.maxY = maxY;
-            bounds.maxZ = Math.max(maxZ, MIN_SCENE_HEIGHT);
-            bounds.centerX = (minX + maxX) / 2;
-            bounds.centerY = (minY + maxY) / 2;
-            bounds.sceneWidth = maxX - minX;
-            bounds.sceneDepth = maxY - minY;
-            return bounds;
-        });
+    /**
+     * Package-private для тестов. Bounds видимой сцены из пространственного индекса дома
+     * ({@link SpatialIndex}) — без прохода по всем объектам.
+     */
+    SceneBounds computeSceneBounds(HomeAccessor accessor) {
+        SpatialIndex.Bounds indexed = accessor.runOnEDT(() -> accessor.getSpatialIndex().getSceneBounds());
+        if (indexed == null) {
+            return null;
+        }
+        SceneBounds bounds = new SceneBounds();
+        bounds.minX = indexed.getMinX();
+        bounds.minY = indexed.getMinY();
+        bounds.maxX = indexed.getMaxX();
+        bounds.maxY = indexed.getMaxY();
+        bounds.maxZ = Math.max(indexed.getMaxZ(), MIN_SCENE_HEIGHT);
+        bounds.centerX = (bounds.minX + bounds.maxX) / 2;
+        bounds.centerY = (bounds.minY + bounds.maxY) / 2;
+        bounds.sceneWidth = bounds.maxX - bounds.minX;
+        bounds.sceneDepth = bounds.maxY - bounds.minY;
+        return bounds;
     }
 
-    /** Package-private для тестов. Вычисляет bounds конкретного объекта + padding. */
+    /**
+     * Package-private для тестов. Bounds конкретного объекта + padding; рамка в плане берётся
+     * из индекса, где она запомнена до следующего изменения объекта.
+     */
     SceneBounds computeFocusBounds(HomeAccessor accessor, String type, String id) {
         return accessor.runOnEDT(() -> {
             Home home = accessor.getHome();
-            float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
-            float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
-            float maxZ = 0;
+            Selectable item;
+            float maxZ;
 
             if ("furniture".equals(type)) {
                 HomePieceOfFurniture piece = ObjectResolver.findFurniture(home, id);
                 if (piece == null) {
                     return null;
                 }
-                float[][] pts = piece.getPoints();
-                for (float[] pt : pts) {
-                    minX = Math.min(minX, pt[0]);
-                    minY = Math.min(minY, pt[1]);
-                    maxX = Math.max(maxX, pt[0]);
-                    maxY = Math.max(maxY, pt[1]);
-                }
+                item = piece;
                 maxZ = piece.getElevation() + piece.getHeight();
             } else if ("room".equals(type)) {
                 Room room = ObjectResolver.findRoom(home, id);
                 if (room == null) {
                     return null;
                 }
-                float[][] pts = room.getPoints();
-                for (float[] pt : pts) {
-                    minX = Math.min(minX, pt[0]);
-                    minY = Math.min(minY, pt[1]);
-                    maxX = Math.max(maxX, pt[0]);
-                    maxY = Math.max(maxY, pt[1]);
-                }
+                item = room;
                 maxZ = home.getWallHeight();
             } else {
                 return null;
             }
-
+            SpatialIndex.Bounds itemBounds = accessor.getSpatialIndex().getItemBounds(item);
+            if (itemBounds == null) {
+                return null;
+            }
+            float minX = itemBounds.getMinX();
+            float minY = itemBounds.getMinY();
+            float maxX = itemBounds.getMaxX();
+            float maxY = itemBounds.getMaxY();
             maxZ = Math.max(maxZ, MIN_SCENE_HEIGHT);
 
             // Padding: мебель — 50% от размера (min 100 см), комната — фикс. 50 см
@@ -610,16 +632,6 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         });
     }
 
-    private static boolean isLevelHidden(Object item) {
-        if (item instanceof Elevatable) {
-            com.eteks.sweethome3d.model.Level level = ((Elevatable) item).getLevel();
-            if (level != null && !level.isViewableAndVisible()) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     // --- Camera computation ---
 
     /** Package-private для тестов. */
@@ -677,7 +689,8 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                                                    AbstractPhotoRenderer.Quality quality,
                                                    String filePath,
                                                    String format) throws Exception {
-        return renderSingleImage(home, camera, width, height, quality, filePath, format, false);
+        return renderSingleImage(home, camera, width, height, quality, filePath, format,
+                ImageEncoder.DEFAULT_PNG_COMPRESSION, false, null, null);
     }
 
     private Map<String, Object> renderSingleImage(Home home, Camera camera,
@@ -685,7 +698,103 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                                                    AbstractPhotoRenderer.Quality quality,
                                                    String filePath,
                                                    String format,
-                                                   boolean supersample) throws Exception {
+                                                   int pngCompression,
+                                                   boolean supersample,
+                                                   TiledRenderer.Layout layout,
+                                                   RenderCache.Scope cacheScope) throws Exception {
+        int frameHeight = height;
+        if (layout != null) {
+            height = layout.outputHeight(width, frameHeight, MAX_DIMENSION);
+        }
+        String cacheKey = null;
+        EncodedImage encoded = null;
+        if (cacheScope != null) {
+            cacheKey = cacheScope.key(camera.getX(), camera.getY(), camera.getZ(), camera.getYaw(),
+                    camera.getPitch(), camera.getFieldOfView(), camera.getTime(), camera.getLens(),
+                    width, frameHeight, quality, supersample, format, pngCompression,
+                    layout != null ? layout.tiles : 1,
+                    layout != null ? layout.region.x + "," + layout.region.y + ","
+                            + layout.region.width + "," + layout.region.height : "full");
+            encoded = cacheScope.get(cacheKey);
+        }
+        boolean cached = encoded != null;
+        if (encoded == null) {
+            encoded = ImageEncoder.encode(renderImage(home, camera, width, height, frameHeight,
+                    quality, supersample, layout), format, pngCompression);
+            if (cacheScope != null) {
+                cacheScope.put(cacheKey, encoded);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        if (filePath != null && !filePath.trim().isEmpty()) {
+            // File mode: сохранение на диск
+            Path path = Paths.get(filePath).toAbsolutePath().normalize();
+            String pathLower = path.toString().toLowerCase();
+            if ("jpeg".equals(format)) {
+                if (pathLower.endsWith(".png")) {
+                    path = Paths.get(path.toString().substring(0, path.toString().length() - 4) + ".jpg");
+                } else if (!pathLower.endsWith(".jpg") && !pathLower.endsWith(".jpeg")) {
+                    path = Paths.get(path.toString() + ".jpg");
+                }
+            } else {
+                if (!pathLower.endsWith(".png")) {
+                    path = Paths.get(path.toString() + ".png");
+                }
+            }
+            Path parent = path.getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (OutputStream out = Files.newOutputStream(path)) {
+                encoded.writeTo(out);
+            }
+            result.put("filePath", path.toString());
+            result.put("format", format);
+        } else {
+            // Inline mode: MCP image content, base64-encoded when the response is written
+            result.put("_image", encoded);
+            result.put("_mimeType", encoded.getMimeType());
+            result.put("format", format);
+        }
+
+        result.put("width", width);
+        result.put("height", height);
+        result.put("size_bytes", encoded.size());
+        if (cacheScope != null) {
+            result.put("cached", cached);
+        }
+        if (layout != null) {
+            result.put("tiles", layout.tiles);
+            Map<String, Object> regionInfo = new LinkedHashMap<>();
+            regionInfo.put("x", round2(layout.region.x));
+            regionInfo.put("y", round2(layout.region.y));
+            regionInfo.put("width", round2(layout.region.width));
+            regionInfo.put("height", round2(layout.region.height));
+            result.put("region", regionInfo);
+        }
+
+        Map<String, Object> camInfo = new LinkedHashMap<>();
+        camInfo.put("x", round2(camera.getX()));
+        camInfo.put("y", round2(camera.getY()));
+        camInfo.put("z", round2(camera.getZ()));
+        camInfo.put("yaw_degrees", round2(Math.toDegrees(camera.getYaw())));
+        camInfo.put("pitch_degrees", round2(Math.toDegrees(camera.getPitch())));
+        camInfo.put("fov_degrees", round2(Math.toDegrees(camera.getFieldOfView())));
+        result.put("camera", camInfo);
+
+        return result;
+    }
+
+    /** Рендерит кадр (или его region) размером width × height. */
+    private static BufferedImage renderImage(Home home, Camera camera, int width, int height, int frameHeight,
+                                             AbstractPhotoRenderer.Quality quality, boolean supersample,
+                                             TiledRenderer.Layout layout) throws Exception {
+        if (layout != null) {
+            // Tiles supersample each pixel themselves, without a 2x frame
+            return TiledRenderer.render(camera, layout.region, (float) frameHeight / width,
+                    width, height, layout.tiles, supersample ? 2 : 1, () -> photoTileRenderer(home, quality));
+        }
         PhotoRenderer renderer = null;
         try {
             // Supersampling: render at 2x resolution, then downscale with bicubic interpolation
@@ -705,69 +814,37 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                 g.dispose();
                 image = downscaled;
             }
-
-            Map<String, Object> result = new LinkedHashMap<>();
-            int sizeBytes;
-
-            if (filePath != null && !filePath.trim().isEmpty()) {
-                // File mode: сохранение на диск
-                Path path = Paths.get(filePath).toAbsolutePath().normalize();
-                String pathLower = path.toString().toLowerCase();
-                if ("jpeg".equals(format)) {
-                    if (pathLower.endsWith(".png")) {
-                        path = Paths.get(path.toString().substring(0, path.toString().length() - 4) + ".jpg");
-                    } else if (!pathLower.endsWith(".jpg") && !pathLower.endsWith(".jpeg")) {
-                        path = Paths.get(path.toString() + ".jpg");
-                    }
-                } else {
-                    if (!pathLower.endsWith(".png")) {
-                        path = Paths.get(path.toString() + ".png");
-                    }
-                }
-                Path parent = path.getParent();
-                if (parent != null) {
-                    Files.createDirectories(parent);
+            return image;
+        } finally {
+            if (renderer != null) {
+                try {
+                    renderer.dispose();
+                } catch (Exception e) {
+                    LOG.log(Level.FINE, "Error disposing renderer", e);
                 }
-                File file = path.toFile();
-                writeImage(image, format, file);
-                sizeBytes = (int) Files.size(path);
-                result.put("filePath", path.toString());
-                result.put("format", format);
-            } else {
-                // Inline mode: MCP image content
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                writeImage(image, format, baos);
-                String base64 = Base64.getEncoder().encodeToString(baos.toByteArray());
-                sizeBytes = baos.size();
-                String mimeType = "jpeg".equals(format) ? "image/jpeg" : "image/png";
-                result.put("_image", base64);
-                result.put("_mimeType", mimeType);
-                result.put("format", format);
             }
+        }
+    }
 
-            result.put("width", width);
-            result.put("height", height);
-            result.put("size_bytes", sizeBytes);
-
-            Map<String, Object> camInfo = new LinkedHashMap<>();
-            camInfo.put("x", round2(camera.getX()));
-            camInfo.put("y", round2(camera.getY()));
-            camInfo.put("z", round2(camera.getZ()));
-            camInfo.put("yaw_degrees", round2(Math.toDegrees(camera.getYaw())));
-            camInfo.put("pitch_degrees", round2(Math.toDegrees(camera.getPitch())));
-            camInfo.put("fov_degrees", round2(Math.toDegrees(camera.getFieldOfView())));
-            result.put("camera", camInfo);
+    /** Sunflow renderer of one tile worker, built from the home on that worker's thread. */
+    private static TiledRenderer.TileRenderer photoTileRenderer(Home home,
+                                                                AbstractPhotoRenderer.Quality quality) throws Exception {
+        PhotoRenderer renderer = new PhotoRenderer(home, quality);
+        return new TiledRenderer.TileRenderer() {
+            @Override
+            public void render(BufferedImage image, Camera camera) throws Exception {
+                renderer.render(image, camera, null);
+            }
 
-            return result;
-        } finally {
-            if (renderer != null) {
+            @Override
+            public void dispose() {
                 try {
                     renderer.dispose();
                 } catch (Exception e) {
                     LOG.log(Level.FINE, "Error disposing renderer", e);
                 }
             }
-        }
+        };
     }
 
     // --- Helpers ---
@@ -787,62 +864,6 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
         return clean + "_" + index;
     }
 
-    /**
-     * Записывает изображение в указанном формате (png/jpeg).
-     * JPEG записывается с quality {@link #JPEG_QUALITY}.
-     */
-    private static void writeImage(BufferedImage image, String format, File file) throws Exception {
-        if ("jpeg".equals(format)) {
-            try (ImageOutputStream ios = ImageIO.createImageOutputStream(file)) {
-                writeJpeg(ensureRgb(image), ios);
-            }
-        } else {
-            ImageIO.write(image, "png", file);
-        }
-    }
-
-    private static void writeImage(BufferedImage image, String format,
-                                    ByteArrayOutputStream baos) throws Exception {
-        if ("jpeg".equals(format)) {
-            try (ImageOutputStream ios = new MemoryCacheImageOutputStream(baos)) {
-                writeJpeg(ensureRgb(image), ios);
-            }
-        } else {
-            ImageIO.write(image, "png", baos);
-        }
-    }
-
-    private static void writeJpeg(BufferedImage image, ImageOutputStream ios) throws Exception {
-        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
-        if (!writers.hasNext()) {
-            throw new IllegalStateException("No JPEG ImageWriter available");
-        }
-        ImageWriter writer = writers.next();
-        try {
-            JPEGImageWriteParam param = new JPEGImageWriteParam(null);
-            param.setCompressionMode(JPEGImageWriteParam.MODE_EXPLICIT);
-            param.setCompressionQuality(JPEG_QUALITY);
-            writer.setOutput(ios);
-            writer.write(null, new IIOImage(image, null, null), param);
-        } finally {
-            writer.dispose();
-        }
-    }
-
-    /** Конвертирует ARGB в RGB для JPEG (JPEG не поддерживает alpha). */
-    private static BufferedImage ensureRgb(BufferedImage image) {
-        if (image.getType() == BufferedImage.TYPE_INT_ARGB
-                || image.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
-            BufferedImage rgb = new BufferedImage(
-                    image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-            Graphics2D g = rgb.createGraphics();
-            g.drawImage(image, 0, 0, null);
-            g.dispose();
-            return rgb;
-        }
-        return image;
-    }
-
     // --- Value object ---
 
     static class SceneBounds {
@@ -852,6 +873,11 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
 
     // --- Descriptor ---
 
+    @Override
+    public CostClass getCostClass() {
+        return CostClass.HEAVY;
+    }
+
     @Override
     public String getDescription() {
         return "Renders a 3D photo of the current scene using ray-tracing (Sunflow). "
@@ -869,7 +895,11 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                 + "If 'filePath' is provided, saves image(s) to disk and returns only metadata (no base64). "
                 + "Use quality 'low' for quick preview, 'medium' for supersampled output "
                 + "(renders at 2x resolution then downscales — smoother than low, similar speed), "
-                + "or 'high' for photo-realistic ray-traced output.";
+                + "or 'high' for photo-realistic ray-traced output.\n\n"
+                + "Use region={x, y, width, height} (fractions of the frame) to render a detail of the "
+                + "view at higher resolution, and tiles=2..8 to render large images in parallel tiles.\n\n"
+                + "Identical requests for an unchanged scene return the cached image instantly "
+                + "(cached=true); set refresh=true to force a new render.";
     }
 
     @Override
@@ -909,6 +939,12 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                 "jpeg", "png");
         formatProp.put("default", "jpeg");
         properties.put("format", formatProp);
+        Map<String, Object> pngCompressionProp = prop("integer",
+                "PNG deflate level: 0-3 encode large images several times faster but bigger, "
+                        + "9 is smallest. Default: the encoder's balanced level (4). Only used with format='png'.");
+        pngCompressionProp.put("minimum", 0);
+        pngCompressionProp.put("maximum", ImageEncoder.MAX_PNG_COMPRESSION);
+        properties.put("pngCompression", pngCompressionProp);
         properties.put("filePath", prop("string",
                 "Absolute path to save image file(s). Extension is auto-corrected to match format. "
                         + "For overhead with angles=4, files are saved as {path}_1 through {path}_4."));
@@ -921,6 +957,35 @@ public class RenderPhotoHandler implements CommandHandler, CommandDescriptor {
                         + "(default 30, range 0-90). For standard mode: negative = looking down."));
         properties.put("fov", propWithDefault("number", "Camera field of view in degrees", 63));
 
+        Map<String, Object> tilesProp = propWithDefault("integer",
+                "Split the image into tiles x tiles parts rendered in parallel (1 = whole frame). "
+                        + "Use for large images: memory stays bounded and quality='medium' supersamples "
+                        + "per tile instead of rendering a 2x frame. Not available with a fisheye or "
+                        + "spherical camera lens; a normal lens renders without depth of field.", 1);
+        tilesProp.put("minimum", 1);
+        tilesProp.put("maximum", TiledRenderer.MAX_TILES);
+        properties.put("tiles", tilesProp);
+
+        Map<String, Object> regionProp = new LinkedHashMap<>();
+        regionProp.put("type", "object");
+        regionProp.put("description", "Render only this part of the camera frame, enlarged to the "
+                + "requested width (height follows the region's proportions). Fractions of the frame, "
+                + "from its top-left corner: {x, y, width, height}, e.g. {x: 0.5, y: 0.5, width: 0.25, "
+                + "height: 0.25} renders a quarter-size detail at 4x resolution");
+        Map<String, Object> regionProps = new LinkedHashMap<>();
+        for (String key : new String[] {"x", "y", "width", "height"}) {
+            Map<String, Object> number = new LinkedHashMap<>();
+            number.put("type", "number");
+            number.put("minimum", 0);
+            number.put("maximum", 1);
+            regionProps.put(key, number);
+        }
+        regionProp.put("properties", regionProps);
+        regionProp.put("required", Arrays.asList("x", "y", "width", "height"));
+        properties.put("region", regionProp);
+        properties.put("refresh", propWithDefault("boolean",
+                "Render again even if an identical image of the unchanged scene is cached", false));
+
         schema.put("properties", properties);
         schema.put("required", Collections.emptyList());
         return schema;
@@ -0,0 +1,81 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Compass;
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRevisions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Кэш подготовленных для рендера клонов Home.
+ * <p>
+ * Rendering must not touch the live home, so each render works on a deep clone that the
+ * caller may also preprocess (overhead mode lowers every wall and greys untextured floors).
+ * The prepared clone is kept with the {@link HomeRevisions#snapshot()} it was taken at, one
+ * per home and option key; the next render with the same options reuses it while no
+ * counter has moved and the compass (sun position) is unchanged, skipping both the clone
+ * and the preprocessing. The compass is compared by value, as it is not revision-tracked. Clones are never
+ * modified once prepared, so concurrent renders may share one. Weak keys do not retain
+ * closed homes.
+ */
+final class RenderSceneCache {
+
+    private final Map<HomeRevisions, Map<Object, Scene>> scenes = new WeakHashMap<>();
+
+    /**
+     * Returns the prepared clone for the options, building it with {@code prepare} if the home
+     * changed since it was cached. Call on the model thread, so the revisions read here match
+     * the home that {@code prepare} clones.
+     *
+     * @param options key of everything {@code prepare} depends on besides the home
+     */
+    Scene get(HomeAccessor accessor, Object options, Supplier<Home> prepare) {
+        HomeRevisions revisions = accessor.getRevisions();
+        long[] snapshot = revisions.snapshot();
+        List<Object> compass = compassState(accessor.getHome().getCompass());
+        synchronized (scenes) {
+            Scene cached = scenes.getOrDefault(revisions, Collections.emptyMap()).get(options);
+            if (cached != null && Arrays.equals(cached.revisions, snapshot) && cached.compass.equals(compass)) {
+                return cached.reused();
+            }
+        }
+        Scene scene = new Scene(prepare.get(), snapshot, compass, false);
+        synchronized (scenes) {
+            scenes.computeIfAbsent(revisions, r -> new HashMap<>()).put(options, scene);
+        }
+        return scene;
+    }
+
+    /** Compass fields the sun position depends on, as in the {@link RenderCache} key. */
+    private static List<Object> compassState(Compass compass) {
+        return Arrays.asList(compass.getLatitude(), compass.getLongitude(),
+                compass.getNorthDirection(), compass.getTimeZone());
+    }
+
+    /** Подготовленный клон и ревизии дома, с которых он снят. */
+    static final class Scene {
+        final Home home;
+        final long[] revisions;
+        private final List<Object> compass;
+        /** True when this call reused a clone prepared by an earlier one. */
+        final boolean reused;
+
+        private Scene(Home home, long[] revisions, List<Object> compass, boolean reused) {
+            this.home = home;
+            this.revisions = revisions;
+            this.compass = compass;
+            this.reused = reused;
+        }
+
+        private Scene reused() {
+            return new Scene(home, revisions, compass, true);
+        }
+    }
+}
@@ -45,16 +45,17 @@ public class RestoreCheckpointHandler implements CommandHandler, CommandDescript
         boolean isForce = Boolean.TRUE.equals(force);
 
         // Resolve snapshot
+        CheckpointManager checkpoints = CheckpointManager.forHome(accessor, checkpointManager);
         CheckpointManager.Snapshot snapshot;
         try {
             if (id != null) {
                 if (isForce) {
-                    snapshot = checkpointManager.restoreForce(id);
+                    snapshot = checkpoints.restoreForce(id);
                 } else {
-                    snapshot = checkpointManager.restore(id);
+                    snapshot = checkpoints.restore(id);
                 }
             } else {
-                snapshot = checkpointManager.restore();
+                snapshot = checkpoints.restore();
             }
         } catch (IllegalStateException | IllegalArgumentException e) {
             return Response.error(e.getMessage());
@@ -105,7 +106,7 @@ public class RestoreCheckpointHandler implements CommandHandler, CommandDescript
 
             // Build response
             Map<String, Object> result = new LinkedHashMap<>();
-            result.put("restoredTo", checkpointManager.getCursor());
+            result.put("restoredTo", checkpoints.getCursor());
             result.put("description", snapshot.getDescription());
             result.put("levels", levels);
             result.put("walls", walls);
@@ -114,7 +115,7 @@ public class RestoreCheckpointHandler implements CommandHandler, CommandDescript
             result.put("labels", labels);
             result.put("dimensionLines", dimensionLines);
             result.put("polylines", polylines);
-            result.put("depth", checkpointManager.size());
+            result.put("depth", checkpoints.size());
             return result;
         });
 
@@ -0,0 +1,214 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeObject;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.ObjectResolver;
+import com.sh3d.mcp.protocol.Request;
+
+import static com.sh3d.mcp.command.FormatUtil.round2;
+
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Общие части query_region и nearest_objects: типы объектов, уровень, точная геометрия
+ * footprint'ов и компактное описание найденного объекта.
+ * <p>
+ * Footprints are the objects' plan points: a polygon for walls, furniture and rooms, a single
+ * point for labels. Distances are exact between footprints; the spatial index only supplies
+ * candidates by bounding box.
+ */
+final class SpatialQueries {
+
+    /** Object types the spatial tools return, in response order. */
+    static final List<String> TYPES = Collections.unmodifiableList(
+            Arrays.asList("wall", "furniture", "room", "label"));
+
+    private SpatialQueries() {
+    }
+
+    /**
+     * Parses the optional {@code types} parameter; all types when absent.
+     *
+     * @throws IllegalArgumentException with a message for the client
+     */
+    static Set<String> parseTypes(Request request) {
+        Object typesObj = request.getParams().get("types");
+        if (typesObj == null) {
+            return new LinkedHashSet<>(TYPES);
+        }
+        if (!(typesObj instanceof List) || ((List<?>) typesObj).isEmpty()) {
+            throw new IllegalArgumentException("Parameter 'types' must be a non-empty array of " + TYPES);
+        }
+        Set<String> types = new LinkedHashSet<>();
+        for (Object type : (List<?>) typesObj) {
+            if (!TYPES.contains(type)) {
+                throw new IllegalArgumentException("Unknown type in 'types': '" + type + "'. Expected one of " + TYPES);
+            }
+            types.add((String) type);
+        }
+        return types;
+    }
+
+    /**
+     * Level to search: the given one, or the selected level when {@code levelId} is null
+     * (itself null in a home without levels). Returns null for an unknown {@code levelId}.
+     */
+    static Level resolveLevel(Home home, String levelId) {
+        return levelId == null ? home.getSelectedLevel() : ObjectResolver.findLevel(home, levelId);
+    }
+
+    /** Wall, piece, room or label with the ID, or null. */
+    static Selectable findObject(Home home, String id) {
+        Wall wall = ObjectResolver.findWall(home, id);
+        if (wall != null) {
+            return wall;
+        }
+        HomePieceOfFurniture piece = ObjectResolver.findFurniture(home, id);
+        if (piece != null) {
+            return piece;
+        }
+        Room room = ObjectResolver.findRoom(home, id);
+        if (room != null) {
+            return room;
+        }
+        return ObjectResolver.findLabel(home, id);
+    }
+
+    /** Type name of a spatial tool result, or null for objects these tools do not return. */
+    static String typeOf(Selectable item) {
+        if (item instanceof Wall) {
+            return "wall";
+        }
+        if (item instanceof HomePieceOfFurniture) {
+            return "furniture";
+        }
+        if (item instanceof Room) {
+            return "room";
+        }
+        if (item instanceof Label) {
+            return "label";
+        }
+        return null;
+    }
+
+    /** ID, type, name or text, and the footprint's bounding box — no colors, textures or polygons. */
+    static Map<String, Object> describe(Selectable item, float[][] footprint) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("id", ((HomeObject) item).getId());
+        info.put("type", typeOf(item));
+        if (item instanceof Wall) {
+            Wall wall = (Wall) item;
+            info.put("xStart", round2(wall.getXStart()));
+            info.put("yStart", round2(wall.getYStart()));
+            info.put("xEnd", round2(wall.getXEnd()));
+            info.put("yEnd", round2(wall.getYEnd()));
+        } else if (item instanceof HomePieceOfFurniture) {
+            HomePieceOfFurniture piece = (HomePieceOfFurniture) item;
+            info.put("name", piece.getName());
+            info.put("x", round2(piece.getX()));
+            info.put("y", round2(piece.getY()));
+        } else if (item instanceof Room) {
+            info.put("name", ((Room) item).getName());
+        } else if (item instanceof Label) {
+            Label label = (Label) item;
+            info.put("text", label.getText());
+            info.put("x", round2(label.getX()));
+            info.put("y", round2(label.getY()));
+        }
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (float[] pt : footprint) {
+            minX = Math.min(minX, pt[0]);
+            minY = Math.min(minY, pt[1]);
+            maxX = Math.max(maxX, pt[0]);
+            maxY = Math.max(maxY, pt[1]);
+        }
+        Map<String, Object> bbox = new LinkedHashMap<>();
+        bbox.put("minX", round2(minX));
+        bbox.put("minY", round2(minY));
+        bbox.put("maxX", round2(maxX));
+        bbox.put("maxY", round2(maxY));
+        info.put("bbox", bbox);
+        return info;
+    }
+
+    // --- Geometry ---
+
+    /** Axis-aligned rectangle as a footprint. */
+    static float[][] rectangle(float minX, float minY, float maxX, float maxY) {
+        return new float[][] {{minX, minY}, {maxX, minY}, {maxX, maxY}, {minX, maxY}};
+    }
+
+    /**
+     * Shortest distance between two footprints; 0 when they touch, overlap or one contains
+     * the other. A footprint of one point is a point, of two a segment, of more a polygon.
+     */
+    static double distance(float[][] a, float[][] b) {
+        if (contains(a, b[0]) || contains(b, a[0])) {
+            return 0;
+        }
+        double best = Double.MAX_VALUE;
+        int edgesA = edgeCount(a);
+        int edgesB = edgeCount(b);
+        for (int i = 0; i < edgesA; i++) {
+            float[] a1 = a[i];
+            float[] a2 = a[(i + 1) % a.length];
+            for (int j = 0; j < edgesB; j++) {
+                float[] b1 = b[j];
+                float[] b2 = b[(j + 1) % b.length];
+                // linesIntersect treats a zero-length edge as crossing everything
+                if (a1 != a2 && b1 != b2
+                        && Line2D.linesIntersect(a1[0], a1[1], a2[0], a2[1], b1[0], b1[1], b2[0], b2[1])) {
+                    return 0;
+                }
+                best = Math.min(best, Math.min(
+                        Math.min(Line2D.ptSegDist(a1[0], a1[1], a2[0], a2[1], b1[0], b1[1]),
+                                Line2D.ptSegDist(a1[0], a1[1], a2[0], a2[1], b2[0], b2[1])),
+                        Math.min(Line2D.ptSegDist(b1[0], b1[1], b2[0], b2[1], a1[0], a1[1]),
+                                Line2D.ptSegDist(b1[0], b1[1], b2[0], b2[1], a2[0], a2[1]))));
+            }
+        }
+        return best;
+    }
+
+    /** A point has one degenerate edge (itself), a segment one edge, a polygon one per vertex. */
+    private static int edgeCount(float[][] shape) {
+        return shape.length <= 2 ? 1 : shape.length;
+    }
+
+    private static boolean contains(float[][] polygon, float[] point) {
+        if (polygon.length < 3) {
+            return false;
+        }
+        Path2D.Float path = new Path2D.Float();
+        path.moveTo(polygon[0][0], polygon[0][1]);
+        for (int i = 1; i < polygon.length; i++) {
+            path.lineTo(polygon[i][0], polygon[i][1]);
+        }
+        path.closePath();
+        return path.contains(point[0], point[1]);
+    }
+
+    /** Largest distance from (x, y) to a point of the footprint. */
+    static double extent(float[][] footprint, float x, float y) {
+        double radius = 0;
+        for (float[] pt : footprint) {
+            radius = Math.max(radius, Math.hypot(pt[0] - x, pt[1] - y));
+        }
+        return radius;
+    }
+}
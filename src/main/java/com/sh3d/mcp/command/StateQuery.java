@@ -0,0 +1,213 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.protocol.Request;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Параметры выборки get_state: include, fields, levelId, bbox, limit и cursor.
+ * <p>
+ * Parsed and validated before any EDT work. Without any of these parameters get_state
+ * returns the whole scene exactly as before.
+ */
+final class StateQuery {
+
+    /** Sections of the get_state response in output order. */
+    static final List<String> SECTIONS = Collections.unmodifiableList(Arrays.asList(
+            "walls", "furniture", "rooms", "labels", "dimensionLines",
+            "camera", "storedCameras", "levels", "environment"));
+
+    /** Maximum page size. */
+    static final int MAX_LIMIT = 1000;
+
+    private final Set<String> include;
+    private final Map<String, Set<String>> fields;
+    private final String levelId;
+    private final float[] bbox;
+    private final int limit;
+    private final int cursorFingerprint;
+    private final int cursorPosition;
+
+    private StateQuery(Set<String> include, Map<String, Set<String>> fields, String levelId,
+                       float[] bbox, int limit, int cursorFingerprint, int cursorPosition) {
+        this.include = include;
+        this.fields = fields;
+        this.levelId = levelId;
+        this.bbox = bbox;
+        this.limit = limit;
+        this.cursorFingerprint = cursorFingerprint;
+        this.cursorPosition = cursorPosition;
+    }
+
+    /**
+     * Parses the request parameters.
+     *
+     * @param knownFields field names of each collection section, for validating {@code fields}
+     * @throws IllegalArgumentException with a message for the client if a parameter is invalid
+     */
+    static StateQuery parse(Request request, Map<String, List<String>> knownFields) {
+        Map<String, Object> params = request.getParams();
+
+        Set<String> include = null;
+        Object includeObj = params.get("include");
+        if (includeObj != null) {
+            include = new LinkedHashSet<>();
+            for (Object section : asList(includeObj, "include")) {
+                if (!SECTIONS.contains(section)) {
+                    throw new IllegalArgumentException("Unknown section in 'include': '" + section
+                            + "'. Expected one of " + SECTIONS);
+                }
+                include.add((String) section);
+            }
+        }
+
+        Map<String, Set<String>> fields = Collections.emptyMap();
+        Object fieldsObj = params.get("fields");
+        if (fieldsObj != null) {
+            if (!(fieldsObj instanceof Map)) {
+                throw new IllegalArgumentException(
+                        "Parameter 'fields' must be an object like {\"walls\": [\"xStart\", \"yStart\"]}");
+            }
+            fields = new HashMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) fieldsObj).entrySet()) {
+                String section = String.valueOf(entry.getKey());
+                List<String> known = knownFields.get(section);
+                if (known == null) {
+                    throw new IllegalArgumentException("Parameter 'fields' applies to collections only, got '"
+                            + section + "'. Expected one of " + knownFields.keySet());
+                }
+                Set<String> selected = new LinkedHashSet<>();
+                selected.add("id");
+                for (Object field : asList(entry.getValue(), "fields." + section)) {
+                    if (!known.contains(field)) {
+                        throw new IllegalArgumentException("Unknown field '" + field + "' for " + section
+                                + ". Expected one of " + known);
+                    }
+                    selected.add((String) field);
+                }
+                fields.put(section, selected);
+            }
+        }
+
+        String levelId = request.getString("levelId");
+
+        float[] bbox = null;
+        Object bboxObj = params.get("bbox");
+        if (bboxObj != null) {
+            if (!(bboxObj instanceof Map)) {
+                throw new IllegalArgumentException("Parameter 'bbox' must be an object with minX, minY, maxX, maxY");
+            }
+            Map<?, ?> box = (Map<?, ?>) bboxObj;
+            bbox = new float[4];
+            String[] keys = {"minX", "minY", "maxX", "maxY"};
+            for (int i = 0; i < keys.length; i++) {
+                Object value = box.get(keys[i]);
+                if (!(value instanceof Number)) {
+                    throw new IllegalArgumentException("Parameter 'bbox' must have numeric '" + keys[i] + "'");
+                }
+                bbox[i] = ((Number) value).floatValue();
+            }
+            if (bbox[0] > bbox[2] || bbox[1] > bbox[3]) {
+                throw new IllegalArgumentException("Parameter 'bbox' must have minX <= maxX and minY <= maxY");
+            }
+        }
+
+        int limit = (int) request.getFloat("limit", 0);
+        if (params.containsKey("limit") && (limit < 1 || limit > MAX_LIMIT)) {
+            throw new IllegalArgumentException("Parameter 'limit' must be between 1 and " + MAX_LIMIT
+                    + ", got " + limit);
+        }
+
+        int cursorFingerprint = 0;
+        int cursorPosition = -1;
+        String cursor = request.getString("cursor");
+        if (cursor != null) {
+            if (limit == 0) {
+                throw new IllegalArgumentException("Parameter 'cursor' requires 'limit'");
+            }
+            int dash = cursor.indexOf('-');
+            try {
+                cursorFingerprint = Integer.parseUnsignedInt(cursor.substring(0, dash), 16);
+                cursorPosition = Integer.parseInt(cursor.substring(dash + 1));
+            } catch (RuntimeException e) {
+                cursorPosition = -1;
+            }
+            if (cursorPosition < 0) {
+                throw new IllegalArgumentException("Invalid 'cursor': '" + cursor
+                        + "'. Pass the nextCursor of the previous page");
+            }
+        }
+        return new StateQuery(include, fields, levelId, bbox, limit, cursorFingerprint, cursorPosition);
+    }
+
+    private static List<?> asList(Object value, String name) {
+        if (!(value instanceof List)) {
+            throw new IllegalArgumentException("Parameter '" + name + "' must be an array of strings");
+        }
+        for (Object item : (List<?>) value) {
+            if (!(item instanceof String)) {
+                throw new IllegalArgumentException("Parameter '" + name + "' must be an array of strings");
+            }
+        }
+        return (List<?>) value;
+    }
+
+    boolean includes(String section) {
+        return include == null || include.contains(section);
+    }
+
+    /** Selected fields of a collection section, or {@code null} for all of them. */
+    Set<String> fieldsOf(String section) {
+        return fields.get(section);
+    }
+
+    boolean isFiltered() {
+        return levelId != null || bbox != null;
+    }
+
+    String getLevelId() {
+        return levelId;
+    }
+
+    /** minX, minY, maxX, maxY, or {@code null} without a bbox filter. */
+    float[] getBbox() {
+        return bbox;
+    }
+
+    boolean isPaged() {
+        return limit > 0;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    boolean hasCursor() {
+        return cursorPosition >= 0;
+    }
+
+    int getCursorFingerprint() {
+        return cursorFingerprint;
+    }
+
+    /** Position of the first object of the page; 0 without a cursor. */
+    int getCursorPosition() {
+        return Math.max(cursorPosition, 0);
+    }
+
+    /** Hash of everything that shapes the result set, so a cursor cannot be reused across queries. */
+    int selectionHash() {
+        return Objects.hash(include, fields, levelId, bbox != null ? Arrays.hashCode(bbox) : 0);
+    }
+
+    static String cursor(int fingerprint, int position) {
+        return Integer.toHexString(fingerprint) + "-" + position;
+    }
+}
@@ -0,0 +1,345 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Camera;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тайловый рендер кадра и его части (region of interest) на нескольких потоках.
+ * <p>
+ * The photo renderer only renders whole frames of a pinhole camera, so each tile is rendered
+ * by a camera at the same position turned towards the tile, with a field of view just wide
+ * enough to hold it. With the same center of projection that camera sees exactly the rays of
+ * the tile, only on a tilted image plane: every output pixel is traced back onto that plane
+ * and sampled bilinearly (averaging {@code samples}² sub-pixel rays when supersampling), so
+ * tiles join without seams. The same mapping renders a region of the frame at a higher
+ * resolution. Tile cameras always use the pinhole lens: a normal lens renders without its
+ * depth-of-field blur, and fisheye or spherical lenses, whose frames are not perspective
+ * projections, are rejected by {@link #validateLens(Camera)}.
+ * <p>
+ * Each worker owns one renderer, reuses it for the tiles it takes and writes every finished
+ * tile straight into the output, so memory beyond the output image is one tile buffer per
+ * worker however large the image is.
+ */
+final class TiledRenderer {
+
+    /** Renderers working at once; each holds its own copy of the scene. */
+    static final int MAX_WORKERS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    /** Largest number of tiles per side. */
+    static final int MAX_TILES = 8;
+
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(MAX_WORKERS, new WorkerThreadFactory());
+
+    private TiledRenderer() {
+    }
+
+    /** Рендерер одного потока; рендерит целый кадр заданной камерой. */
+    interface TileRenderer {
+        void render(BufferedImage image, Camera camera) throws Exception;
+
+        void dispose();
+    }
+
+    /** Creates the renderer of one worker, on that worker's thread. */
+    interface TileRendererFactory {
+        TileRenderer create() throws Exception;
+    }
+
+    /** Раскладка рендера: тайлов на сторону и часть кадра. */
+    static final class Layout {
+        final int tiles;
+        final Region region;
+
+        Layout(int tiles, Region region) {
+            this.tiles = tiles;
+            this.region = region;
+        }
+
+        /** Height of the output image for a frame of the given size: the region keeps its aspect. */
+        int outputHeight(int frameWidth, int frameHeight, int maxDimension) {
+            int result = Math.round(frameHeight * region.height / region.width);
+            return Math.max(1, Math.min(maxDimension, result));
+        }
+    }
+
+    /** Часть кадра в нормализованных координатах (0..1, y вниз). */
+    static final class Region {
+        static final Region FULL = new Region(0, 0, 1, 1);
+
+        final float x;
+        final float y;
+        final float width;
+        final float height;
+
+        Region(float x, float y, float width, float height) {
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        /** Error message for a region outside the frame, or null if it is valid. */
+        String validate() {
+            if (width <= 0 || height <= 0) {
+                return "Parameter 'region' must have positive width and height";
+            }
+            if (x < 0 || y < 0 || x + width > 1.0001f || y + height > 1.0001f) {
+                return "Parameter 'region' must lie within the frame: x, y >= 0, "
+                        + "x + width <= 1, y + height <= 1";
+            }
+            return null;
+        }
+    }
+
+    /** Error message for a camera whose frame tiles cannot reproduce, or null if it is valid. */
+    static String validateLens(Camera camera) {
+        Camera.Lens lens = camera.getLens();
+        if (lens == Camera.Lens.FISHEYE || lens == Camera.Lens.SPHERICAL) {
+            return "Parameters 'tiles' and 'region' require a pinhole or normal camera lens, got "
+                    + lens.name().toLowerCase();
+        }
+        return null;
+    }
+
+    /**
+     * Renders {@code region} of the frame the camera would render (height / width =
+     * {@code frameAspect}) into a {@code width}×{@code height} image, as
+     * {@code tiles}×{@code tiles} tiles.
+     *
+     * @param samples sub-pixel rays per pixel and axis (2 for supersampling)
+     */
+    static BufferedImage render(Camera camera, Region region, float frameAspect,
+                                int width, int height, int tiles, int samples,
+                                TileRendererFactory factory) throws Exception {
+        BufferedImage output = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Frame frame = new Frame(camera, region, frameAspect, width, height);
+        List<int[]> bounds = new ArrayList<>();
+        for (int j = 0; j < tiles; j++) {
+            for (int i = 0; i < tiles; i++) {
+                int x0 = width * i / tiles;
+                int x1 = width * (i + 1) / tiles;
+                int y0 = height * j / tiles;
+                int y1 = height * (j + 1) / tiles;
+                if (x1 > x0 && y1 > y0) {
+                    bounds.add(new int[] {x0, y0, x1, y1});
+                }
+            }
+        }
+
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(MAX_WORKERS, bounds.size());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            futures.add(WORKERS.submit(() -> {
+                TileRenderer renderer = factory.create();
+                try {
+                    for (int t = next.getAndIncrement(); t < bounds.size(); t = next.getAndIncrement()) {
+                        int[] b = bounds.get(t);
+                        renderTile(renderer, frame, output, b[0], b[1], b[2], b[3], samples);
+                    }
+                } finally {
+                    renderer.dispose();
+                }
+                return null;
+            }));
+        }
+        ExecutionException failure = null;
+        try {
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // Stop the other workers after their current tile
+                    next.set(bounds.size());
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            next.set(bounds.size());
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        if (failure != null) {
+            // As thrown by the worker: the caller handles OutOfMemoryError itself
+            Throwable cause = failure.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw cause instanceof Exception ? (Exception) cause : failure;
+        }
+        return output;
+    }
+
+    private static void renderTile(TileRenderer renderer, Frame frame, BufferedImage output,
+                                   int x0, int y0, int x1, int y1, int samples) throws Exception {
+        int tileWidth = x1 - x0;
+        int tileHeight = y1 - y0;
+        // Tile camera: aimed at the tile center, field of view fitted to the tile corners
+        double[] center = frame.ray((x0 + x1) / 2.0, (y0 + y1) / 2.0);
+        double yaw = Math.atan2(-center[0], center[1]);
+        double pitch = Math.asin(-center[2] / length(center));
+        double[][] basis = basis(yaw, pitch);
+        double maxX = 0;
+        double maxY = 0;
+        for (double[] corner : new double[][] {
+                frame.ray(x0, y0), frame.ray(x1, y0), frame.ray(x0, y1), frame.ray(x1, y1)}) {
+            double depth = dot(corner, basis[0]);
+            maxX = Math.max(maxX, Math.abs(dot(corner, basis[1]) / depth));
+            maxY = Math.max(maxY, Math.abs(dot(corner, basis[2]) / depth));
+        }
+        // One pixel of margin on each side for the bilinear filter
+        int imageWidth = tileWidth * samples + 2;
+        int imageHeight = tileHeight * samples + 2;
+        double tanX = Math.max(maxX * imageWidth / (imageWidth - 2), maxY * imageWidth / (imageHeight - 2));
+        double tanY = tanX * imageHeight / imageWidth;
+
+        Camera tileCamera = frame.camera.clone();
+        tileCamera.setLens(Camera.Lens.PINHOLE);
+        tileCamera.setYaw((float) yaw);
+        tileCamera.setPitch((float) pitch);
+        tileCamera.setFieldOfView((float) (2 * Math.atan(tanX)));
+        BufferedImage image = new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+        renderer.render(image, tileCamera);
+        int[] source = image.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
+
+        // Ray components along the tile camera axes are linear in the output pixel
+        double[] d = frame.projection(basis[0]);
+        double[] h = frame.projection(basis[1]);
+        double[] w = frame.projection(basis[2]);
+        int[] pixels = new int[tileWidth * tileHeight];
+        int count = samples * samples;
+        for (int py = 0; py < tileHeight; py++) {
+            for (int px = 0; px < tileWidth; px++) {
+                int r = 0, g = 0, b = 0;
+                for (int sy = 0; sy < samples; sy++) {
+                    double y = y0 + py + (sy + 0.5) / samples;
+                    for (int sx = 0; sx < samples; sx++) {
+                        double x = x0 + px + (sx + 0.5) / samples;
+                        double depth = d[0] + x * d[1] + y * d[2];
+                        double u = ((h[0] + x * h[1] + y * h[2]) / depth / tanX + 1) / 2 * imageWidth - 0.5;
+                        double v = (1 - (w[0] + x * w[1] + y * w[2]) / depth / tanY) / 2 * imageHeight - 0.5;
+                        int rgb = bilinear(source, imageWidth, imageHeight, u, v);
+                        r += (rgb >> 16) & 0xFF;
+                        g += (rgb >> 8) & 0xFF;
+                        b += rgb & 0xFF;
+                    }
+                }
+                pixels[py * tileWidth + px] = ((r / count) << 16) | ((g / count) << 8) | (b / count);
+            }
+        }
+        // Tiles are disjoint, and the workers' futures publish the writes to the caller
+        output.setRGB(x0, y0, tileWidth, tileHeight, pixels, 0, tileWidth);
+    }
+
+    private static int bilinear(int[] source, int width, int height, double u, double v) {
+        // Tile images are at least 3 pixels wide and high
+        u = Math.max(0, Math.min(width - 1, u));
+        v = Math.max(0, Math.min(height - 1, v));
+        int x = Math.min((int) u, width - 2);
+        int y = Math.min((int) v, height - 2);
+        double fx = u - x;
+        double fy = v - y;
+        int c00 = source[y * width + x];
+        int c10 = source[y * width + x + 1];
+        int c01 = source[(y + 1) * width + x];
+        int c11 = source[(y + 1) * width + x + 1];
+        int result = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            double top = ((c00 >> shift) & 0xFF) * (1 - fx) + ((c10 >> shift) & 0xFF) * fx;
+            double bottom = ((c01 >> shift) & 0xFF) * (1 - fx) + ((c11 >> shift) & 0xFF) * fx;
+            result |= ((int) Math.round(top * (1 - fy) + bottom * fy)) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Forward, right and up vectors of a camera in plan coordinates (z up), following the
+     * Sweet Home 3D convention: yaw 0 looks towards +y, positive pitch looks down.
+     */
+    static double[][] basis(double yaw, double pitch) {
+        double[] forward = {-Math.sin(yaw) * Math.cos(pitch), Math.cos(yaw) * Math.cos(pitch), -Math.sin(pitch)};
+        double[] right = {-Math.cos(yaw), -Math.sin(yaw), 0};
+        double[] up = {
+                forward[1] * right[2] - forward[2] * right[1],
+                forward[2] * right[0] - forward[0] * right[2],
+                forward[0] * right[1] - forward[1] * right[0]};
+        return new double[][] {forward, right, up};
+    }
+
+    private static double dot(double[] a, double[] b) {
+        return a[0] * b[0] + a[1] * b[1] + a[2] * b[2];
+    }
+
+    private static double length(double[] a) {
+        return Math.sqrt(dot(a, a));
+    }
+
+    /** Лучи камеры для пикселей выходного изображения. */
+    static final class Frame {
+        final Camera camera;
+        private final double[] origin;
+        private final double[] du;
+        private final double[] dv;
+
+        Frame(Camera camera, Region region, float frameAspect, int width, int height) {
+            this.camera = camera;
+            double[][] basis = basis(camera.getYaw(), camera.getPitch());
+            double tanX = Math.tan(camera.getFieldOfView() / 2);
+            double tanY = tanX * frameAspect;
+            // Ray through frame point (s, t), s and t in 0..1 with t down:
+            // forward + (2s - 1) tanX right + (1 - 2t) tanY up; linear in the output pixel
+            double s0 = region.x;
+            double t0 = region.y;
+            double ds = region.width / width;
+            double dt = region.height / height;
+            origin = new double[3];
+            du = new double[3];
+            dv = new double[3];
+            for (int k = 0; k < 3; k++) {
+                origin[k] = basis[0][k] + (2 * s0 - 1) * tanX * basis[1][k] + (1 - 2 * t0) * tanY * basis[2][k];
+                du[k] = 2 * ds * tanX * basis[1][k];
+                dv[k] = -2 * dt * tanY * basis[2][k];
+            }
+        }
+
+        /**
+         * Coefficients {a, bx, by} of the ray's component along {@code axis}:
+         * a + x·bx + y·by for the output point (x, y).
+         */
+        double[] projection(double[] axis) {
+            return new double[] {dot(origin, axis), dot(du, axis), dot(dv, axis)};
+        }
+
+        /** Direction of the ray through the output point (x, y), in pixels. */
+        double[] ray(double x, double y) {
+            return new double[] {
+                    origin[0] + x * du[0] + y * dv[0],
+                    origin[1] + x * du[1] + y * dv[1],
+                    origin[2] + x * du[2] + y * dv[2]};
+        }
+    }
+
+    private static final class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "sh3d-mcp-render-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
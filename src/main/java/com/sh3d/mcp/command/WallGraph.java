@@ -0,0 +1,422 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Wall;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Планарный граф осевых линий стен и его замкнутые грани — контуры комнат.
+ * <p>
+ * Walls are split where they cross or where an end touches another wall's middle (candidate
+ * pairs from a uniform grid), ends closer than the tolerance are merged into one vertex (hash
+ * grid), and dead-end edges are pruned. With the outgoing edges of every vertex sorted by angle,
+ * each bounded face is traced by always taking the next edge clockwise from the one it arrived
+ * by; bounded faces come out with positive signed area, the outer face of each connected part
+ * with negative. Apart from the per-vertex sorts every step is expected linear, so thousands of
+ * walls take milliseconds. Arc walls are treated as their straight chord.
+ */
+final class WallGraph {
+
+    /** Grid cell for finding crossing walls, in cm. */
+    private static final double CELL_SIZE = 200;
+    /** Walls spanning more grid cells than this are tested against every other wall. */
+    private static final int MAX_CELLS_PER_SEGMENT = 256;
+
+    private WallGraph() {
+    }
+
+    /** Замкнутый контур: вершины по порядку и половина толщины стены на каждом ребре. */
+    static final class Face {
+        /** Vertices in order; edge i runs from point i to point i + 1. */
+        final double[][] points;
+        final double[] halfThickness;
+
+        Face(double[][] points, double[] halfThickness) {
+            this.points = points;
+            this.halfThickness = halfThickness;
+        }
+
+        double area() {
+            return signedArea(points);
+        }
+    }
+
+    /** Bounded faces of the walls' centerline graph, dead ends pruned. */
+    static List<Face> faces(List<Wall> walls, double tolerance) {
+        List<double[]> segments = new ArrayList<>();
+        for (Wall wall : walls) {
+            double length = Math.hypot(wall.getXEnd() - wall.getXStart(), wall.getYEnd() - wall.getYStart());
+            if (length > tolerance) {
+                segments.add(new double[] {wall.getXStart(), wall.getYStart(),
+                        wall.getXEnd(), wall.getYEnd(), wall.getThickness() / 2});
+            }
+        }
+        List<double[]> pieces = split(segments, tolerance);
+
+        // Вершины: концы ближе tolerance сливаются
+        Map<Long, List<Integer>> vertexGrid = new HashMap<>();
+        List<double[]> vertices = new ArrayList<>();
+        double vertexCell = Math.max(tolerance, 0.01);
+        Map<Long, double[]> edges = new HashMap<>();
+        for (double[] piece : pieces) {
+            int u = vertex(vertices, vertexGrid, vertexCell, tolerance, piece[0], piece[1]);
+            int v = vertex(vertices, vertexGrid, vertexCell, tolerance, piece[2], piece[3]);
+            if (u == v) {
+                continue;
+            }
+            long key = ((long) Math.min(u, v) << 32) | Math.max(u, v);
+            double[] edge = edges.get(key);
+            if (edge == null) {
+                edges.put(key, new double[] {u, v, piece[4]});
+            } else {
+                // Overlapping walls: keep the thicker one
+                edge[2] = Math.max(edge[2], piece[4]);
+            }
+        }
+        return traceFaces(vertices, new ArrayList<>(edges.values()));
+    }
+
+    /** Splits segments {x1, y1, x2, y2, halfThickness} at crossings and T-junctions. */
+    private static List<double[]> split(List<double[]> segments, double tolerance) {
+        int n = segments.size();
+        Map<Long, List<Integer>> grid = new HashMap<>();
+        List<Integer> large = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] s = segments.get(i);
+            long minCx = cell(Math.min(s[0], s[2]) - tolerance);
+            long maxCx = cell(Math.max(s[0], s[2]) + tolerance);
+            long minCy = cell(Math.min(s[1], s[3]) - tolerance);
+            long maxCy = cell(Math.max(s[1], s[3]) + tolerance);
+            if ((maxCx - minCx + 1) * (maxCy - minCy + 1) > MAX_CELLS_PER_SEGMENT) {
+                large.add(i);
+                continue;
+            }
+            for (long cx = minCx; cx <= maxCx; cx++) {
+                for (long cy = minCy; cy <= maxCy; cy++) {
+                    grid.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+
+        List<List<Double>> cuts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            cuts.add(new ArrayList<>());
+        }
+        Set<Long> tested = new HashSet<>();
+        for (List<Integer> cell : grid.values()) {
+            for (int a = 0; a < cell.size(); a++) {
+                for (int b = a + 1; b < cell.size(); b++) {
+                    testPair(segments, cuts, cell.get(a), cell.get(b), tolerance, tested);
+                }
+            }
+        }
+        for (int i : large) {
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    testPair(segments, cuts, i, j, tolerance, tested);
+                }
+            }
+        }
+
+        List<double[]> pieces = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] s = segments.get(i);
+            List<Double> t = cuts.get(i);
+            t.add(0.0);
+            t.add(1.0);
+            t.sort(null);
+            for (int k = 0; k + 1 < t.size(); k++) {
+                double t0 = t.get(k);
+                double t1 = t.get(k + 1);
+                if (t1 - t0 > 0) {
+                    pieces.add(new double[] {
+                            s[0] + (s[2] - s[0]) * t0, s[1] + (s[3] - s[1]) * t0,
+                            s[0] + (s[2] - s[0]) * t1, s[1] + (s[3] - s[1]) * t1, s[4]});
+                }
+            }
+        }
+        return pieces;
+    }
+
+    private static void testPair(List<double[]> segments, List<List<Double>> cuts,
+                                 int i, int j, double tolerance, Set<Long> tested) {
+        if (!tested.add(((long) Math.min(i, j) << 32) | Math.max(i, j))) {
+            return;
+        }
+        double[] a = segments.get(i);
+        double[] b = segments.get(j);
+        // Конец одной стены на середине другой (T-стык, наложение)
+        cutAtEnd(a, cuts.get(i), b[0], b[1], tolerance);
+        cutAtEnd(a, cuts.get(i), b[2], b[3], tolerance);
+        cutAtEnd(b, cuts.get(j), a[0], a[1], tolerance);
+        cutAtEnd(b, cuts.get(j), a[2], a[3], tolerance);
+        // Пересечение
+        double rx = a[2] - a[0];
+        double ry = a[3] - a[1];
+        double sx = b[2] - b[0];
+        double sy = b[3] - b[1];
+        double denominator = rx * sy - ry * sx;
+        if (Math.abs(denominator) < 1e-9) {
+            return;
+        }
+        double qx = b[0] - a[0];
+        double qy = b[1] - a[1];
+        double t = (qx * sy - qy * sx) / denominator;
+        double u = (qx * ry - qy * rx) / denominator;
+        double lengthA = Math.hypot(rx, ry);
+        double lengthB = Math.hypot(sx, sy);
+        if (t * lengthA > tolerance && (1 - t) * lengthA > tolerance
+                && u * lengthB > tolerance && (1 - u) * lengthB > tolerance) {
+            cuts.get(i).add(t);
+            cuts.get(j).add(u);
+        }
+    }
+
+    private static void cutAtEnd(double[] s, List<Double> cuts, double px, double py, double tolerance) {
+        double dx = s[2] - s[0];
+        double dy = s[3] - s[1];
+        double lengthSq = dx * dx + dy * dy;
+        double t = ((px - s[0]) * dx + (py - s[1]) * dy) / lengthSq;
+        double length = Math.sqrt(lengthSq);
+        if (t * length <= tolerance || (1 - t) * length <= tolerance) {
+            return;
+        }
+        double distance = Math.hypot(s[0] + dx * t - px, s[1] + dy * t - py);
+        if (distance <= tolerance) {
+            cuts.add(t);
+        }
+    }
+
+    private static int vertex(List<double[]> vertices, Map<Long, List<Integer>> grid, double cellSize,
+                              double tolerance, double x, double y) {
+        long cx = (long) Math.floor(x / cellSize);
+        long cy = (long) Math.floor(y / cellSize);
+        for (long i = cx - 1; i <= cx + 1; i++) {
+            for (long j = cy - 1; j <= cy + 1; j++) {
+                List<Integer> cell = grid.get(key(i, j));
+                if (cell != null) {
+                    for (int index : cell) {
+                        double[] v = vertices.get(index);
+                        if (Math.hypot(v[0] - x, v[1] - y) <= tolerance) {
+                            return index;
+                        }
+                    }
+                }
+            }
+        }
+        vertices.add(new double[] {x, y});
+        int index = vertices.size() - 1;
+        grid.computeIfAbsent(key(cx, cy), k -> new ArrayList<>()).add(index);
+        return index;
+    }
+
+    /** Edges are {u, v, halfThickness}; half-edge 2e runs u to v, 2e + 1 back. */
+    private static List<Face> traceFaces(List<double[]> vertices, List<double[]> edges) {
+        int edgeCount = edges.size();
+        int[] degree = new int[vertices.size()];
+        List<List<Integer>> incident = new ArrayList<>(vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            incident.add(new ArrayList<>());
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            int u = (int) edges.get(e)[0];
+            int v = (int) edges.get(e)[1];
+            degree[u]++;
+            degree[v]++;
+            incident.get(u).add(e);
+            incident.get(v).add(e);
+        }
+
+        // Тупиковые рёбра не ограничивают комнат
+        boolean[] removed = new boolean[edgeCount];
+        Deque<Integer> leaves = new ArrayDeque<>();
+        for (int v = 0; v < degree.length; v++) {
+            if (degree[v] == 1) {
+                leaves.add(v);
+            }
+        }
+        while (!leaves.isEmpty()) {
+            int v = leaves.poll();
+            for (int e : incident.get(v)) {
+                if (!removed[e]) {
+                    removed[e] = true;
+                    int other = (int) edges.get(e)[0] == v ? (int) edges.get(e)[1] : (int) edges.get(e)[0];
+                    degree[v]--;
+                    if (--degree[other] == 1) {
+                        leaves.add(other);
+                    }
+                }
+            }
+        }
+
+        // Исходящие полурёбра каждой вершины по углу
+        int[] from = new int[2 * edgeCount];
+        int[] to = new int[2 * edgeCount];
+        List<List<Integer>> outgoing = new ArrayList<>(vertices.size());
+        for (int i = 0; i < vertices.size(); i++) {
+            outgoing.add(new ArrayList<>());
+        }
+        for (int e = 0; e < edgeCount; e++) {
+            from[2 * e] = (int) edges.get(e)[0];
+            to[2 * e] = (int) edges.get(e)[1];
+            from[2 * e + 1] = to[2 * e];
+            to[2 * e + 1] = from[2 * e];
+            if (!removed[e]) {
+                outgoing.get(from[2 * e]).add(2 * e);
+                outgoing.get(from[2 * e + 1]).add(2 * e + 1);
+            }
+        }
+        int[] position = new int[2 * edgeCount];
+        double[] angle = new double[2 * edgeCount];
+        for (int h = 0; h < 2 * edgeCount; h++) {
+            double[] a = vertices.get(from[h]);
+            double[] b = vertices.get(to[h]);
+            angle[h] = Math.atan2(b[1] - a[1], b[0] - a[0]);
+        }
+        for (List<Integer> out : outgoing) {
+            out.sort((h1, h2) -> Double.compare(angle[h1], angle[h2]));
+            for (int k = 0; k < out.size(); k++) {
+                position[out.get(k)] = k;
+            }
+        }
+
+        List<Face> faces = new ArrayList<>();
+        boolean[] visited = new boolean[2 * edgeCount];
+        for (int start = 0; start < 2 * edgeCount; start++) {
+            if (visited[start] || removed[start / 2]) {
+                continue;
+            }
+            List<double[]> points = new ArrayList<>();
+            List<Double> thickness = new ArrayList<>();
+            int h = start;
+            while (!visited[h]) {
+                visited[h] = true;
+                points.add(vertices.get(from[h]));
+                thickness.add(edges.get(h / 2)[2]);
+                // Следующее ребро — ближайшее по часовой стрелке от обратного
+                List<Integer> out = outgoing.get(to[h]);
+                int twin = h ^ 1;
+                h = out.get((position[twin] - 1 + out.size()) % out.size());
+            }
+            double[][] polygon = points.toArray(new double[0][]);
+            if (h == start && signedArea(polygon) > 0) {
+                double[] half = new double[thickness.size()];
+                for (int k = 0; k < half.length; k++) {
+                    half[k] = thickness.get(k);
+                }
+                faces.add(simplify(new Face(polygon, half)));
+            }
+        }
+        return faces;
+    }
+
+    /** Drops vertices between collinear edges of the same thickness, left by splitting. */
+    private static Face simplify(Face face) {
+        int n = face.points.length;
+        List<double[]> points = new ArrayList<>();
+        List<Double> half = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            double[] prev = face.points[(i - 1 + n) % n];
+            double[] p = face.points[i];
+            double[] next = face.points[(i + 1) % n];
+            double cross = (p[0] - prev[0]) * (next[1] - p[1]) - (p[1] - prev[1]) * (next[0] - p[0]);
+            double dot = (p[0] - prev[0]) * (next[0] - p[0]) + (p[1] - prev[1]) * (next[1] - p[1]);
+            double scale = Math.hypot(p[0] - prev[0], p[1] - prev[1]) * Math.hypot(next[0] - p[0], next[1] - p[1]);
+            boolean straight = Math.abs(cross) <= 1e-6 * scale && dot > 0
+                    && face.halfThickness[(i - 1 + n) % n] == face.halfThickness[i];
+            if (!straight) {
+                points.add(p);
+                half.add(face.halfThickness[i]);
+            }
+        }
+        // Каждая вершина несёт толщину ребра, которое из неё выходит
+        double[] thickness = new double[half.size()];
+        for (int k = 0; k < thickness.length; k++) {
+            thickness[k] = half.get(k);
+        }
+        return new Face(points.toArray(new double[0][]), thickness);
+    }
+
+    /**
+     * Face shrunk to the inner sides of its walls: every edge moves inwards by its wall's half
+     * thickness. Null if the room is too thin for that (the inset polygon turns inside out).
+     */
+    static double[][] inset(Face face) {
+        int n = face.points.length;
+        List<double[]> result = new ArrayList<>();
+        boolean steps = false;
+        for (int i = 0; i < n; i++) {
+            double[] prev = face.points[(i - 1 + n) % n];
+            double[] p = face.points[i];
+            double[] next = face.points[(i + 1) % n];
+            double[] d1 = unit(p[0] - prev[0], p[1] - prev[1]);
+            double[] d2 = unit(next[0] - p[0], next[1] - p[1]);
+            double h1 = face.halfThickness[(i - 1 + n) % n];
+            double h2 = face.halfThickness[i];
+            // Interior is on the left of each edge of a positive-area face
+            double ox1 = p[0] - d1[1] * h1;
+            double oy1 = p[1] + d1[0] * h1;
+            double ox2 = p[0] - d2[1] * h2;
+            double oy2 = p[1] + d2[0] * h2;
+            double cross = d1[0] * d2[1] - d1[1] * d2[0];
+            if (Math.abs(cross) < 1e-6) {
+                result.add(new double[] {ox1, oy1});
+                if (h1 != h2) {
+                    result.add(new double[] {ox2, oy2});
+                    steps = true;
+                }
+            } else {
+                double a = ((ox2 - ox1) * d2[1] - (oy2 - oy1) * d2[0]) / cross;
+                result.add(new double[] {ox1 + d1[0] * a, oy1 + d1[1] * a});
+            }
+        }
+        double[][] polygon = result.toArray(new double[0][]);
+        double area = signedArea(polygon);
+        if (area <= 0 || area >= face.area()) {
+            return null;
+        }
+        if (!steps) {
+            // An edge that flipped direction means opposite walls overlapped
+            for (int i = 0; i < n; i++) {
+                double[] a = face.points[i];
+                double[] b = face.points[(i + 1) % n];
+                double[] c = polygon[i];
+                double[] d = polygon[(i + 1) % n];
+                if ((b[0] - a[0]) * (d[0] - c[0]) + (b[1] - a[1]) * (d[1] - c[1]) <= 0) {
+                    return null;
+                }
+            }
+        }
+        return polygon;
+    }
+
+    static double signedArea(double[][] polygon) {
+        double sum = 0;
+        for (int i = 0; i < polygon.length; i++) {
+            double[] p = polygon[i];
+            double[] q = polygon[(i + 1) % polygon.length];
+            sum += p[0] * q[1] - q[0] * p[1];
+        }
+        return sum / 2;
+    }
+
+    private static double[] unit(double dx, double dy) {
+        double length = Math.hypot(dx, dy);
+        return new double[] {dx / length, dy / length};
+    }
+
+    private static long cell(double coordinate) {
+        return (long) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+    }
+}
@@ -15,15 +15,106 @@ public class PluginConfig {
     public static final int DEFAULT_PORT = 9877;
     public static final boolean DEFAULT_AUTO_START = true;
     public static final String DEFAULT_LOG_LEVEL = "INFO";
+    public static final boolean DEFAULT_RATE_LIMIT_ENABLED = true;
+    public static final RateLimit DEFAULT_LIGHT_RATE_LIMIT = new RateLimit(600, 60, 8);
+    public static final RateLimit DEFAULT_HEAVY_RATE_LIMIT = new RateLimit(12, 3, 1);
+
+    /** HTTP backend: встроенный com.sun.net.httpserver.HttpServer */
+    public static final String HTTP_BACKEND_JDK = "jdk";
+    /** HTTP backend: собственный сервер на java.nio.channels (много соединений) */
+    public static final String HTTP_BACKEND_NIO = "nio";
+    public static final String DEFAULT_HTTP_BACKEND = HTTP_BACKEND_JDK;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+    public static final int DEFAULT_MAX_IDLE_CONNECTIONS = 64;
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+    public static final int DEFAULT_BACKLOG = 50;
+    public static final int DEFAULT_EDT_STALL_THRESHOLD_MS = 250;
+    public static final int DEFAULT_EDT_STALL_HISTORY = 32;
+    /** Доля трассируемых HTTP-запросов; 0 — трассировка выключена. */
+    public static final double DEFAULT_TRACE_SAMPLE_RATE = 0.0;
+    public static final int DEFAULT_TRACE_MAX_FILE_BYTES = 10 * 1024 * 1024;
+    public static final int DEFAULT_TRACE_MAX_FILES = 5;
+    /** Запись входящих JSON-RPC запросов для replay; по умолчанию выключена. */
+    public static final boolean DEFAULT_CAPTURE_ENABLED = false;
+    /** Лог при заполненном буфере: отбросить запись (HTTP-потоки не ждут диска) */
+    public static final String LOG_OVERFLOW_DROP = "drop";
+    /** Лог при заполненном буфере: ждать места (записи не теряются) */
+    public static final String LOG_OVERFLOW_BLOCK = "block";
+    public static final String DEFAULT_LOG_OVERFLOW_POLICY = LOG_OVERFLOW_DROP;
+    public static final int DEFAULT_LOG_BUFFER_CAPACITY = 8192;
+    /** Домов сессий, одновременно загруженных в память (кроме дома по умолчанию); 0 — один дом. */
+    public static final int DEFAULT_HOMES_MAX_LOADED = 8;
+    public static final int DEFAULT_HOMES_IDLE_EVICT_MINUTES = 15;
+    /** Выгруженный дом без сессий закрывается (файл удаляется) через столько минут без использования. */
+    public static final int DEFAULT_HOMES_EXPIRE_MINUTES = 24 * 60;
+    public static final int DEFAULT_HOMES_MAX_HEAP_PERCENT = 85;
+    /** Объём кэша готовых рендеров в памяти, байт закодированных изображений; 0 — кэш выключен. */
+    public static final int DEFAULT_RENDER_CACHE_MAX_BYTES = 64 * 1024 * 1024;
+    /** Сбрасывать ли вытесненные из памяти рендеры на диск. */
+    public static final boolean DEFAULT_RENDER_CACHE_DISK_ENABLED = false;
+    public static final int DEFAULT_RENDER_CACHE_MAX_DISK_BYTES = 512 * 1024 * 1024;
 
     private final int port;
     private final boolean autoStart;
     private final String logLevel;
+    private final boolean rateLimitEnabled;
+    private final RateLimit lightRateLimit;
+    private final RateLimit heavyRateLimit;
+    private final String httpBackend;
+    private final int keepAliveSeconds;
+    private final int maxIdleConnections;
+    private final int maxConnections;
+    private final int backlog;
+    private final int edtStallThresholdMs;
+    private final int edtStallHistory;
+    private final double traceSampleRate;
+    private final int traceMaxFileBytes;
+    private final int traceMaxFiles;
+    private final boolean captureEnabled;
+    private final int logBufferCapacity;
+    private final String logOverflowPolicy;
+    private final int homesMaxLoaded;
+    private final int homesIdleEvictMinutes;
+    private final int homesExpireMinutes;
+    private final int homesMaxHeapPercent;
+    private final int renderCacheMaxBytes;
+    private final boolean renderCacheDiskEnabled;
+    private final int renderCacheMaxDiskBytes;
 
-    private PluginConfig(int port, boolean autoStart, String logLevel) {
+    private PluginConfig(int port, boolean autoStart, String logLevel,
+                         boolean rateLimitEnabled, RateLimit lightRateLimit, RateLimit heavyRateLimit,
+                         String httpBackend, int keepAliveSeconds, int maxIdleConnections,
+                         int maxConnections, int backlog, int edtStallThresholdMs, int edtStallHistory,
+                         double traceSampleRate, int traceMaxFileBytes, int traceMaxFiles,
+                         boolean captureEnabled, int logBufferCapacity, String logOverflowPolicy,
+                         int homesMaxLoaded, int homesIdleEvictMinutes, int homesExpireMinutes,
+                         int homesMaxHeapPercent, int renderCacheMaxBytes, boolean renderCacheDiskEnabled, int renderCacheMaxDiskBytes) {
         this.port = port;
         this.autoStart = autoStart;
         this.logLevel = logLevel;
+        this.rateLimitEnabled = rateLimitEnabled;
+        this.lightRateLimit = lightRateLimit;
+        this.heavyRateLimit = heavyRateLimit;
+        this.httpBackend = httpBackend;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxConnections = maxConnections;
+        this.backlog = backlog;
+        this.edtStallThresholdMs = edtStallThresholdMs;
+        this.edtStallHistory = edtStallHistory;
+        this.traceSampleRate = traceSampleRate;
+        this.traceMaxFileBytes = traceMaxFileBytes;
+        this.traceMaxFiles = traceMaxFiles;
+        this.captureEnabled = captureEnabled;
+        this.logBufferCapacity = logBufferCapacity;
+        this.logOverflowPolicy = logOverflowPolicy;
+        this.homesMaxLoaded = homesMaxLoaded;
+        this.homesIdleEvictMinutes = homesIdleEvictMinutes;
+        this.homesExpireMinutes = homesExpireMinutes;
+        this.homesMaxHeapPercent = homesMaxHeapPercent;
+        this.renderCacheMaxBytes = renderCacheMaxBytes;
+        this.renderCacheDiskEnabled = renderCacheDiskEnabled;
+        this.renderCacheMaxDiskBytes = renderCacheMaxDiskBytes;
     }
 
     /**
@@ -39,8 +130,78 @@ public class PluginConfig {
         }
         boolean autoStart = getBoolean("sh3d.mcp.autoStart", fileProps, DEFAULT_AUTO_START);
         String logLevel = getString("sh3d.mcp.logLevel", fileProps, DEFAULT_LOG_LEVEL);
+        boolean rateLimitEnabled = getBoolean("sh3d.mcp.rateLimit.enabled", fileProps,
+                DEFAULT_RATE_LIMIT_ENABLED);
+        RateLimit light = loadRateLimit("sh3d.mcp.rateLimit.light", fileProps, DEFAULT_LIGHT_RATE_LIMIT);
+        RateLimit heavy = loadRateLimit("sh3d.mcp.rateLimit.heavy", fileProps, DEFAULT_HEAVY_RATE_LIMIT);
 
-        return new PluginConfig(port, autoStart, logLevel);
+        String httpBackend = getString("sh3d.mcp.http.backend", fileProps, DEFAULT_HTTP_BACKEND)
+                .trim().toLowerCase();
+        if (!HTTP_BACKEND_JDK.equals(httpBackend) && !HTTP_BACKEND_NIO.equals(httpBackend)) {
+            throw new IllegalArgumentException(
+                    "Invalid HTTP backend: " + httpBackend + " (must be jdk or nio)");
+        }
+        int keepAliveSeconds = getPositiveInt("sh3d.mcp.http.keepAliveSeconds", fileProps,
+                DEFAULT_KEEP_ALIVE_SECONDS);
+        int maxIdleConnections = getPositiveInt("sh3d.mcp.http.maxIdleConnections", fileProps,
+                DEFAULT_MAX_IDLE_CONNECTIONS);
+        int maxConnections = getPositiveInt("sh3d.mcp.http.maxConnections", fileProps,
+                DEFAULT_MAX_CONNECTIONS);
+        int backlog = getPositiveInt("sh3d.mcp.http.backlog", fileProps, DEFAULT_BACKLOG);
+        int edtStallThresholdMs = getPositiveInt("sh3d.mcp.edt.stallThresholdMs", fileProps,
+                DEFAULT_EDT_STALL_THRESHOLD_MS);
+        int edtStallHistory = getPositiveInt("sh3d.mcp.edt.stallHistory", fileProps,
+                DEFAULT_EDT_STALL_HISTORY);
+        double traceSampleRate = getDouble("sh3d.mcp.trace.sampleRate", fileProps,
+                DEFAULT_TRACE_SAMPLE_RATE);
+        if (traceSampleRate < 0 || traceSampleRate > 1) {
+            throw new IllegalArgumentException(
+                    "Invalid sh3d.mcp.trace.sampleRate: " + traceSampleRate + " (must be 0-1)");
+        }
+        int traceMaxFileBytes = getPositiveInt("sh3d.mcp.trace.maxFileBytes", fileProps,
+                DEFAULT_TRACE_MAX_FILE_BYTES);
+        int traceMaxFiles = getPositiveInt("sh3d.mcp.trace.maxFiles", fileProps, DEFAULT_TRACE_MAX_FILES);
+        boolean captureEnabled = getBoolean("sh3d.mcp.capture.enabled", fileProps, DEFAULT_CAPTURE_ENABLED);
+        int logBufferCapacity = getPositiveInt("sh3d.mcp.log.bufferCapacity", fileProps,
+                DEFAULT_LOG_BUFFER_CAPACITY);
+        String logOverflowPolicy = getString("sh3d.mcp.log.overflowPolicy", fileProps,
+                DEFAULT_LOG_OVERFLOW_POLICY).trim().toLowerCase();
+        if (!LOG_OVERFLOW_DROP.equals(logOverflowPolicy) && !LOG_OVERFLOW_BLOCK.equals(logOverflowPolicy)) {
+            throw new IllegalArgumentException(
+                    "Invalid log overflow policy: " + logOverflowPolicy + " (must be drop or block)");
+        }
+        int homesMaxLoaded = getInt("sh3d.mcp.homes.maxLoaded", fileProps, DEFAULT_HOMES_MAX_LOADED);
+        if (homesMaxLoaded < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid sh3d.mcp.homes.maxLoaded: " + homesMaxLoaded + " (must be >= 0)");
+        }
+        int homesIdleEvictMinutes = getPositiveInt("sh3d.mcp.homes.idleEvictMinutes", fileProps,
+                DEFAULT_HOMES_IDLE_EVICT_MINUTES);
+        int homesExpireMinutes = getPositiveInt("sh3d.mcp.homes.expireMinutes", fileProps,
+                DEFAULT_HOMES_EXPIRE_MINUTES);
+        int homesMaxHeapPercent = getPositiveInt("sh3d.mcp.homes.maxHeapPercent", fileProps,
+                DEFAULT_HOMES_MAX_HEAP_PERCENT);
+        if (homesMaxHeapPercent > 100) {
+            throw new IllegalArgumentException(
+                    "Invalid sh3d.mcp.homes.maxHeapPercent: " + homesMaxHeapPercent + " (must be 1-100)");
+        }
+        int renderCacheMaxBytes = getInt("sh3d.mcp.renderCache.maxBytes", fileProps,
+                DEFAULT_RENDER_CACHE_MAX_BYTES);
+        if (renderCacheMaxBytes < 0) {
+            throw new IllegalArgumentException(
+                    "Invalid sh3d.mcp.renderCache.maxBytes: " + renderCacheMaxBytes + " (must be >= 0)");
+        }
+        boolean renderCacheDiskEnabled = getBoolean("sh3d.mcp.renderCache.disk", fileProps,
+                DEFAULT_RENDER_CACHE_DISK_ENABLED);
+        int renderCacheMaxDiskBytes = getPositiveInt("sh3d.mcp.renderCache.maxDiskBytes", fileProps,
+                DEFAULT_RENDER_CACHE_MAX_DISK_BYTES);
+
+        return new PluginConfig(port, autoStart, logLevel, rateLimitEnabled, light, heavy,
+                httpBackend, keepAliveSeconds, maxIdleConnections, maxConnections, backlog,
+                edtStallThresholdMs, edtStallHistory, traceSampleRate, traceMaxFileBytes, traceMaxFiles,
+                captureEnabled, logBufferCapacity, logOverflowPolicy,
+                homesMaxLoaded, homesIdleEvictMinutes, homesExpireMinutes, homesMaxHeapPercent,
+                renderCacheMaxBytes, renderCacheDiskEnabled, renderCacheMaxDiskBytes);
     }
 
     public int getPort() {
@@ -55,6 +216,148 @@ public class PluginConfig {
         return logLevel;
     }
 
+    /**
+     * Включены ли per-session квоты на tools/call.
+     */
+    public boolean isRateLimitEnabled() {
+        return rateLimitEnabled;
+    }
+
+    /** Квота для лёгких команд (CostClass.LIGHT). */
+    public RateLimit getLightRateLimit() {
+        return lightRateLimit;
+    }
+
+    /** Квота для тяжёлых команд — рендеринг, экспорт (CostClass.HEAVY). */
+    public RateLimit getHeavyRateLimit() {
+        return heavyRateLimit;
+    }
+
+    /**
+     * HTTP backend: {@link #HTTP_BACKEND_JDK} или {@link #HTTP_BACKEND_NIO}.
+     */
+    public String getHttpBackend() {
+        return httpBackend;
+    }
+
+    /** Время жизни простаивающего keep-alive соединения, секунды. */
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    /** Максимум простаивающих keep-alive соединений; самые старые сверх лимита закрываются. */
+    public int getMaxIdleConnections() {
+        return maxIdleConnections;
+    }
+
+    /** Максимум одновременных соединений (только NIO backend). */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /** Размер очереди входящих соединений (listen backlog). */
+    public int getBacklog() {
+        return backlog;
+    }
+
+    /** Длительность EDT-задачи из MCP, начиная с которой она считается зависанием UI, мс. */
+    public int getEdtStallThresholdMs() {
+        return edtStallThresholdMs;
+    }
+
+    /** Сколько последних зависаний EDT хранить для get_edt_stalls. */
+    public int getEdtStallHistory() {
+        return edtStallHistory;
+    }
+
+    /** Доля HTTP-запросов, для которых пишется трасса (0 — выключено, 1 — все). */
+    public double getTraceSampleRate() {
+        return traceSampleRate;
+    }
+
+    /** Размер файла трасс, после которого он ротируется, байт. */
+    public int getTraceMaxFileBytes() {
+        return traceMaxFileBytes;
+    }
+
+    /** Сколько файлов трасс хранить, включая текущий. */
+    public int getTraceMaxFiles() {
+        return traceMaxFiles;
+    }
+
+    /** Записывать ли тела POST /mcp в файл захвата (для replay-нагрузки). */
+    public boolean isCaptureEnabled() {
+        return captureEnabled;
+    }
+
+    /** Ёмкость буфера асинхронного лога, записей. */
+    public int getLogBufferCapacity() {
+        return logBufferCapacity;
+    }
+
+    /** Поведение лога при заполненном буфере: "drop" или "block". */
+    public String getLogOverflowPolicy() {
+        return logOverflowPolicy;
+    }
+
+    /** Сколько домов сессий (create_home) держать в памяти; 0 — только дом по умолчанию. */
+    public int getHomesMaxLoaded() {
+        return homesMaxLoaded;
+    }
+
+    /** Через сколько минут простоя дом сессии выгружается на диск. */
+    public int getHomesIdleEvictMinutes() {
+        return homesIdleEvictMinutes;
+    }
+
+    /** Через сколько минут без использования выгруженный дом без сессий закрывается. */
+    public int getHomesExpireMinutes() {
+        return homesExpireMinutes;
+    }
+
+    /** Заполненность heap, %, выше которой новые дома не загружаются без выгрузки старых. */
+    public int getHomesMaxHeapPercent() {
+        return homesMaxHeapPercent;
+    }
+
+    /** Объём кэша рендеров render_photo в памяти, байт; 0 — кэш выключен. */
+    public int getRenderCacheMaxBytes() {
+        return renderCacheMaxBytes;
+    }
+
+    /** Сбрасываются ли вытесненные рендеры в {@link #resolveRenderCacheDir()}. */
+    public boolean isRenderCacheDiskEnabled() {
+        return renderCacheDiskEnabled;
+    }
+
+    /** Объём дискового уровня кэша рендеров, байт. */
+    public int getRenderCacheMaxDiskBytes() {
+        return renderCacheMaxDiskBytes;
+    }
+
+    private static int getPositiveInt(String key, Properties fileProps, int defaultValue) {
+        int value = getInt(key, fileProps, defaultValue);
+        if (value < 1) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value + " (must be >= 1)");
+        }
+        return value;
+    }
+
+    private static int getNonNegativeInt(String key, Properties fileProps, int defaultValue) {
+        int value = getInt(key, fileProps, defaultValue);
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid " + key + ": " + value + " (must be >= 0)");
+        }
+        return value;
+    }
+
+    private static RateLimit loadRateLimit(String prefix, Properties fileProps, RateLimit defaults) {
+        int perMinute = getNonNegativeInt(prefix + ".perMinute", fileProps, defaults.getPerMinute());
+        int burst = getNonNegativeInt(prefix + ".burst", fileProps, defaults.getBurst());
+        int maxInFlight = getNonNegativeInt(prefix + ".maxInFlight", fileProps, defaults.getMaxInFlight());
+        return new RateLimit(perMinute, burst, maxInFlight);
+    }
+
     private static Properties loadPropertiesFile() {
         Properties props = new Properties();
         Path configPath = resolveConfigPath();
@@ -78,6 +381,30 @@ public class PluginConfig {
         return dir == null ? null : dir.resolve("sh3d-mcp.log");
     }
 
+    /** Файл трасс HTTP-запросов (JSON Lines) рядом с логом плагина. */
+    public static Path resolveTracePath() {
+        Path dir = resolvePluginDir();
+        return dir == null ? null : dir.resolve("sh3d-mcp-trace.jsonl");
+    }
+
+    /** Файл захвата JSON-RPC запросов (JSON Lines) рядом с логом плагина. */
+    public static Path resolveCapturePath() {
+        Path dir = resolvePluginDir();
+        return dir == null ? null : dir.resolve("sh3d-mcp-capture.jsonl");
+    }
+
+    /** Каталог, куда выгружаются простаивающие дома сессий. */
+    public static Path resolveHomesDir() {
+        Path dir = resolvePluginDir();
+        return dir == null ? null : dir.resolve("homes");
+    }
+
+    /** Каталог дискового уровня кэша рендеров. */
+    public static Path resolveRenderCacheDir() {
+        Path dir = resolvePluginDir();
+        return dir == null ? null : dir.resolve("render-cache");
+    }
+
     private static Path resolvePluginDir() {
         String appData = System.getenv("APPDATA");
         if (appData != null && !appData.isEmpty()) {
@@ -115,6 +442,26 @@ public class PluginConfig {
         return defaultValue;
     }
 
+    private static double getDouble(String key, Properties fileProps, double defaultValue) {
+        String sysVal = System.getProperty(key);
+        if (sysVal != null) {
+            try {
+                return Double.parseDouble(sysVal);
+            } catch (NumberFormatException e) {
+                // fallthrough
+            }
+        }
+        String fileVal = fileProps.getProperty(key);
+        if (fileVal != null) {
+            try {
+                return Double.parseDouble(fileVal);
+            } catch (NumberFormatException e) {
+                // fallthrough
+            }
+        }
+        return defaultValue;
+    }
+
     private static String getString(String key, Properties fileProps, String defaultValue) {
         String sysVal = System.getProperty(key);
         if (sysVal != null) {
@@ -138,4 +485,44 @@ public class PluginConfig {
         }
         return defaultValue;
     }
+
+    /**
+     * Per-session квота одного класса команд: token bucket (perMinute, burst)
+     * и ограничение одновременно выполняющихся вызовов. 0 — без ограничения.
+     */
+    public static final class RateLimit {
+        private final int perMinute;
+        private final int burst;
+        private final int maxInFlight;
+
+        public RateLimit(int perMinute, int burst, int maxInFlight) {
+            if (perMinute < 0 || burst < 0 || maxInFlight < 0) {
+                throw new IllegalArgumentException("Invalid rate limit: perMinute=" + perMinute
+                        + ", burst=" + burst + ", maxInFlight=" + maxInFlight + " (must be >= 0)");
+            }
+            this.perMinute = perMinute;
+            this.burst = burst;
+            this.maxInFlight = maxInFlight;
+        }
+
+        /** Пополнение bucket'а, токенов в минуту. 0 — rate не ограничен. */
+        public int getPerMinute() {
+            return perMinute;
+        }
+
+        /** Ёмкость bucket'а (допустимый всплеск). При 0 используется 1. */
+        public int getBurst() {
+            return burst;
+        }
+
+        /** Максимум одновременно выполняющихся вызовов. 0 — без ограничения. */
+        public int getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        @Override
+        public String toString() {
+            return perMinute + "/min, burst " + burst + ", maxInFlight " + maxInFlight;
+        }
+    }
 }
@@ -0,0 +1,110 @@
+package com.sh3d.mcp.http;
+
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный lock-free набор недавно истёкших session ID.
+ * <p>
+ * Lookups are a single {@link ConcurrentHashMap#containsKey} with no locking, so
+ * unknown-session probes during reconnect storms do not contend. Eviction order is
+ * kept in a {@link ConcurrentLinkedQueue} of (id, stamp) nodes: re-adding an ID gives
+ * it a new stamp, which makes its older queue node stale and moves the ID to the
+ * most-recent end. Stale nodes are swept out once the queue holds twice the capacity,
+ * so repeated re-adds neither grow the queue nor push out other IDs. Under concurrent
+ * adds the size may briefly exceed the capacity by the number of racing writers.
+ */
+class ExpiredIdCache {
+
+    private final int capacity;
+    private final ConcurrentHashMap<String, Long> stamps = new ConcurrentHashMap<>();
+    private final Queue<Node> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger orderSize = new AtomicInteger();
+    private final AtomicLong nextStamp = new AtomicLong();
+    private final AtomicBoolean sweeping = new AtomicBoolean();
+
+    ExpiredIdCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    void add(String id) {
+        long stamp = nextStamp.incrementAndGet();
+        stamps.put(id, stamp);
+        order.offer(new Node(id, stamp));
+        orderSize.incrementAndGet();
+        evict();
+    }
+
+    boolean contains(String id) {
+        return id != null && stamps.containsKey(id);
+    }
+
+    int size() {
+        return stamps.size();
+    }
+
+    /** Queued nodes, live and stale (for tests). */
+    int queueLength() {
+        return orderSize.get();
+    }
+
+    /**
+     * Drops oldest entries while over capacity, then, if the queue has grown past twice
+     * the capacity, its stale nodes (IDs re-added later). Live IDs are only dropped to
+     * get back to the capacity.
+     */
+    private void evict() {
+        while (stamps.size() > capacity) {
+            Node oldest = order.poll();
+            if (oldest == null) {
+                return;
+            }
+            oldest.unlink();
+            stamps.remove(oldest.id, oldest.stamp);
+        }
+        if (orderSize.get() > 2 * capacity && sweeping.compareAndSet(false, true)) {
+            try {
+                removeStaleNodes();
+            } finally {
+                sweeping.set(false);
+            }
+        }
+    }
+
+    /** One pass over the queue; live nodes keep their order. */
+    private void removeStaleNodes() {
+        for (Iterator<Node> it = order.iterator(); it.hasNext(); ) {
+            Node node = it.next();
+            if (!node.stamp.equals(stamps.get(node.id))) {
+                it.remove();
+                node.unlink();
+            }
+        }
+    }
+
+    private final class Node {
+        final String id;
+        final Long stamp;
+        /** Set by whichever of poll and the stale sweep takes the node out first. */
+        private final AtomicBoolean unlinked = new AtomicBoolean();
+
+        Node(String id, long stamp) {
+            this.id = id;
+            this.stamp = stamp;
+        }
+
+        void unlink() {
+            if (unlinked.compareAndSet(false, true)) {
+                orderSize.decrementAndGet();
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.sh3d.mcp.http;
 
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
 import com.sh3d.mcp.command.CommandRegistry;
 import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.metrics.QueueTiming;
 import com.sh3d.mcp.server.ServerState;
 import com.sh3d.mcp.server.ServerStateListener;
 
@@ -25,22 +28,26 @@ import java.util.logging.Logger;
 /**
  * HTTP-сервер, реализующий MCP (Model Context Protocol) через Streamable HTTP.
  * Один endpoint /mcp принимает POST (JSON-RPC 2.0), GET (SSE), DELETE (session cleanup).
+ * GET /metrics отдаёт метрики в Prometheus-формате, если у реестра команд включены метрики.
  * Использует встроенный com.sun.net.httpserver.HttpServer — ноль внешних зависимостей.
  */
 public class HttpMcpServer {
 
     private static final Logger LOG = Logger.getLogger(HttpMcpServer.class.getName());
     private static final String MCP_ENDPOINT = "/mcp";
+    private static final String METRICS_ENDPOINT = "/metrics";
 
     static final int CORE_POOL_SIZE = 4;
     static final int MAX_POOL_SIZE = 16;
     static final long KEEP_ALIVE_SECONDS = 60;
 
     private volatile int port;
+    private final PluginConfig config;
     private final CommandRegistry commandRegistry;
-    private final HomeAccessor accessor;
+    private final HomeRegistry homes;
 
     private volatile HttpServer httpServer;
+    private volatile McpRequestHandler requestHandler;
     private volatile ExecutorService executor;
     private volatile Exception lastStartupError;
 
@@ -48,9 +55,17 @@ public class HttpMcpServer {
     private final List<ServerStateListener> stateListeners = new CopyOnWriteArrayList<>();
 
     public HttpMcpServer(PluginConfig config, CommandRegistry commandRegistry, HomeAccessor accessor) {
+        this(config, commandRegistry, new HomeRegistry(accessor));
+    }
+
+    /**
+     * @param homes homes the MCP sessions work on; tools/call is routed to the session's home
+     */
+    public HttpMcpServer(PluginConfig config, CommandRegistry commandRegistry, HomeRegistry homes) {
         this.port = config.getPort();
+        this.config = config;
         this.commandRegistry = commandRegistry;
-        this.accessor = accessor;
+        this.homes = homes;
     }
 
     /**
@@ -80,6 +95,11 @@ public class HttpMcpServer {
             forceState(ServerState.STOPPING);
         }
 
+        McpRequestHandler handler = requestHandler;
+        if (handler != null) {
+            handler.close(); // SSE-потоки держат соединения открытыми
+        }
+
         HttpServer server = httpServer;
         if (server != null) {
             server.stop(1); // 1 секунда на завершение активных запросов
@@ -99,6 +119,7 @@ public class HttpMcpServer {
         }
 
         httpServer = null;
+        requestHandler = null;
         executor = null;
         forceState(ServerState.STOPPED);
         LOG.info("MCP HTTP server stopped");
@@ -162,16 +183,22 @@ public class HttpMcpServer {
                 return;
             }
 
-            localServer = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
-            localServer.setExecutor(localExecutor);
+            localServer = createHttpServer(new InetSocketAddress("127.0.0.1", port));
+            // Stamps submission time so tools/call can report executor queue wait
+            localServer.setExecutor(QueueTiming.wrap(localExecutor));
 
-            McpRequestHandler requestHandler = new McpRequestHandler(commandRegistry, accessor);
+            McpRequestHandler requestHandler = new McpRequestHandler(commandRegistry, homes, config);
             localServer.createContext(MCP_ENDPOINT, requestHandler);
+            MetricsRegistry metrics = commandRegistry.getMetrics();
+            if (metrics != null) {
+                localServer.createContext(METRICS_ENDPOINT, new MetricsHandler(metrics));
+            }
 
             localServer.start();
 
             // Atomically transition STARTING -> RUNNING; if stop() already ran, tear down
             if (!transitionState(ServerState.STARTING, ServerState.RUNNING)) {
+                requestHandler.close();
                 localServer.stop(0);
                 localExecutor.shutdownNow();
                 return;
@@ -179,6 +206,7 @@ public class HttpMcpServer {
 
             // Publish to volatile fields only after successful transition
             this.executor = localExecutor;
+            this.requestHandler = requestHandler;
             this.httpServer = localServer;
 
             LOG.info("MCP HTTP server started on http://127.0.0.1:" + port + MCP_ENDPOINT);
@@ -197,6 +225,45 @@ public class HttpMcpServer {
         }
     }
 
+    /**
+     * Создаёт HTTP backend по {@link PluginConfig#getHttpBackend()}: встроенный
+     * {@link HttpServer} или {@link NioHttpServer}. Оба держат keep-alive соединения;
+     * {@code exchange.close()} в {@link McpRequestHandler} завершает обмен, но не соединение.
+     */
+    private HttpServer createHttpServer(InetSocketAddress address) throws IOException {
+        int backlog = Math.max(0, config.getBacklog());
+        if (PluginConfig.HTTP_BACKEND_NIO.equals(config.getHttpBackend())) {
+            NioHttpServer nioServer = new NioHttpServer(
+                    TimeUnit.SECONDS.toMillis(config.getKeepAliveSeconds()),
+                    config.getMaxIdleConnections(), config.getMaxConnections(),
+                    McpRequestHandler.MAX_REQUEST_BODY_SIZE);
+            nioServer.bind(address, backlog);
+            LOG.info("Using NIO HTTP backend (maxConnections=" + config.getMaxConnections() + ")");
+            return nioServer;
+        }
+        applyJdkKeepAliveSettings();
+        return HttpServer.create(address, backlog);
+    }
+
+    /**
+     * Переносит keep-alive настройки в системные свойства {@code sun.net.httpserver.*}.
+     * The JDK reads them once, when the first HttpServer of the JVM is created, and
+     * explicitly set -D values take precedence.
+     */
+    private void applyJdkKeepAliveSettings() {
+        setIfAbsent("sun.net.httpserver.idleInterval", config.getKeepAliveSeconds());
+        setIfAbsent("sun.net.httpserver.maxIdleConnections", config.getMaxIdleConnections());
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private static void setIfAbsent(String key, int value) {
+        if (value > 0 && System.getProperty(key) == null) {
+            System.setProperty(key, String.valueOf(value));
+        }
+    }
+
     private boolean transitionState(ServerState expected, ServerState newState) {
         if (state.compareAndSet(expected, newState)) {
             fireStateChanged(expected, newState);
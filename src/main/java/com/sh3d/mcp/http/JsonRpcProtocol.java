@@ -4,6 +4,7 @@ import com.sh3d.mcp.plugin.SH3DMcpPlugin;
 import com.sh3d.mcp.protocol.JsonUtil;
 import com.sh3d.mcp.protocol.Response;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
@@ -23,6 +24,9 @@ public final class JsonRpcProtocol {
     public static final int INVALID_PARAMS = -32602;
     public static final int INTERNAL_ERROR = -32603;
 
+    /** Server-defined: per-session quota exceeded, error.data содержит retryAfterMs */
+    public static final int RATE_LIMITED = -32029;
+
     private JsonRpcProtocol() {
     }
 
@@ -79,10 +83,46 @@ public final class JsonRpcProtocol {
         return sb.toString();
     }
 
+    /**
+     * Formats a JSON-RPC 2.0 result response around an already-serialized {@code result}
+     * (UTF-8 JSON). Used for cached results so they are not re-serialized per request.
+     */
+    public static byte[] formatRawResult(Object id, byte[] resultJson) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"jsonrpc\":\"2.0\",\"id\":");
+        JsonUtil.appendValue(sb, id);
+        sb.append(",\"result\":");
+        byte[] prefix = sb.toString().getBytes(StandardCharsets.UTF_8);
+
+        byte[] out = new byte[prefix.length + resultJson.length + 1];
+        System.arraycopy(prefix, 0, out, 0, prefix.length);
+        System.arraycopy(resultJson, 0, out, prefix.length, resultJson.length);
+        out[out.length - 1] = '}';
+        return out;
+    }
+
+    /**
+     * Форматирует JSON-RPC 2.0 notification (без id и params).
+     */
+    public static String formatNotification(String method) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"jsonrpc\":\"2.0\",\"method\":");
+        JsonUtil.appendString(sb, method);
+        sb.append("}");
+        return sb.toString();
+    }
+
     /**
      * Форматирует JSON-RPC 2.0 error response.
      */
     public static String formatError(Object id, int code, String message) {
+        return formatError(id, code, message, null);
+    }
+
+    /**
+     * Форматирует JSON-RPC 2.0 error response с полем {@code error.data} (опускается, если null).
+     */
+    public static String formatError(Object id, int code, String message, Map<String, Object> data) {
         StringBuilder sb = new StringBuilder();
         sb.append("{\"jsonrpc\":\"2.0\",\"id\":");
         JsonUtil.appendValue(sb, id);
@@ -90,6 +130,10 @@ public final class JsonRpcProtocol {
         sb.append(code);
         sb.append(",\"message\":");
         JsonUtil.appendString(sb, message);
+        if (data != null) {
+            sb.append(",\"data\":");
+            JsonUtil.appendValue(sb, data);
+        }
         sb.append("}}");
         return sb.toString();
     }
@@ -1,11 +1,21 @@
 package com.sh3d.mcp.http;
 
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.command.CommandException;
 import com.sh3d.mcp.command.CommandDescriptor;
 import com.sh3d.mcp.command.CommandHandler;
 import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.command.CostClass;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.metrics.QueueTiming;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
+import com.sh3d.mcp.trace.Span;
+import com.sh3d.mcp.trace.Trace;
+import com.sh3d.mcp.trace.RequestCapture;
+import com.sh3d.mcp.trace.Tracer;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -15,10 +25,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -27,7 +35,7 @@ import java.util.logging.Logger;
  * Обработчик HTTP-запросов для MCP Streamable HTTP endpoint.
  * <p>
  * POST /mcp — JSON-RPC 2.0 запросы (initialize, tools/list, tools/call)
- * GET /mcp — SSE-поток для server→client уведомлений
+ * GET /mcp — SSE-поток для server→client уведомлений (notifications/tools/list_changed)
  * DELETE /mcp — завершение сессии
  */
 public class McpRequestHandler implements HttpHandler {
@@ -41,17 +49,98 @@ public class McpRequestHandler implements HttpHandler {
     static final int MAX_REQUEST_BODY_SIZE = 10 * 1024 * 1024;
 
     private final CommandRegistry commandRegistry;
-    private final HomeAccessor accessor;
+    /** Дома сессий; tools/call выполняется в доме своей сессии. */
+    private final HomeRegistry homes;
     private final SessionManager sessionManager;
+    private final ToolsListCache toolsListCache;
+    private final NotificationStreams notificationStreams = new NotificationStreams();
+    private final Runnable registryListener = this::onToolsChanged;
+    /** Per-session квоты на tools/call; null — без ограничений. */
+    private final RateLimiter rateLimiter;
+    /** Метрики реестра команд; null — queue wait и payload не измеряются. */
+    private final MetricsRegistry metrics;
+    /** Трассировка запросов в файл; null — выключена. */
+    private final Tracer tracer;
+    /** Запись тел POST-запросов для replay; null — выключена. */
+    private final RequestCapture capture;
 
     public McpRequestHandler(CommandRegistry commandRegistry, HomeAccessor accessor) {
+        this(commandRegistry, accessor, (RateLimiter) null);
+    }
+
+    public McpRequestHandler(CommandRegistry commandRegistry, HomeAccessor accessor, PluginConfig config) {
+        this(commandRegistry, new HomeRegistry(accessor), config);
+    }
+
+    public McpRequestHandler(CommandRegistry commandRegistry, HomeRegistry homes, PluginConfig config) {
+        this(commandRegistry, homes, RateLimiter.fromConfig(config), Tracer.fromConfig(config),
+                RequestCapture.fromConfig(config));
+    }
+
+    McpRequestHandler(CommandRegistry commandRegistry, HomeAccessor accessor, RateLimiter rateLimiter) {
+        this(commandRegistry, accessor, rateLimiter, null);
+    }
+
+    McpRequestHandler(CommandRegistry commandRegistry, HomeAccessor accessor, RateLimiter rateLimiter,
+                      Tracer tracer) {
+        this(commandRegistry, accessor, rateLimiter, tracer, null);
+    }
+
+    McpRequestHandler(CommandRegistry commandRegistry, HomeAccessor accessor, RateLimiter rateLimiter,
+                      Tracer tracer, RequestCapture capture) {
+        this(commandRegistry, new HomeRegistry(accessor), rateLimiter, tracer, capture);
+    }
+
+    McpRequestHandler(CommandRegistry commandRegistry, HomeRegistry homes, RateLimiter rateLimiter,
+                      Tracer tracer, RequestCapture capture) {
         this.commandRegistry = commandRegistry;
-        this.accessor = accessor;
+        this.homes = homes;
+        this.rateLimiter = rateLimiter;
+        this.tracer = tracer;
+        this.capture = capture;
         this.sessionManager = new SessionManager();
+        // DELETE and expiry: unbind the home and end the session's SSE stream
+        this.sessionManager.setRemovalListener(sessionId -> {
+            homes.detachSession(sessionId);
+            notificationStreams.close(sessionId);
+        });
+        this.sessionManager.startExpiryTimer();
+        this.toolsListCache = new ToolsListCache(commandRegistry);
+        this.metrics = commandRegistry.getMetrics();
+        commandRegistry.addChangeListener(registryListener);
+        if (metrics != null) {
+            metrics.registerSection("sessions", sessionManager::getMetrics);
+            metrics.registerSection("homes", homes::getCounters);
+        }
+    }
+
+    /**
+     * Detaches from the registry, closes all open SSE streams, stops session expiry
+     * and flushes pending traces and captured requests. Called by {@link HttpMcpServer#stop()}.
+     */
+    public void close() {
+        commandRegistry.removeChangeListener(registryListener);
+        if (metrics != null) {
+            metrics.unregisterSection("sessions");
+            metrics.unregisterSection("homes");
+        }
+        notificationStreams.closeAll();
+        sessionManager.close();
+        if (tracer != null) {
+            tracer.close();
+        }
+        if (capture != null) {
+            capture.close();
+        }
     }
 
     @Override
     public void handle(HttpExchange exchange) throws IOException {
+        boolean keepOpen = false;
+        Trace trace = tracer != null ? tracer.start(exchange.getRequestMethod() + " /mcp") : null;
+        if (trace != null) {
+            exchange.getResponseHeaders().set("X-Trace-Id", trace.getTraceId());
+        }
         try {
             // Валидация Origin (DNS rebinding protection)
             if (!validateOrigin(exchange)) {
@@ -66,7 +155,7 @@ public class McpRequestHandler implements HttpHandler {
                     handlePost(exchange);
                     break;
                 case "GET":
-                    handleGet(exchange);
+                    keepOpen = handleGet(exchange);
                     break;
                 case "DELETE":
                     handleDelete(exchange);
@@ -85,12 +174,54 @@ public class McpRequestHandler implements HttpHandler {
                 // Клиент мог уже отключиться
             }
         } finally {
-            exchange.close();
+            if (!keepOpen) {
+                exchange.close();
+            }
+            if (trace != null) {
+                tracer.finish(trace);
+            }
         }
     }
 
     private void handlePost(HttpExchange exchange) throws IOException {
-        String body = readBody(exchange);
+        if (capture == null) {
+            doHandlePost(exchange, null);
+            return;
+        }
+        long arrivedAt = System.nanoTime();
+        String[] body = new String[1];
+        try {
+            doHandlePost(exchange, body);
+        } finally {
+            if (body[0] != null && !body[0].isEmpty()) {
+                capture.record(getSessionIdHeader(exchange),
+                        exchange.getResponseHeaders().getFirst("Mcp-Session-Id"), body[0],
+                        exchange.getResponseCode(), arrivedAt, System.nanoTime() - arrivedAt);
+            }
+        }
+    }
+
+    /**
+     * @param bodyOut if not null, receives the request body for {@link RequestCapture}
+     */
+    private void doHandlePost(HttpExchange exchange, String[] bodyOut) throws IOException {
+        String body;
+        Map<String, Object> request = null;
+        String parseError = null;
+        try (Span span = Trace.span("parse")) {
+            body = readBody(exchange);
+            if (bodyOut != null) {
+                bodyOut[0] = body;
+            }
+            if (body != null && !body.isEmpty()) {
+                span.attr("bytes", body.length());
+                try {
+                    request = JsonRpcProtocol.parseRequest(body);
+                } catch (IllegalArgumentException e) {
+                    parseError = e.getMessage();
+                }
+            }
+        }
         if (body == null) {
             sendJson(exchange, 413, JsonRpcProtocol.formatError(null,
                     JsonRpcProtocol.INVALID_REQUEST,
@@ -102,13 +233,9 @@ public class McpRequestHandler implements HttpHandler {
                     JsonRpcProtocol.PARSE_ERROR, "Empty request body"));
             return;
         }
-
-        Map<String, Object> request;
-        try {
-            request = JsonRpcProtocol.parseRequest(body);
-        } catch (IllegalArgumentException e) {
+        if (request == null) {
             sendJson(exchange, 400, JsonRpcProtocol.formatError(null,
-                    JsonRpcProtocol.PARSE_ERROR, "Invalid JSON: " + e.getMessage()));
+                    JsonRpcProtocol.PARSE_ERROR, "Invalid JSON: " + parseError));
             return;
         }
 
@@ -122,6 +249,7 @@ public class McpRequestHandler implements HttpHandler {
         }
 
         LOG.fine("MCP request: method=" + method + " id=" + id);
+        Trace.annotate("rpc", method);
 
         switch (method) {
             case "initialize":
@@ -134,7 +262,7 @@ public class McpRequestHandler implements HttpHandler {
                 handleToolsList(exchange, request, id);
                 break;
             case "tools/call":
-                handleToolsCall(exchange, request, id);
+                handleToolsCall(exchange, request, id, requestSize(exchange, body));
                 break;
             case "ping":
                 sendJson(exchange, 200, JsonRpcProtocol.formatResult(id, new java.util.LinkedHashMap<>()));
@@ -181,29 +309,16 @@ public class McpRequestHandler implements HttpHandler {
         McpSession session = validateSession(exchange);
         if (session == null) return;
 
-        List<Map<String, Object>> tools = new ArrayList<>();
-        for (Map.Entry<String, CommandHandler> entry : commandRegistry.getHandlers().entrySet()) {
-            String action = entry.getKey();
-            CommandHandler handler = entry.getValue();
-
-            if (handler instanceof CommandDescriptor) {
-                CommandDescriptor descriptor = (CommandDescriptor) handler;
-                Map<String, Object> tool = new LinkedHashMap<>();
-
-                String toolName = descriptor.getToolName();
-                tool.put("name", (toolName != null && !toolName.isEmpty()) ? toolName : action);
-                tool.put("description", descriptor.getDescription());
-                tool.put("inputSchema", descriptor.getSchema());
-                tools.add(tool);
-            }
-        }
-
-        sendJson(exchange, 200, JsonRpcProtocol.formatToolsListResult(id, tools));
+        // ETag is informational only: a JSON-RPC call always gets its response, so
+        // If-None-Match is not answered with 304
+        ToolsListCache.Entry tools = toolsListCache.get();
+        exchange.getResponseHeaders().set("ETag", tools.getEtag());
+        sendJson(exchange, 200, JsonRpcProtocol.formatRawResult(id, tools.getResultJson()));
     }
 
     @SuppressWarnings("unchecked")
-    private void handleToolsCall(HttpExchange exchange, Map<String, Object> request, Object id)
-            throws IOException {
+    private void handleToolsCall(HttpExchange exchange, Map<String, Object> request, Object id,
+                                 int requestSize) throws IOException {
         McpSession session = validateSession(exchange);
         if (session == null) return;
 
@@ -215,6 +330,7 @@ public class McpRequestHandler implements HttpHandler {
             return;
         }
         String toolName = nameObj.toString();
+        Trace.annotate("tool", toolName);
 
         // Извлекаем arguments
         Map<String, Object> arguments;
@@ -226,50 +342,112 @@ public class McpRequestHandler implements HttpHandler {
         }
 
         // Находим action по toolName (может совпадать с action или CommandDescriptor.getToolName())
-        String action = resolveAction(toolName);
+        String action = commandRegistry.resolveAction(toolName);
         if (action == null) {
             sendJson(exchange, 200, JsonRpcProtocol.formatError(id,
                     JsonRpcProtocol.METHOD_NOT_FOUND, "Unknown tool: " + toolName));
             return;
         }
 
-        // Dispatch через CommandRegistry
-        Request cmdRequest = new Request(action, arguments);
-        Response cmdResponse = commandRegistry.dispatch(cmdRequest, accessor);
+        RateLimiter.Permit permit = null;
+        if (rateLimiter != null) {
+            permit = rateLimiter.acquire(session, costClassOf(action, arguments));
+            if (!permit.isGranted()) {
+                sendRateLimited(exchange, id, toolName, permit);
+                return;
+            }
+        }
 
-        sendJson(exchange, 200, JsonRpcProtocol.formatToolCallResult(id, cmdResponse));
+        if (metrics != null) {
+            long enqueuedAt = QueueTiming.enqueuedAtNanos();
+            if (enqueuedAt != QueueTiming.UNKNOWN) {
+                metrics.forAction(action).recordQueueWait(System.nanoTime() - enqueuedAt);
+            }
+        }
+
+        // Dispatch через CommandRegistry в дом сессии
+        Response cmdResponse;
+        try (Span span = Trace.span("dispatch");
+             HomeRegistry.Lease lease = homes.acquire(session.getSessionId())) {
+            span.attr("home", lease.getHomeId());
+            Request cmdRequest = new Request(action, arguments);
+            cmdResponse = commandRegistry.dispatch(cmdRequest, lease.getAccessor());
+        } catch (CommandException e) {
+            cmdResponse = Response.error(e.getMessage());
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+        }
+
+        byte[] result;
+        try (Span span = Trace.span("serialize")) {
+            result = JsonRpcProtocol.formatToolCallResult(id, cmdResponse)
+                    .getBytes(StandardCharsets.UTF_8);
+            span.attr("bytes", result.length);
+        }
+        if (metrics != null) {
+            metrics.forAction(action).recordPayload(requestSize, result.length);
+        }
+        sendJson(exchange, 200, result);
+    }
+
+    private CostClass costClassOf(String action, Map<String, Object> arguments) {
+        CommandHandler handler = commandRegistry.getHandlers().get(action);
+        if (handler instanceof CommandDescriptor) {
+            return ((CommandDescriptor) handler).getCostClass(arguments);
+        }
+        return CostClass.LIGHT;
     }
 
     /**
-     * Разрешает toolName → action. Учитывает CommandDescriptor.getToolName().
+     * Отклонённый квотой вызов: JSON-RPC error {@link JsonRpcProtocol#RATE_LIMITED}
+     * с подсказкой retryAfterMs в error.data и заголовком Retry-After (секунды).
      */
-    private String resolveAction(String toolName) {
-        // Прямое совпадение с action
-        if (commandRegistry.hasHandler(toolName)) {
-            return toolName;
-        }
-        // Поиск по CommandDescriptor.getToolName()
-        for (Map.Entry<String, CommandHandler> entry : commandRegistry.getHandlers().entrySet()) {
-            CommandHandler handler = entry.getValue();
-            if (handler instanceof CommandDescriptor) {
-                String descriptorToolName = ((CommandDescriptor) handler).getToolName();
-                if (toolName.equals(descriptorToolName)) {
-                    return entry.getKey();
-                }
-            }
+    private void sendRateLimited(HttpExchange exchange, Object id, String toolName,
+                                 RateLimiter.Permit permit) throws IOException {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("tool", toolName);
+        data.put("costClass", permit.getCostClass().name().toLowerCase());
+        data.put("retryAfterMs", permit.getRetryAfterMs());
+        exchange.getResponseHeaders().set("Retry-After",
+                String.valueOf((permit.getRetryAfterMs() + 999) / 1000));
+        sendJson(exchange, 200, JsonRpcProtocol.formatError(id,
+                JsonRpcProtocol.RATE_LIMITED, permit.getReason(), data));
+        LOG.fine("tools/call rejected: " + toolName + " — " + permit.getReason());
+    }
+
+    /**
+     * Opens an SSE stream for server→client notifications.
+     * Clients that do not accept {@code text/event-stream} get 405.
+     *
+     * @return true if the exchange was registered as a stream and must stay open
+     */
+    private boolean handleGet(HttpExchange exchange) throws IOException {
+        String accept = exchange.getRequestHeaders().getFirst("Accept");
+        if (accept == null || !accept.contains("text/event-stream")) {
+            exchange.sendResponseHeaders(405, -1);
+            return false;
         }
-        return null;
+        McpSession session = validateSession(exchange);
+        if (session == null) {
+            return false;
+        }
+        notificationStreams.open(session.getSessionId(), exchange);
+        LOG.fine("SSE stream opened for session " + session.getSessionId());
+        return true;
     }
 
-    private void handleGet(HttpExchange exchange) throws IOException {
-        // SSE-поток для server→client уведомлений
-        // В MVP не используется — сервер не инициирует запросы к клиенту
-        exchange.sendResponseHeaders(405, -1);
+    /** Pushes notifications/tools/list_changed to open SSE streams after a handler registration. */
+    private void onToolsChanged() {
+        notificationStreams.broadcast(
+                JsonRpcProtocol.formatNotification("notifications/tools/list_changed"));
     }
 
     private void handleDelete(HttpExchange exchange) throws IOException {
         String sessionId = getSessionIdHeader(exchange);
         if (sessionId != null) {
+            // The removal listener closes the session's SSE stream
             sessionManager.removeSession(sessionId);
             LOG.info("MCP session removed: " + sessionId);
         }
@@ -286,6 +464,14 @@ public class McpRequestHandler implements HttpHandler {
      * Returns null and sends an error if the header is missing or the ID is unknown.
      */
     private McpSession validateSession(HttpExchange exchange) throws IOException {
+        try (Span span = Trace.span("session")) {
+            McpSession session = doValidateSession(exchange);
+            span.attr("outcome", session != null ? "ok" : "rejected");
+            return session;
+        }
+    }
+
+    private McpSession doValidateSession(HttpExchange exchange) throws IOException {
         String sessionId = getSessionIdHeader(exchange);
         if (sessionId == null) {
             sendJson(exchange, 400, JsonRpcProtocol.formatError(null,
@@ -310,7 +496,11 @@ public class McpRequestHandler implements HttpHandler {
     }
 
     private boolean validateOrigin(HttpExchange exchange) {
-        String origin = exchange.getRequestHeaders().getFirst("Origin");
+        return isAllowedOrigin(exchange.getRequestHeaders().getFirst("Origin"));
+    }
+
+    /** Origin check shared with {@link MetricsHandler}. */
+    static boolean isAllowedOrigin(String origin) {
         // null origin допустим (curl, non-browser clients)
         if (origin == null) {
             return true;
@@ -360,12 +550,31 @@ public class McpRequestHandler implements HttpHandler {
         }
     }
 
+    /** Request body size in bytes: Content-Length if present, else the decoded length. */
+    private static int requestSize(HttpExchange exchange, String body) {
+        String length = exchange.getRequestHeaders().getFirst("Content-Length");
+        if (length != null) {
+            try {
+                return Integer.parseInt(length.trim());
+            } catch (NumberFormatException ignored) {
+                // fall through
+            }
+        }
+        return body.length();
+    }
+
     private void sendJson(HttpExchange exchange, int statusCode, String json) throws IOException {
-        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
-        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
-        exchange.sendResponseHeaders(statusCode, bytes.length);
-        try (OutputStream os = exchange.getResponseBody()) {
-            os.write(bytes);
+        sendJson(exchange, statusCode, json.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void sendJson(HttpExchange exchange, int statusCode, byte[] bytes) throws IOException {
+        try (Span span = Trace.span("write")) {
+            span.attr("status", statusCode).attr("bytes", bytes.length);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(statusCode, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
         }
     }
 }
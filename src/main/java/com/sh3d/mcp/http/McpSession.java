@@ -1,5 +1,11 @@
 package com.sh3d.mcp.http;
 
+import com.sh3d.mcp.command.CostClass;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
 /**
  * MCP-сессия. Создаётся при initialize, хранится до DELETE или timeout.
  */
@@ -10,11 +16,16 @@ public class McpSession {
     private final long createdAt;
     private volatile long lastAccessedAt;
     private volatile boolean initialized;
+    private final Map<CostClass, SessionQuota> quotas = new ConcurrentHashMap<>();
 
     McpSession(String sessionId, String protocolVersion) {
+        this(sessionId, protocolVersion, System.currentTimeMillis());
+    }
+
+    McpSession(String sessionId, String protocolVersion, long createdAt) {
         this.sessionId = sessionId;
         this.protocolVersion = protocolVersion;
-        this.createdAt = System.currentTimeMillis();
+        this.createdAt = createdAt;
         this.lastAccessedAt = this.createdAt;
         this.initialized = false;
     }
@@ -28,7 +39,11 @@ public class McpSession {
     }
 
     public void touch() {
-        this.lastAccessedAt = System.currentTimeMillis();
+        touch(System.currentTimeMillis());
+    }
+
+    void touch(long now) {
+        this.lastAccessedAt = now;
     }
 
     public boolean isInitialized() {
@@ -38,4 +53,11 @@ public class McpSession {
     public void setInitialized(boolean initialized) {
         this.initialized = initialized;
     }
+
+    /**
+     * Квота сессии для класса команд; создаётся при первом обращении.
+     */
+    SessionQuota getQuota(CostClass costClass, Function<CostClass, SessionQuota> factory) {
+        return quotas.computeIfAbsent(costClass, factory);
+    }
 }
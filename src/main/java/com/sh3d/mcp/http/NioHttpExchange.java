@@ -0,0 +1,335 @@
+package com.sh3d.mcp.http;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link HttpExchange} для {@link NioHttpServer}.
+ * <p>
+ * Follows the JDK contract for {@link #sendResponseHeaders(int, long)}: a positive length
+ * means a fixed-length body, 0 means chunked transfer encoding and -1 means no body.
+ * Response bytes are buffered and handed to the connection on {@code flush()} and
+ * {@code close()}; the selector thread writes them.
+ */
+class NioHttpExchange extends HttpExchange {
+
+    private final NioHttpServer.Connection connection;
+    private final String method;
+    private final URI uri;
+    private final String protocol;
+    private final Headers requestHeaders;
+    private final Headers responseHeaders = new Headers();
+    private final InputStream requestBody;
+    private final ResponseBody responseBody = new ResponseBody();
+    private final boolean keepAlive;
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+
+    private volatile HttpContext context;
+    private volatile int responseCode = -1;
+    private volatile boolean closed;
+    private InputStream customIn;
+    private OutputStream customOut;
+
+    NioHttpExchange(NioHttpServer.Connection connection, String method, URI uri, String protocol,
+                    Headers requestHeaders, byte[] body, boolean keepAlive) {
+        this.connection = connection;
+        this.method = method;
+        this.uri = uri;
+        this.protocol = protocol;
+        this.requestHeaders = requestHeaders;
+        this.requestBody = new ByteArrayInputStream(body);
+        this.keepAlive = keepAlive;
+    }
+
+    void setContext(HttpContext context) {
+        this.context = context;
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return context;
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return customIn != null ? customIn : requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return customOut != null ? customOut : responseBody;
+    }
+
+    @Override
+    public synchronized void sendResponseHeaders(int rCode, long responseLength) throws IOException {
+        if (responseCode != -1) {
+            throw new IOException("Response headers already sent");
+        }
+        responseCode = rCode;
+        boolean noBodyAllowed = rCode == 204 || rCode == 304 || (rCode >= 100 && rCode < 200)
+                || "HEAD".equals(method);
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("HTTP/1.1 ").append(rCode).append(' ').append(reasonPhrase(rCode)).append("\r\n");
+        for (Map.Entry<String, List<String>> e : responseHeaders.entrySet()) {
+            for (String value : e.getValue()) {
+                sb.append(e.getKey()).append(": ").append(value).append("\r\n");
+            }
+        }
+        if (noBodyAllowed) {
+            responseBody.mode = ResponseBody.NONE;
+        } else if (responseLength > 0) {
+            sb.append("Content-Length: ").append(responseLength).append("\r\n");
+            responseBody.mode = ResponseBody.FIXED;
+            responseBody.remaining = responseLength;
+        } else if (responseLength == 0) {
+            sb.append("Transfer-Encoding: chunked\r\n");
+            responseBody.mode = ResponseBody.CHUNKED;
+        } else {
+            sb.append("Content-Length: 0\r\n");
+            responseBody.mode = ResponseBody.NONE;
+        }
+        if (!keepAlive) {
+            sb.append("Connection: close\r\n");
+        } else if (!"HTTP/1.1".equals(protocol)) {
+            sb.append("Connection: keep-alive\r\n");
+        }
+        sb.append("\r\n");
+        // Headers are sent together with the first body bytes (one gathering write)
+        responseBody.pendingHead = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (responseBody.mode == ResponseBody.NONE) {
+            responseBody.flush();
+        }
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return connection.remoteAddress();
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return connection.localAddress();
+    }
+
+    @Override
+    public String getProtocol() {
+        return protocol;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+        if (value == null) {
+            attributes.remove(name);
+        } else {
+            attributes.put(name, value);
+        }
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            customIn = i;
+        }
+        if (o != null) {
+            customOut = o;
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+
+    /**
+     * Ends the exchange. The connection is reused for the next request unless the
+     * response is incomplete or keep-alive is off.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        boolean reusable = false;
+        try {
+            if (responseCode != -1) {
+                responseBody.close();
+                reusable = responseBody.isComplete();
+            }
+        } catch (IOException e) {
+            reusable = false;
+        }
+        connection.finish(reusable);
+    }
+
+    /** Ends the exchange after a handler failure; the connection is closed. */
+    void abort() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        connection.finish(false);
+    }
+
+    private static String reasonPhrase(int code) {
+        switch (code) {
+            case 200: return "OK";
+            case 202: return "Accepted";
+            case 204: return "No Content";
+            case 304: return "Not Modified";
+            case 400: return "Bad Request";
+            case 403: return "Forbidden";
+            case 404: return "Not Found";
+            case 405: return "Method Not Allowed";
+            case 413: return "Payload Too Large";
+            case 429: return "Too Many Requests";
+            case 500: return "Internal Server Error";
+            case 503: return "Service Unavailable";
+            default: return "";
+        }
+    }
+
+    /**
+     * Response body stream. Bytes are buffered until {@link #flush()} or {@link #close()}.
+     */
+    private final class ResponseBody extends OutputStream {
+        static final int UNSET = 0;
+        static final int NONE = 1;
+        static final int FIXED = 2;
+        static final int CHUNKED = 3;
+
+        int mode = UNSET;
+        long remaining;
+        byte[] pendingHead;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean finished;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            if (finished) {
+                throw new IOException("Response body closed");
+            }
+            switch (mode) {
+                case UNSET:
+                    throw new IOException("sendResponseHeaders() must be called first");
+                case NONE:
+                    if (len > 0) {
+                        throw new IOException("Response has no body");
+                    }
+                    return;
+                case FIXED:
+                    if (len > remaining) {
+                        throw new IOException("Too many bytes for fixed-length response");
+                    }
+                    remaining -= len;
+                    break;
+                default:
+                    break;
+            }
+            buffer.write(b, off, len);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            if (mode == UNSET) {
+                return;
+            }
+            ByteBuffer head = pendingHead != null ? ByteBuffer.wrap(pendingHead) : null;
+            pendingHead = null;
+            ByteBuffer data = null;
+            if (buffer.size() > 0) {
+                byte[] bytes = buffer.toByteArray();
+                buffer.reset();
+                if (mode == CHUNKED) {
+                    byte[] prefix = (Integer.toHexString(bytes.length) + "\r\n")
+                            .getBytes(StandardCharsets.US_ASCII);
+                    byte[] framed = new byte[prefix.length + bytes.length + 2];
+                    System.arraycopy(prefix, 0, framed, 0, prefix.length);
+                    System.arraycopy(bytes, 0, framed, prefix.length, bytes.length);
+                    framed[framed.length - 2] = '\r';
+                    framed[framed.length - 1] = '\n';
+                    bytes = framed;
+                }
+                data = ByteBuffer.wrap(bytes);
+            }
+            if (head != null && data != null) {
+                connection.enqueue(head, data);
+            } else if (head != null) {
+                connection.enqueue(head);
+            } else if (data != null) {
+                connection.enqueue(data);
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (finished || mode == UNSET) {
+                return;
+            }
+            flush();
+            finished = true;
+            if (mode == CHUNKED) {
+                connection.enqueue(ByteBuffer.wrap("0\r\n\r\n".getBytes(StandardCharsets.US_ASCII)));
+            }
+        }
+
+        synchronized boolean isComplete() {
+            return finished && (mode != FIXED || remaining == 0);
+        }
+    }
+}
@@ -0,0 +1,805 @@
+package com.sh3d.mcp.http;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * HTTP/1.1-сервер на {@code java.nio.channels} — альтернативный backend для {@link HttpMcpServer}.
+ * <p>
+ * Extends {@link HttpServer}, so {@link McpRequestHandler} and the server lifecycle are
+ * unchanged. One selector thread accepts connections, parses requests and writes queued
+ * responses; handlers run on the configured executor. Connections are persistent (HTTP/1.1
+ * keep-alive, pipelining), idle connections are closed after {@code idleTimeoutMs} and the
+ * number of idle and total connections is bounded.
+ * <p>
+ * Filters of a context run around its handler, as in the JDK server.
+ * Not supported: chunked request bodies (411), authenticators, HTTPS.
+ */
+class NioHttpServer extends HttpServer {
+
+    private static final Logger LOG = Logger.getLogger(NioHttpServer.class.getName());
+
+    /** Maximum size of the request line plus headers. */
+    static final int MAX_HEADER_BYTES = 64 * 1024;
+
+    /**
+     * Maximum backlog of a connection whose socket has stopped draining (slow SSE client).
+     * Only bytes already queued count, so a single response of any size is accepted.
+     */
+    static final long MAX_PENDING_WRITE_BYTES = 8L * 1024 * 1024;
+
+    /** A connection with no write progress for this long counts as not draining. */
+    static final long WRITE_STALL_TIMEOUT_MS = 10_000;
+
+    private static final long SELECT_TIMEOUT_MS = 500;
+    private static final byte[] CONTINUE_100 =
+            "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final long idleTimeoutMs;
+    private final int maxIdleConnections;
+    private final int maxConnections;
+    private final int maxBodyBytes;
+    private final long writeStallTimeoutNanos;
+
+    private final List<Context> contexts = new CopyOnWriteArrayList<>();
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    /** Modified only on the selector thread. */
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+
+    private ServerSocketChannel serverChannel;
+    private Selector selector;
+    private volatile Executor executor;
+    private volatile Thread selectorThread;
+    private volatile boolean running;
+    private final AtomicLong inFlight = new AtomicLong();
+
+    /**
+     * @param idleTimeoutMs      idle keep-alive connections are closed after this time
+     * @param maxIdleConnections the longest-idle connections above this count are closed
+     * @param maxConnections     new connections above this count are refused
+     * @param maxBodyBytes       larger request bodies are answered with 413
+     */
+    NioHttpServer(long idleTimeoutMs, int maxIdleConnections, int maxConnections, int maxBodyBytes) {
+        this(idleTimeoutMs, maxIdleConnections, maxConnections, maxBodyBytes, WRITE_STALL_TIMEOUT_MS);
+    }
+
+    /**
+     * @param writeStallTimeoutMs a backlog over {@link #MAX_PENDING_WRITE_BYTES} fails further
+     *                            writes once the socket has not drained for this long
+     */
+    NioHttpServer(long idleTimeoutMs, int maxIdleConnections, int maxConnections, int maxBodyBytes,
+                  long writeStallTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxConnections = maxConnections;
+        this.maxBodyBytes = maxBodyBytes;
+        this.writeStallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(writeStallTimeoutMs);
+    }
+
+    // === HttpServer API ===
+
+    @Override
+    public void bind(InetSocketAddress addr, int backlog) throws IOException {
+        if (serverChannel != null) {
+            throw new IllegalStateException("Server already bound");
+        }
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(addr, backlog);
+            selector = Selector.open();
+            channel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            channel.close();
+            if (selector != null) {
+                selector.close();
+            }
+            throw e;
+        }
+        serverChannel = channel;
+    }
+
+    @Override
+    public synchronized void start() {
+        if (serverChannel == null) {
+            throw new IllegalStateException("Server not bound");
+        }
+        if (selectorThread != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        running = true;
+        Thread t = new Thread(this::runSelector, "sh3d-mcp-nio-selector");
+        t.setDaemon(true);
+        selectorThread = t;
+        t.start();
+    }
+
+    @Override
+    public void setExecutor(Executor executor) {
+        if (selectorThread != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        this.executor = executor;
+    }
+
+    @Override
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Stops accepting connections, waits up to {@code delay} seconds for running
+     * exchanges to complete, then closes all connections.
+     */
+    @Override
+    public void stop(int delay) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("negative delay");
+        }
+        Thread t = selectorThread;
+        if (t == null) {
+            closeQuietly();
+            return;
+        }
+        runOnSelector(() -> {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Error closing server channel", e);
+            }
+        });
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selectorThread = null;
+    }
+
+    @Override
+    public HttpContext createContext(String path, HttpHandler handler) {
+        Context context = (Context) createContext(path);
+        context.setHandler(handler);
+        return context;
+    }
+
+    @Override
+    public HttpContext createContext(String path) {
+        if (path == null || !path.startsWith("/")) {
+            throw new IllegalArgumentException("Invalid context path: " + path);
+        }
+        for (Context c : contexts) {
+            if (c.path.equals(path)) {
+                throw new IllegalArgumentException("Context already exists: " + path);
+            }
+        }
+        Context context = new Context(path);
+        contexts.add(context);
+        return context;
+    }
+
+    @Override
+    public void removeContext(String path) {
+        if (!contexts.removeIf(c -> c.path.equals(path))) {
+            throw new IllegalArgumentException("No context: " + path);
+        }
+    }
+
+    @Override
+    public void removeContext(HttpContext context) {
+        contexts.remove(context);
+    }
+
+    @Override
+    public InetSocketAddress getAddress() {
+        try {
+            return serverChannel == null ? null : (InetSocketAddress) serverChannel.getLocalAddress();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Number of open client connections (diagnostics). */
+    int getConnectionCount() {
+        return connections.size();
+    }
+
+    // === Selector loop ===
+
+    private void runSelector() {
+        long lastSweep = System.currentTimeMillis();
+        try {
+            while (running) {
+                selector.select(SELECT_TIMEOUT_MS);
+                runSelectorTasks();
+                Set<SelectionKey> keys = selector.selectedKeys();
+                for (SelectionKey key : keys) {
+                    handleKey(key);
+                }
+                keys.clear();
+                long now = System.currentTimeMillis();
+                if (now - lastSweep >= SELECT_TIMEOUT_MS) {
+                    sweepIdle(now);
+                    lastSweep = now;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.log(Level.SEVERE, "NIO selector loop failed", e);
+        } finally {
+            for (Connection c : new ArrayList<>(connections)) {
+                c.close();
+            }
+            closeQuietly();
+        }
+    }
+
+    private void handleKey(SelectionKey key) {
+        if (!key.isValid()) {
+            return;
+        }
+        if (key.isAcceptable()) {
+            accept();
+            return;
+        }
+        Connection c = (Connection) key.attachment();
+        try {
+            if (key.isReadable()) {
+                c.onReadable();
+            }
+            if (key.isValid() && key.isWritable()) {
+                c.onWritable();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Connection error", e);
+            c.close();
+        }
+    }
+
+    private void accept() {
+        SocketChannel channel;
+        try {
+            channel = serverChannel.accept();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Accept failed", e);
+            return;
+        }
+        if (channel == null) {
+            return;
+        }
+        if (connections.size() >= maxConnections && !closeLongestIdle()) {
+            LOG.warning("Connection limit reached (" + maxConnections + "), refusing connection");
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+            return;
+        }
+        try {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection c = new Connection(channel);
+            c.key = channel.register(selector, SelectionKey.OP_READ, c);
+            connections.add(c);
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Failed to register connection", e);
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+                // already closing
+            }
+        }
+    }
+
+    /** Closes connections idle longer than the timeout and the oldest idle ones above the limit. */
+    private void sweepIdle(long now) {
+        List<Connection> idle = new ArrayList<>();
+        for (Connection c : new ArrayList<>(connections)) {
+            if (c.exchange != null) {
+                continue;
+            }
+            if (now - c.lastActive > idleTimeoutMs) {
+                c.close();
+            } else {
+                idle.add(c);
+            }
+        }
+        if (idle.size() > maxIdleConnections) {
+            idle.sort((a, b) -> Long.compare(a.lastActive, b.lastActive));
+            for (int i = 0; i < idle.size() - maxIdleConnections; i++) {
+                idle.get(i).close();
+            }
+        }
+    }
+
+    private boolean closeLongestIdle() {
+        Connection oldest = null;
+        for (Connection c : connections) {
+            if (c.exchange == null && (oldest == null || c.lastActive < oldest.lastActive)) {
+                oldest = c;
+            }
+        }
+        if (oldest == null) {
+            return false;
+        }
+        oldest.close();
+        return true;
+    }
+
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                LOG.log(Level.WARNING, "Selector task failed", e);
+            }
+        }
+    }
+
+    /** Schedules a task on the selector thread. */
+    void runOnSelector(Runnable task) {
+        selectorTasks.add(task);
+        Selector s = selector;
+        if (s != null) {
+            s.wakeup();
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+            if (selector != null) {
+                selector.close();
+            }
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Error closing NIO server", e);
+        }
+    }
+
+    private Context findContext(String path) {
+        Context best = null;
+        for (Context c : contexts) {
+            if (path.startsWith(c.path) && (best == null || c.path.length() > best.path.length())) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    private void dispatch(NioHttpExchange exchange, Context context) {
+        try {
+            if (context == null || context.handler == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.setContext(context);
+            if (context.filters.isEmpty()) {
+                context.handler.handle(exchange);
+            } else {
+                new Filter.Chain(context.filters, context.handler).doFilter(exchange);
+            }
+        } catch (Throwable t) {
+            LOG.log(Level.WARNING, "Unhandled error in HTTP handler", t);
+            exchange.abort();
+        }
+    }
+
+    // === Connection ===
+
+    /**
+     * Per-connection state. Fields are owned by the selector thread; handler threads
+     * interact only through {@link #enqueue} and {@link #finish}.
+     */
+    final class Connection {
+        private final SocketChannel channel;
+        private SelectionKey key;
+        private byte[] in = new byte[8192];
+        private int inLen;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+        private final Queue<ByteBuffer> writeQueue = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        /** Last write progress, or when the write queue last became non-empty. */
+        private volatile long lastDrainNanos = System.nanoTime();
+        private volatile boolean closed;
+        /** Exchange being processed; null while waiting for the next request. */
+        private NioHttpExchange exchange;
+        private boolean exchangeDone;
+        private boolean keepAlive;
+        private long lastActive = System.currentTimeMillis();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        private void onReadable() throws IOException {
+            readBuffer.clear();
+            int n = channel.read(readBuffer);
+            if (n < 0) {
+                close(); // client closed (also ends open SSE streams)
+                return;
+            }
+            if (n == 0) {
+                return;
+            }
+            lastActive = System.currentTimeMillis();
+            readBuffer.flip();
+            ensureInCapacity(inLen + n);
+            readBuffer.get(in, inLen, n);
+            inLen += n;
+            if (exchange == null) {
+                tryParse();
+            } else if (inLen > MAX_HEADER_BYTES + maxBodyBytes) {
+                // Pipelined data while busy: stop reading until the exchange completes
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            }
+        }
+
+        private void onWritable() throws IOException {
+            while (!writeQueue.isEmpty()) {
+                ByteBuffer[] buffers = writeQueue.toArray(new ByteBuffer[0]);
+                long written = channel.write(buffers);
+                pendingBytes.addAndGet(-written);
+                if (written > 0) {
+                    lastDrainNanos = System.nanoTime();
+                }
+                boolean progressed = false;
+                for (ByteBuffer b : buffers) {
+                    if (b.hasRemaining()) {
+                        break;
+                    }
+                    writeQueue.poll();
+                    progressed = true;
+                }
+                if (!progressed && written == 0) {
+                    return; // socket buffer full, wait for OP_WRITE
+                }
+            }
+            lastActive = System.currentTimeMillis();
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+            if (exchangeDone) {
+                completeExchange();
+            }
+        }
+
+        /** Parses buffered bytes; dispatches one complete request if available. */
+        private void tryParse() throws IOException {
+            int headerEnd = indexOfHeaderEnd();
+            if (headerEnd < 0) {
+                if (inLen > MAX_HEADER_BYTES) {
+                    sendErrorAndClose(431, "Request Header Fields Too Large");
+                }
+                return;
+            }
+            String head = new String(in, 0, headerEnd, StandardCharsets.ISO_8859_1);
+            String[] lines = head.split("\r\n");
+            String[] requestLine = lines[0].split(" ");
+            if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/1.")) {
+                sendErrorAndClose(400, "Bad Request");
+                return;
+            }
+            Headers headers = new Headers();
+            for (int i = 1; i < lines.length; i++) {
+                int colon = lines[i].indexOf(':');
+                if (colon <= 0) {
+                    sendErrorAndClose(400, "Bad Request");
+                    return;
+                }
+                headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+            if (headers.containsKey("Transfer-encoding")) {
+                sendErrorAndClose(411, "Length Required");
+                return;
+            }
+            long contentLength;
+            try {
+                String cl = headers.getFirst("Content-length");
+                contentLength = cl == null ? 0 : Long.parseLong(cl);
+            } catch (NumberFormatException e) {
+                sendErrorAndClose(400, "Bad Request");
+                return;
+            }
+            if (contentLength < 0) {
+                sendErrorAndClose(400, "Bad Request");
+                return;
+            }
+            if (contentLength > maxBodyBytes) {
+                sendErrorAndClose(413, "Payload Too Large");
+                return;
+            }
+            int bodyStart = headerEnd + 4;
+            if (inLen - bodyStart < contentLength) {
+                if ("100-continue".equalsIgnoreCase(headers.getFirst("Expect")) && inLen == bodyStart) {
+                    enqueueRaw(ByteBuffer.wrap(CONTINUE_100));
+                }
+                return; // wait for the rest of the body
+            }
+            URI uri;
+            try {
+                uri = new URI(requestLine[1]);
+            } catch (URISyntaxException e) {
+                sendErrorAndClose(400, "Bad Request");
+                return;
+            }
+            byte[] body = Arrays.copyOfRange(in, bodyStart, bodyStart + (int) contentLength);
+            consumeInput(bodyStart + (int) contentLength);
+
+            String protocol = requestLine[2];
+            String connection = headers.getFirst("Connection");
+            keepAlive = "HTTP/1.1".equals(protocol)
+                    ? !"close".equalsIgnoreCase(connection)
+                    : "keep-alive".equalsIgnoreCase(connection);
+
+            NioHttpExchange ex = new NioHttpExchange(this, requestLine[0], uri, protocol,
+                    headers, body, keepAlive);
+            exchange = ex;
+            exchangeDone = false;
+            inFlight.incrementAndGet();
+            Context context = findContext(uri.getPath() == null ? "/" : uri.getPath());
+            Executor exec = executor;
+            if (exec == null) {
+                dispatch(ex, context);
+            } else {
+                exec.execute(() -> dispatch(ex, context));
+            }
+        }
+
+        private void completeExchange() throws IOException {
+            if (exchange != null) {
+                exchange = null;
+                inFlight.decrementAndGet();
+            }
+            exchangeDone = false;
+            if (!keepAlive || !running || !serverChannel.isOpen()) {
+                close();
+                return;
+            }
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            if (inLen > 0) {
+                tryParse(); // pipelined request
+            }
+        }
+
+        private void sendErrorAndClose(int code, String reason) {
+            keepAlive = false;
+            byte[] response = ("HTTP/1.1 " + code + " " + reason + "\r\nContent-Length: 0\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII);
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            exchange = null;
+            enqueueRaw(ByteBuffer.wrap(response));
+            exchangeDone = true;
+        }
+
+        private void enqueueRaw(ByteBuffer buffer) {
+            if (pendingBytes.getAndAdd(buffer.remaining()) == 0) {
+                lastDrainNanos = System.nanoTime();
+            }
+            writeQueue.add(buffer);
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+        }
+
+        /**
+         * Queues response bytes from a handler thread. The buffers are queued as they are,
+         * without copying; the call fails only when more than {@link #MAX_PENDING_WRITE_BYTES}
+         * are still queued from earlier calls and the socket has not drained for the stall timeout.
+         *
+         * @throws IOException if the connection is closed or the client is not reading
+         */
+        void enqueue(ByteBuffer... buffers) throws IOException {
+            if (closed) {
+                throw new ClosedChannelException();
+            }
+            long total = 0;
+            for (ByteBuffer b : buffers) {
+                total += b.remaining();
+            }
+            long backlog = pendingBytes.getAndAdd(total);
+            if (backlog == 0) {
+                lastDrainNanos = System.nanoTime(); // queue was empty: the stall clock starts now
+            } else if (backlog > MAX_PENDING_WRITE_BYTES
+                    && System.nanoTime() - lastDrainNanos > writeStallTimeoutNanos) {
+                pendingBytes.addAndGet(-total);
+                runOnSelector(this::close);
+                throw new IOException("Client is not reading the response, connection closed");
+            }
+            Collections.addAll(writeQueue, buffers);
+            runOnSelector(() -> {
+                if (!closed && key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        /**
+         * Called from a handler thread when the exchange is closed.
+         *
+         * @param reusable false if the response is incomplete and the connection must be closed
+         */
+        void finish(boolean reusable) {
+            runOnSelector(() -> {
+                if (closed) {
+                    return;
+                }
+                if (!reusable) {
+                    keepAlive = false;
+                }
+                exchangeDone = true;
+                if (writeQueue.isEmpty()) {
+                    try {
+                        completeExchange();
+                    } catch (IOException e) {
+                        close();
+                    }
+                } else if (key.isValid()) {
+                    key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+                }
+            });
+        }
+
+        boolean isClosed() {
+            return closed;
+        }
+
+        InetSocketAddress remoteAddress() {
+            try {
+                return (InetSocketAddress) channel.getRemoteAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        InetSocketAddress localAddress() {
+            try {
+                return (InetSocketAddress) channel.getLocalAddress();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /** Closes the socket. Must be called on the selector thread. */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (exchange != null) {
+                inFlight.decrementAndGet();
+                exchange = null;
+            }
+            exchangeDone = false;
+            connections.remove(this);
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Error closing connection", e);
+            }
+        }
+
+        private int indexOfHeaderEnd() {
+            for (int i = 0; i + 3 < inLen; i++) {
+                if (in[i] == '\r' && in[i + 1] == '\n' && in[i + 2] == '\r' && in[i + 3] == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void consumeInput(int count) {
+            System.arraycopy(in, count, in, 0, inLen - count);
+            inLen -= count;
+        }
+
+        private void ensureInCapacity(int required) {
+            if (required > in.length) {
+                in = Arrays.copyOf(in, Math.max(required, in.length * 2));
+            }
+        }
+    }
+
+    // === Context ===
+
+    private final class Context extends HttpContext {
+        private final String path;
+        private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        private final List<Filter> filters = new CopyOnWriteArrayList<>();
+        private volatile HttpHandler handler;
+        private volatile Authenticator authenticator;
+
+        Context(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public HttpHandler getHandler() {
+            return handler;
+        }
+
+        @Override
+        public void setHandler(HttpHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public HttpServer getServer() {
+            return NioHttpServer.this;
+        }
+
+        @Override
+        public Map<String, Object> getAttributes() {
+            return attributes;
+        }
+
+        /** Applied in order on each request before the handler; see {@link #dispatch}. */
+        @Override
+        public List<Filter> getFilters() {
+            return filters;
+        }
+
+        @Override
+        public Authenticator setAuthenticator(Authenticator auth) {
+            Authenticator previous = authenticator;
+            authenticator = auth;
+            return previous;
+        }
+
+        @Override
+        public Authenticator getAuthenticator() {
+            return authenticator;
+        }
+    }
+}
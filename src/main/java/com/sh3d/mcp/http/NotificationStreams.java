@@ -0,0 +1,81 @@
+package com.sh3d.mcp.http;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Открытые SSE-потоки (GET /mcp) для server→client уведомлений.
+ * <p>
+ * One stream per session. Exchanges registered here are left open by
+ * {@link McpRequestHandler} and closed when the session is deleted,
+ * when a write fails (client disconnected), or on {@link #closeAll()}.
+ */
+class NotificationStreams {
+
+    private static final Logger LOG = Logger.getLogger(NotificationStreams.class.getName());
+
+    private final Map<String, HttpExchange> streams = new ConcurrentHashMap<>();
+
+    /**
+     * Sends SSE response headers and registers the exchange for the session.
+     * A previous stream of the same session is closed.
+     */
+    void open(String sessionId, HttpExchange exchange) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        HttpExchange previous = streams.put(sessionId, exchange);
+        if (previous != null && previous != exchange) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Pushes a JSON-RPC message to every open stream as an SSE {@code message} event.
+     */
+    void broadcast(String json) {
+        byte[] event = ("event: message\ndata: " + json + "\n\n").getBytes(StandardCharsets.UTF_8);
+        for (Map.Entry<String, HttpExchange> entry : streams.entrySet()) {
+            HttpExchange exchange = entry.getValue();
+            try {
+                synchronized (exchange) {
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(event);
+                    os.flush();
+                }
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "SSE stream closed for session " + entry.getKey(), e);
+                if (streams.remove(entry.getKey(), exchange)) {
+                    exchange.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the stream of the given session, if any.
+     */
+    void close(String sessionId) {
+        HttpExchange exchange = streams.remove(sessionId);
+        if (exchange != null) {
+            exchange.close();
+        }
+    }
+
+    void closeAll() {
+        for (String sessionId : streams.keySet()) {
+            close(sessionId);
+        }
+    }
+
+    int size() {
+        return streams.size();
+    }
+}
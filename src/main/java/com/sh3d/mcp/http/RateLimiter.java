@@ -0,0 +1,123 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.command.CostClass;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.config.PluginConfig.RateLimit;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-session квоты на tools/call: token bucket и max in-flight для каждого {@link CostClass}.
+ * <p>
+ * Quota state lives in the {@link McpSession}, so it is dropped together with the session.
+ * {@link McpRequestHandler} calls {@link #acquire} before dispatch and releases the
+ * returned permit when the command completes.
+ */
+class RateLimiter {
+
+    /** Retry hint for calls rejected by the in-flight limit (completion time is unknown). */
+    static final long IN_FLIGHT_RETRY_MS = 1000;
+
+    private final Map<CostClass, RateLimit> limits;
+    private final LongSupplier nanoClock;
+
+    RateLimiter(RateLimit light, RateLimit heavy) {
+        this(light, heavy, System::nanoTime);
+    }
+
+    RateLimiter(RateLimit light, RateLimit heavy, LongSupplier nanoClock) {
+        this.limits = new EnumMap<>(CostClass.class);
+        this.limits.put(CostClass.LIGHT, light);
+        this.limits.put(CostClass.HEAVY, heavy);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Creates a limiter from the plugin configuration, or returns null if limits are disabled.
+     */
+    static RateLimiter fromConfig(PluginConfig config) {
+        if (!config.isRateLimitEnabled()) {
+            return null;
+        }
+        return new RateLimiter(config.getLightRateLimit(), config.getHeavyRateLimit());
+    }
+
+    /**
+     * Tries to admit one call of the given cost class for the session.
+     * The in-flight slot is taken first so a rejected call does not consume a token.
+     */
+    Permit acquire(McpSession session, CostClass costClass) {
+        RateLimit limit = limits.get(costClass);
+        SessionQuota quota = session.getQuota(costClass,
+                c -> new SessionQuota(limit, nanoClock.getAsLong()));
+
+        if (!quota.tryEnter()) {
+            return Permit.rejected(costClass, IN_FLIGHT_RETRY_MS,
+                    "Too many concurrent " + label(costClass) + " calls in this session (max "
+                            + limit.getMaxInFlight() + ")");
+        }
+        long waitNanos = quota.tryTake(nanoClock.getAsLong());
+        if (waitNanos > 0) {
+            quota.exit();
+            long retryMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            return Permit.rejected(costClass, retryMs,
+                    "Rate limit exceeded for " + label(costClass) + " calls in this session ("
+                            + limit.getPerMinute() + "/min, burst " + limit.getBurst() + ")");
+        }
+        return Permit.granted(costClass, quota);
+    }
+
+    private static String label(CostClass costClass) {
+        return costClass.name().toLowerCase();
+    }
+
+    /**
+     * Result of {@link #acquire}. A granted permit must be {@link #release() released}.
+     */
+    static final class Permit {
+        private final CostClass costClass;
+        private final SessionQuota quota;
+        private final long retryAfterMs;
+        private final String reason;
+
+        private Permit(CostClass costClass, SessionQuota quota, long retryAfterMs, String reason) {
+            this.costClass = costClass;
+            this.quota = quota;
+            this.retryAfterMs = retryAfterMs;
+            this.reason = reason;
+        }
+
+        static Permit granted(CostClass costClass, SessionQuota quota) {
+            return new Permit(costClass, quota, 0, null);
+        }
+
+        static Permit rejected(CostClass costClass, long retryAfterMs, String reason) {
+            return new Permit(costClass, null, retryAfterMs, reason);
+        }
+
+        boolean isGranted() {
+            return quota != null;
+        }
+
+        CostClass getCostClass() {
+            return costClass;
+        }
+
+        long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+
+        String getReason() {
+            return reason;
+        }
+
+        void release() {
+            if (quota != null) {
+                quota.exit();
+            }
+        }
+    }
+}
@@ -1,38 +1,113 @@
 package com.sh3d.mcp.http;
 
-import java.util.Iterator;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Управление MCP-сессиями.
+ * <p>
+ * Expiry is driven by a {@link DelayQueue} of per-session deadlines drained by a
+ * background sweeper ({@link #startExpiryTimer()}), so handshakes no longer scan all
+ * sessions. {@link McpSession#touch()} does not reschedule: when a deadline comes due
+ * the sweeper re-checks the session's last access time and re-queues it if it was used
+ * in the meantime. {@link #getSession(String)} still rejects sessions that expired
+ * between sweeps.
  */
 public class SessionManager {
 
+    private static final Logger LOG = Logger.getLogger(SessionManager.class.getName());
+
     private static final long SESSION_TTL_MS = 30 * 60 * 1000; // 30 минут
 
+    /** Interval between sweeps of due expiry deadlines. */
+    static final long SWEEP_INTERVAL_MS = 30 * 1000;
+
     /** Maximum number of recently expired session IDs to remember for auto-recreate. */
     static final int MAX_KNOWN_EXPIRED = 64;
 
     private final ConcurrentHashMap<String, McpSession> sessions = new ConcurrentHashMap<>();
+    private final DelayQueue<ExpiryTicket> expiryQueue = new DelayQueue<>();
 
     /**
-     * Bounded set of session IDs that were previously created via handshake
-     * but have since expired or been removed. Only these IDs are eligible for auto-recreate.
-     * Access must be synchronized on this object.
+     * Session IDs that were previously created via handshake but have since expired
+     * or been removed. Only these IDs are eligible for auto-recreate.
      */
-    private final LinkedHashSet<String> knownExpiredIds = new LinkedHashSet<>();
+    private final ExpiredIdCache knownExpiredIds = new ExpiredIdCache(MAX_KNOWN_EXPIRED);
+
+    private final LongSupplier clock;
+    private final long ttlMs;
+
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong recreatedCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong removedCount = new AtomicLong();
+
+    private ScheduledExecutorService sweeper;
+    /** Notified with the ID of every removed or expired session; null — none. */
+    private volatile Consumer<String> removalListener;
+
+    public SessionManager() {
+        this(System::currentTimeMillis, SESSION_TTL_MS);
+    }
+
+    SessionManager(LongSupplier clock, long ttlMs) {
+        this.clock = clock;
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Starts the background sweeper (single daemon thread). Idempotent.
+     */
+    public synchronized void startExpiryTimer() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sh3d-mcp-session-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        sweeper.scheduleWithFixedDelay(this::sweepSafely,
+                SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the background sweeper. Sessions are kept.
+     */
+    public synchronized void close() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Sets the callback invoked after a session is removed or expires (on the thread that
+     * removed it). Pass null to clear.
+     */
+    public void setRemovalListener(Consumer<String> removalListener) {
+        this.removalListener = removalListener;
+    }
 
     /**
      * Создаёт новую сессию с уникальным ID.
      */
     public McpSession createSession(String protocolVersion) {
-        cleanupExpired();
         String id = UUID.randomUUID().toString();
-        McpSession session = new McpSession(id, protocolVersion);
-        sessions.put(id, session);
+        McpSession session = register(new McpSession(id, protocolVersion, clock.getAsLong()));
+        createdCount.incrementAndGet();
         return session;
     }
 
@@ -41,9 +116,8 @@ public class SessionManager {
      * Если сессия с таким ID уже существует, она заменяется.
      */
     public McpSession createSessionWithId(String sessionId, String protocolVersion) {
-        cleanupExpired();
-        McpSession session = new McpSession(sessionId, protocolVersion);
-        sessions.put(sessionId, session);
+        McpSession session = register(new McpSession(sessionId, protocolVersion, clock.getAsLong()));
+        recreatedCount.incrementAndGet();
         return session;
     }
 
@@ -58,23 +132,26 @@ public class SessionManager {
         if (session == null) {
             return null;
         }
-        if (isExpired(session)) {
-            sessions.remove(sessionId);
-            rememberExpiredId(sessionId);
+        long now = clock.getAsLong();
+        if (isExpired(session, now)) {
+            expire(sessionId, session);
             return null;
         }
-        session.touch();
+        session.touch(now);
         return session;
     }
 
     /**
      * Удаляет сессию. Remembers the ID as known-expired for potential auto-recreate.
+     * Its expiry deadline is left in the queue and discarded when it comes due.
      */
     public void removeSession(String sessionId) {
         if (sessionId != null) {
             McpSession removed = sessions.remove(sessionId);
             if (removed != null) {
-                rememberExpiredId(sessionId);
+                knownExpiredIds.add(sessionId);
+                removedCount.incrementAndGet();
+                notifyRemoved(sessionId);
             }
         }
     }
@@ -84,12 +161,7 @@ public class SessionManager {
      * (created via handshake) but has since expired or been removed.
      */
     public boolean isKnownExpired(String sessionId) {
-        if (sessionId == null) {
-            return false;
-        }
-        synchronized (knownExpiredIds) {
-            return knownExpiredIds.contains(sessionId);
-        }
+        return knownExpiredIds.contains(sessionId);
     }
 
     /**
@@ -99,30 +171,111 @@ public class SessionManager {
         return sessions.size();
     }
 
-    private boolean isExpired(McpSession session) {
-        return System.currentTimeMillis() - session.getLastAccessedAt() > SESSION_TTL_MS;
-    }
-
-    private void cleanupExpired() {
-        Iterator<Map.Entry<String, McpSession>> it = sessions.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry<String, McpSession> entry = it.next();
-            if (isExpired(entry.getValue())) {
-                rememberExpiredId(entry.getKey());
-                it.remove();
+    /**
+     * Expires every session whose deadline has passed. Only due deadlines are
+     * visited; sessions touched since their deadline was queued are re-queued.
+     *
+     * @return number of sessions expired by this call
+     */
+    int expireDue() {
+        int expired = 0;
+        ExpiryTicket ticket;
+        while ((ticket = expiryQueue.poll()) != null) {
+            long now = clock.getAsLong();
+            McpSession session = ticket.session;
+            if (sessions.get(session.getSessionId()) != session) {
+                continue; // removed or replaced
+            }
+            if (isExpired(session, now)) {
+                if (expire(session.getSessionId(), session)) {
+                    expired++;
+                }
+            } else {
+                expiryQueue.offer(new ExpiryTicket(session, expiryDeadline(session)));
             }
         }
+        return expired;
+    }
+
+    /**
+     * Session counters for diagnostics: active sessions, lifetime totals of created,
+     * auto-recreated, expired and explicitly removed sessions, and queue sizes.
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("active", sessions.size());
+        metrics.put("created", createdCount.get());
+        metrics.put("recreated", recreatedCount.get());
+        metrics.put("expired", expiredCount.get());
+        metrics.put("removed", removedCount.get());
+        metrics.put("knownExpired", knownExpiredIds.size());
+        metrics.put("pendingExpiry", expiryQueue.size());
+        return metrics;
     }
 
-    private void rememberExpiredId(String sessionId) {
-        synchronized (knownExpiredIds) {
+    private McpSession register(McpSession session) {
+        sessions.put(session.getSessionId(), session);
+        expiryQueue.offer(new ExpiryTicket(session, expiryDeadline(session)));
+        return session;
+    }
+
+    private boolean expire(String sessionId, McpSession session) {
+        if (sessions.remove(sessionId, session)) {
             knownExpiredIds.add(sessionId);
-            // Evict oldest if over capacity
-            while (knownExpiredIds.size() > MAX_KNOWN_EXPIRED) {
-                Iterator<String> iter = knownExpiredIds.iterator();
-                iter.next();
-                iter.remove();
+            expiredCount.incrementAndGet();
+            notifyRemoved(sessionId);
+            return true;
+        }
+        return false;
+    }
+
+    private void notifyRemoved(String sessionId) {
+        Consumer<String> listener = removalListener;
+        if (listener != null) {
+            listener.accept(sessionId);
+        }
+    }
+
+    /** First instant at which {@link #isExpired} holds for the session's current access time. */
+    private long expiryDeadline(McpSession session) {
+        return session.getLastAccessedAt() + ttlMs + 1;
+    }
+
+    private boolean isExpired(McpSession session, long now) {
+        return now - session.getLastAccessedAt() > ttlMs;
+    }
+
+    private void sweepSafely() {
+        try {
+            int expired = expireDue();
+            if (expired > 0) {
+                LOG.fine("Expired " + expired + " MCP session(s), active: " + sessions.size());
             }
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "Session expiry sweep failed", e);
+        }
+    }
+
+    /**
+     * Deadline entry in the expiry queue. Delay is measured against the manager's clock.
+     */
+    private final class ExpiryTicket implements Delayed {
+        final McpSession session;
+        final long deadline;
+
+        ExpiryTicket(McpSession session, long deadline) {
+            this.session = session;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - clock.getAsLong(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadline, ((ExpiryTicket) other).deadline);
         }
     }
 }
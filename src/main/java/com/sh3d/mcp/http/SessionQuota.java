@@ -0,0 +1,81 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.config.PluginConfig.RateLimit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Квота одной сессии для одного класса команд: token bucket + счётчик in-flight вызовов.
+ * <p>
+ * The bucket is guarded by this object's monitor; contention is limited to concurrent
+ * calls of the same session and cost class.
+ */
+class SessionQuota {
+
+    private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+    private final RateLimit limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final double capacity;
+    private double tokens;
+    private long lastRefillNanos;
+
+    SessionQuota(RateLimit limit, long nowNanos) {
+        this.limit = limit;
+        this.capacity = Math.max(1, limit.getBurst());
+        this.tokens = capacity;
+        this.lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * Reserves an in-flight slot.
+     *
+     * @return false if {@link RateLimit#getMaxInFlight()} calls are already running
+     */
+    boolean tryEnter() {
+        int max = limit.getMaxInFlight();
+        if (max == 0) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= max) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    void exit() {
+        inFlight.decrementAndGet();
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Takes one token from the bucket.
+     *
+     * @return 0 if a token was taken, otherwise nanoseconds until the next token is available
+     */
+    synchronized long tryTake(long nowNanos) {
+        int perMinute = limit.getPerMinute();
+        if (perMinute == 0) {
+            return 0;
+        }
+        long elapsed = nowNanos - lastRefillNanos;
+        if (elapsed > 0) {
+            tokens = Math.min(capacity, tokens + (double) elapsed * perMinute / NANOS_PER_MINUTE);
+            lastRefillNanos = nowNanos;
+        }
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) * NANOS_PER_MINUTE / perMinute);
+    }
+}
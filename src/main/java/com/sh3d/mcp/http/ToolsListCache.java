@@ -0,0 +1,112 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.command.CommandDescriptor;
+import com.sh3d.mcp.command.CommandHandler;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.protocol.JsonUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Кэш сериализованного результата tools/list.
+ * <p>
+ * The {@code result} object (tool names, descriptions and JSON schemas) is built and
+ * serialized once per {@link CommandRegistry#getVersion()} and reused for every request;
+ * only the JSON-RPC envelope with the request id is formatted per call.
+ */
+class ToolsListCache {
+
+    private final CommandRegistry commandRegistry;
+    private volatile Entry entry;
+
+    ToolsListCache(CommandRegistry commandRegistry) {
+        this.commandRegistry = commandRegistry;
+    }
+
+    /**
+     * Returns the cached entry for the current registry version, rebuilding it if
+     * handlers were registered since the last call.
+     */
+    Entry get() {
+        long version = commandRegistry.getVersion();
+        Entry current = entry;
+        if (current != null && current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = entry;
+            if (current == null || current.version != version) {
+                current = build(version);
+                entry = current;
+            }
+            return current;
+        }
+    }
+
+    private Entry build(long version) {
+        List<Map<String, Object>> tools = new ArrayList<>();
+        for (Map.Entry<String, CommandHandler> e : commandRegistry.getHandlers().entrySet()) {
+            String action = e.getKey();
+            CommandHandler handler = e.getValue();
+
+            if (handler instanceof CommandDescriptor) {
+                CommandDescriptor descriptor = (CommandDescriptor) handler;
+                Map<String, Object> tool = new LinkedHashMap<>();
+
+                String toolName = descriptor.getToolName();
+                tool.put("name", (toolName != null && !toolName.isEmpty()) ? toolName : action);
+                tool.put("description", descriptor.getDescription());
+                tool.put("inputSchema", descriptor.getSchema());
+                tools.add(tool);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("tools", tools);
+        byte[] resultJson = JsonUtil.serialize(result).getBytes(StandardCharsets.UTF_8);
+
+        CRC32 crc = new CRC32();
+        crc.update(resultJson);
+        String etag = "\"tools-" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+        return new Entry(version, resultJson, etag, tools.size());
+    }
+
+    /**
+     * Immutable snapshot of the serialized tools/list result.
+     */
+    static final class Entry {
+        private final long version;
+        private final byte[] resultJson;
+        private final String etag;
+        private final int toolCount;
+
+        Entry(long version, byte[] resultJson, String etag, int toolCount) {
+            this.version = version;
+            this.resultJson = resultJson;
+            this.etag = etag;
+            this.toolCount = toolCount;
+        }
+
+        long getVersion() {
+            return version;
+        }
+
+        /** UTF-8 JSON of the {@code result} object. Must not be modified by callers. */
+        byte[] getResultJson() {
+            return resultJson;
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        int getToolCount() {
+            return toolCount;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.sh3d.mcp.logging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * Асинхронная обёртка над {@link Handler}: запись в файл уходит из HTTP-потоков в фон.
+ * <p>
+ * {@link #publish} only checks the level and filter and puts the record into a
+ * {@link LogRingBuffer}; a single daemon thread formats and writes it through the
+ * delegate (e.g. a {@code FileHandler}), flushing whenever the buffer runs empty. When
+ * the buffer is full the record is dropped and counted ({@link OverflowPolicy#DROP}) or
+ * the caller waits for space ({@link OverflowPolicy#BLOCK}). After a run of drops the
+ * writer emits one WARNING record with the number of records lost.
+ * <p>
+ * Caller class and method are resolved in {@link #publish}, because
+ * {@code LogRecord} infers them lazily from the current stack.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /** Поведение при заполненном буфере. */
+    public enum OverflowPolicy {
+        /** Отбросить запись и увеличить счётчик dropped — вызывающий поток не ждёт. */
+        DROP,
+        /** Ждать освобождения места — ни одна запись не теряется. */
+        BLOCK;
+
+        /** Разбирает значение настройки ({@code drop} / {@code block}, без учёта регистра). */
+        public static OverflowPolicy parse(String value) {
+            for (OverflowPolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(value.trim())) {
+                    return policy;
+                }
+            }
+            throw new IllegalArgumentException(
+                    "Invalid overflow policy: " + value + " (must be drop or block)");
+        }
+    }
+
+    /** Writer sleep when the buffer is empty; producers wake it earlier. */
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Producer back-off while waiting for space under {@link OverflowPolicy#BLOCK}. */
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long CLOSE_TIMEOUT_MS = 5000;
+
+    private final Handler delegate;
+    private final OverflowPolicy policy;
+    private final LogRingBuffer<LogRecord> buffer;
+    private final Thread writer;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+
+    private volatile boolean writerParked;
+    private volatile boolean closed;
+    private long reportedDropped;
+
+    /**
+     * @param delegate handler that does the actual I/O; owned and closed by this handler
+     * @param capacity buffer capacity in records, rounded up to a power of two (min 2)
+     * @param policy   what {@link #publish} does when the buffer is full
+     */
+    public AsyncLogHandler(Handler delegate, int capacity, OverflowPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.buffer = new LogRingBuffer<>(capacity);
+        this.writer = new Thread(this::run, "sh3d-mcp-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) {
+            return;
+        }
+        record.getSourceClassName(); // infer the caller while still on its thread
+        if (Thread.currentThread() == writer) {
+            write(record); // logging from the delegate itself must not wait on its own queue
+            return;
+        }
+        if (!buffer.offer(record)) {
+            if (policy == OverflowPolicy.DROP) {
+                dropped.incrementAndGet();
+                return;
+            }
+            blocked.incrementAndGet();
+            while (!buffer.offer(record)) {
+                if (closed) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+        }
+        published.incrementAndGet();
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /** Wakes the writer; records already buffered are written and the delegate flushed. */
+    @Override
+    public void flush() {
+        LockSupport.unpark(writer);
+    }
+
+    /** Writes every buffered record, stops the writer thread and closes the delegate. */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(CLOSE_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        delegate.close();
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /** Записи, отброшенные из-за переполнения буфера. */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /** Записи, переданные делегату. */
+    public long getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Counters for diagnostics: buffer capacity and fill, records published, written,
+     * dropped and how often a caller had to wait for space.
+     */
+    public Map<String, Object> getCounters() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("policy", policy.name().toLowerCase());
+        counters.put("capacity", buffer.capacity());
+        counters.put("queued", buffer.size());
+        counters.put("published", published.get());
+        counters.put("written", written.get());
+        counters.put("dropped", dropped.get());
+        counters.put("blocked", blocked.get());
+        return counters;
+    }
+
+    private void run() {
+        while (true) {
+            boolean stopping = closed;
+            if (drain() == 0) {
+                reportDrops();
+                delegate.flush();
+                if (stopping) {
+                    return;
+                }
+                writerParked = true;
+                if (buffer.size() == 0 && !closed) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                writerParked = false;
+            }
+        }
+    }
+
+    private int drain() {
+        int count = 0;
+        LogRecord record;
+        while ((record = buffer.poll()) != null) {
+            write(record);
+            count++;
+        }
+        return count;
+    }
+
+    private void write(LogRecord record) {
+        try {
+            delegate.publish(record);
+            written.incrementAndGet();
+        } catch (RuntimeException e) {
+            reportError("Async log delegate failed", e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    private void reportDrops() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            LogRecord warning = new LogRecord(Level.WARNING,
+                    "Log buffer full: " + (total - reportedDropped) + " record(s) dropped");
+            warning.setLoggerName(AsyncLogHandler.class.getName());
+            warning.setSourceClassName(AsyncLogHandler.class.getName());
+            warning.setSourceMethodName("run");
+            reportedDropped = total;
+            write(warning);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sh3d.mcp.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Ограниченный lock-free кольцевой буфер: много производителей, один потребитель.
+ * <p>
+ * Slots and their sequence numbers are allocated once, so {@link #offer} and
+ * {@link #poll} allocate nothing. Each slot carries a sequence: a producer may claim
+ * position {@code p} when the slot's sequence equals {@code p}, publishes the element by
+ * setting it to {@code p + 1}, and the consumer frees the slot by setting it to
+ * {@code p + capacity}. Producers race only on a single CAS of the tail counter.
+ * {@link #poll} must be called from one thread at a time.
+ */
+final class LogRingBuffer<E> {
+
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    /**
+     * @param capacity requested capacity, rounded up to a power of two (at least 2: with a
+     *                 single slot "published at p" and "free for p + 1" would be the same sequence)
+     */
+    LogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        int size = capacity <= 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        if (size <= 0) {
+            throw new IllegalArgumentException("capacity too large: " + capacity);
+        }
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /** Adds an element; returns false if the buffer is full. Safe for concurrent producers. */
+    boolean offer(E element) {
+        while (true) {
+            long pos = tail.get();
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    slots.lazySet(index, element);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+            } else if (diff < 0) {
+                return false;
+            }
+            // diff > 0: another producer claimed this position, re-read the tail
+        }
+    }
+
+    /** Removes the oldest element, or returns null if none is published yet. Single consumer. */
+    E poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1) {
+            return null;
+        }
+        E element = slots.get(index);
+        slots.lazySet(index, null);
+        sequences.set(index, pos + mask + 1);
+        head = pos + 1;
+        return element;
+    }
+
+    /** Approximate number of claimed slots (includes ones still being published). */
+    int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
@@ -0,0 +1,72 @@
+package com.sh3d.mcp.metrics;
+
+/**
+ * Per-thread контекст текущего вызова команды: action и накопленное ожидание EDT.
+ * <p>
+ * {@link com.sh3d.mcp.command.CommandRegistry#dispatch} opens a timer around each handler;
+ * {@link com.sh3d.mcp.bridge.HomeAccessor#runOnEDT} reports how long its task waited in the
+ * Swing event queue before it started. Timers nest (batch_commands dispatches sub-commands),
+ * and a finished timer adds its EDT wait to the enclosing one, so the outer call's
+ * execution time excludes waits of its sub-commands as well.
+ */
+public final class CallTimer {
+
+    private static final ThreadLocal<CallTimer> CURRENT = new ThreadLocal<>();
+
+    private final CallTimer parent;
+    private final String action;
+    private long edtWaitNanos;
+
+    private CallTimer(CallTimer parent, String action) {
+        this.parent = parent;
+        this.action = action;
+    }
+
+    /** Opens a timer without an action name. */
+    public static CallTimer start() {
+        return start(null);
+    }
+
+    /** Opens a timer for the current thread, nested in the active one if any. */
+    public static CallTimer start(String action) {
+        CallTimer timer = new CallTimer(CURRENT.get(), action);
+        CURRENT.set(timer);
+        return timer;
+    }
+
+    /**
+     * Action of the innermost active call on this thread that has one, or null.
+     * Used to attribute EDT tasks to MCP commands.
+     */
+    public static String currentAction() {
+        for (CallTimer timer = CURRENT.get(); timer != null; timer = timer.parent) {
+            if (timer.action != null) {
+                return timer.action;
+            }
+        }
+        return null;
+    }
+
+    /** Adds EDT queue wait to the active timer of the current thread; no-op without one. */
+    public static void recordEdtWait(long nanos) {
+        CallTimer timer = CURRENT.get();
+        if (timer != null && nanos > 0) {
+            timer.edtWaitNanos += nanos;
+        }
+    }
+
+    /**
+     * Closes this timer and restores the enclosing one.
+     *
+     * @return total EDT wait recorded while this timer was active, in nanoseconds
+     */
+    public long stop() {
+        if (parent != null) {
+            parent.edtWaitNanos += edtWaitNanos;
+            CURRENT.set(parent);
+        } else {
+            CURRENT.remove();
+        }
+        return edtWaitNanos;
+    }
+}
@@ -0,0 +1,266 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Детектор зависаний EDT для задач, пришедших из MCP через
+ * {@link com.sh3d.mcp.bridge.HomeAccessor#runOnEDT}.
+ * <p>
+ * Every tracked task is timed on the EDT. A daemon monitor thread polls the running task
+ * several times per threshold; once a task has run longer than the threshold it captures
+ * the EDT stack trace (what the task is doing right now) and logs a warning. Finished tasks
+ * over the threshold go into a fixed-size ring buffer of recent stalls, reported slowest
+ * first by {@code get_edt_stalls}. A stall shorter than one poll interval past the
+ * threshold may be recorded without a stack trace.
+ */
+public class EdtWatchdog {
+
+    private static final Logger LOG = Logger.getLogger(EdtWatchdog.class.getName());
+
+    /** Stack frames kept per stall. */
+    static final int MAX_STACK_FRAMES = 40;
+
+    private final long thresholdNanos;
+    private final Stall[] history;
+    private int historyNext;
+    private int historySize;
+
+    private final AtomicReference<Task> current = new AtomicReference<>();
+    private final LongAdder taskCount = new LongAdder();
+    private final LongAdder stallCount = new LongAdder();
+    private final AtomicLong maxTaskNanos = new AtomicLong();
+
+    private ScheduledExecutorService monitor;
+
+    public EdtWatchdog(long thresholdMs, int historyCapacity) {
+        if (thresholdMs <= 0 || historyCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "threshold and history capacity must be positive: " + thresholdMs + ", " + historyCapacity);
+        }
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        this.history = new Stall[historyCapacity];
+    }
+
+    /** Starts the monitor thread that samples long-running tasks. Idempotent. */
+    public synchronized void start() {
+        if (monitor != null) {
+            return;
+        }
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "sh3d-mcp-edt-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        long pollNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(10), thresholdNanos / 4);
+        monitor.scheduleWithFixedDelay(this::checkSafely, pollNanos, pollNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Stops the monitor thread. Recorded stalls are kept. */
+    public synchronized void close() {
+        if (monitor != null) {
+            monitor.shutdownNow();
+            monitor = null;
+        }
+    }
+
+    /**
+     * Marks the start of a tracked task. Must be called on the thread that runs it (the EDT).
+     *
+     * @param action MCP action that submitted the task, or null
+     */
+    public Task begin(String action) {
+        Task task = new Task(action, Thread.currentThread());
+        current.set(task);
+        return task;
+    }
+
+    /** Marks the end of a task returned by {@link #begin}. */
+    public void end(Task task) {
+        long duration = System.nanoTime() - task.startNanos;
+        current.compareAndSet(task, null);
+        taskCount.increment();
+        if (duration > maxTaskNanos.get()) {
+            maxTaskNanos.accumulateAndGet(duration, Math::max);
+        }
+        if (duration >= thresholdNanos) {
+            stallCount.increment();
+            record(new Stall(task, duration));
+        }
+    }
+
+    /**
+     * Samples the running task: captures its stack once it exceeds the threshold.
+     * Called by the monitor thread; package-private for tests.
+     */
+    void check() {
+        Task task = current.get();
+        if (task == null || task.stack != null) {
+            return;
+        }
+        long running = System.nanoTime() - task.startNanos;
+        if (running < thresholdNanos) {
+            return;
+        }
+        StackTraceElement[] stack = task.thread.getStackTrace();
+        task.stack = stack.length > MAX_STACK_FRAMES ? Arrays.copyOf(stack, MAX_STACK_FRAMES) : stack;
+        task.sampledAtNanos = running;
+        if (current.get() == task) {
+            LOG.warning("EDT task" + (task.action != null ? " '" + task.action + "'" : "")
+                    + " has been running for " + TimeUnit.NANOSECONDS.toMillis(running)
+                    + " ms (threshold " + getThresholdMs() + " ms)");
+        }
+    }
+
+    public long getThresholdMs() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /** Counters for the metrics registry: tracked tasks, stalls, longest task. */
+    public Map<String, Object> getCounters() {
+        Map<String, Object> counters = new LinkedHashMap<>();
+        counters.put("tasks", taskCount.sum());
+        counters.put("stalls", stallCount.sum());
+        counters.put("maxTaskMs", TimeUnit.NANOSECONDS.toMillis(maxTaskNanos.get()));
+        return counters;
+    }
+
+    /**
+     * Diagnostic report: counters, the task running right now (if any) and recent stalls,
+     * slowest first, with action names and sampled stack traces.
+     */
+    public Map<String, Object> report() {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("thresholdMs", getThresholdMs());
+        report.putAll(getCounters());
+
+        Task running = current.get();
+        if (running != null) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("action", running.action);
+            item.put("runningMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - running.startNanos));
+            item.put("startedAt", running.startedAtMillis);
+            report.put("current", item);
+        }
+
+        List<Stall> stalls = getRecentStalls();
+        stalls.sort(Comparator.comparingLong((Stall s) -> s.durationNanos).reversed());
+        List<Object> items = new ArrayList<>(stalls.size());
+        for (Stall stall : stalls) {
+            items.add(stall.toMap());
+        }
+        report.put("recentStalls", items);
+        return report;
+    }
+
+    /** Recent stalls in recording order (oldest first). */
+    public synchronized List<Stall> getRecentStalls() {
+        List<Stall> result = new ArrayList<>(historySize);
+        int start = (historyNext - historySize + history.length) % history.length;
+        for (int i = 0; i < historySize; i++) {
+            result.add(history[(start + i) % history.length]);
+        }
+        return result;
+    }
+
+    /** Clears recorded stalls and counters. */
+    public synchronized void clear() {
+        Arrays.fill(history, null);
+        historyNext = 0;
+        historySize = 0;
+        taskCount.reset();
+        stallCount.reset();
+        maxTaskNanos.set(0);
+    }
+
+    private synchronized void record(Stall stall) {
+        history[historyNext] = stall;
+        historyNext = (historyNext + 1) % history.length;
+        historySize = Math.min(historySize + 1, history.length);
+    }
+
+    private void checkSafely() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            LOG.log(Level.WARNING, "EDT watchdog check failed", e);
+        }
+    }
+
+    /**
+     * A tracked EDT task in progress.
+     */
+    public static final class Task {
+        final String action;
+        final Thread thread;
+        final long startNanos = System.nanoTime();
+        final long startedAtMillis = System.currentTimeMillis();
+        volatile StackTraceElement[] stack;
+        volatile long sampledAtNanos;
+
+        Task(String action, Thread thread) {
+            this.action = action;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * A finished task that exceeded the threshold.
+     */
+    public static final class Stall {
+        private final String action;
+        private final long durationNanos;
+        private final long startedAtMillis;
+        private final StackTraceElement[] stack;
+        private final long sampledAtNanos;
+
+        Stall(Task task, long durationNanos) {
+            this.action = task.action;
+            this.durationNanos = durationNanos;
+            this.startedAtMillis = task.startedAtMillis;
+            this.stack = task.stack;
+            this.sampledAtNanos = task.sampledAtNanos;
+        }
+
+        public String getAction() {
+            return action;
+        }
+
+        public long getDurationMs() {
+            return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+        }
+
+        /** EDT stack sampled while the task was running, or null if it finished before sampling. */
+        public StackTraceElement[] getStack() {
+            return stack;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("action", action);
+            map.put("durationMs", getDurationMs());
+            map.put("startedAt", startedAtMillis);
+            if (stack != null) {
+                map.put("sampledAtMs", TimeUnit.NANOSECONDS.toMillis(sampledAtNanos));
+                List<String> frames = new ArrayList<>(stack.length);
+                for (StackTraceElement frame : stack) {
+                    frames.add(frame.toString());
+                }
+                map.put("stack", frames);
+            }
+            return map;
+        }
+    }
+}
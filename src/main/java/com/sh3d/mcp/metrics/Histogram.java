@@ -0,0 +1,162 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free лог-линейная гистограмма неотрицательных long-значений (HDR-style).
+ * <p>
+ * Values 0..15 get exact buckets; above that every power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so a reported quantile is at most 12.5%
+ * above the true value. The bucket array has a fixed size and covers the full
+ * {@code long} range; recording is one {@link AtomicLongArray#incrementAndGet}
+ * plus two {@link LongAdder} updates.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** Values below this threshold are counted exactly. */
+    private static final int LINEAR_LIMIT = 2 * SUB_BUCKETS;
+    private static final int FIRST_LOG_EXPONENT = SUB_BUCKET_BITS + 1;
+    static final int BUCKET_COUNT = LINEAR_LIMIT + (63 - FIRST_LOG_EXPONENT) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /** Records a value; negative values are counted as 0. */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucketIndex(v));
+        count.increment();
+        sum.add(v);
+        if (v > max.get()) {
+            max.accumulateAndGet(v, Math::max);
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Consistent-enough copy for reporting. Concurrent {@link #record} calls may be
+     * partially visible; quantiles are computed from the copied buckets only.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /** Clears all recorded values. Not atomic with respect to concurrent recording. */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_LIMIT + (exponent - FIRST_LOG_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    /** Largest value that falls into the given bucket. */
+    static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + FIRST_LOG_EXPONENT;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (1L << exponent) + sub * width;
+        return lower + (width - 1);
+    }
+
+    /**
+     * Immutable view of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Value at the given quantile (0..1): the upper bound of the bucket containing
+         * that rank, capped by the recorded maximum. Returns 0 when empty.
+         */
+        public long getQuantile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * JSON-friendly summary: count, mean, p50, p90, p99, max — each value divided by
+         * {@code scale} (e.g. 1000 to report microseconds as milliseconds).
+         */
+        public Map<String, Object> toMap(double scale) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("count", count);
+            map.put("mean", round3(getMean() / scale));
+            map.put("p50", round3(getQuantile(0.5) / scale));
+            map.put("p90", round3(getQuantile(0.9) / scale));
+            map.put("p99", round3(getQuantile(0.99) / scale));
+            map.put("max", round3(max / scale));
+            return map;
+        }
+
+        private static double round3(double value) {
+            return Math.round(value * 1000) / 1000.0;
+        }
+    }
+}
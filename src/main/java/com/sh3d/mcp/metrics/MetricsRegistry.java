@@ -0,0 +1,86 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Supplier;
+
+/**
+ * Реестр метрик плагина: per-action {@link ToolMetrics} и именованные секции
+ * со счётчиками других подсистем (например, сессий HTTP-сервера).
+ * <p>
+ * Shared by {@link com.sh3d.mcp.command.CommandRegistry} (records calls), the HTTP layer
+ * (queue wait, payload sizes, the {@code /metrics} endpoint) and the {@code get_metrics} tool.
+ */
+public class MetricsRegistry {
+
+    private final ConcurrentHashMap<String, ToolMetrics> tools = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Map<String, Object>>> sections = new ConcurrentSkipListMap<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    /** Metrics of the given action, created on first use. */
+    public ToolMetrics forAction(String action) {
+        return tools.computeIfAbsent(action, a -> new ToolMetrics());
+    }
+
+    /** Tool metrics sorted by action name. */
+    public SortedMap<String, ToolMetrics> getTools() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(tools));
+    }
+
+    /**
+     * Registers a section of subsystem counters; values are read on every snapshot.
+     * Replaces an existing section with the same name.
+     */
+    public void registerSection(String name, Supplier<Map<String, Object>> supplier) {
+        sections.put(name, supplier);
+    }
+
+    public void unregisterSection(String name) {
+        sections.remove(name);
+    }
+
+    /** Current values of all registered sections, by section name. */
+    public Map<String, Map<String, Object>> getSections() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<Map<String, Object>>> entry : sections.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().get());
+        }
+        return result;
+    }
+
+    public long getUptimeMs() {
+        return System.currentTimeMillis() - startedAt;
+    }
+
+    /** Clears all tool metrics. Section counters belong to their subsystems and are kept. */
+    public void reset() {
+        for (ToolMetrics metrics : tools.values()) {
+            metrics.reset();
+        }
+    }
+
+    /**
+     * JSON snapshot: uptime, per-tool metrics (latencies in ms) and section counters.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> toolMap = new LinkedHashMap<>();
+        for (Map.Entry<String, ToolMetrics> entry : getTools().entrySet()) {
+            toolMap.put(entry.getKey(), entry.getValue().toMap());
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("uptimeMs", getUptimeMs());
+        result.put("tools", toolMap);
+        result.putAll(getSections());
+        return result;
+    }
+
+    /** Prometheus text exposition format (version 0.0.4). */
+    public String formatPrometheus() {
+        return PrometheusFormat.format(this);
+    }
+}
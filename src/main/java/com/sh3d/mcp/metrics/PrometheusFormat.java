@@ -0,0 +1,111 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.function.Function;
+
+/**
+ * Форматирование {@link MetricsRegistry} в Prometheus text format 0.0.4.
+ * <p>
+ * Per-tool latencies and payload sizes are exported as summaries with p50/p90/p99
+ * quantiles; numeric section counters become gauges named
+ * {@code sh3d_mcp_<section>_<key>} in snake case.
+ */
+final class PrometheusFormat {
+
+    private static final String PREFIX = "sh3d_mcp_";
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+    private static final double MICROS_PER_SECOND = 1_000_000.0;
+
+    private PrometheusFormat() {
+    }
+
+    static String format(MetricsRegistry registry) {
+        StringBuilder sb = new StringBuilder(4096);
+        SortedMap<String, ToolMetrics> tools = registry.getTools();
+
+        header(sb, "uptime_seconds", "gauge", "Seconds since the metrics registry was created");
+        sb.append(PREFIX).append("uptime_seconds ").append(registry.getUptimeMs() / 1000.0).append('\n');
+
+        counter(sb, tools, "tool_calls_total", "Dispatched tool calls", ToolMetrics::getCalls);
+        counter(sb, tools, "tool_errors_total", "Tool calls that returned an error", ToolMetrics::getErrors);
+        summary(sb, tools, "tool_queue_wait_seconds",
+                "Wait for an HTTP worker before dispatch", ToolMetrics::getQueueWait, MICROS_PER_SECOND);
+        summary(sb, tools, "tool_edt_wait_seconds",
+                "Wait in the Swing event queue", ToolMetrics::getEdtWait, MICROS_PER_SECOND);
+        summary(sb, tools, "tool_execution_seconds",
+                "Handler execution time excluding EDT wait", ToolMetrics::getExecution, MICROS_PER_SECOND);
+        summary(sb, tools, "tool_request_bytes",
+                "JSON-RPC request body size", ToolMetrics::getRequestBytes, 1);
+        summary(sb, tools, "tool_response_bytes",
+                "JSON-RPC response body size", ToolMetrics::getResponseBytes, 1);
+
+        for (Map.Entry<String, Map<String, Object>> section : registry.getSections().entrySet()) {
+            for (Map.Entry<String, Object> value : section.getValue().entrySet()) {
+                if (!(value.getValue() instanceof Number)) {
+                    continue;
+                }
+                String name = snakeCase(section.getKey()) + "_" + snakeCase(value.getKey());
+                header(sb, name, "gauge", section.getKey() + "." + value.getKey());
+                sb.append(PREFIX).append(name).append(' ')
+                        .append(((Number) value.getValue()).doubleValue()).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void counter(StringBuilder sb, SortedMap<String, ToolMetrics> tools, String name,
+                                String help, Function<ToolMetrics, Long> value) {
+        header(sb, name, "counter", help);
+        for (Map.Entry<String, ToolMetrics> entry : tools.entrySet()) {
+            sb.append(PREFIX).append(name).append("{tool=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(value.apply(entry.getValue())).append('\n');
+        }
+    }
+
+    private static void summary(StringBuilder sb, SortedMap<String, ToolMetrics> tools, String name,
+                                String help, Function<ToolMetrics, Histogram> histogram, double scale) {
+        header(sb, name, "summary", help);
+        for (Map.Entry<String, ToolMetrics> entry : tools.entrySet()) {
+            Histogram.Snapshot snapshot = histogram.apply(entry.getValue()).snapshot();
+            String tool = escape(entry.getKey());
+            for (double q : QUANTILES) {
+                sb.append(PREFIX).append(name).append("{tool=\"").append(tool)
+                        .append("\",quantile=\"").append(q).append("\"} ")
+                        .append(snapshot.getQuantile(q) / scale).append('\n');
+            }
+            sb.append(PREFIX).append(name).append("_sum{tool=\"").append(tool).append("\"} ")
+                    .append(snapshot.getSum() / scale).append('\n');
+            sb.append(PREFIX).append(name).append("_count{tool=\"").append(tool).append("\"} ")
+                    .append(snapshot.getCount()).append('\n');
+        }
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(PREFIX).append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(PREFIX).append(name).append(' ').append(type).append('\n');
+    }
+
+    /** camelCase / dotted / dashed keys → snake_case metric name fragment. */
+    static String snakeCase(String key) {
+        StringBuilder sb = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isUpperCase(c)) {
+                if (i > 0) {
+                    sb.append('_');
+                }
+                sb.append(Character.toLowerCase(c));
+            } else if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            } else {
+                sb.append('_');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,45 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Запоминает момент постановки HTTP-обмена в очередь executor'а.
+ * <p>
+ * {@link #wrap(Executor)} stamps every submitted task with {@link System#nanoTime()};
+ * while the task runs, {@link #enqueuedAtNanos()} returns that stamp, so handlers can
+ * report how long a request waited for a worker thread.
+ */
+public final class QueueTiming {
+
+    /** Returned by {@link #enqueuedAtNanos()} when the current task was not stamped. */
+    public static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final ThreadLocal<Long> ENQUEUED_AT = new ThreadLocal<>();
+
+    private QueueTiming() {
+    }
+
+    /** Executor that stamps each task with its submission time before delegating. */
+    public static Executor wrap(Executor delegate) {
+        return task -> {
+            long enqueuedAt = System.nanoTime();
+            delegate.execute(() -> {
+                ENQUEUED_AT.set(enqueuedAt);
+                try {
+                    task.run();
+                } finally {
+                    ENQUEUED_AT.remove();
+                }
+            });
+        };
+    }
+
+    /**
+     * Submission time of the task running on this thread, or {@link #UNKNOWN}
+     * if it was not submitted through {@link #wrap(Executor)}.
+     */
+    public static long enqueuedAtNanos() {
+        Long stamp = ENQUEUED_AT.get();
+        return stamp != null ? stamp : UNKNOWN;
+    }
+}
@@ -0,0 +1,99 @@
+package com.sh3d.mcp.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Метрики одного action: число вызовов и ошибок, латентность по фазам и размеры payload.
+ * <p>
+ * Latencies are stored in microseconds and split into three phases:
+ * <ul>
+ *   <li>{@code queueWait} — from HTTP executor submission to dispatch start
+ *       (tools/call only);</li>
+ *   <li>{@code edtWait} — time {@code runOnEDT} tasks spent queued behind other EDT work;</li>
+ *   <li>{@code execution} — handler wall time minus {@code edtWait}.</li>
+ * </ul>
+ * Payload sizes are the JSON-RPC request body and response body in bytes (tools/call only).
+ */
+public final class ToolMetrics {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram queueWait = new Histogram();
+    private final Histogram edtWait = new Histogram();
+    private final Histogram execution = new Histogram();
+    private final Histogram requestBytes = new Histogram();
+    private final Histogram responseBytes = new Histogram();
+
+    /** Records one dispatched call. */
+    public void recordCall(long edtWaitNanos, long executionNanos, boolean error) {
+        calls.increment();
+        if (error) {
+            errors.increment();
+        }
+        edtWait.record(TimeUnit.NANOSECONDS.toMicros(edtWaitNanos));
+        execution.record(TimeUnit.NANOSECONDS.toMicros(executionNanos));
+    }
+
+    public void recordQueueWait(long nanos) {
+        queueWait.record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void recordPayload(long requestSize, long responseSize) {
+        requestBytes.record(requestSize);
+        responseBytes.record(responseSize);
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public Histogram getQueueWait() {
+        return queueWait;
+    }
+
+    public Histogram getEdtWait() {
+        return edtWait;
+    }
+
+    public Histogram getExecution() {
+        return execution;
+    }
+
+    public Histogram getRequestBytes() {
+        return requestBytes;
+    }
+
+    public Histogram getResponseBytes() {
+        return responseBytes;
+    }
+
+    void reset() {
+        calls.reset();
+        errors.reset();
+        queueWait.reset();
+        edtWait.reset();
+        execution.reset();
+        requestBytes.reset();
+        responseBytes.reset();
+    }
+
+    /** JSON view for get_metrics: latencies in milliseconds, sizes in bytes. */
+    Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("calls", getCalls());
+        map.put("errors", getErrors());
+        map.put("queueWaitMs", queueWait.snapshot().toMap(1000));
+        map.put("edtWaitMs", edtWait.snapshot().toMap(1000));
+        map.put("executionMs", execution.snapshot().toMap(1000));
+        map.put("requestBytes", requestBytes.snapshot().toMap(1));
+        map.put("responseBytes", responseBytes.snapshot().toMap(1));
+        return map;
+    }
+}
@@ -0,0 +1,152 @@
+package com.sh3d.mcp.plugin;
+
+import com.eteks.sweethome3d.io.DefaultUserPreferences;
+import com.eteks.sweethome3d.io.HomeFileRecorder;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.UserPreferences;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.bridge.ModelExecutor;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.http.HttpMcpServer;
+import com.sh3d.mcp.metrics.EdtWatchdog;
+import com.sh3d.mcp.server.ServerState;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Запуск MCP-сервера без Sweet Home 3D UI — например, несколько агентов на Linux build-сервере.
+ * <p>
+ * Builds {@link Home} and {@link DefaultUserPreferences} (default furniture and texture
+ * catalogs) directly and serves them through {@link HttpMcpServer}. The model is owned by a
+ * {@link ModelExecutor} thread instead of the EDT, so no AWT event loop is involved. Plan
+ * export tools report that the plan view is unavailable; everything else is registered as
+ * in the plugin. Sessions can open further homes with {@code create_home} (see
+ * {@link HomeRegistry}), or run one process per home, each on its own port:
+ * <pre>
+ * java -Djava.awt.headless=true -cp SweetHome3D.jar:sh3d-mcp-plugin.jar \
+ *     com.sh3d.mcp.plugin.HeadlessLauncher --port 9878 [--home design.sh3d]
+ * </pre>
+ * Other settings come from {@code sh3d.mcp.*} system properties as usual.
+ */
+public final class HeadlessLauncher implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(HeadlessLauncher.class.getName());
+
+    private static final String USAGE = "Usage: HeadlessLauncher [--port N] [--home file.sh3d]";
+    static final long STARTUP_TIMEOUT_MS = 10_000;
+
+    private final ModelExecutor modelExecutor;
+    private final EdtWatchdog watchdog;
+    private final HomeRegistry homes;
+    private final HttpMcpServer server;
+
+    private HeadlessLauncher(PluginConfig config, Home home, UserPreferences preferences) {
+        modelExecutor = new ModelExecutor();
+        HomeAccessor accessor = new HomeAccessor(home, preferences, modelExecutor);
+        watchdog = new EdtWatchdog(config.getEdtStallThresholdMs(), config.getEdtStallHistory());
+        watchdog.start();
+        accessor.setEdtWatchdog(watchdog);
+
+        homes = HomeRegistry.fromConfig(accessor, config);
+        homes.start();
+
+        CommandRegistry registry = SH3DMcpPlugin.createCommandRegistry(null, homes, config);
+        registry.getMetrics().registerSection("edt", watchdog::getCounters);
+        server = new HttpMcpServer(config, registry, homes);
+    }
+
+    /**
+     * Starts a headless server for the given home and waits until it accepts connections.
+     *
+     * @throws IllegalStateException if the server fails to start within 10 seconds
+     */
+    public static HeadlessLauncher start(PluginConfig config, Home home, UserPreferences preferences) {
+        HeadlessLauncher launcher = new HeadlessLauncher(config, home, preferences);
+        try {
+            launcher.awaitRunning();
+        } catch (RuntimeException e) {
+            launcher.close();
+            throw e;
+        }
+        return launcher;
+    }
+
+    public HttpMcpServer getServer() {
+        return server;
+    }
+
+    /** Stops the server, then the model threads of all homes and the stall detector. */
+    @Override
+    public void close() {
+        server.stop();
+        homes.close();
+        modelExecutor.close();
+        watchdog.close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        String homePath = null;
+        for (int i = 0; i < args.length; i++) {
+            if ("--port".equals(args[i]) && i + 1 < args.length) {
+                System.setProperty("sh3d.mcp.port", args[++i]);
+            } else if ("--home".equals(args[i]) && i + 1 < args.length) {
+                homePath = args[++i];
+            } else {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+        }
+
+        PluginConfig config = PluginConfig.load();
+        UserPreferences preferences = new DefaultUserPreferences();
+        Home home = homePath != null
+                ? new HomeFileRecorder().readHome(homePath)
+                : new Home(preferences.getNewWallHeight());
+
+        HeadlessLauncher launcher;
+        try {
+            launcher = start(config, home, preferences);
+        } catch (IllegalStateException e) {
+            LOG.log(Level.SEVERE, "Headless MCP server failed to start", e);
+            System.exit(1);
+            return;
+        }
+        LOG.info("Headless MCP server v" + SH3DMcpPlugin.PLUGIN_VERSION + " listening on http://127.0.0.1:"
+                + launcher.getServer().getPort() + "/mcp"
+                + (homePath != null ? " (home: " + homePath + ")" : ""));
+
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            launcher.close();
+            stopped.countDown();
+        }, "sh3d-mcp-headless-shutdown"));
+        stopped.await();
+    }
+
+    private void awaitRunning() {
+        server.start();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STARTUP_TIMEOUT_MS);
+        while (!server.isRunning()) {
+            Exception error = server.getLastStartupError();
+            if (error != null || server.getState() == ServerState.STOPPED) {
+                throw new IllegalStateException("Server failed to start on port " + server.getPort()
+                        + (error != null ? ": " + error.getMessage() : ""), error);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Server did not start within " + STARTUP_TIMEOUT_MS + " ms");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for server start", e);
+            }
+        }
+    }
+}
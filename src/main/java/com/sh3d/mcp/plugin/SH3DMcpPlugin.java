@@ -3,20 +3,27 @@ package com.sh3d.mcp.plugin;
 import com.eteks.sweethome3d.plugin.Plugin;
 import com.eteks.sweethome3d.plugin.PluginAction;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
 import com.sh3d.mcp.command.AddDimensionLineHandler;
 import com.sh3d.mcp.command.AddLabelHandler;
 import com.sh3d.mcp.command.AddLevelHandler;
 import com.sh3d.mcp.command.ApplyTextureHandler;
+import com.sh3d.mcp.command.AttachHomeHandler;
 import com.sh3d.mcp.bridge.CheckpointManager;
 import com.sh3d.mcp.command.BatchCommandsHandler;
+import com.sh3d.mcp.command.CheckCollisionsHandler;
 import com.sh3d.mcp.command.CheckpointHandler;
 import com.sh3d.mcp.command.ClearSceneHandler;
+import com.sh3d.mcp.command.CloseHomeHandler;
 import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.command.CreateHomeHandler;
 import com.sh3d.mcp.command.CreateRoomPolygonHandler;
+import com.sh3d.mcp.command.ConnectAllWallsHandler;
 import com.sh3d.mcp.command.ConnectWallsHandler;
 import com.sh3d.mcp.command.DeleteWallHandler;
 import com.sh3d.mcp.command.CreateWallHandler;
 import com.sh3d.mcp.command.DeleteFurnitureHandler;
+import com.sh3d.mcp.command.DetectRoomsHandler;
 import com.sh3d.mcp.command.DeleteLevelHandler;
 import com.sh3d.mcp.command.DeleteRoomHandler;
 import com.sh3d.mcp.command.CreateWallsHandler;
@@ -25,17 +32,23 @@ import com.sh3d.mcp.command.ExportSvgHandler;
 import com.sh3d.mcp.command.ExportToObjHandler;
 import com.sh3d.mcp.command.GenerateShapeHandler;
 import com.sh3d.mcp.command.GetCamerasHandler;
+import com.sh3d.mcp.command.GetEdtStallsHandler;
+import com.sh3d.mcp.command.GetMetricsHandler;
 import com.sh3d.mcp.command.ModifyFurnitureHandler;
 import com.sh3d.mcp.command.ModifyRoomHandler;
 import com.sh3d.mcp.command.ModifyWallHandler;
+import com.sh3d.mcp.command.NearestObjectsHandler;
 import com.sh3d.mcp.command.GetStateHandler;
 import com.sh3d.mcp.command.ListCheckpointsHandler;
 import com.sh3d.mcp.command.ListCategoriesHandler;
 import com.sh3d.mcp.command.ListFurnitureCatalogHandler;
+import com.sh3d.mcp.command.ListHomesHandler;
 import com.sh3d.mcp.command.ListLevelsHandler;
 import com.sh3d.mcp.command.ListTexturesCatalogHandler;
 import com.sh3d.mcp.command.PlaceDoorOrWindowHandler;
 import com.sh3d.mcp.command.PlaceFurnitureHandler;
+import com.sh3d.mcp.command.QueryRegionHandler;
+import com.sh3d.mcp.command.RenderCache;
 import com.sh3d.mcp.command.RenderPhotoHandler;
 import com.sh3d.mcp.command.RestoreCheckpointHandler;
 import com.sh3d.mcp.command.LoadHomeHandler;
@@ -46,6 +59,9 @@ import com.sh3d.mcp.command.SetSelectedLevelHandler;
 import com.sh3d.mcp.command.StoreCameraHandler;
 import com.sh3d.mcp.config.PluginConfig;
 import com.sh3d.mcp.http.HttpMcpServer;
+import com.sh3d.mcp.logging.AsyncLogHandler;
+import com.sh3d.mcp.metrics.EdtWatchdog;
+import com.sh3d.mcp.metrics.MetricsRegistry;
 import com.eteks.sweethome3d.viewcontroller.ExportableView;
 import com.eteks.sweethome3d.viewcontroller.PlanView;
 
@@ -67,8 +83,10 @@ public class SH3DMcpPlugin extends Plugin {
     private static final Logger LOG = Logger.getLogger(SH3DMcpPlugin.class.getName());
 
     private HttpMcpServer httpServer;
+    private EdtWatchdog edtWatchdog;
+    private HomeRegistry homeRegistry;
     private PluginConfig config;
-    private FileHandler logFileHandler;
+    private AsyncLogHandler logFileHandler;
 
     @Override
     public PluginAction[] getActions() {
@@ -80,9 +98,20 @@ public class SH3DMcpPlugin extends Plugin {
                 getUserPreferences()
         );
 
+        edtWatchdog = new EdtWatchdog(config.getEdtStallThresholdMs(), config.getEdtStallHistory());
+        edtWatchdog.start();
+        accessor.setEdtWatchdog(edtWatchdog);
+
+        homeRegistry = HomeRegistry.fromConfig(accessor, config);
+        homeRegistry.start();
+
         ExportableView planView = resolvePlanView();
-        CommandRegistry registry = createCommandRegistry(planView);
-        httpServer = new HttpMcpServer(config, registry, accessor);
+        CommandRegistry registry = createCommandRegistry(planView, homeRegistry, config);
+        registry.getMetrics().registerSection("edt", edtWatchdog::getCounters);
+        if (logFileHandler != null) {
+            registry.getMetrics().registerSection("logging", logFileHandler::getCounters);
+        }
+        httpServer = new HttpMcpServer(config, registry, homeRegistry);
 
         LOG.info("SH3D MCP Plugin initialized (port: " + config.getPort() + ")");
 
@@ -101,6 +130,14 @@ public class SH3DMcpPlugin extends Plugin {
             httpServer.stop();
             LOG.info("SH3D MCP Plugin destroyed, server stopped");
         }
+        if (edtWatchdog != null) {
+            edtWatchdog.close();
+            edtWatchdog = null;
+        }
+        if (homeRegistry != null) {
+            homeRegistry.close();
+            homeRegistry = null;
+        }
         if (logFileHandler != null) {
             Logger.getLogger("com.sh3d.mcp").removeHandler(logFileHandler);
             logFileHandler.close();
@@ -108,7 +145,10 @@ public class SH3DMcpPlugin extends Plugin {
         }
     }
 
-    /** Configures file-based logging for the com.sh3d.mcp logger hierarchy. */
+    /**
+     * Configures file-based logging for the com.sh3d.mcp logger hierarchy. The FileHandler
+     * sits behind an {@link AsyncLogHandler}, so logging threads do no disk I/O themselves.
+     */
     private void setupFileLogging(PluginConfig cfg) {
         Path logPath = PluginConfig.resolveLogPath();
         if (logPath == null) {
@@ -117,10 +157,12 @@ public class SH3DMcpPlugin extends Plugin {
         try {
             FileHandler fh = new FileHandler(logPath.toString(), 1_048_576, 2, true);
             fh.setFormatter(new SimpleFormatter());
+            AsyncLogHandler async = new AsyncLogHandler(fh, cfg.getLogBufferCapacity(),
+                    AsyncLogHandler.OverflowPolicy.parse(cfg.getLogOverflowPolicy()));
 
             Logger rootLogger = Logger.getLogger("com.sh3d.mcp");
-            rootLogger.addHandler(fh);
-            logFileHandler = fh;
+            rootLogger.addHandler(async);
+            logFileHandler = async;
 
             Level level;
             try {
@@ -134,7 +176,7 @@ public class SH3DMcpPlugin extends Plugin {
             LOG.info("SH3D MCP Plugin v" + PLUGIN_VERSION + " | port=" + cfg.getPort()
                     + " | Java " + System.getProperty("java.version")
                     + " | " + System.getProperty("os.name") + " " + System.getProperty("os.arch")
-                    + " | log=" + logPath);
+                    + " | log=" + logPath + " (async, " + cfg.getLogOverflowPolicy() + ")");
         } catch (IOException e) {
             LOG.log(Level.WARNING, "Failed to setup file logging at " + logPath, e);
         }
@@ -155,8 +197,19 @@ public class SH3DMcpPlugin extends Plugin {
         return null;
     }
 
-    private CommandRegistry createCommandRegistry(ExportableView planView) {
+    /**
+     * Builds the registry with every MCP command; shared with {@link HeadlessLauncher} and the
+     * replay benchmark, so they serve exactly the tools the plugin does.
+     *
+     * @param planView plan view for SVG/PNG export, or null when there is no UI
+     * @param homes    homes of MCP sessions, managed by create_home / attach_home / close_home
+     * @param config   plugin settings (render cache size)
+     */
+    public static CommandRegistry createCommandRegistry(ExportableView planView, HomeRegistry homes,
+                                                        PluginConfig config) {
         CommandRegistry registry = new CommandRegistry();
+        MetricsRegistry metrics = new MetricsRegistry();
+        registry.setMetrics(metrics);
         CheckpointManager checkpointManager = new CheckpointManager();
         registry.register("checkpoint", new CheckpointHandler(checkpointManager));
         registry.register("restore_checkpoint", new RestoreCheckpointHandler(checkpointManager));
@@ -167,7 +220,9 @@ public class SH3DMcpPlugin extends Plugin {
         registry.register("apply_texture", new ApplyTextureHandler());
         registry.register("clear_scene", new ClearSceneHandler(checkpointManager));
         registry.register("connect_walls", new ConnectWallsHandler());
+        registry.register("connect_all_walls", new ConnectAllWallsHandler());
         registry.register("create_room_polygon", new CreateRoomPolygonHandler());
+        registry.register("detect_rooms", new DetectRoomsHandler());
         registry.register("create_wall", new CreateWallHandler());
         registry.register("create_walls", new CreateWallsHandler());
         registry.register("delete_furniture", new DeleteFurnitureHandler());
@@ -185,7 +240,12 @@ public class SH3DMcpPlugin extends Plugin {
         registry.register("list_furniture_catalog", new ListFurnitureCatalogHandler());
         registry.register("list_levels", new ListLevelsHandler());
         registry.register("list_textures_catalog", new ListTexturesCatalogHandler());
-        registry.register("render_photo", new RenderPhotoHandler());
+        registry.register("query_region", new QueryRegionHandler());
+        registry.register("check_collisions", new CheckCollisionsHandler());
+        registry.register("nearest_objects", new NearestObjectsHandler());
+        RenderCache renderCache = RenderCache.fromConfig(config);
+        metrics.registerSection("renderCache", renderCache::getCounters);
+        registry.register("render_photo", new RenderPhotoHandler(renderCache));
         registry.register("load_home", new LoadHomeHandler());
         registry.register("save_home", new SaveHomeHandler());
         registry.register("export_plan_image", new ExportPlanImageHandler(planView));
@@ -196,6 +256,12 @@ public class SH3DMcpPlugin extends Plugin {
         registry.register("set_selected_level", new SetSelectedLevelHandler());
         registry.register("store_camera", new StoreCameraHandler());
         registry.register("get_cameras", new GetCamerasHandler());
+        registry.register("get_metrics", new GetMetricsHandler(metrics));
+        registry.register("get_edt_stalls", new GetEdtStallsHandler());
+        registry.register("create_home", new CreateHomeHandler(homes));
+        registry.register("attach_home", new AttachHomeHandler(homes));
+        registry.register("list_homes", new ListHomesHandler(homes));
+        registry.register("close_home", new CloseHomeHandler(homes));
         registry.register("batch_commands", new BatchCommandsHandler(registry, checkpointManager));
         return registry;
     }
@@ -0,0 +1,75 @@
+package com.sh3d.mcp.protocol;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Закодированное изображение (PNG/JPEG) в ответе команды.
+ * <p>
+ * Handlers put it where a base64 string is expected ({@code _image}, {@code _images[].data});
+ * {@link JsonUtil} streams the bytes through a base64 encoder straight into the JSON being
+ * built, so the response never holds a separate base64 copy of the image.
+ */
+public final class EncodedImage {
+
+    private final byte[] bytes;
+    private final String mimeType;
+
+    /** Takes ownership of {@code bytes}; the array must not be modified afterwards. */
+    public EncodedImage(byte[] bytes, String mimeType) {
+        this.bytes = bytes;
+        this.mimeType = mimeType;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /** Размер закодированного изображения в байтах. */
+    public int size() {
+        return bytes.length;
+    }
+
+    /** Writes the encoded bytes, e.g. to a file. */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+
+    /** Length of the base64 form, without padding removal. */
+    public int base64Length() {
+        return (bytes.length + 2) / 3 * 4;
+    }
+
+    /** Writes the base64 form to {@code sb} in chunks, without building it as a String first. */
+    void appendBase64(StringBuilder sb) {
+        sb.ensureCapacity(sb.length() + base64Length());
+        try (OutputStream out = Base64.getEncoder().wrap(new OutputStream() {
+            @Override
+            public void write(int b) {
+                sb.append((char) (b & 0xFF));
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                sb.append(new String(b, off, len, StandardCharsets.ISO_8859_1));
+            }
+        })) {
+            int chunk = 3 * 8192;
+            for (int off = 0; off < bytes.length; off += chunk) {
+                out.write(bytes, off, Math.min(chunk, bytes.length - off));
+            }
+        } catch (IOException e) {
+            // The target is a StringBuilder; nothing here performs I/O
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Base64 form, for callers that need the data as a plain string. */
+    @Override
+    public String toString() {
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
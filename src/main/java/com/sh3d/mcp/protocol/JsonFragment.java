@@ -0,0 +1,45 @@
+package com.sh3d.mcp.protocol;
+
+import java.util.AbstractList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Неизменяемый JSON-массив, сериализованный заранее.
+ * <p>
+ * Reads like a plain {@link List} of the original items, but {@link JsonUtil} writes the
+ * stored JSON verbatim instead of walking the items again. Lets a handler cache an encoded
+ * part of its response and reuse it while the underlying data is unchanged.
+ */
+public final class JsonFragment extends AbstractList<Object> {
+
+    private final List<Object> items;
+    private final String json;
+
+    private JsonFragment(List<Object> items, String json) {
+        this.items = items;
+        this.json = json;
+    }
+
+    /** Serializes the items once; the list must not be modified afterwards. */
+    public static JsonFragment of(List<Object> items) {
+        StringBuilder sb = new StringBuilder();
+        JsonUtil.appendArray(sb, items);
+        return new JsonFragment(Collections.unmodifiableList(items), sb.toString());
+    }
+
+    /** Serialized form of the array. */
+    public String getJson() {
+        return json;
+    }
+
+    @Override
+    public Object get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+}
@@ -57,6 +57,13 @@ public final class JsonUtil {
             sb.append(value);
         } else if (value instanceof Boolean) {
             sb.append(value);
+        } else if (value instanceof JsonFragment) {
+            sb.append(((JsonFragment) value).getJson());
+        } else if (value instanceof EncodedImage) {
+            // base64 needs no escaping
+            sb.append('"');
+            ((EncodedImage) value).appendBase64(sb);
+            sb.append('"');
         } else if (value instanceof Map) {
             appendObject(sb, (Map<String, Object>) value);
         } else if (value instanceof List) {
@@ -0,0 +1,86 @@
+package com.sh3d.mcp.trace;
+
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.protocol.JsonUtil;
+
+import java.nio.file.Path;
+
+/**
+ * Запись входящих JSON-RPC запросов в файл для последующего воспроизведения нагрузки.
+ * <p>
+ * One JSON line per POST /mcp request, written in the background by a
+ * {@link TraceFileWriter} (same bounded queue and rotation as traces):
+ * <pre>
+ * {"t":1520,"session":"…","newSession":"…","status":200,"durUs":830,"body":"{\"jsonrpc\":…}"}
+ * </pre>
+ * {@code t} is the arrival time in milliseconds since the capture started; {@code session}
+ * is the request's Mcp-Session-Id (absent for initialize) and {@code newSession} the ID the
+ * server assigned in the response, so a replayer can map recorded sessions to live ones.
+ * The body is stored as a JSON string exactly as received.
+ */
+public class RequestCapture {
+
+    private final long startNanos = System.nanoTime();
+    private final TraceFileWriter writer;
+
+    public RequestCapture(Path file, long maxFileBytes, int maxFiles) {
+        this.writer = new TraceFileWriter(file, maxFileBytes, maxFiles);
+    }
+
+    /**
+     * Creates a capture from {@code sh3d.mcp.capture.enabled}, or returns null when capture
+     * is off or the plugin directory is unknown. Rotation follows the trace file settings.
+     */
+    public static RequestCapture fromConfig(PluginConfig config) {
+        Path file = PluginConfig.resolveCapturePath();
+        if (!config.isCaptureEnabled() || file == null) {
+            return null;
+        }
+        return new RequestCapture(file, config.getTraceMaxFileBytes(), config.getTraceMaxFiles());
+    }
+
+    /**
+     * Queues one captured request.
+     *
+     * @param sessionId    Mcp-Session-Id of the request, or null
+     * @param newSessionId Mcp-Session-Id set on the response (initialize), or null
+     * @param body         request body as received
+     * @param status       HTTP status of the response
+     * @param arrivedAt    {@link System#nanoTime()} when the request arrived
+     * @param durationNanos time spent handling the request
+     */
+    public void record(String sessionId, String newSessionId, String body, int status,
+                       long arrivedAt, long durationNanos) {
+        StringBuilder sb = new StringBuilder(body.length() + 128);
+        sb.append("{\"t\":").append((arrivedAt - startNanos) / 1_000_000);
+        if (sessionId != null) {
+            sb.append(",\"session\":");
+            JsonUtil.appendString(sb, sessionId);
+        }
+        if (newSessionId != null && !newSessionId.equals(sessionId)) {
+            sb.append(",\"newSession\":");
+            JsonUtil.appendString(sb, newSessionId);
+        }
+        sb.append(",\"status\":").append(status)
+                .append(",\"durUs\":").append(durationNanos / 1000)
+                .append(",\"body\":");
+        JsonUtil.appendString(sb, body);
+        sb.append('}');
+        writer.offer(sb.toString());
+    }
+
+    /** Requests written to the file so far. */
+    public long getWritten() {
+        return writer.getWritten();
+    }
+
+    /** Requests dropped because the write queue was full or the file could not be written. */
+    public long getDropped() {
+        return writer.getDropped();
+    }
+
+    /** Writes pending records and stops the writer thread. */
+    public void close() {
+        writer.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.sh3d.mcp.trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Один интервал внутри {@link Trace}: имя, родитель, время начала/конца и атрибуты.
+ * <p>
+ * Opened by {@link Trace#span(String)} and closed with try-with-resources. When the
+ * current thread has no sampled trace, {@link #NOOP} is returned and every method is free.
+ */
+public class Span implements AutoCloseable {
+
+    /** Span returned when tracing is off for the current request. */
+    public static final Span NOOP = new Span(null, -1, null, null, 0) {
+        @Override
+        public Span attr(String key, Object value) {
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private final Trace trace;
+    final int id;
+    final Span parent;
+    final String name;
+    final long startNanos;
+    long endNanos;
+    Map<String, Object> attributes;
+
+    Span(Trace trace, int id, Span parent, String name, long startNanos) {
+        this.trace = trace;
+        this.id = id;
+        this.parent = parent;
+        this.name = name;
+        this.startNanos = startNanos;
+    }
+
+    int getParentId() {
+        return parent != null ? parent.id : -1;
+    }
+
+    /** Adds an attribute (action name, status code, sizes). */
+    public Span attr(String key, Object value) {
+        if (attributes == null) {
+            attributes = new LinkedHashMap<>();
+        }
+        attributes.put(key, value);
+        return this;
+    }
+
+    /** Ends the span and makes its parent current again. */
+    @Override
+    public void close() {
+        if (endNanos == 0) {
+            endNanos = System.nanoTime();
+            trace.pop(this);
+        }
+    }
+}
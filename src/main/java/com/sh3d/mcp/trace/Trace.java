@@ -0,0 +1,158 @@
+package com.sh3d.mcp.trace;
+
+import com.sh3d.mcp.protocol.JsonUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Трасса одного HTTP-запроса: trace id и дерево span'ов.
+ * <p>
+ * A sampled trace is bound to the worker thread that handles the request, so code deeper
+ * in the call stack ({@code CommandRegistry.dispatch}, {@code HomeAccessor.runOnEDT}) adds
+ * spans through the static {@link #span(String)} / {@link #record} without a reference to
+ * the tracer. Spans nest by the thread's open-span stack: sub-commands of
+ * {@code batch_commands} appear under the batch's {@code execute} span. Only the bound
+ * thread mutates a trace.
+ */
+public final class Trace {
+
+    private static final ThreadLocal<Trace> CURRENT = new ThreadLocal<>();
+
+    private final String traceId;
+    private final long startEpochMs = System.currentTimeMillis();
+    private final Span root;
+    private final List<Span> spans = new ArrayList<>();
+    private Span open;
+    private int nextId = 1;
+
+    Trace(String traceId, String rootName) {
+        this.traceId = traceId;
+        this.root = new Span(this, 0, null, rootName, System.nanoTime());
+        spans.add(root);
+        open = root;
+    }
+
+    /** Sampled trace bound to the current thread, or null. */
+    public static Trace current() {
+        return CURRENT.get();
+    }
+
+    /** Opens a child span of the current thread's open span; {@link Span#NOOP} if not tracing. */
+    public static Span span(String name) {
+        Trace trace = CURRENT.get();
+        return trace != null ? trace.open(name) : Span.NOOP;
+    }
+
+    /**
+     * Records an already finished interval as a child of the open span — for phases
+     * timed elsewhere, such as the EDT queue wait measured around {@code invokeAndWait}.
+     */
+    public static void record(String name, long startNanos, long endNanos) {
+        Trace trace = CURRENT.get();
+        if (trace != null && endNanos >= startNanos) {
+            Span span = new Span(trace, trace.nextId++, trace.open, name, startNanos);
+            span.endNanos = endNanos;
+            trace.spans.add(span);
+        }
+    }
+
+    /** Sets an attribute on the root span of the current thread's trace, if any. */
+    public static void annotate(String key, Object value) {
+        Trace trace = CURRENT.get();
+        if (trace != null) {
+            trace.root.attr(key, value);
+        }
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    /** Root span covering the whole request; attributes go to the trace header. */
+    public Span getRoot() {
+        return root;
+    }
+
+    void bind() {
+        CURRENT.set(this);
+    }
+
+    void unbind() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+
+    /** Ends the root span (and any span left open by an exception). */
+    void end() {
+        long now = System.nanoTime();
+        for (Span span : spans) {
+            if (span.endNanos == 0) {
+                span.endNanos = now;
+            }
+        }
+        open = root;
+    }
+
+    private Span open(String name) {
+        Span span = new Span(this, nextId++, open, name, System.nanoTime());
+        spans.add(span);
+        open = span;
+        return span;
+    }
+
+    void pop(Span span) {
+        if (open == span) {
+            open = span.parent != null ? span.parent : root;
+        }
+    }
+
+    /**
+     * One-line compact JSON: trace id, start (epoch ms), duration (µs), root attributes and
+     * spans as {@code [id, parentId, name, startOffsetUs, durationUs, attrs?]}.
+     */
+    String toJsonLine() {
+        StringBuilder sb = new StringBuilder(64 + spans.size() * 48);
+        sb.append("{\"trace\":\"").append(traceId).append("\",\"ts\":").append(startEpochMs)
+                .append(",\"name\":");
+        JsonUtil.appendString(sb, root.name);
+        sb.append(",\"durUs\":").append(micros(root.endNanos - root.startNanos));
+        if (root.attributes != null) {
+            sb.append(",\"attrs\":");
+            JsonUtil.appendValue(sb, root.attributes);
+        }
+        sb.append(",\"spans\":[");
+        boolean first = true;
+        for (Span span : spans) {
+            if (span == root) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            sb.append('[').append(span.id).append(',').append(span.getParentId()).append(',');
+            JsonUtil.appendString(sb, span.name);
+            sb.append(',').append(micros(span.startNanos - root.startNanos))
+                    .append(',').append(micros(span.endNanos - span.startNanos));
+            Map<String, Object> attrs = span.attributes;
+            if (attrs != null) {
+                sb.append(',');
+                JsonUtil.appendValue(sb, attrs);
+            }
+            sb.append(']');
+        }
+        sb.append("]}");
+        return sb.toString();
+    }
+
+    List<Span> getSpans() {
+        return spans;
+    }
+
+    private static long micros(long nanos) {
+        return nanos / 1000;
+    }
+}
@@ -0,0 +1,172 @@
+package com.sh3d.mcp.trace;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Фоновая запись трасс в ротируемый файл (одна строка JSON на трассу).
+ * <p>
+ * Request threads only enqueue lines; a single daemon thread appends them. When the queue
+ * is full the line is dropped and counted, so tracing never blocks a request. When the
+ * file would exceed {@code maxFileBytes} it is rotated: {@code file → file.1 → … →
+ * file.(maxFiles-1)}, the oldest is deleted.
+ */
+class TraceFileWriter {
+
+    private static final Logger LOG = Logger.getLogger(TraceFileWriter.class.getName());
+
+    static final int QUEUE_CAPACITY = 1024;
+    private static final String STOP = new String("stop");
+
+    private final Path file;
+    private final long maxFileBytes;
+    private final int maxFiles;
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread thread;
+
+    private Writer out;
+    private long size;
+
+    TraceFileWriter(Path file, long maxFileBytes, int maxFiles) {
+        this.file = file;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+        this.thread = new Thread(this::run, "sh3d-mcp-trace-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Enqueues a line; returns false (and counts a drop) if the queue is full. */
+    boolean offer(String line) {
+        if (queue.offer(line)) {
+            return true;
+        }
+        dropped.incrementAndGet();
+        return false;
+    }
+
+    long getWritten() {
+        return written.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /** Writes everything queued so far, then stops the writer thread. */
+    void close() {
+        try {
+            queue.put(STOP);
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                String line = queue.take();
+                if (line == STOP) {
+                    break;
+                }
+                write(line);
+                if (queue.isEmpty()) {
+                    flush();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly();
+        }
+    }
+
+    private void write(String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (out == null) {
+                open();
+            }
+            if (size > 0 && size + bytes.length > maxFileBytes) {
+                rotate();
+            }
+            out.write(line);
+            out.write('\n');
+            size += bytes.length;
+            written.incrementAndGet();
+        } catch (IOException e) {
+            dropped.incrementAndGet();
+            LOG.log(Level.FINE, "Failed to write trace to " + file, e);
+            closeQuietly();
+        }
+    }
+
+    private void open() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        size = Files.exists(file) ? Files.size(file) : 0;
+        out = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+    }
+
+    private void rotate() throws IOException {
+        out.close();
+        out = null;
+        if (maxFiles > 1) {
+            Files.deleteIfExists(rotated(maxFiles - 1));
+            for (int i = maxFiles - 2; i >= 1; i--) {
+                Path from = rotated(i);
+                if (Files.exists(from)) {
+                    Files.move(from, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.deleteIfExists(file);
+        }
+        open();
+    }
+
+    private Path rotated(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void flush() {
+        if (out != null) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                LOG.log(Level.FINE, "Failed to flush traces", e);
+                closeQuietly();
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // nothing to do
+            }
+            out = null;
+        }
+    }
+}
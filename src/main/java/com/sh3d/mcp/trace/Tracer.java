@@ -0,0 +1,84 @@
+package com.sh3d.mcp.trace;
+
+import com.sh3d.mcp.config.PluginConfig;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Сэмплирование и экспорт трасс HTTP-запросов в локальный файл.
+ * <p>
+ * {@link #start(String)} decides per request whether to trace it ({@code sampleRate}
+ * from 0 to 1) and binds the new {@link Trace} to the current thread; {@link #finish}
+ * unbinds it and hands the serialized trace to a background {@link TraceFileWriter}.
+ */
+public class Tracer {
+
+    private final double sampleRate;
+    private final TraceFileWriter writer;
+
+    public Tracer(double sampleRate, Path file, long maxFileBytes, int maxFiles) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("sampleRate must be within [0, 1]: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.writer = new TraceFileWriter(file, maxFileBytes, maxFiles);
+    }
+
+    /**
+     * Creates a tracer from {@code sh3d.mcp.trace.*} settings, or returns null when
+     * tracing is off (sample rate 0) or the plugin directory is unknown.
+     */
+    public static Tracer fromConfig(PluginConfig config) {
+        Path file = PluginConfig.resolveTracePath();
+        if (config.getTraceSampleRate() <= 0 || file == null) {
+            return null;
+        }
+        return new Tracer(config.getTraceSampleRate(), file,
+                config.getTraceMaxFileBytes(), config.getTraceMaxFiles());
+    }
+
+    /**
+     * Starts a trace for the current request if it is sampled.
+     *
+     * @return the trace bound to this thread, or null if the request is not sampled
+     */
+    public Trace start(String name) {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        Trace trace = new Trace(newTraceId(), name);
+        trace.bind();
+        return trace;
+    }
+
+    /** Ends the trace, unbinds it from this thread and queues it for writing. */
+    public void finish(Trace trace) {
+        trace.end();
+        trace.unbind();
+        writer.offer(trace.toJsonLine());
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /** Traces written to the file so far. */
+    public long getWritten() {
+        return writer.getWritten();
+    }
+
+    /** Traces dropped because the write queue was full or the file could not be written. */
+    public long getDropped() {
+        return writer.getDropped();
+    }
+
+    /** Writes pending traces and stops the writer thread. */
+    public void close() {
+        writer.close();
+    }
+
+    private static String newTraceId() {
+        return String.format("%016x", ThreadLocalRandom.current().nextLong());
+    }
+}
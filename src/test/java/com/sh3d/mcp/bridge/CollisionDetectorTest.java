@@ -0,0 +1,168 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomeDoorOrWindow;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Wall;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CollisionDetectorTest {
+
+    private Home home;
+    private CollisionDetector detector;
+
+    @BeforeEach
+    void setUp() {
+        home = new Home();
+        detector = new CollisionDetector(home, new HomeAccessor(home, null).getSpatialIndex());
+    }
+
+    @Test
+    void testOverlappingPiecesCollide() {
+        HomePieceOfFurniture sofa = piece("Sofa", 200, 100, 80, 100, 100);
+        HomePieceOfFurniture table = piece("Table", 100, 100, 75, 200, 100);
+
+        List<CollisionDetector.Collision> collisions = detector.findCollisions(sofa);
+        assertEquals(1, collisions.size());
+        assertSame(table, collisions.get(0).getOther());
+        assertEquals(50, collisions.get(0).getDepth(), 0.01);
+    }
+
+    @Test
+    void testTouchingPiecesDoNotCollide() {
+        HomePieceOfFurniture left = piece("Left", 100, 100, 80, 100, 100);
+        piece("Right", 100, 100, 80, 200, 100);
+
+        assertTrue(detector.findCollisions(left).isEmpty());
+    }
+
+    @Test
+    void testRotatedFootprintsSeparatedByDiagonalAxis() {
+        // Две параллельные доски под 45°: bbox'ы почти совпадают, footprint'ы разделены
+        HomePieceOfFurniture a = piece("A", 200, 20, 80, 0, 0);
+        a.setAngle((float) Math.toRadians(45));
+        HomePieceOfFurniture b = piece("B", 200, 20, 80, 35.36f, -35.36f);
+        b.setAngle((float) Math.toRadians(45));
+
+        assertTrue(detector.findCollisions(a).isEmpty(), "30 cm gap across the boards");
+
+        b.setX(7.07f);
+        b.setY(-7.07f);
+        List<CollisionDetector.Collision> collisions = detector.findCollisions(a);
+        assertEquals(1, collisions.size());
+        assertEquals(10, collisions.get(0).getDepth(), 0.05);
+    }
+
+    @Test
+    void testPieceAgainstWall() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        HomePieceOfFurniture flush = piece("Flush", 100, 60, 80, 200, 35);
+        HomePieceOfFurniture through = piece("Through", 100, 60, 80, 400, 10);
+
+        assertTrue(detector.findCollisions(flush).isEmpty(), "Standing against the wall is fine");
+        assertEquals(1, detector.findCollisions(through).size());
+        assertTrue(detector.findCollisions(through).get(0).getOther() instanceof Wall);
+    }
+
+    @Test
+    void testDoorInWallIsNotACollision() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        HomeDoorOrWindow door = new HomeDoorOrWindow(
+                new CatalogPieceOfFurniture("Door", null, null, 90, 10, 210, true, true));
+        door.setX(250);
+        door.setY(0);
+        home.addPieceOfFurniture(door);
+
+        assertTrue(detector.findCollisions(door).isEmpty());
+    }
+
+    @Test
+    void testDifferentHeightsDoNotCollide() {
+        HomePieceOfFurniture desk = piece("Desk", 120, 60, 75, 100, 100);
+        HomePieceOfFurniture shelf = piece("Shelf", 120, 30, 30, 100, 100);
+        shelf.setElevation(150);
+
+        assertTrue(detector.findCollisions(desk).isEmpty());
+        shelf.setElevation(60);
+        assertEquals(1, detector.findCollisions(desk).size());
+    }
+
+    @Test
+    void testOtherLevelsAndHiddenPiecesIgnored() {
+        Level ground = new Level("Ground", 0, 12, 250);
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(ground);
+        home.addLevel(upper);
+        HomePieceOfFurniture bed = piece("Bed", 200, 160, 50, 100, 100);
+        bed.setLevel(ground);
+        HomePieceOfFurniture above = piece("Above", 200, 160, 50, 100, 100);
+        above.setLevel(upper);
+        HomePieceOfFurniture hidden = piece("Hidden", 200, 160, 50, 100, 100);
+        hidden.setLevel(ground);
+        hidden.setVisible(false);
+
+        assertTrue(detector.findCollisions(bed).isEmpty());
+    }
+
+    @Test
+    void testFindAllReportsEachPairOnce() {
+        piece("A", 100, 100, 80, 0, 0);
+        piece("B", 100, 100, 80, 50, 0);
+        piece("C", 100, 100, 80, 100, 0);
+        piece("Far", 100, 100, 80, 1000, 0);
+
+        // A-B, B-C overlap by 50; A-C only touch
+        assertEquals(2, detector.findAllCollisions(null).size());
+    }
+
+    @Test
+    void testFreeOffsetPushesOutOfWall() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        HomePieceOfFurniture cabinet = piece("Cabinet", 100, 60, 80, 250, 20);
+
+        float[] offset = detector.findFreeOffset(cabinet, cabinet.getPoints(), 200, 10);
+
+        assertNotNull(offset);
+        assertEquals(0, offset[0], 0.01);
+        assertEquals(15.5, offset[1], 0.01, "Pushed until flush with the wall face");
+        assertTrue(detector.findCollisions(cabinet,
+                CollisionDetector.translate(cabinet.getPoints(), offset[0], offset[1])).isEmpty());
+    }
+
+    @Test
+    void testFreeOffsetNullWhenBoxedIn() {
+        // Узкий коридор 40 см, шкаф 60 см глубиной не помещается
+        home.addWall(new Wall(-1000, 0, 1000, 0, 10, 250));
+        home.addWall(new Wall(-1000, 45, 1000, 45, 10, 250));
+        HomePieceOfFurniture wardrobe = piece("Wardrobe", 100, 60, 200, 0, 22);
+
+        assertNull(detector.findFreeOffset(wardrobe, wardrobe.getPoints(), 20, 5));
+    }
+
+    @Test
+    void testNonConvexFootprintFallsBackToArea() {
+        float[][] l = {{0, 0}, {100, 0}, {100, 20}, {20, 20}, {20, 100}, {0, 100}};
+        float[][] inNotch = {{50, 50}, {90, 50}, {90, 90}, {50, 90}};
+        float[][] onArm = {{50, 10}, {90, 10}, {90, 50}, {50, 50}};
+
+        assertFalse(CollisionDetector.isConvex(l));
+        assertNull(CollisionDetector.overlap(inNotch, l));
+        assertNotNull(CollisionDetector.overlap(onArm, l));
+    }
+
+    private HomePieceOfFurniture piece(String name, float width, float depth, float height, float x, float y) {
+        HomePieceOfFurniture piece = new HomePieceOfFurniture(
+                new CatalogPieceOfFurniture(name, null, null, width, depth, height, true, false));
+        piece.setX(x);
+        piece.setY(y);
+        home.addPieceOfFurniture(piece);
+        return piece;
+    }
+}
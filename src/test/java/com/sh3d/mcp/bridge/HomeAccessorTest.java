@@ -5,6 +5,7 @@ import com.eteks.sweethome3d.model.Home;
 import com.eteks.sweethome3d.model.TexturesCatalog;
 import com.eteks.sweethome3d.model.UserPreferences;
 import com.sh3d.mcp.command.CommandException;
+import com.sh3d.mcp.metrics.CallTimer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -147,6 +148,77 @@ class HomeAccessorTest {
         assertTrue(ex.getMessage().contains("checked-error"));
     }
 
+    @Test
+    void testRunOnEDTReportsQueueWaitToCallTimer() throws Exception {
+        CountDownLatch edtBusy = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            edtBusy.countDown();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(edtBusy.await(5, TimeUnit.SECONDS));
+
+        CallTimer timer = CallTimer.start();
+        accessor.runOnEDT(() -> "done");
+        long edtWaitNanos = timer.stop();
+
+        assertTrue(edtWaitNanos >= TimeUnit.MILLISECONDS.toNanos(20),
+                "Task queued behind a busy EDT should report its wait: " + edtWaitNanos);
+    }
+
+    // ==================== Headless (ModelExecutor) ====================
+
+    @Test
+    void testRunOnEDTUsesModelExecutorWhenHeadless() throws Exception {
+        ModelExecutor modelExecutor = new ModelExecutor();
+        try {
+            HomeAccessor headless = new HomeAccessor(home, prefs, modelExecutor);
+            assertSame(modelExecutor, headless.getModelExecutor());
+
+            assertEquals(Boolean.FALSE, headless.runOnEDT(SwingUtilities::isEventDispatchThread));
+            assertEquals(Boolean.TRUE, headless.runOnEDT(modelExecutor::isModelThread));
+        } finally {
+            modelExecutor.close();
+        }
+    }
+
+    @Test
+    void testNestedRunOnEDTRunsDirectlyOnModelThread() {
+        ModelExecutor modelExecutor = new ModelExecutor();
+        try {
+            HomeAccessor headless = new HomeAccessor(home, prefs, modelExecutor);
+            String result = headless.runOnEDT(() -> headless.runOnEDT(() -> "nested"));
+            assertEquals("nested", result);
+        } finally {
+            modelExecutor.close();
+        }
+    }
+
+    @Test
+    void testHeadlessTaskFailureWrapped() {
+        ModelExecutor modelExecutor = new ModelExecutor();
+        try {
+            HomeAccessor headless = new HomeAccessor(home, prefs, modelExecutor);
+            CommandException e = assertThrows(CommandException.class, () -> headless.runOnEDT(() -> {
+                throw new IllegalStateException("model failure");
+            }));
+            assertTrue(e.getMessage().contains("model failure"));
+        } finally {
+            modelExecutor.close();
+        }
+    }
+
+    @Test
+    void testClosedModelExecutorReportedAsCommandException() {
+        ModelExecutor modelExecutor = new ModelExecutor();
+        modelExecutor.close();
+        HomeAccessor headless = new HomeAccessor(home, prefs, modelExecutor);
+        assertThrows(CommandException.class, () -> headless.runOnEDT(() -> "never"));
+    }
+
     // ==================== Constructor ====================
 
     @Test
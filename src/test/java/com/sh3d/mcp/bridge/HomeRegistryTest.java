@@ -0,0 +1,388 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.command.CommandException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HomeRegistryTest {
+
+    @TempDir
+    Path swapDir;
+
+    private HomeAccessor defaultAccessor;
+    private long now = 1_000_000;
+    private int heapPercent = 10;
+    private HomeRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        defaultAccessor = new HomeAccessor(new Home(), null);
+        registry = newRegistry(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        registry.close();
+    }
+
+    @Test
+    void testSessionsUseDefaultHomeUntilAttached() {
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertSame(defaultAccessor, lease.getAccessor());
+            assertEquals(HomeRegistry.DEFAULT_HOME_ID, lease.getHomeId());
+        }
+        try (HomeRegistry.Lease lease = registry.acquire(null)) {
+            assertSame(defaultAccessor, lease.getAccessor());
+        }
+    }
+
+    @Test
+    void testCreatedHomeHasOwnModelThreadAndCheckpoints() {
+        String id = registry.createHome("a");
+        registry.attach("s1", id);
+
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            HomeAccessor accessor = lease.getAccessor();
+            assertEquals("a", lease.getHomeId());
+            assertNotSame(defaultAccessor.getHome(), accessor.getHome());
+            assertNotNull(accessor.getModelExecutor());
+            assertNotNull(accessor.getCheckpointManager());
+            String thread = accessor.runOnEDT(() -> Thread.currentThread().getName());
+            assertEquals("sh3d-mcp-model-a", thread);
+        }
+        try (HomeRegistry.Lease lease = registry.acquire("s2")) {
+            assertSame(defaultAccessor, lease.getAccessor(), "Other sessions are not affected");
+        }
+    }
+
+    @Test
+    void testHomesRunInParallel() throws Exception {
+        registry.attach("s1", registry.createHome("a"));
+        registry.attach("s2", registry.createHome("b"));
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = callers.submit(() -> awaitInHome("s1", bothRunning));
+            Future<Boolean> second = callers.submit(() -> awaitInHome("s2", bothRunning));
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCurrentSessionSetDuringLease() {
+        assertNull(HomeRegistry.currentSession());
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertEquals(HomeRegistry.DEFAULT_HOME_ID, lease.getHomeId());
+            assertEquals("s1", HomeRegistry.currentSession());
+        }
+        assertNull(HomeRegistry.currentSession());
+    }
+
+    @Test
+    void testAttachDefaultDetaches() {
+        registry.attach("s1", registry.createHome("a"));
+        assertEquals("a", registry.getHomeId("s1"));
+        registry.attach("s1", HomeRegistry.DEFAULT_HOME_ID);
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, registry.getHomeId("s1"));
+    }
+
+    @Test
+    void testInvalidAndDuplicateIdsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> registry.createHome("../etc"));
+        registry.createHome("a");
+        assertThrows(IllegalArgumentException.class, () -> registry.createHome("a"));
+        assertThrows(IllegalArgumentException.class, () -> registry.createHome(HomeRegistry.DEFAULT_HOME_ID));
+        assertThrows(IllegalArgumentException.class, () -> registry.attach("s1", "missing"));
+    }
+
+    @Test
+    void testGeneratedIds() {
+        String first = registry.createHome(null);
+        String second = registry.createHome(null);
+        assertNotEquals(first, second);
+        assertTrue(first.startsWith("home-"));
+    }
+
+    @Test
+    void testSingleHomeModeRejectsCreate() {
+        HomeRegistry single = new HomeRegistry(defaultAccessor);
+        assertFalse(single.isMultiHome());
+        assertThrows(IllegalStateException.class, () -> single.createHome("a"));
+        try (HomeRegistry.Lease lease = single.acquire("s1")) {
+            assertSame(defaultAccessor, lease.getAccessor());
+        }
+    }
+
+    @Test
+    void testIdleHomeEvictedAndReloaded() {
+        registry.attach("s1", registry.createHome("a"));
+        HomeAccessor before;
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            before = lease.getAccessor();
+        }
+
+        now += 60_000;
+        assertEquals(1, registry.evictIdle());
+        assertEquals(false, homeInfo("a").get("loaded"));
+
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertNotSame(before, lease.getAccessor());
+            assertEquals("a", lease.getHomeId());
+        }
+        assertEquals(true, homeInfo("a").get("loaded"));
+        assertEquals(1L, registry.getCounters().get("evicted"));
+        assertEquals(1L, registry.getCounters().get("reloaded"));
+    }
+
+    @Test
+    void testLeasedHomeIsNotEvicted() {
+        registry.attach("s1", registry.createHome("a"));
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertEquals("a", lease.getHomeId());
+            now += 60_000;
+            assertEquals(0, registry.evictIdle());
+        }
+        assertEquals(true, homeInfo("a").get("loaded"));
+    }
+
+    @Test
+    void testLoadedLimitEvictsLeastRecentlyUsed() {
+        registry.createHome("a");
+        now += 10;
+        registry.createHome("b");
+        now += 10;
+        registry.createHome("c");
+
+        assertEquals(false, homeInfo("a").get("loaded"));
+        assertEquals(true, homeInfo("b").get("loaded"));
+        assertEquals(true, homeInfo("c").get("loaded"));
+        assertEquals(2, registry.getCounters().get("loaded"));
+    }
+
+    @Test
+    void testLimitReachedWhenAllHomesBusy() {
+        registry.attach("s1", registry.createHome("a"));
+        registry.attach("s2", registry.createHome("b"));
+        try (HomeRegistry.Lease first = registry.acquire("s1");
+             HomeRegistry.Lease second = registry.acquire("s2")) {
+            assertEquals("a", first.getHomeId());
+            assertEquals("b", second.getHomeId());
+            assertThrows(CommandException.class, () -> registry.createHome("c"));
+        }
+        assertEquals(1L, registry.getCounters().get("rejected"));
+        assertEquals(2, registry.list().size() - 1, "Rejected home is not kept");
+    }
+
+    @Test
+    void testHeapLimitEvictsIdleHome() {
+        registry.createHome("a");
+        heapPercent = 95;
+        registry.createHome("b");
+        assertEquals(false, homeInfo("a").get("loaded"));
+
+        registry.attach("s1", "b");
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertEquals("b", lease.getHomeId());
+            assertThrows(CommandException.class, () -> registry.createHome("c"),
+                    "Nothing idle to evict while the heap is over its limit");
+        }
+    }
+
+    @Test
+    void testConcurrentReloadsRespectLoadedLimit() throws Exception {
+        String[] ids = {"a", "b", "c", "d"};
+        for (int i = 0; i < ids.length; i++) {
+            registry.createHome(ids[i]);
+            registry.attach("s" + i, ids[i]);
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(ids.length);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                String sessionId = "s" + i;
+                results.add(pool.submit(() -> {
+                    int maxSeen = 0;
+                    for (int n = 0; n < 50; n++) {
+                        try (HomeRegistry.Lease lease = registry.acquire(sessionId)) {
+                            assertNotNull(lease.getAccessor());
+                            maxSeen = Math.max(maxSeen, (Integer) registry.getCounters().get("loaded"));
+                        } catch (CommandException e) {
+                            // Both slots leased by other sessions
+                        }
+                    }
+                    return maxSeen;
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertTrue(result.get(30, TimeUnit.SECONDS) <= 2, "Loaded homes exceeded the limit");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCloseSavesLoadedHomes() {
+        registry.createHome("a");
+        registry.createHome("b");
+        registry.createHome("c"); // evicts a
+        List<String> messages = new ArrayList<>();
+        Logger logger = Logger.getLogger(HomeRegistry.class.getName());
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                messages.add(record.getMessage());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        logger.addHandler(handler);
+        try {
+            registry.close();
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        assertTrue(messages.contains("Home a stays on disk: " + swapDir.resolve("a.sh3d")), messages.toString());
+        assertTrue(messages.contains("Home b saved on shutdown: " + swapDir.resolve("b.sh3d")), messages.toString());
+        assertTrue(messages.contains("Home c saved on shutdown: " + swapDir.resolve("c.sh3d")), messages.toString());
+        assertEquals(0, registry.getCounters().get("loaded"));
+    }
+
+    @Test
+    void testHomesOfEarlierRunRegisteredOnStart() throws Exception {
+        registry.close();
+        Files.createFile(swapDir.resolve("home-7.sh3d"));
+        Files.createFile(swapDir.resolve("kitchen.sh3d"));
+        Files.createFile(swapDir.resolve("not a home.sh3d"));
+        registry = newRegistry(2);
+
+        assertEquals(false, homeInfo("home-7").get("loaded"));
+        assertEquals(3, registry.list().size());
+        registry.attach("s1", "kitchen");
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertEquals("kitchen", lease.getHomeId());
+            assertNotNull(lease.getAccessor());
+        }
+        assertEquals("home-8", registry.createHome(null), "Generated IDs do not reuse swap files");
+        assertThrows(IllegalArgumentException.class, () -> registry.createHome("home-7"));
+    }
+
+    @Test
+    void testGeneratedIdsSkipExplicitIds() {
+        registry.createHome("home-1");
+        assertEquals("home-2", registry.createHome(null));
+    }
+
+    @Test
+    void testAbandonedUnloadedHomesExpire() throws Exception {
+        registry.attach("s1", registry.createHome("kept"));
+        registry.attach("s2", registry.createHome("abandoned"));
+        registry.detachSession("s2");
+        now += 60_000;
+        assertEquals(2, registry.evictIdle());
+        Path file = swapDir.resolve("abandoned.sh3d");
+        Files.createFile(file); // the test recorder does not write files
+
+        assertEquals(0, registry.expireAbandoned(), "Not unused long enough yet");
+        now += 3_600_000;
+        assertEquals(1, registry.expireAbandoned());
+        assertFalse(Files.exists(file));
+        assertEquals(1, registry.list().size() - 1, "Home with a session is kept");
+        assertEquals("kept", registry.getHomeId("s1"));
+        assertEquals(1L, registry.getCounters().get("expired"));
+    }
+
+    @Test
+    void testCloseHomeDetachesSessions() {
+        registry.attach("s1", registry.createHome("a"));
+        assertTrue(registry.closeHome("a"));
+        assertFalse(registry.closeHome("a"));
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, registry.getHomeId("s1"));
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            assertSame(defaultAccessor, lease.getAccessor());
+        }
+        assertThrows(IllegalArgumentException.class, () -> registry.closeHome(HomeRegistry.DEFAULT_HOME_ID));
+    }
+
+    @Test
+    void testCloseHomeWhileLeasedDefersRelease() {
+        registry.attach("s1", registry.createHome("a"));
+        try (HomeRegistry.Lease lease = registry.acquire("s1")) {
+            registry.closeHome("a");
+            assertEquals("ok", lease.getAccessor().runOnEDT(() -> "ok"),
+                    "Running tool keeps its model thread until the lease is closed");
+        }
+    }
+
+    @Test
+    void testDetachSession() {
+        registry.attach("s1", registry.createHome("a"));
+        registry.detachSession("s1");
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, registry.getHomeId("s1"));
+        assertEquals(0, registry.getCounters().get("sessionsAttached"));
+    }
+
+    @Test
+    void testListDefaultFirst() {
+        registry.attach("s1", registry.createHome("a"));
+        List<Map<String, Object>> homes = registry.list();
+        assertEquals(2, homes.size());
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.get(0).get("homeId"));
+        assertEquals("a", homes.get(1).get("homeId"));
+        assertEquals(1, homes.get(1).get("sessions"));
+    }
+
+    // === Helpers ===
+
+    private HomeRegistry newRegistry(int maxLoaded) {
+        return new HomeRegistry(defaultAccessor, swapDir, maxLoaded, 30_000, 3_600_000, 85,
+                () -> now, () -> heapPercent);
+    }
+
+    private boolean awaitInHome(String sessionId, CountDownLatch bothRunning) {
+        try (HomeRegistry.Lease lease = registry.acquire(sessionId)) {
+            return lease.getAccessor().runOnEDT(() -> {
+                bothRunning.countDown();
+                return bothRunning.await(5, TimeUnit.SECONDS);
+            });
+        }
+    }
+
+    private Map<String, Object> homeInfo(String homeId) {
+        for (Map<String, Object> home : registry.list()) {
+            if (homeId.equals(home.get("homeId"))) {
+                return home;
+            }
+        }
+        throw new AssertionError("No home " + homeId);
+    }
+}
@@ -0,0 +1,129 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Polyline;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeRevisions.Kind;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class HomeRevisionsTest {
+
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testSameInstancePerAccessor() {
+        assertSame(accessor.getRevisions(), accessor.getRevisions());
+    }
+
+    @Test
+    void testAddAndDeleteBumpOnlyTheirCollection() {
+        HomeRevisions revisions = accessor.getRevisions();
+        Wall wall = new Wall(0, 0, 100, 0, 10);
+
+        home.addWall(wall);
+        assertEquals(1, revisions.get(Kind.WALLS));
+        assertEquals(0, revisions.get(Kind.FURNITURE));
+
+        home.deleteWall(wall);
+        assertEquals(2, revisions.get(Kind.WALLS));
+        assertEquals(0, revisions.get(Kind.ROOMS));
+    }
+
+    @Test
+    void testItemPropertyChangeBumpsCollection() {
+        Wall existing = new Wall(0, 0, 100, 0, 10);
+        home.addWall(existing);
+        HomeRevisions revisions = accessor.getRevisions();
+
+        existing.setXEnd(200);
+        assertEquals(1, revisions.get(Kind.WALLS), "Objects present before attach are tracked");
+
+        HomePieceOfFurniture piece = new HomePieceOfFurniture(mock(
+                com.eteks.sweethome3d.model.PieceOfFurniture.class));
+        home.addPieceOfFurniture(piece);
+        long afterAdd = revisions.get(Kind.FURNITURE);
+        piece.setX(50);
+        assertEquals(afterAdd + 1, revisions.get(Kind.FURNITURE));
+    }
+
+    @Test
+    void testDeletedItemNoLongerTracked() {
+        HomeRevisions revisions = accessor.getRevisions();
+        Wall wall = new Wall(0, 0, 100, 0, 10);
+        home.addWall(wall);
+        home.deleteWall(wall);
+        long revision = revisions.get(Kind.WALLS);
+
+        wall.setXEnd(300);
+        assertEquals(revision, revisions.get(Kind.WALLS));
+    }
+
+    @Test
+    void testLevelChangesBumpEveryCollection() {
+        HomeRevisions revisions = accessor.getRevisions();
+        home.addLevel(new Level("L1", 0, 12, 250));
+        for (Kind kind : Kind.values()) {
+            assertEquals(1, revisions.get(kind), kind.name());
+        }
+    }
+
+    @Test
+    void testSelectedLevelBumpsLevels() {
+        Level level = new Level("L1", 0, 12, 250);
+        home.addLevel(level);
+        HomeRevisions revisions = accessor.getRevisions();
+
+        home.setSelectedLevel(level);
+        assertEquals(1, revisions.get(Kind.LEVELS));
+        assertEquals(0, revisions.get(Kind.WALLS));
+    }
+
+    @Test
+    void testPolylinesTracked() {
+        HomeRevisions revisions = accessor.getRevisions();
+        Polyline polyline = new Polyline(new float[][] {{0, 0}, {100, 0}});
+        home.addPolyline(polyline);
+        assertEquals(1, revisions.get(Kind.POLYLINES));
+
+        polyline.setLevel(new Level("Upper", 250, 12, 250));
+        assertEquals(2, revisions.get(Kind.POLYLINES), "Property changes of a polyline count");
+        home.deletePolyline(polyline);
+        assertEquals(3, revisions.get(Kind.POLYLINES));
+        polyline.setLevel(new Level("Upper", 250, 12, 250));
+        assertEquals(3, revisions.get(Kind.POLYLINES), "Deleted polyline is no longer tracked");
+        assertEquals(0, revisions.get(Kind.WALLS));
+    }
+
+    @Test
+    void testEnvironmentChangeBumpsEnvironment() {
+        HomeRevisions revisions = accessor.getRevisions();
+        home.getEnvironment().setSkyColor(0x336699);
+        assertEquals(1, revisions.get(Kind.ENVIRONMENT));
+        assertEquals(0, revisions.get(Kind.WALLS));
+    }
+
+    @Test
+    void testSnapshotChangesWithAnyCollection() {
+        HomeRevisions revisions = accessor.getRevisions();
+        long[] before = revisions.snapshot();
+        assertArrayEquals(before, revisions.snapshot());
+
+        home.addWall(new Wall(0, 0, 100, 0, 10));
+        long[] after = revisions.snapshot();
+        assertEquals(before[Kind.WALLS.ordinal()] + 1, after[Kind.WALLS.ordinal()]);
+        assertEquals(before[Kind.ROOMS.ordinal()], after[Kind.ROOMS.ordinal()]);
+    }
+}
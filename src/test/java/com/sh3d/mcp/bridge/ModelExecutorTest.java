@@ -0,0 +1,79 @@
+package com.sh3d.mcp.bridge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelExecutorTest {
+
+    private final ModelExecutor executor = new ModelExecutor("test-model");
+
+    @AfterEach
+    void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    void testRunsOnDedicatedThread() throws Exception {
+        AtomicReference<String> name = new AtomicReference<>();
+        AtomicReference<Boolean> onModelThread = new AtomicReference<>();
+        executor.invokeAndWait(() -> {
+            name.set(Thread.currentThread().getName());
+            onModelThread.set(executor.isModelThread());
+        });
+        assertEquals("test-model", name.get());
+        assertTrue(onModelThread.get());
+        assertFalse(executor.isModelThread());
+    }
+
+    @Test
+    void testTasksRunOneAtATimeInOrder() throws Exception {
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        int[] concurrent = new int[2]; // [0] — в работе сейчас, [1] — максимум
+        try {
+            for (int i = 0; i < 40; i++) {
+                int n = i;
+                callers.submit(() -> {
+                    executor.invokeAndWait(() -> {
+                        concurrent[0]++;
+                        concurrent[1] = Math.max(concurrent[1], concurrent[0]);
+                        order.add(n);
+                        concurrent[0]--;
+                    });
+                    return null;
+                });
+            }
+        } finally {
+            callers.shutdown();
+            assertTrue(callers.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertEquals(40, order.size());
+        assertEquals(1, concurrent[1], "Model tasks never overlap");
+    }
+
+    @Test
+    void testTaskExceptionWrapped() {
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> executor.invokeAndWait(() -> {
+                    throw new IllegalArgumentException("boom");
+                }));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void testClosedExecutorRejects() {
+        executor.close();
+        assertThrows(IllegalStateException.class, () -> executor.invokeAndWait(() -> { }));
+    }
+}
@@ -0,0 +1,291 @@
+package com.sh3d.mcp.bridge;
+
+import com.eteks.sweethome3d.model.CatalogPieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Selectable;
+import com.eteks.sweethome3d.model.Wall;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpatialIndexTest {
+
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testSameInstancePerAccessor() {
+        assertSame(accessor.getSpatialIndex(), accessor.getSpatialIndex());
+    }
+
+    @Test
+    void testEmptyHomeHasNoBounds() {
+        assertNull(accessor.getSpatialIndex().getSceneBounds());
+    }
+
+    @Test
+    void testExistingObjectsIndexedOnAttach() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        home.addRoom(new Room(new float[][]{{0, 0}, {600, 0}, {600, 400}, {0, 400}}));
+
+        SpatialIndex index = accessor.getSpatialIndex();
+        assertEquals(2, index.size());
+        SpatialIndex.Bounds bounds = index.getSceneBounds();
+        assertEquals(0, bounds.getMinX(), 0.01);
+        assertEquals(600, bounds.getMaxX(), 0.01);
+        assertEquals(400, bounds.getMaxY(), 0.01);
+        assertEquals(250, bounds.getMaxZ(), 0.01);
+    }
+
+    @Test
+    void testBoundsFollowAddMoveAndDelete() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        HomePieceOfFurniture piece = piece("Table", 50, 50, 80);
+        piece.setX(900);
+        piece.setY(100);
+        home.addPieceOfFurniture(piece);
+        assertEquals(925, index.getSceneBounds().getMaxX(), 0.01);
+
+        piece.setX(300);
+        assertEquals(500, index.getSceneBounds().getMaxX(), 0.01, "Shrinks after a move");
+
+        wall.setXEnd(1000);
+        assertEquals(1000, index.getSceneBounds().getMaxX(), 0.01);
+
+        home.deleteWall(wall);
+        assertEquals(325, index.getSceneBounds().getMaxX(), 0.01);
+        home.deletePieceOfFurniture(piece);
+        assertNull(index.getSceneBounds());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testInvisibleFurnitureIndexedButNotInBounds() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        HomePieceOfFurniture piece = piece("Hidden", 50, 50, 80);
+        piece.setX(100);
+        piece.setY(100);
+        home.addPieceOfFurniture(piece);
+        piece.setVisible(false);
+
+        assertNull(index.getSceneBounds());
+        assertEquals(1, index.query(0, 0, 200, 200).size());
+    }
+
+    @Test
+    void testHiddenLevelExcludedFromSceneBounds() {
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(upper);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        wall.setLevel(upper);
+        home.addWall(wall);
+        assertEquals(500, index.getSceneBounds().getMaxZ(), 0.01, "Level elevation counts");
+
+        upper.setVisible(false);
+        assertNull(index.getSceneBounds());
+        assertNotNull(index.getBounds(level -> level == null || level.isViewable()));
+    }
+
+    @Test
+    void testSeparateLevelFiltersForStructureAndFurniture() {
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(upper);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        wall.setLevel(upper);
+        home.addWall(wall);
+        HomePieceOfFurniture piece = piece("Table", 100, 100, 80);
+        piece.setX(1000);
+        piece.setY(1000);
+        piece.setLevel(upper);
+        home.addPieceOfFurniture(piece);
+        upper.setVisible(false);
+
+        SpatialIndex.Bounds exported = index.getBounds(
+                level -> level == null || level.isViewableAndVisible(),
+                level -> level == null || level.isViewable());
+        assertEquals(950, exported.getMinX(), 0.01, "Walls of the hidden level are left out");
+        assertEquals(1050, exported.getMaxX(), 0.01);
+
+        home.deletePieceOfFurniture(piece);
+        assertNull(index.getBounds(level -> level == null || level.isViewableAndVisible(),
+                level -> level == null || level.isViewable()));
+        assertEquals(500, index.getBounds(level -> true, level -> false).getMaxX(), 0.01);
+    }
+
+    @Test
+    void testSceneBoundsMemoizedUntilChange() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        SpatialIndex.Bounds first = index.getSceneBounds();
+        assertSame(first, index.getSceneBounds(), "Unchanged home reuses the bounds");
+
+        wall.setXEnd(800);
+        SpatialIndex.Bounds moved = index.getSceneBounds();
+        assertNotSame(first, moved);
+        assertEquals(800, moved.getMaxX(), 0.01);
+        assertSame(moved, index.getSceneBounds());
+    }
+
+    @Test
+    void testSceneBoundsFollowLevelVisibility() {
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(upper);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        wall.setLevel(upper);
+        home.addWall(wall);
+        assertNotNull(index.getSceneBounds());
+
+        upper.setVisible(false);
+        assertNull(index.getSceneBounds());
+        upper.setVisible(true);
+        assertNotNull(index.getSceneBounds());
+    }
+
+    @Test
+    void testItemBoundsMemoizedAndRefreshedOnChange() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        HomePieceOfFurniture piece = piece("Table", 100, 50, 80);
+        piece.setX(200);
+        piece.setY(100);
+        home.addPieceOfFurniture(piece);
+
+        SpatialIndex.Bounds bounds = index.getItemBounds(piece);
+        assertEquals(150, bounds.getMinX(), 0.01);
+        assertEquals(125, bounds.getMaxY(), 0.01);
+        assertEquals(80, bounds.getMaxZ(), 0.01);
+        assertSame(bounds, index.getItemBounds(piece));
+
+        piece.setX(600);
+        assertEquals(550, index.getItemBounds(piece).getMinX(), 0.01);
+
+        home.deletePieceOfFurniture(piece);
+        assertNull(index.getItemBounds(piece));
+    }
+
+    @Test
+    void testQueryIsPerLevel() {
+        Level ground = new Level("Ground", 0, 12, 250);
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(ground);
+        home.addLevel(upper);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Wall lower = new Wall(0, 0, 100, 0, 10);
+        lower.setLevel(ground);
+        home.addWall(lower);
+        Wall top = new Wall(0, 0, 100, 0, 10);
+        top.setLevel(upper);
+        home.addWall(top);
+
+        assertEquals(Arrays.asList(top), index.query(upper, -10, -10, 50, 50));
+        assertEquals(2, index.query(-10, -10, 50, 50).size());
+
+        top.setLevel(ground);
+        assertTrue(index.query(upper, -10, -10, 50, 50).isEmpty(), "Level change moves the object");
+        assertEquals(2, index.query(ground, -10, -10, 50, 50).size());
+    }
+
+    @Test
+    void testLargeObjectsFoundEverywhere() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        float side = SpatialIndex.CELL_SIZE * 20;
+        Room site = new Room(new float[][]{{0, 0}, {side, 0}, {side, side}, {0, side}});
+        home.addRoom(site);
+
+        assertEquals(Arrays.asList(site), index.query(null, side / 2, side / 2, side / 2 + 1, side / 2 + 1));
+        assertEquals(Arrays.asList(site), index.nearest(null, side / 3, side / 3, 1, null));
+        home.deleteRoom(site);
+        assertTrue(index.query(null, 0, 0, side, side).isEmpty());
+    }
+
+    @Test
+    void testRangeQueryMatchesBruteForce() {
+        List<Label> labels = randomLabels(500, 42);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Random random = new Random(7);
+        for (int q = 0; q < 50; q++) {
+            float x = random.nextFloat() * 4000 - 500;
+            float y = random.nextFloat() * 4000 - 500;
+            float w = random.nextFloat() * 1500;
+            float h = random.nextFloat() * 1500;
+
+            List<Selectable> expected = new ArrayList<>();
+            for (Label label : labels) {
+                if (label.getX() >= x && label.getX() <= x + w && label.getY() >= y && label.getY() <= y + h) {
+                    expected.add(label);
+                }
+            }
+            List<Selectable> actual = index.query(null, x, y, x + w, y + h);
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+        }
+    }
+
+    @Test
+    void testNearestMatchesBruteForce() {
+        List<Label> labels = randomLabels(300, 11);
+        SpatialIndex index = accessor.getSpatialIndex();
+        Random random = new Random(3);
+        for (int q = 0; q < 30; q++) {
+            float x = random.nextFloat() * 5000 - 1000;
+            float y = random.nextFloat() * 5000 - 1000;
+            List<Label> sorted = new ArrayList<>(labels);
+            sorted.sort((a, b) -> Double.compare(
+                    Math.hypot(a.getX() - x, a.getY() - y), Math.hypot(b.getX() - x, b.getY() - y)));
+
+            List<Selectable> nearest = index.nearest(null, x, y, 5, null);
+            assertEquals(sorted.subList(0, 5), nearest);
+        }
+    }
+
+    @Test
+    void testNearestAppliesFilter() {
+        SpatialIndex index = accessor.getSpatialIndex();
+        Label near = new Label("near", 10, 10);
+        Label far = new Label("far", 1000, 1000);
+        home.addLabel(near);
+        home.addLabel(far);
+
+        assertEquals(Arrays.asList(far), index.nearest(null, 0, 0, 1, item -> item == far));
+        assertEquals(Arrays.asList(near, far), index.nearest(null, 0, 0, 10, null));
+    }
+
+    // === Helpers ===
+
+    private List<Label> randomLabels(int count, long seed) {
+        Random random = new Random(seed);
+        List<Label> labels = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Label label = new Label("L" + i, random.nextFloat() * 3000, random.nextFloat() * 3000);
+            home.addLabel(label);
+            labels.add(label);
+        }
+        return labels;
+    }
+
+    private static HomePieceOfFurniture piece(String name, float width, float depth, float height) {
+        return new HomePieceOfFurniture(
+                new CatalogPieceOfFurniture(name, null, null, width, depth, height, true, false));
+    }
+}
@@ -0,0 +1,69 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttachHomeHandlerTest {
+
+    @TempDir
+    Path swapDir;
+
+    private HomeRegistry homes;
+    private AttachHomeHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        homes = new HomeRegistry(new HomeAccessor(new Home(), null), swapDir, 4, 60_000, 100);
+        handler = new AttachHomeHandler(homes);
+    }
+
+    @AfterEach
+    void tearDown() {
+        homes.close();
+    }
+
+    @Test
+    void testAttachToExistingHome() {
+        homes.createHome("a");
+        Response resp = execute("s1", Collections.singletonMap("homeId", "a"));
+        assertTrue(resp.isOk());
+        assertEquals("a", homes.getHomeId("s1"));
+    }
+
+    @Test
+    void testAttachDefaultSwitchesBack() {
+        homes.attach("s1", homes.createHome("a"));
+        Response resp = execute("s1", Collections.singletonMap("homeId", HomeRegistry.DEFAULT_HOME_ID));
+        assertTrue(resp.isOk());
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.getHomeId("s1"));
+    }
+
+    @Test
+    void testUnknownHomeIsError() {
+        assertTrue(execute("s1", Collections.singletonMap("homeId", "missing")).isError());
+    }
+
+    @Test
+    void testMissingHomeIdIsError() {
+        assertTrue(execute("s1", Collections.emptyMap()).isError());
+    }
+
+    private Response execute(String sessionId, Map<String, Object> params) {
+        try (HomeRegistry.Lease lease = homes.acquire(sessionId)) {
+            return handler.execute(new Request("attach_home", params), lease.getAccessor());
+        }
+    }
+}
@@ -410,6 +410,63 @@ class BatchCommandsHandlerTest {
         assertTrue(required.contains("commands"));
     }
 
+    @Test
+    void testCostClassFollowsHeaviestSubCommand() {
+        registry.register("export_svg", new ExportSvgHandler(null));
+        Map<String, Object> light = new LinkedHashMap<>();
+        light.put("commands", Arrays.asList(cmd("ping", null), cmd("create_wall", wallParams(0, 0, 100, 0))));
+        Map<String, Object> heavy = new LinkedHashMap<>();
+        heavy.put("commands", Arrays.asList(cmd("ping", null), cmd("export_svg", null)));
+
+        assertEquals(CostClass.LIGHT, handler.getCostClass(light));
+        assertEquals(CostClass.HEAVY, handler.getCostClass(heavy));
+        assertEquals(CostClass.LIGHT, handler.getCostClass(Collections.emptyMap()));
+    }
+
+    // --- Tool name aliases ---
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCommandResolvedByToolName() {
+        registry.register("create_walls", new AliasedHandler("create_room"));
+
+        Response resp = executeBatch(Arrays.asList(cmd("create_room", null)));
+
+        assertTrue(resp.isOk());
+        Map<String, Object> r = (Map<String, Object>) ((List<Object>) resp.getData().get("results")).get(0);
+        assertEquals("ok", r.get("status"));
+        assertEquals("create_room", r.get("action"));
+        assertEquals("create_walls", ((Map<String, Object>) r.get("data")).get("dispatchedAs"));
+    }
+
+    private static class AliasedHandler implements CommandHandler, CommandDescriptor {
+        private final String toolName;
+
+        AliasedHandler(String toolName) {
+            this.toolName = toolName;
+        }
+
+        @Override
+        public Response execute(Request request, HomeAccessor accessor) {
+            return Response.ok(Collections.singletonMap("dispatchedAs", request.getAction()));
+        }
+
+        @Override
+        public String getToolName() {
+            return toolName;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Aliased test handler";
+        }
+
+        @Override
+        public Map<String, Object> getSchema() {
+            return Collections.singletonMap("type", "object");
+        }
+    }
+
     // --- Helpers ---
 
     private Response executeBatch(List<? extends Map<String, Object>> commands) {
@@ -0,0 +1,121 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.sh3d.mcp.command.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CheckCollisionsHandlerTest {
+
+    private CheckCollisionsHandler handler;
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        handler = new CheckCollisionsHandler();
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testNoCollisions() {
+        addWall(home, 0, 0, 500, 0);
+        addFurniture(home, "Chair", 100, 100);
+
+        Response resp = handler.execute(makeRequest("check_collisions"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(0, resp.getData().get("count"));
+    }
+
+    @Test
+    void testReportsWallAndFurnitureCollisions() {
+        Wall wall = addWall(home, 0, 0, 500, 0);
+        HomePieceOfFurniture chair = addFurniture(home, "Chair", 100, 10);
+        HomePieceOfFurniture stool = addFurniture(home, "Stool", 300, 300);
+        HomePieceOfFurniture table = addFurniture(home, "Table", 320, 300);
+
+        Response resp = handler.execute(makeRequest("check_collisions"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        List<Map<String, Object>> collisions = collisions(resp);
+        assertEquals(2, collisions.size());
+        Map<String, Object> deepest = collisions.get(0);
+        assertEquals(stool.getId(), deepest.get("id"));
+        assertEquals(table.getId(), deepest.get("otherId"));
+        assertEquals("furniture", deepest.get("otherType"));
+        assertEquals("Table", deepest.get("otherName"));
+        assertEquals(30.0, ((Number) deepest.get("depth")).doubleValue(), 0.01);
+        assertEquals(chair.getId(), collisions.get(1).get("id"));
+        assertEquals(wall.getId(), collisions.get(1).get("otherId"));
+        assertEquals("wall", collisions.get(1).get("otherType"));
+    }
+
+    @Test
+    void testSinglePiece() {
+        HomePieceOfFurniture a = addFurniture(home, "A", 0, 0);
+        HomePieceOfFurniture b = addFurniture(home, "B", 20, 0);
+        addFurniture(home, "C", 500, 500);
+        addFurniture(home, "D", 510, 500);
+
+        Response resp = handler.execute(makeIdRequest("check_collisions", b.getId()), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        List<Map<String, Object>> collisions = collisions(resp);
+        assertEquals(1, collisions.size());
+        assertEquals(a.getId(), collisions.get(0).get("otherId"));
+    }
+
+    @Test
+    void testLevelScope() {
+        Level ground = addLevel(home, "Ground", 0, 250, 12);
+        Level upper = addLevel(home, "Upper", 250, 250, 12);
+        home.setSelectedLevel(upper);
+        HomePieceOfFurniture a = addFurniture(home, "A", 0, 0);
+        HomePieceOfFurniture b = addFurniture(home, "B", 20, 0);
+        a.setLevel(ground);
+        b.setLevel(ground);
+
+        assertEquals(0, handler.execute(makeRequest("check_collisions"), accessor).getData().get("count"));
+        Response resp = handler.execute(makeRequest("check_collisions", "levelId", ground.getId()), accessor);
+        assertEquals(1, resp.getData().get("count"));
+    }
+
+    @Test
+    void testErrors() {
+        Response missing = handler.execute(makeIdRequest("check_collisions", "nope"), accessor);
+        assertFalse(missing.isOk());
+        assertTrue(missing.getMessage().contains("Furniture not found"));
+
+        Response level = handler.execute(makeRequest("check_collisions", "levelId", "nope"), accessor);
+        assertFalse(level.isOk());
+        assertTrue(level.getMessage().contains("Level not found"));
+
+        assertFalse(handler.execute(makeRequest("check_collisions", "id", "a", "levelId", "b"), accessor).isOk());
+    }
+
+    @Test
+    void testSchema() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> props = (Map<String, Object>) handler.getSchema().get("properties");
+        assertTrue(props.containsKey("id"));
+        assertTrue(props.containsKey("levelId"));
+        assertNotNull(handler.getDescription());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> collisions(Response resp) {
+        return (List<Map<String, Object>>) resp.getData().get("collisions");
+    }
+}
@@ -214,6 +214,20 @@ class CheckpointHandlerTest {
 
     // --- Helper ---
 
+    @Test
+    void testHomeWithOwnTimelineDoesNotUseSharedOne() {
+        CheckpointManager own = new CheckpointManager();
+        HomeAccessor created = new HomeAccessor(new Home(), null);
+        created.setCheckpointManager(own);
+
+        assertFalse(handler.execute(new Request("checkpoint", Collections.emptyMap()), created).isError());
+
+        assertEquals(1, own.size());
+        assertEquals(0, checkpointManager.size());
+        Response list = listHandler.execute(new Request("list_checkpoints", Collections.emptyMap()), accessor);
+        assertEquals(0, list.getData().get("count"));
+    }
+
     private Response execute(Map<String, Object> params) {
         return handler.execute(new Request("checkpoint", params), accessor);
     }
@@ -0,0 +1,71 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CloseHomeHandlerTest {
+
+    @TempDir
+    Path swapDir;
+
+    private HomeRegistry homes;
+    private CloseHomeHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        homes = new HomeRegistry(new HomeAccessor(new Home(), null), swapDir, 4, 60_000, 100);
+        handler = new CloseHomeHandler(homes);
+    }
+
+    @AfterEach
+    void tearDown() {
+        homes.close();
+    }
+
+    @Test
+    void testClosesNamedHome() {
+        homes.attach("s2", homes.createHome("a"));
+        Response resp = execute("s1", Collections.singletonMap("homeId", "a"));
+        assertTrue(resp.isOk());
+        assertEquals(1, homes.list().size());
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.getHomeId("s2"));
+    }
+
+    @Test
+    void testClosesCurrentHomeByDefault() {
+        homes.attach("s1", homes.createHome("a"));
+        Response resp = execute("s1", Collections.emptyMap());
+        assertTrue(resp.isOk());
+        assertEquals("a", resp.getData().get("homeId"));
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.getHomeId("s1"));
+    }
+
+    @Test
+    void testDefaultHomeCannotBeClosed() {
+        assertTrue(execute("s1", Collections.emptyMap()).isError());
+    }
+
+    @Test
+    void testUnknownHomeIsError() {
+        assertTrue(execute("s1", Collections.singletonMap("homeId", "missing")).isError());
+    }
+
+    private Response execute(String sessionId, Map<String, Object> params) {
+        try (HomeRegistry.Lease lease = homes.acquire(sessionId)) {
+            return handler.execute(new Request("close_home", params), lease.getAccessor());
+        }
+    }
+}
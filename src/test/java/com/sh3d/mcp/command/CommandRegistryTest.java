@@ -1,6 +1,9 @@
 package com.sh3d.mcp.command;
 
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.CallTimer;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.metrics.ToolMetrics;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 import org.junit.jupiter.api.BeforeEach;
@@ -215,4 +218,197 @@ class CommandRegistryTest {
         // The warning should only contain the "unknown" param, not "known"
         assertEquals("Unknown parameters ignored: [unknown]", warnings.get(0));
     }
+
+    @Test
+    void testVersionIncrementsOnRegister() {
+        long before = registry.getVersion();
+        registry.register("another", (req, acc) -> Response.ok(Collections.emptyMap()));
+        assertEquals(before + 1, registry.getVersion());
+    }
+
+    @Test
+    void testChangeListenerNotifiedOnRegister() {
+        int[] calls = {0};
+        Runnable listener = () -> calls[0]++;
+        registry.addChangeListener(listener);
+
+        registry.register("another", (req, acc) -> Response.ok(Collections.emptyMap()));
+        assertEquals(1, calls[0]);
+
+        registry.removeChangeListener(listener);
+        registry.register("third", (req, acc) -> Response.ok(Collections.emptyMap()));
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    void testFailingChangeListenerDoesNotBreakRegistration() {
+        registry.addChangeListener(() -> {
+            throw new IllegalStateException("boom");
+        });
+
+        registry.register("another", (req, acc) -> Response.ok(Collections.emptyMap()));
+        assertTrue(registry.hasHandler("another"));
+    }
+
+    // --- Tool name aliases ---
+
+    @Test
+    void testResolveActionByActionName() {
+        assertEquals("ping", registry.resolveAction("ping"));
+    }
+
+    @Test
+    void testResolveActionByToolName() {
+        registry.register("create_walls", new NamedHandler("create_room"));
+
+        assertEquals("create_walls", registry.resolveAction("create_room"));
+        assertEquals("create_walls", registry.resolveAction("create_walls"));
+    }
+
+    @Test
+    void testResolveActionUnknown() {
+        assertNull(registry.resolveAction("nope"));
+        assertNull(registry.resolveAction(null));
+    }
+
+    @Test
+    void testToolNameEqualToActionIsNotAnAlias() {
+        registry.register("same", new NamedHandler("same"));
+        registry.register("other", new NamedHandler(null));
+        assertEquals("same", registry.resolveAction("same"));
+    }
+
+    @Test
+    void testToolNameCollidingWithActionRejected() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> registry.register("create_walls", new NamedHandler("ping")));
+        assertTrue(e.getMessage().contains("ping"));
+        assertFalse(registry.hasHandler("create_walls"));
+    }
+
+    @Test
+    void testActionCollidingWithToolNameRejected() {
+        registry.register("create_walls", new NamedHandler("create_room"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("create_room", (req, acc) -> Response.ok(null)));
+    }
+
+    @Test
+    void testDuplicateToolNameRejected() {
+        registry.register("create_walls", new NamedHandler("create_room"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> registry.register("make_room", new NamedHandler("create_room")));
+        assertEquals("create_walls", registry.resolveAction("create_room"));
+    }
+
+    @Test
+    void testReRegisterReplacesAlias() {
+        registry.register("create_walls", new NamedHandler("create_room"));
+        registry.register("create_walls", new NamedHandler("build_room"));
+
+        assertNull(registry.resolveAction("create_room"));
+        assertEquals("create_walls", registry.resolveAction("build_room"));
+    }
+
+    // --- Metrics ---
+
+    @Test
+    void testDispatchWithoutMetricsRecordsNothing() {
+        assertNull(registry.getMetrics());
+        assertTrue(registry.dispatch(new Request("ping", Collections.emptyMap()), mockAccessor).isOk());
+    }
+
+    @Test
+    void testDispatchRecordsCallsAndErrors() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        registry.setMetrics(metrics);
+        registry.register("fail", (req, acc) -> {
+            throw new CommandException("boom");
+        });
+
+        registry.dispatch(new Request("ping", Collections.emptyMap()), mockAccessor);
+        registry.dispatch(new Request("ping", Collections.emptyMap()), mockAccessor);
+        registry.dispatch(new Request("fail", Collections.emptyMap()), mockAccessor);
+
+        ToolMetrics ping = metrics.forAction("ping");
+        assertEquals(2, ping.getCalls());
+        assertEquals(0, ping.getErrors());
+        assertEquals(2, ping.getExecution().getCount());
+        assertEquals(1, metrics.forAction("fail").getErrors());
+    }
+
+    @Test
+    void testDispatchUnknownActionNotRecorded() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        registry.setMetrics(metrics);
+
+        registry.dispatch(new Request("nonexistent", Collections.emptyMap()), mockAccessor);
+
+        assertTrue(metrics.getTools().isEmpty());
+    }
+
+    @Test
+    void testEdtWaitSeparatedFromExecution() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        registry.setMetrics(metrics);
+        registry.register("wait", (req, acc) -> {
+            CallTimer.recordEdtWait(50_000_000L);
+            return Response.ok(Collections.emptyMap());
+        });
+
+        registry.dispatch(new Request("wait", Collections.emptyMap()), mockAccessor);
+
+        ToolMetrics wait = metrics.forAction("wait");
+        long edtWaitMicros = wait.getEdtWait().snapshot().getMax();
+        assertTrue(edtWaitMicros >= 50_000, "EDT wait recorded: " + edtWaitMicros);
+        assertTrue(wait.getExecution().snapshot().getMax() < 50_000,
+                "Execution excludes EDT wait");
+    }
+
+    @Test
+    void testNestedDispatchPropagatesEdtWaitToOuterCall() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        registry.setMetrics(metrics);
+        registry.register("inner", (req, acc) -> {
+            CallTimer.recordEdtWait(20_000_000L);
+            return Response.ok(Collections.emptyMap());
+        });
+        registry.register("outer", (req, acc) ->
+                registry.dispatch(new Request("inner", Collections.emptyMap()), acc));
+
+        registry.dispatch(new Request("outer", Collections.emptyMap()), mockAccessor);
+
+        assertTrue(metrics.forAction("inner").getEdtWait().snapshot().getMax() >= 20_000);
+        assertTrue(metrics.forAction("outer").getEdtWait().snapshot().getMax() >= 20_000);
+    }
+
+    private static class NamedHandler implements CommandHandler, CommandDescriptor {
+        private final String toolName;
+
+        NamedHandler(String toolName) {
+            this.toolName = toolName;
+        }
+
+        @Override
+        public Response execute(Request request, HomeAccessor accessor) {
+            return Response.ok(Collections.emptyMap());
+        }
+
+        @Override
+        public String getToolName() {
+            return toolName;
+        }
+
+        @Override
+        public String getDescription() {
+            return "Test";
+        }
+
+        @Override
+        public Map<String, Object> getSchema() {
+            return Collections.singletonMap("type", "object");
+        }
+    }
 }
@@ -0,0 +1,191 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.sh3d.mcp.command.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectAllWallsHandlerTest {
+
+    private ConnectAllWallsHandler handler;
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        handler = new ConnectAllWallsHandler();
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testClosedRectangle() {
+        Wall top = addWall(home, 0, 0, 400, 0);
+        Wall right = addWall(home, 400, 0, 400, 300);
+        Wall bottom = addWall(home, 400, 300, 0, 300);
+        Wall left = addWall(home, 0, 300, 0, 0);
+
+        Response resp = handler.execute(makeRequest("connect_all_walls"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(4, resp.getData().get("connectedCount"));
+        assertEquals(0, resp.getData().get("danglingCount"));
+        assertSame(left, top.getWallAtStart());
+        assertSame(right, top.getWallAtEnd());
+        assertSame(top, right.getWallAtStart());
+        assertSame(bottom, right.getWallAtEnd());
+        assertSame(left, bottom.getWallAtEnd());
+        assertSame(bottom, left.getWallAtStart());
+    }
+
+    @Test
+    void testToleranceAndGap() {
+        Wall a = addWall(home, 0, 0, 300, 0);
+        Wall b = addWall(home, 300.6f, 0.3f, 300, 300);
+
+        Response strict = handler.execute(makeRequest("connect_all_walls", "tolerance", 0.1), accessor);
+        assertEquals(0, strict.getData().get("connectedCount"));
+        assertNull(a.getWallAtEnd());
+
+        Response loose = handler.execute(makeRequest("connect_all_walls"), accessor);
+        assertEquals(1, loose.getData().get("connectedCount"));
+        assertSame(b, a.getWallAtEnd());
+        assertSame(a, b.getWallAtStart());
+        Map<String, Object> connection = list(loose, "connections").get(0);
+        assertEquals(0.67, ((Number) connection.get("gap")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testClosestEndWinsInCluster() {
+        Wall a = addWall(home, 0, 0, 100, 0);
+        Wall near = addWall(home, 100.2f, 0, 100, 200);
+        Wall far = addWall(home, 100.8f, 0, 300, 0);
+
+        Response resp = handler.execute(makeRequest("connect_all_walls"), accessor);
+
+        assertEquals(1, resp.getData().get("connectedCount"));
+        assertSame(near, a.getWallAtEnd());
+        assertNull(far.getWallAtStart(), "An end joins one wall only");
+    }
+
+    @Test
+    void testTJunctionAndDanglingReported() {
+        Wall host = addWall(home, 0, 0, 600, 0);
+        Wall stem = addWall(home, 300, 5, 300, 400);
+
+        Response resp = handler.execute(makeRequest("connect_all_walls"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(0, resp.getData().get("connectedCount"));
+        assertEquals(1, resp.getData().get("tJunctionCount"));
+        Map<String, Object> junction = list(resp, "tJunctions").get(0);
+        assertEquals(stem.getId(), junction.get("wallId"));
+        assertEquals("start", junction.get("end"));
+        assertEquals(host.getId(), junction.get("hostWallId"));
+        // Концы host и конец stem в (300, 400)
+        assertEquals(3, resp.getData().get("danglingCount"));
+    }
+
+    @Test
+    void testAlreadyConnectedEndsKept() {
+        Wall a = addWall(home, 0, 0, 100, 0);
+        Wall b = addWall(home, 100, 0, 100, 100);
+        Wall other = addWall(home, 100, 0, 200, 0);
+        a.setWallAtEnd(other);
+        other.setWallAtStart(a);
+
+        Response resp = handler.execute(makeRequest("connect_all_walls"), accessor);
+
+        assertEquals(2, resp.getData().get("alreadyConnectedEnds"));
+        assertSame(other, a.getWallAtEnd());
+        assertNull(b.getWallAtStart());
+    }
+
+    @Test
+    void testDryRunChangesNothing() {
+        Wall a = addWall(home, 0, 0, 100, 0);
+        addWall(home, 100, 0, 100, 100);
+
+        Response resp = handler.execute(makeRequest("connect_all_walls", "dryRun", true), accessor);
+
+        assertEquals(true, resp.getData().get("dryRun"));
+        assertEquals(1, resp.getData().get("connectedCount"));
+        assertNull(a.getWallAtEnd());
+    }
+
+    @Test
+    void testLevelsAreSeparate() {
+        Level ground = addLevel(home, "Ground", 0, 250, 12);
+        Level upper = addLevel(home, "Upper", 250, 250, 12);
+        Wall a = addWall(home, 0, 0, 100, 0);
+        a.setLevel(ground);
+        Wall b = addWall(home, 100, 0, 100, 100);
+        b.setLevel(upper);
+        Wall c = addWall(home, 100, 0, 200, 0);
+        c.setLevel(upper);
+
+        Response all = handler.execute(makeRequest("connect_all_walls", "levelId", ground.getId()), accessor);
+        assertEquals(0, all.getData().get("connectedCount"));
+
+        handler.execute(makeRequest("connect_all_walls"), accessor);
+        assertNull(a.getWallAtEnd());
+        assertSame(c, b.getWallAtStart());
+    }
+
+    @Test
+    void testLargeGridPlan() {
+        // Сетка 30x30 комнат из отдельных отрезков: каждая внутренняя вершина — 4 конца
+        List<Wall> walls = new ArrayList<>();
+        int n = 30;
+        for (int i = 0; i <= n; i++) {
+            for (int j = 0; j < n; j++) {
+                walls.add(addWall(home, j * 100, i * 100, (j + 1) * 100, i * 100));
+                walls.add(addWall(home, i * 100, j * 100, i * 100, (j + 1) * 100));
+            }
+        }
+
+        Response resp = handler.execute(makeRequest("connect_all_walls"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        int connected = (Integer) resp.getData().get("connectedCount");
+        int dangling = (Integer) resp.getData().get("danglingCount");
+        int junctions = (Integer) resp.getData().get("tJunctionCount");
+        assertEquals(walls.size() * 2, connected * 2 + dangling + junctions);
+        assertTrue(connected >= walls.size() / 2, "Most ends joined");
+        assertEquals(true, resp.getData().get("truncated"));
+        assertEquals(ConnectAllWallsHandler.MAX_REPORTED, list(resp, "connections").size());
+    }
+
+    @Test
+    void testInvalidParams() {
+        assertFalse(handler.execute(makeRequest("connect_all_walls", "tolerance", -1.0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("connect_all_walls", "tolerance", 500.0), accessor).isOk());
+        Response level = handler.execute(makeRequest("connect_all_walls", "levelId", "nope"), accessor);
+        assertTrue(level.getMessage().contains("Level not found"));
+    }
+
+    @Test
+    void testSchema() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> props = (Map<String, Object>) handler.getSchema().get("properties");
+        assertTrue(props.containsKey("tolerance"));
+        assertTrue(props.containsKey("levelId"));
+        assertTrue(props.containsKey("dryRun"));
+        assertNotNull(handler.getDescription());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Response resp, String key) {
+        return (List<Map<String, Object>>) resp.getData().get(key);
+    }
+}
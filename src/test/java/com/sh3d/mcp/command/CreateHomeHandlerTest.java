@@ -0,0 +1,90 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CreateHomeHandlerTest {
+
+    @TempDir
+    Path swapDir;
+
+    private HomeAccessor accessor;
+    private HomeRegistry homes;
+    private CreateHomeHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        accessor = new HomeAccessor(new Home(), null);
+        homes = new HomeRegistry(accessor, swapDir, 4, 60_000, 100);
+        handler = new CreateHomeHandler(homes);
+    }
+
+    @AfterEach
+    void tearDown() {
+        homes.close();
+    }
+
+    @Test
+    void testCreatesAndAttachesSession() {
+        Response resp = execute("s1", Collections.singletonMap("homeId", "kitchen"));
+        assertTrue(resp.isOk());
+        assertEquals("kitchen", resp.getData().get("homeId"));
+        assertEquals("kitchen", homes.getHomeId("s1"));
+    }
+
+    @Test
+    void testGeneratesId() {
+        Response resp = execute("s1", Collections.emptyMap());
+        assertTrue(resp.isOk());
+        assertEquals(resp.getData().get("homeId"), homes.getHomeId("s1"));
+    }
+
+    @Test
+    void testDuplicateIdIsError() {
+        execute("s1", Collections.singletonMap("homeId", "a"));
+        Response resp = execute("s2", Collections.singletonMap("homeId", "a"));
+        assertTrue(resp.isError());
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.getHomeId("s2"));
+    }
+
+    @Test
+    void testRequiresSession() {
+        assertTrue(execute(null, Collections.emptyMap()).isError());
+    }
+
+    @Test
+    void testSingleHomeModeIsError() {
+        HomeRegistry single = new HomeRegistry(accessor);
+        Response resp;
+        try (HomeRegistry.Lease lease = single.acquire("s1")) {
+            resp = new CreateHomeHandler(single).execute(
+                    new Request("create_home", Collections.emptyMap()), lease.getAccessor());
+        }
+        assertTrue(resp.isError());
+    }
+
+    @Test
+    void testDescriptor() {
+        assertNotNull(handler.getDescription());
+        assertEquals("object", handler.getSchema().get("type"));
+    }
+
+    private Response execute(String sessionId, Map<String, Object> params) {
+        try (HomeRegistry.Lease lease = homes.acquire(sessionId)) {
+            return handler.execute(new Request("create_home", params), lease.getAccessor());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.sh3d.mcp.command.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class DetectRoomsHandlerTest {
+
+    private DetectRoomsHandler handler;
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        handler = new DetectRoomsHandler();
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testCreatesRoomsForEnclosedAreas() {
+        addRectangle(0, 0, 600, 400);
+        addWall(home, 300, 0, 300, 400);
+
+        Response resp = handler.execute(makeRequest("detect_rooms"), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(2, resp.getData().get("createdCount"));
+        assertEquals(2, home.getRooms().size());
+        // Толщина стен фикстуры — 10 см: 290 x 390 по внутренним граням
+        for (Room room : home.getRooms()) {
+            assertEquals(290 * 390, room.getArea(), 1);
+        }
+        List<Map<String, Object>> rooms = rooms(resp);
+        assertEquals(home.getRooms().get(0).getId(), rooms.get(0).get("id"));
+        assertEquals(11.31, ((Number) rooms.get(0).get("area")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testCenterlineRooms() {
+        addRectangle(0, 0, 400, 300);
+
+        Response resp = handler.execute(makeRequest("detect_rooms", "inset", false), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(400 * 300, home.getRooms().get(0).getArea(), 0.01);
+    }
+
+    @Test
+    void testSecondRunSkipsExistingRooms() {
+        addRectangle(0, 0, 400, 300);
+        handler.execute(makeRequest("detect_rooms"), accessor);
+
+        addRectangle(400, 0, 300, 300);
+        Response resp = handler.execute(makeRequest("detect_rooms"), accessor);
+
+        assertEquals(1, resp.getData().get("createdCount"));
+        assertEquals(1, resp.getData().get("skippedExisting"));
+        assertEquals(2, home.getRooms().size());
+    }
+
+    @Test
+    void testMinArea() {
+        addRectangle(0, 0, 400, 300);
+        addRectangle(1000, 0, 60, 60);
+
+        Response resp = handler.execute(makeRequest("detect_rooms", "minArea", 1.0), accessor);
+
+        assertEquals(1, resp.getData().get("createdCount"));
+        assertEquals(1, resp.getData().get("skippedSmall"));
+    }
+
+    @Test
+    void testDryRun() {
+        addRectangle(0, 0, 400, 300);
+
+        Response resp = handler.execute(makeRequest("detect_rooms", "dryRun", true), accessor);
+
+        assertEquals(1, resp.getData().get("createdCount"));
+        assertTrue(home.getRooms().isEmpty());
+        assertFalse(rooms(resp).get(0).containsKey("id"));
+    }
+
+    @Test
+    void testOnlySelectedLevel() {
+        Level ground = addLevel(home, "Ground", 0, 250, 12);
+        Level upper = addLevel(home, "Upper", 250, 250, 12);
+        home.setSelectedLevel(upper);
+        for (Wall wall : addRectangle(0, 0, 400, 300)) {
+            wall.setLevel(ground);
+        }
+
+        Response resp = handler.execute(makeRequest("detect_rooms"), accessor);
+        assertEquals(0, resp.getData().get("createdCount"));
+
+        home.setSelectedLevel(ground);
+        resp = handler.execute(makeRequest("detect_rooms"), accessor);
+        assertEquals(1, resp.getData().get("createdCount"));
+        assertSame(ground, home.getRooms().get(0).getLevel());
+    }
+
+    @Test
+    void testLevelIdTargetsOtherLevel() {
+        Level ground = addLevel(home, "Ground", 0, 250, 12);
+        Level upper = addLevel(home, "Upper", 250, 250, 12);
+        home.setSelectedLevel(upper);
+        for (Wall wall : addRectangle(0, 0, 400, 300)) {
+            wall.setLevel(ground);
+        }
+
+        Response resp = handler.execute(makeRequest("detect_rooms", "levelId", ground.getId()), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(1, resp.getData().get("createdCount"));
+        assertEquals(ground.getId(), resp.getData().get("levelId"));
+        assertSame(ground, home.getRooms().get(0).getLevel());
+        assertSame(upper, home.getSelectedLevel());
+    }
+
+    @Test
+    void testUnknownLevelId() {
+        addLevel(home, "Ground", 0, 250, 12);
+
+        Response resp = handler.execute(makeRequest("detect_rooms", "levelId", "missing"), accessor);
+
+        assertFalse(resp.isOk());
+        assertEquals("Level not found: missing", resp.getMessage());
+    }
+
+    @Test
+    void testInteriorPointOfLShape() {
+        double[][] l = {{0, 0}, {100, 0}, {100, 20}, {20, 20}, {20, 100}, {0, 100}};
+        double[] p = DetectRoomsHandler.interiorPoint(l);
+        assertEquals(50, p[1], 0.01);
+        assertEquals(10, p[0], 0.01);
+    }
+
+    @Test
+    void testInvalidParams() {
+        assertFalse(handler.execute(makeRequest("detect_rooms", "tolerance", -1.0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("detect_rooms", "minArea", -1.0), accessor).isOk());
+    }
+
+    @Test
+    void testSchema() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> props = (Map<String, Object>) handler.getSchema().get("properties");
+        assertTrue(props.keySet().containsAll(List.of("tolerance", "minArea", "inset", "levelId", "dryRun")));
+        assertNotNull(handler.getDescription());
+    }
+
+    private Wall[] addRectangle(float x, float y, float width, float depth) {
+        return new Wall[] {
+                addWall(home, x, y, x + width, y),
+                addWall(home, x + width, y, x + width, y + depth),
+                addWall(home, x + width, y + depth, x, y + depth),
+                addWall(home, x, y + depth, x, y)};
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> rooms(Response resp) {
+        return (List<Map<String, Object>>) resp.getData().get("rooms");
+    }
+}
@@ -65,6 +65,15 @@ class ExportPlanImageHandlerTest {
         assertTrue(resp.getMessage().contains("width"));
     }
 
+    @Test
+    void testPngCompressionOutOfRangeError() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("pngCompression", -1.0);
+        Response resp = handler.execute(new Request("export_plan_image", params), accessor);
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("pngCompression"));
+    }
+
     // --- Descriptor tests ---
 
     @Test
@@ -3,6 +3,8 @@ package com.sh3d.mcp.command;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.ModelExecutor;
+import com.eteks.sweethome3d.viewcontroller.ExportableView;
 import com.eteks.sweethome3d.model.Home;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +14,7 @@ import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
 
 class ExportSvgHandlerTest {
 
@@ -35,6 +38,18 @@ class ExportSvgHandlerTest {
         assertTrue(resp.getMessage().contains("PlanView"));
     }
 
+    @Test
+    void testExecuteForCreatedHomeIsError() {
+        ExportSvgHandler withView = new ExportSvgHandler(mock(ExportableView.class));
+        try (ModelExecutor executor = new ModelExecutor("test-model")) {
+            HomeAccessor created = new HomeAccessor(new Home(), null, executor);
+            Response resp = withView.execute(
+                    new Request("export_svg", Collections.emptyMap()), created);
+            assertTrue(resp.isError());
+            assertTrue(resp.getMessage().contains("default home"));
+        }
+    }
+
     // --- Descriptor tests ---
 
     @Test
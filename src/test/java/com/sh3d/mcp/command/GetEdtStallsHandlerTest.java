@@ -0,0 +1,78 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.EdtWatchdog;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GetEdtStallsHandlerTest {
+
+    private GetEdtStallsHandler handler;
+    private HomeAccessor accessor;
+    private EdtWatchdog watchdog;
+
+    @BeforeEach
+    void setUp() {
+        handler = new GetEdtStallsHandler();
+        accessor = new HomeAccessor(new Home(), null);
+        watchdog = new EdtWatchdog(5, 8);
+        accessor.setEdtWatchdog(watchdog);
+    }
+
+    @Test
+    void testErrorWhenWatchdogDisabled() {
+        accessor.setEdtWatchdog(null);
+        Response resp = execute(Collections.emptyMap());
+        assertTrue(resp.isError());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStallAttributedToDispatchedAction() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("slow_read", (req, acc) -> Response.ok(acc.runOnEDT(() -> {
+            Thread.sleep(20);
+            return Collections.<String, Object>emptyMap();
+        })));
+
+        registry.dispatch(new Request("slow_read", Collections.emptyMap()), accessor);
+        Response resp = execute(Collections.emptyMap());
+
+        assertTrue(resp.isOk());
+        List<Map<String, Object>> stalls = (List<Map<String, Object>>) resp.getData().get("recentStalls");
+        assertEquals(1, stalls.size());
+        assertEquals("slow_read", stalls.get(0).get("action"));
+        assertEquals(1L, resp.getData().get("stalls"));
+    }
+
+    @Test
+    void testClear() throws Exception {
+        EdtWatchdog.Task task = watchdog.begin("x");
+        Thread.sleep(10);
+        watchdog.end(task);
+
+        Response resp = execute(Collections.singletonMap("clear", true));
+
+        assertEquals(true, resp.getData().get("cleared"));
+        assertTrue(watchdog.getRecentStalls().isEmpty());
+    }
+
+    @Test
+    void testDescriptor() {
+        assertNotNull(handler.getDescription());
+        assertEquals("object", handler.getSchema().get("type"));
+    }
+
+    private Response execute(Map<String, Object> params) {
+        return handler.execute(new Request("get_edt_stalls", params), accessor);
+    }
+}
@@ -0,0 +1,72 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class GetMetricsHandlerTest {
+
+    private MetricsRegistry metrics;
+    private GetMetricsHandler handler;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        handler = new GetMetricsHandler(metrics);
+        accessor = mock(HomeAccessor.class);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReturnsToolMetrics() {
+        metrics.forAction("get_state").recordCall(0, 3_000_000, false);
+
+        Response resp = handler.execute(new Request("get_metrics", Collections.emptyMap()), accessor);
+
+        assertTrue(resp.isOk());
+        Map<String, Object> tools = (Map<String, Object>) resp.getData().get("tools");
+        Map<String, Object> getState = (Map<String, Object>) tools.get("get_state");
+        assertEquals(1L, getState.get("calls"));
+        assertFalse(resp.getData().containsKey("reset"));
+    }
+
+    @Test
+    void testResetClearsAfterSnapshot() {
+        metrics.forAction("get_state").recordCall(0, 1_000_000, false);
+
+        Response resp = handler.execute(new Request("get_metrics",
+                Collections.singletonMap("reset", true)), accessor);
+
+        assertEquals(true, resp.getData().get("reset"));
+        assertEquals(0, metrics.forAction("get_state").getCalls());
+    }
+
+    @Test
+    void testDispatchedThroughRegistryCountsItself() {
+        CommandRegistry registry = new CommandRegistry();
+        registry.setMetrics(metrics);
+        registry.register("get_metrics", handler);
+
+        registry.dispatch(new Request("get_metrics", Collections.emptyMap()), accessor);
+
+        assertEquals(1, metrics.forAction("get_metrics").getCalls());
+    }
+
+    @Test
+    void testDescriptor() {
+        assertNotNull(handler.getDescription());
+        Map<String, Object> schema = handler.getSchema();
+        assertEquals("object", schema.get("type"));
+        assertTrue(((Map<?, ?>) schema.get("properties")).containsKey("reset"));
+    }
+}
@@ -13,7 +13,10 @@ import com.sh3d.mcp.protocol.Response;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -288,6 +291,251 @@ class GetStateHandlerTest {
         assertNull(resp.getData().get("boundingBox"));
     }
 
+    // --- Per-collection cache ---
+
+    @Test
+    void testUnchangedCollectionsReused() {
+        home.addWall(new Wall(0, 0, 500, 0, 10));
+
+        Response first = execute();
+        Response second = execute();
+
+        assertSame(first.getData().get("walls"), second.getData().get("walls"));
+        assertSame(first.getData().get("rooms"), second.getData().get("rooms"));
+        assertSame(first.getData().get("boundingBox"), second.getData().get("boundingBox"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOnlyChangedCollectionRebuilt() {
+        Wall wall = new Wall(0, 0, 500, 0, 10);
+        home.addWall(wall);
+        Response first = execute();
+
+        wall.setXEnd(800);
+        Response second = execute();
+
+        assertNotSame(first.getData().get("walls"), second.getData().get("walls"));
+        assertSame(first.getData().get("furniture"), second.getData().get("furniture"));
+        List<Map<String, Object>> walls = (List<Map<String, Object>>) second.getData().get("walls");
+        assertEquals(800.0, (double) walls.get(0).get("xEnd"), 0.01);
+        Map<String, Object> bb = (Map<String, Object>) second.getData().get("boundingBox");
+        assertEquals(800.0, (double) bb.get("maxX"), 0.01);
+
+        home.addWall(new Wall(0, 0, 0, 300, 10));
+        assertEquals(2, execute().getData().get("wallCount"));
+    }
+
+    @Test
+    void testCacheIsPerHome() {
+        home.addWall(new Wall(0, 0, 500, 0, 10));
+        execute();
+
+        HomeAccessor other = new HomeAccessor(new Home(), null);
+        Response resp = handler.execute(new Request("get_state", Collections.emptyMap()), other);
+        assertEquals(0, resp.getData().get("wallCount"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLargeSceneBuiltInParallelKeepsOrder() {
+        int count = GetStateHandler.PARALLEL_THRESHOLD;
+        Wall[] walls = new Wall[count];
+        for (int i = 0; i < count; i++) {
+            walls[i] = new Wall(i, 0, i, 100, 10);
+            home.addWall(walls[i]);
+            home.addLabel(new Label("L" + i, i, 0));
+        }
+
+        Response resp = execute();
+
+        assertEquals(count, resp.getData().get("wallCount"));
+        assertEquals(count, resp.getData().get("labelCount"));
+        List<Map<String, Object>> list = (List<Map<String, Object>>) resp.getData().get("walls");
+        for (int i = 0; i < count; i++) {
+            assertEquals(walls[i].getId(), list.get(i).get("id"));
+        }
+        List<Map<String, Object>> labels = (List<Map<String, Object>>) resp.getData().get("labels");
+        assertEquals("L" + (count - 1), labels.get(count - 1).get("text"));
+    }
+
+    // --- Projection, filters, pagination ---
+
+    @Test
+    void testIncludeReturnsOnlySelectedSections() {
+        home.addWall(new Wall(0, 0, 500, 0, 10));
+
+        Map<String, Object> data = execute(params("include", Arrays.asList("walls", "camera"))).getData();
+
+        assertEquals(Arrays.asList("wallCount", "walls", "camera", "boundingBox"),
+                new ArrayList<>(data.keySet()));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFieldsProjectObjects() {
+        home.addWall(new Wall(0, 0, 500, 0, 10));
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("walls", Arrays.asList("xStart", "xEnd"));
+
+        Map<String, Object> data = execute(params("fields", fields)).getData();
+
+        Map<String, Object> wall = ((List<Map<String, Object>>) data.get("walls")).get(0);
+        assertEquals(Arrays.asList("id", "xStart", "xEnd"), new ArrayList<>(wall.keySet()));
+        assertNotNull(data.get("furniture"), "Other sections unaffected");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProjectionDoesNotAffectCachedResult() {
+        home.addWall(new Wall(0, 0, 500, 0, 10));
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("walls", Collections.singletonList("xStart"));
+        execute(params("fields", fields));
+
+        Map<String, Object> wall = ((List<Map<String, Object>>) execute().getData().get("walls")).get(0);
+        assertTrue(wall.containsKey("thickness"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLevelIdFilter() {
+        Level ground = new Level("Ground", 0, 12, 250);
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(ground);
+        home.addLevel(upper);
+        Wall lower = new Wall(0, 0, 100, 0, 10);
+        lower.setLevel(ground);
+        Wall top = new Wall(0, 0, 100, 0, 10);
+        top.setLevel(upper);
+        home.addWall(lower);
+        home.addWall(top);
+
+        Map<String, Object> data = execute(params("levelId", upper.getId())).getData();
+
+        assertEquals(1, data.get("wallCount"));
+        assertEquals(top.getId(), ((List<Map<String, Object>>) data.get("walls")).get(0).get("id"));
+        assertEquals(2, data.get("levelCount"), "Levels themselves are not filtered");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBoundingBoxFollowsFilters() {
+        Level ground = new Level("Ground", 0, 12, 250);
+        Level upper = new Level("Upper", 250, 12, 250);
+        home.addLevel(ground);
+        home.addLevel(upper);
+        Wall lower = new Wall(0, 0, 1000, 0, 10);
+        lower.setLevel(ground);
+        Wall top = new Wall(100, 50, 300, 400, 10);
+        top.setLevel(upper);
+        home.addWall(lower);
+        home.addWall(top);
+
+        Map<String, Object> bb = (Map<String, Object>) execute(params("levelId", upper.getId()))
+                .getData().get("boundingBox");
+        assertEquals(100.0, (double) bb.get("minX"), 0.01);
+        assertEquals(50.0, (double) bb.get("minY"), 0.01);
+        assertEquals(300.0, (double) bb.get("maxX"), 0.01);
+        assertEquals(400.0, (double) bb.get("maxY"), 0.01);
+
+        Map<String, Object> box = new HashMap<>();
+        box.put("minX", 2000);
+        box.put("minY", 2000);
+        box.put("maxX", 3000);
+        box.put("maxY", 3000);
+        assertNull(execute(params("bbox", box)).getData().get("boundingBox"),
+                "No wall selected, no bounding box");
+        assertEquals(1000.0, (double) ((Map<String, Object>) execute().getData().get("boundingBox"))
+                .get("maxX"), 0.01);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testBboxFilter() {
+        Wall inside = new Wall(0, 0, 100, 0, 10);
+        home.addWall(inside);
+        home.addWall(new Wall(1000, 1000, 1100, 1000, 10));
+        home.addLabel(new Label("near", 50, 50));
+        home.addLabel(new Label("far", 2000, 2000));
+
+        Map<String, Object> box = new HashMap<>();
+        box.put("minX", -10);
+        box.put("minY", -10);
+        box.put("maxX", 200);
+        box.put("maxY", 200);
+        Map<String, Object> data = execute(params("bbox", box)).getData();
+
+        assertEquals(1, data.get("wallCount"));
+        assertEquals(inside.getId(), ((List<Map<String, Object>>) data.get("walls")).get(0).get("id"));
+        assertEquals(1, data.get("labelCount"));
+        assertEquals("near", ((List<Map<String, Object>>) data.get("labels")).get(0).get("text"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPaginationAcrossCollections() {
+        for (int i = 0; i < 3; i++) {
+            home.addWall(new Wall(i, 0, i, 100, 10));
+            home.addLabel(new Label("L" + i, i, 0));
+        }
+        Map<String, Object> query = params("include", Arrays.asList("walls", "labels"));
+        query.put("limit", 4);
+
+        Map<String, Object> first = execute(query).getData();
+        assertEquals(3, first.get("wallCount"));
+        assertEquals(3, ((List<Object>) first.get("walls")).size());
+        assertEquals(1, ((List<Object>) first.get("labels")).size());
+        String cursor = (String) first.get("nextCursor");
+        assertNotNull(cursor);
+
+        query.put("cursor", cursor);
+        Map<String, Object> second = execute(query).getData();
+        assertTrue(((List<Object>) second.get("walls")).isEmpty());
+        List<Map<String, Object>> labels = (List<Map<String, Object>>) second.get("labels");
+        assertEquals(2, labels.size());
+        assertEquals("L1", labels.get(0).get("text"));
+        assertTrue(second.containsKey("nextCursor"));
+        assertNull(second.get("nextCursor"));
+    }
+
+    @Test
+    void testCursorStaleAfterChange() {
+        home.addWall(new Wall(0, 0, 100, 0, 10));
+        home.addWall(new Wall(0, 0, 0, 100, 10));
+        Map<String, Object> query = params("limit", 1);
+        String cursor = (String) execute(query).getData().get("nextCursor");
+
+        home.addWall(new Wall(100, 0, 100, 100, 10));
+        query.put("cursor", cursor);
+        Response resp = execute(query);
+
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("stale"));
+    }
+
+    @Test
+    void testCursorStaleForDifferentQuery() {
+        home.addWall(new Wall(0, 0, 100, 0, 10));
+        home.addWall(new Wall(0, 0, 0, 100, 10));
+        String cursor = (String) execute(params("limit", 1)).getData().get("nextCursor");
+
+        Map<String, Object> other = params("include", Collections.singletonList("walls"));
+        other.put("limit", 1);
+        other.put("cursor", cursor);
+        assertTrue(execute(other).isError());
+    }
+
+    @Test
+    void testInvalidQueryIsError() {
+        assertTrue(execute(params("include", Collections.singletonList("doors"))).isError());
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("walls", Collections.singletonList("colour"));
+        assertTrue(execute(params("fields", fields)).isError());
+        assertTrue(execute(params("limit", 0)).isError());
+        assertTrue(execute(params("cursor", "abc")).isError());
+    }
+
     // --- Descriptor ---
 
     @Test
@@ -302,15 +550,34 @@ class GetStateHandlerTest {
 
     @Test
     @SuppressWarnings("unchecked")
-    void testSchemaNoParams() {
+    void testSchemaNoRequiredParams() {
         Map<String, Object> schema = handler.getSchema();
         assertEquals("object", schema.get("type"));
         Map<String, Object> props = (Map<String, Object>) schema.get("properties");
-        assertTrue(props.isEmpty());
+        assertTrue(props.keySet().containsAll(
+                Arrays.asList("include", "fields", "levelId", "bbox", "limit", "cursor")));
         List<String> required = (List<String>) schema.get("required");
         assertTrue(required.isEmpty());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFieldListsMatchOutput() {
+        Level level = new Level("L1", 0, 12, 250);
+        home.addLevel(level);
+        home.setSelectedLevel(level);
+        home.addWall(new Wall(0, 0, 100, 0, 10));
+        home.addRoom(new Room(new float[][]{{0, 0}, {100, 0}, {100, 100}}));
+        home.addLabel(new Label("x", 1, 2));
+        home.addDimensionLine(new DimensionLine(0, 0, 100, 0, 20));
+
+        Map<String, Object> data = execute().getData();
+        for (String section : Arrays.asList("walls", "rooms", "labels", "dimensionLines", "levels")) {
+            Map<String, Object> item = ((List<Map<String, Object>>) data.get(section)).get(0);
+            assertEquals(GetStateHandler.FIELDS.get(section), new ArrayList<>(item.keySet()), section);
+        }
+    }
+
     @Test
     void testAlwaysReturnsOk() {
         Response resp = execute();
@@ -323,4 +590,14 @@ class GetStateHandlerTest {
     private Response execute() {
         return handler.execute(new Request("get_state", Collections.emptyMap()), accessor);
     }
+
+    private Response execute(Map<String, Object> params) {
+        return handler.execute(new Request("get_state", params), accessor);
+    }
+
+    private static Map<String, Object> params(String key, Object value) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(key, value);
+        return params;
+    }
 }
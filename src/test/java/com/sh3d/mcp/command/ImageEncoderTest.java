@@ -0,0 +1,118 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.protocol.EncodedImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageEncoderTest {
+
+    private static BufferedImage gradient(int width, int height, int type) {
+        BufferedImage image = new BufferedImage(width, height, type);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, 0xFF000000 | (x * 255 / width) << 16 | (y * 255 / height) << 8 | ((x ^ y) & 0xFF));
+            }
+        }
+        return image;
+    }
+
+    private static BufferedImage decode(EncodedImage image) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(Base64.getDecoder().decode(image.toString())));
+    }
+
+    @Test
+    void testPngRoundTripIsLossless() throws Exception {
+        BufferedImage source = gradient(120, 80, BufferedImage.TYPE_INT_RGB);
+        EncodedImage encoded = ImageEncoder.encode(source, "png", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        assertEquals("image/png", encoded.getMimeType());
+
+        BufferedImage decoded = decode(encoded);
+        assertEquals(120, decoded.getWidth());
+        assertEquals(80, decoded.getHeight());
+        for (int y = 0; y < 80; y += 7) {
+            for (int x = 0; x < 120; x += 5) {
+                assertEquals(source.getRGB(x, y), decoded.getRGB(x, y));
+            }
+        }
+    }
+
+    @Test
+    void testJpegFromArgb() throws Exception {
+        EncodedImage encoded = ImageEncoder.encode(gradient(64, 32, BufferedImage.TYPE_INT_ARGB), "jpeg",
+                ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        assertEquals("image/jpeg", encoded.getMimeType());
+        BufferedImage decoded = decode(encoded);
+        assertEquals(64, decoded.getWidth());
+        assertEquals(32, decoded.getHeight());
+    }
+
+    @Test
+    void testPngCompressionLevels() throws Exception {
+        BufferedImage source = gradient(256, 256, BufferedImage.TYPE_INT_RGB);
+        EncodedImage stored = ImageEncoder.encode(source, "png", 0);
+        EncodedImage best = ImageEncoder.encode(source, "png", ImageEncoder.MAX_PNG_COMPRESSION);
+        assertTrue(stored.size() > best.size(), stored.size() + " <= " + best.size());
+        // Both decode to the same pixels
+        assertEquals(decode(stored).getRGB(100, 50), decode(best).getRGB(100, 50));
+    }
+
+    @Test
+    void testEncodersAreReused() throws Exception {
+        BufferedImage source = gradient(32, 32, BufferedImage.TYPE_INT_RGB);
+        ImageEncoder.encode(source, "png", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        int pooled = ImageEncoder.pooled();
+        assertTrue(pooled >= 1 && pooled <= ImageEncoder.POOL_SIZE);
+        // Sequential calls take the pooled encoder and give it back
+        EncodedImage first = ImageEncoder.encode(source, "png", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        EncodedImage second = ImageEncoder.encode(source, "png", ImageEncoder.DEFAULT_PNG_COMPRESSION);
+        assertEquals(pooled, ImageEncoder.pooled());
+        assertEquals(first.toString(), second.toString());
+    }
+
+    @Test
+    void testWriteReplacesLongerFile(@TempDir Path dir) throws Exception {
+        Path path = dir.resolve("plan.png");
+        Files.write(path, new byte[1 << 20]);
+        int size = ImageEncoder.write(gradient(40, 30, BufferedImage.TYPE_INT_RGB), "png",
+                ImageEncoder.DEFAULT_PNG_COMPRESSION, path);
+        assertEquals(size, Files.size(path));
+        assertEquals(40, ImageIO.read(path.toFile()).getWidth());
+    }
+
+    @Test
+    void testBufferSeeksBackAndGrows() throws Exception {
+        ImageEncoder.Buffer buffer = new ImageEncoder.Buffer();
+        byte[] block = new byte[ImageEncoder.Buffer.INITIAL_CAPACITY];
+        buffer.writeInt(0);
+        buffer.write(block);
+        buffer.seek(0);
+        buffer.writeInt(42);
+        assertEquals(4 + block.length, buffer.size());
+        assertTrue(buffer.capacity() >= buffer.size());
+        buffer.seek(0);
+        assertEquals(42, buffer.readInt());
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        assertEquals(0, buffer.getStreamPosition());
+    }
+
+    @Test
+    void testTrimDropsOversizedBuffer() throws Exception {
+        ImageEncoder.Buffer buffer = new ImageEncoder.Buffer();
+        buffer.write(new byte[ImageEncoder.MAX_RETAINED_BYTES + 1]);
+        buffer.trim();
+        assertEquals(ImageEncoder.Buffer.INITIAL_CAPACITY, buffer.capacity());
+        assertEquals(0, buffer.size());
+    }
+}
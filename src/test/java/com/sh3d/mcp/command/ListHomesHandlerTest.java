@@ -0,0 +1,65 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ListHomesHandlerTest {
+
+    @TempDir
+    Path swapDir;
+
+    private HomeRegistry homes;
+    private ListHomesHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        homes = new HomeRegistry(new HomeAccessor(new Home(), null), swapDir, 4, 60_000, 100);
+        handler = new ListHomesHandler(homes);
+    }
+
+    @AfterEach
+    void tearDown() {
+        homes.close();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testListsHomesAndCurrent() {
+        homes.attach("s1", homes.createHome("a"));
+        Response resp = execute("s1");
+
+        assertTrue(resp.isOk());
+        assertEquals("a", resp.getData().get("current"));
+        assertEquals(2, resp.getData().get("count"));
+        List<Map<String, Object>> list = (List<Map<String, Object>>) resp.getData().get("homes");
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, list.get(0).get("homeId"));
+        assertEquals(true, list.get(1).get("busy"), "Home of the running call is busy");
+    }
+
+    @Test
+    void testDefaultHomeOnly() {
+        Response resp = execute("s1");
+        assertEquals(HomeRegistry.DEFAULT_HOME_ID, resp.getData().get("current"));
+        assertEquals(1, resp.getData().get("count"));
+    }
+
+    private Response execute(String sessionId) {
+        try (HomeRegistry.Lease lease = homes.acquire(sessionId)) {
+            return handler.execute(new Request("list_homes", Collections.emptyMap()), lease.getAccessor());
+        }
+    }
+}
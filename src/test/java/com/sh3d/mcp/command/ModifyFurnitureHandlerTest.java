@@ -268,6 +268,35 @@ class ModifyFurnitureHandlerTest {
         assertEquals(1, required.size());
     }
 
+    @Test
+    void testAvoidCollisionsMovesNextToOtherPiece() {
+        addFurniture("Table", 100, 100);
+        HomePieceOfFurniture chair = addFurniture("Chair", 0, 0);
+
+        Response resp = handler.execute(makeRequest(chair.getId(),
+                "x", 130.0, "y", 100.0, "avoidCollisions", true), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(150.5f, chair.getX(), 0.01f);
+        assertEquals(100f, chair.getY(), 0.01f);
+        assertEquals(20.5, ((Number) resp.getData().get("collisionShift")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testAvoidCollisionsFailureLeavesPieceUnchanged() {
+        HomePieceOfFurniture chair = addFurniture("Chair", 0, 0);
+        home.addWall(new com.eteks.sweethome3d.model.Wall(-1000, 500, 1000, 500, 1000, 250));
+
+        Response resp = handler.execute(makeRequest(chair.getId(),
+                "x", 0.0, "y", 500.0, "width", 80.0, "name", "Moved", "avoidCollisions", true), accessor);
+
+        assertTrue(resp.isError());
+        assertEquals(0f, chair.getX(), 0.01f);
+        assertEquals(0f, chair.getY(), 0.01f);
+        assertEquals(50f, chair.getWidth(), 0.01f);
+        assertEquals("Chair", chair.getName());
+    }
+
     private HomePieceOfFurniture addFurniture(String name, float x, float y) {
         HomePieceOfFurniture piece = new HomePieceOfFurniture(
                 new CatalogPieceOfFurniture(
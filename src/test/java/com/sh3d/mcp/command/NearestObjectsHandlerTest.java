@@ -0,0 +1,149 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static com.sh3d.mcp.command.QueryRegionHandlerTest.ids;
+import static com.sh3d.mcp.command.QueryRegionHandlerTest.objects;
+import static com.sh3d.mcp.command.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class NearestObjectsHandlerTest {
+
+    private NearestObjectsHandler handler;
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        handler = new NearestObjectsHandler();
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testNearestToPoint() {
+        HomePieceOfFurniture near = addFurniture(home, "Near", 100, 0);
+        HomePieceOfFurniture middle = addFurniture(home, "Middle", 300, 0);
+        addFurniture(home, "Far", 900, 0);
+
+        Response resp = handler.execute(makeRequest("nearest_objects", "x", 0.0, "y", 0.0, "count", 2), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Arrays.asList(near.getId(), middle.getId()), ids(resp));
+        assertEquals(75.0, ((Number) objects(resp).get(0).get("distance")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testExactDistanceBeatsBoundingBox() {
+        // Bbox диагональной стены содержит точку, но ближе стул
+        Wall diagonal = addWall(home, 0, 0, 2000, 2000);
+        HomePieceOfFurniture chair = addFurniture(home, "Chair", 1500, 300);
+
+        Response resp = handler.execute(makeRequest("nearest_objects", "x", 1500.0, "y", 200.0, "count", 1), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Collections.singletonList(chair.getId()), ids(resp));
+        assertNotEquals(diagonal.getId(), ids(resp).get(0));
+    }
+
+    @Test
+    void testNearestToObjectExcludesIt() {
+        HomePieceOfFurniture bed = addFurniture(home, "Bed", 500, 500);
+        Wall wall = addWall(home, 0, 600, 1000, 600);
+        addWall(home, 0, 0, 1000, 0);
+
+        Response resp = handler.execute(makeRequest("nearest_objects", "id", bed.getId(),
+                "count", 1, "types", Collections.singletonList("wall")), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Collections.singletonList(wall.getId()), ids(resp));
+        assertEquals("wall", objects(resp).get(0).get("type"));
+    }
+
+    @Test
+    void testMaxDistance() {
+        addFurniture(home, "Far", 1000, 0);
+        Label label = new Label("Here", 10, 0);
+        home.addLabel(label);
+
+        Response resp = handler.execute(makeRequest("nearest_objects", "x", 0.0, "y", 0.0,
+                "count", 5, "maxDistance", 100.0), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Collections.singletonList(label.getId()), ids(resp));
+        assertEquals(1, resp.getData().get("count"));
+    }
+
+    @Test
+    void testAroundObjectMatchesBruteForce() {
+        Random random = new Random(9);
+        List<Wall> walls = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            float x = random.nextFloat() * 4000;
+            float y = random.nextFloat() * 4000;
+            walls.add(addWall(home, x, y, x + random.nextFloat() * 800 - 400, y + random.nextFloat() * 800 - 400));
+        }
+        HomePieceOfFurniture sofa = addFurniture(home, "Sofa", 2000, 2000);
+        sofa.setWidth(300);
+        sofa.setAngle(0.5f);
+        for (int q = 0; q < 10; q++) {
+            sofa.setX(random.nextFloat() * 4000);
+            sofa.setY(random.nextFloat() * 4000);
+            List<Wall> sorted = new ArrayList<>(walls);
+            sorted.sort((a, b) -> Double.compare(SpatialQueries.distance(sofa.getPoints(), a.getPoints()),
+                    SpatialQueries.distance(sofa.getPoints(), b.getPoints())));
+
+            Response resp = handler.execute(makeRequest("nearest_objects", "id", sofa.getId(), "count", 4), accessor);
+
+            assertTrue(resp.isOk(), resp.getMessage());
+            List<Map<String, Object>> objects = objects(resp);
+            assertEquals(4, objects.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(SpatialQueries.distance(sofa.getPoints(), sorted.get(i).getPoints()),
+                        ((Number) objects.get(i).get("distance")).doubleValue(), 0.01);
+            }
+        }
+    }
+
+    @Test
+    void testErrors() {
+        assertFalse(handler.execute(makeRequest("nearest_objects"), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("nearest_objects", "x", 0.0, "y", 0.0, "count", 0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("nearest_objects", "x", 0.0, "y", 0.0,
+                "count", NearestObjectsHandler.MAX_COUNT + 1), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("nearest_objects", "id", "a", "x", 0.0), accessor).isOk());
+
+        Response missing = handler.execute(makeRequest("nearest_objects", "id", "nope"), accessor);
+        assertFalse(missing.isOk());
+        assertTrue(missing.getMessage().contains("Object not found"));
+    }
+
+    @Test
+    void testEmptyHome() {
+        Response resp = handler.execute(makeRequest("nearest_objects", "x", 0.0, "y", 0.0), accessor);
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertTrue(objects(resp).isEmpty());
+    }
+
+    @Test
+    void testSchema() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> props = (Map<String, Object>) handler.getSchema().get("properties");
+        assertTrue(props.keySet().containsAll(Arrays.asList("x", "y", "id", "count", "maxDistance", "levelId", "types")));
+        assertNotNull(handler.getDescription());
+    }
+}
@@ -478,4 +478,53 @@ class PlaceFurnitureHandlerTest {
         assertTrue(resp.getMessage().contains("name"));
         assertTrue(resp.getMessage().contains("catalogId"));
     }
+
+    @Test
+    void testAvoidCollisionsShiftsOutOfWall() {
+        home.addWall(new com.eteks.sweethome3d.model.Wall(0, 0, 500, 0, 10, 250));
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("name", "Dining Table");
+        params.put("x", 250.0);
+        params.put("y", 30.0);
+        params.put("avoidCollisions", true);
+
+        Response resp = handler.execute(new Request("place_furniture", params), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        // Стол глубиной 80 см встаёт вплотную к стене (грань стены y=5)
+        assertEquals(45.5, (double) resp.getData().get("y"), 0.01);
+        assertEquals(15.5, (double) resp.getData().get("collisionShift"), 0.01);
+    }
+
+    @Test
+    void testAvoidCollisionsKeepsFreePosition() {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("name", "Office Chair");
+        params.put("x", 100.0);
+        params.put("y", 100.0);
+        params.put("avoidCollisions", true);
+
+        Response resp = handler.execute(new Request("place_furniture", params), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(100.0, (double) resp.getData().get("x"), 0.01);
+        assertEquals(0.0, (double) resp.getData().get("collisionShift"), 0.01);
+    }
+
+    @Test
+    void testAvoidCollisionsFailsWithoutPlacing() {
+        // Стена толщиной 10 м — свободного места в радиусе 2 м нет
+        home.addWall(new com.eteks.sweethome3d.model.Wall(-1000, 30, 1000, 30, 1000, 250));
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("name", "Dining Table");
+        params.put("x", 0.0);
+        params.put("y", 30.0);
+        params.put("avoidCollisions", true);
+
+        Response resp = handler.execute(new Request("place_furniture", params), accessor);
+
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("No collision-free position"));
+        assertTrue(home.getFurniture().isEmpty());
+    }
 }
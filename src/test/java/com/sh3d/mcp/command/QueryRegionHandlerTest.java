@@ -0,0 +1,214 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.HomePieceOfFurniture;
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Label;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.sh3d.mcp.command.TestFixtures.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryRegionHandlerTest {
+
+    private QueryRegionHandler handler;
+    private Home home;
+    private HomeAccessor accessor;
+
+    @BeforeEach
+    void setUp() {
+        handler = new QueryRegionHandler();
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+    }
+
+    @Test
+    void testBboxReturnsOverlappingObjects() {
+        Wall wall = addWall(home, 0, 0, 1000, 0);
+        HomePieceOfFurniture sofa = addFurniture(home, "Sofa", 200, 200);
+        addFurniture(home, "Far", 2000, 2000);
+        Label label = new Label("Kitchen", 300, 300);
+        home.addLabel(label);
+
+        Response resp = handler.execute(makeRequest("query_region", "bbox", bbox(100, -50, 400, 400)), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        // Все касаются прямоугольника — порядок по удалённости от его центра (250, 175)
+        assertEquals(Arrays.asList(sofa.getId(), label.getId(), wall.getId()), ids(resp));
+        assertEquals(3, resp.getData().get("count"));
+        assertEquals(false, resp.getData().get("truncated"));
+        Map<String, Object> first = objects(resp).get(0);
+        assertEquals("furniture", first.get("type"));
+        assertEquals("Sofa", first.get("name"));
+        assertNull(first.get("distance"), "No distance for a box query");
+        assertTrue(first.containsKey("bbox"));
+    }
+
+    @Test
+    void testRadiusUsesExactFootprintDistance() {
+        // Диагональная стена: её bbox покрывает точку, сама стена далеко
+        addWall(home, 0, 0, 1000, 1000);
+        HomePieceOfFurniture chair = addFurniture(home, "Chair", 900, 100);
+
+        Response resp = handler.execute(makeRequest("query_region", "x", 900.0, "y", 100.0, "radius", 100.0), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Collections.singletonList(chair.getId()), ids(resp));
+        assertEquals(0.0, ((Number) objects(resp).get(0).get("distance")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testAroundObjectExcludesItselfAndSortsByDistance() {
+        HomePieceOfFurniture sofa = addFurniture(home, "Sofa", 500, 500);
+        HomePieceOfFurniture lamp = addFurniture(home, "Lamp", 500, 700);
+        HomePieceOfFurniture table = addFurniture(home, "Table", 600, 500);
+        addFurniture(home, "Far", 500, 1000);
+
+        Response resp = handler.execute(makeRequest("query_region", "id", sofa.getId(), "radius", 200.0), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Arrays.asList(table.getId(), lamp.getId()), ids(resp));
+        assertEquals(50.0, ((Number) objects(resp).get(0).get("distance")).doubleValue(), 0.01);
+        assertEquals(150.0, ((Number) objects(resp).get(1).get("distance")).doubleValue(), 0.01);
+    }
+
+    @Test
+    void testTypesFilter() {
+        addWall(home, 0, 0, 500, 0);
+        Room room = addRoom(home, 0, 0, 500, 500);
+        addFurniture(home, "Bed", 250, 250);
+
+        Response resp = handler.execute(makeRequest("query_region", "bbox", bbox(0, 0, 500, 500),
+                "types", Collections.singletonList("room")), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(Collections.singletonList(room.getId()), ids(resp));
+    }
+
+    @Test
+    void testLevelScope() {
+        Level ground = addLevel(home, "Ground", 0, 250, 12);
+        Level upper = addLevel(home, "Upper", 250, 250, 12);
+        home.setSelectedLevel(ground);
+        Wall lower = addWall(home, 0, 0, 500, 0);
+        lower.setLevel(ground);
+        Wall top = addWall(home, 0, 0, 500, 0);
+        top.setLevel(upper);
+
+        Response selected = handler.execute(makeRequest("query_region", "bbox", bbox(0, -10, 500, 10)), accessor);
+        assertEquals(Collections.singletonList(lower.getId()), ids(selected));
+
+        Response explicit = handler.execute(makeRequest("query_region", "bbox", bbox(0, -10, 500, 10),
+                "levelId", upper.getId()), accessor);
+        assertEquals(Collections.singletonList(top.getId()), ids(explicit));
+        assertEquals(upper.getId(), explicit.getData().get("levelId"));
+    }
+
+    @Test
+    void testLimitTruncates() {
+        for (int i = 0; i < 5; i++) {
+            addFurniture(home, "P" + i, i * 100, 0);
+        }
+
+        Response resp = handler.execute(makeRequest("query_region", "x", 0.0, "y", 0.0,
+                "radius", 1000.0, "limit", 2), accessor);
+
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(2, objects(resp).size());
+        assertEquals(5, resp.getData().get("count"));
+        assertEquals(true, resp.getData().get("truncated"));
+    }
+
+    @Test
+    void testMatchesBruteForce() {
+        java.util.Random random = new java.util.Random(5);
+        List<HomePieceOfFurniture> pieces = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            pieces.add(addFurniture(home, "P" + i, random.nextFloat() * 3000, random.nextFloat() * 3000));
+        }
+        for (int q = 0; q < 20; q++) {
+            float x = random.nextFloat() * 3000;
+            float y = random.nextFloat() * 3000;
+            float radius = random.nextFloat() * 500;
+            List<String> expected = new ArrayList<>();
+            for (HomePieceOfFurniture piece : pieces) {
+                if (SpatialQueries.distance(new float[][]{{x, y}}, piece.getPoints()) <= radius) {
+                    expected.add(piece.getId());
+                }
+            }
+            Response resp = handler.execute(makeRequest("query_region", "x", (double) x, "y", (double) y,
+                    "radius", (double) radius, "limit", 1000), accessor);
+            List<String> actual = ids(resp);
+            assertEquals(expected.size(), actual.size());
+            assertTrue(actual.containsAll(expected));
+        }
+    }
+
+    @Test
+    void testErrors() {
+        assertFalse(handler.execute(makeRequest("query_region"), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("query_region", "x", 1.0, "radius", 5.0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("query_region", "bbox", bbox(10, 0, 0, 10)), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("query_region", "bbox", bbox(0, 0, 10, 10),
+                "radius", 5.0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("query_region", "x", 0.0, "y", 0.0, "radius", -1.0), accessor).isOk());
+        assertFalse(handler.execute(makeRequest("query_region", "bbox", bbox(0, 0, 10, 10),
+                "types", Collections.singletonList("camera")), accessor).isOk());
+
+        Response missing = handler.execute(makeRequest("query_region", "id", "nope", "radius", 5.0), accessor);
+        assertFalse(missing.isOk());
+        assertTrue(missing.getMessage().contains("Object not found"));
+
+        Response level = handler.execute(makeRequest("query_region", "bbox", bbox(0, 0, 10, 10),
+                "levelId", "nope"), accessor);
+        assertFalse(level.isOk());
+        assertTrue(level.getMessage().contains("Level not found"));
+    }
+
+    @Test
+    void testSchema() {
+        Map<String, Object> schema = handler.getSchema();
+        assertEquals("object", schema.get("type"));
+        @SuppressWarnings("unchecked")
+        Map<String, Object> props = (Map<String, Object>) schema.get("properties");
+        assertTrue(props.keySet().containsAll(Arrays.asList("bbox", "x", "y", "id", "radius", "levelId", "types", "limit")));
+        assertTrue(((List<?>) schema.get("required")).isEmpty());
+        assertNotNull(handler.getDescription());
+    }
+
+    // === Helpers ===
+
+    private static Map<String, Object> bbox(double minX, double minY, double maxX, double maxY) {
+        Map<String, Object> box = new LinkedHashMap<>();
+        box.put("minX", minX);
+        box.put("minY", minY);
+        box.put("maxX", maxX);
+        box.put("maxY", maxY);
+        return box;
+    }
+
+    @SuppressWarnings("unchecked")
+    static List<Map<String, Object>> objects(Response resp) {
+        return (List<Map<String, Object>>) resp.getData().get("objects");
+    }
+
+    static List<String> ids(Response resp) {
+        List<String> ids = new ArrayList<>();
+        for (Map<String, Object> object : objects(resp)) {
+            ids.add((String) object.get("id"));
+        }
+        return ids;
+    }
+}
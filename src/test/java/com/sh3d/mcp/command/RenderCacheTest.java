@@ -0,0 +1,221 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.EncodedImage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderCacheTest {
+
+    private static EncodedImage image(int size, int fill) {
+        byte[] bytes = new byte[size];
+        Arrays.fill(bytes, (byte) fill);
+        return new EncodedImage(bytes, "image/png");
+    }
+
+    private static String key(int i) {
+        return RenderCache.digest("image-" + i);
+    }
+
+    @Test
+    void testHitAndMissCounts() {
+        RenderCache cache = new RenderCache(1000, null, 0);
+        assertNull(cache.get(key(1)));
+        cache.put(key(1), image(100, 1));
+        assertEquals(100, cache.get(key(1)).size());
+
+        Map<String, Object> counters = cache.getCounters();
+        assertEquals(1L, counters.get("hits"));
+        assertEquals(1L, counters.get("misses"));
+        assertEquals(1, counters.get("entries"));
+        assertEquals(100L, counters.get("bytes"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictedByBytes() {
+        RenderCache cache = new RenderCache(250, null, 0);
+        cache.put(key(1), image(100, 1));
+        cache.put(key(2), image(100, 2));
+        // Touch 1, so 2 is the least recently used
+        assertNotNull(cache.get(key(1)));
+        cache.put(key(3), image(100, 3));
+
+        assertNotNull(cache.get(key(1)));
+        assertNull(cache.get(key(2)));
+        assertNotNull(cache.get(key(3)));
+        assertEquals(200L, cache.getCounters().get("bytes"));
+    }
+
+    @Test
+    void testDisabledWithZeroBytes() {
+        assertFalse(new RenderCache(0, null, 0).isEnabled());
+        assertTrue(new RenderCache(1, null, 0).isEnabled());
+    }
+
+    @Test
+    void testEvictedEntriesSpillToDisk(@TempDir Path dir) throws Exception {
+        RenderCache cache = new RenderCache(150, dir, 10_000);
+        cache.put(key(1), image(100, 1));
+        cache.put(key(2), image(100, 2));
+        assertTrue(Files.exists(dir.resolve(key(1) + ".png")));
+
+        EncodedImage spilled = cache.get(key(1));
+        assertNotNull(spilled);
+        assertEquals(image(100, 1).toString(), spilled.toString());
+        assertEquals(1L, cache.getCounters().get("diskHits"));
+        // Read back into memory, pushing 2 out to disk in turn
+        assertTrue(Files.exists(dir.resolve(key(2) + ".png")));
+        assertNotNull(cache.get(key(2)));
+    }
+
+    @Test
+    void testDiskTierBoundedByBytes(@TempDir Path dir) {
+        RenderCache cache = new RenderCache(100, dir, 250);
+        for (int i = 1; i <= 5; i++) {
+            cache.put(key(i), image(100, i));
+        }
+        Map<String, Object> counters = cache.getCounters();
+        assertTrue((Long) counters.get("diskBytes") <= 250);
+        assertFalse(Files.exists(dir.resolve(key(1) + ".png")));
+        assertNull(cache.get(key(1)));
+        assertNotNull(cache.get(key(4)));
+    }
+
+    @Test
+    void testImageLargerThanMemoryGoesToDisk(@TempDir Path dir) {
+        RenderCache cache = new RenderCache(50, dir, 1000);
+        cache.put(key(1), image(100, 1));
+        assertEquals(0L, cache.getCounters().get("bytes"));
+        assertEquals(1, cache.getCounters().get("diskEntries"));
+    }
+
+    @Test
+    void testConcurrentSpillsKeepFilesInStepWithDiskTier(@TempDir Path dir) throws Exception {
+        RenderCache cache = new RenderCache(300, dir, 1000);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                futures.add(pool.submit(() -> {
+                    for (int n = 0; n < 500; n++) {
+                        int i = (n * 7 + seed) % 30;
+                        EncodedImage cached = cache.get(key(i));
+                        if (cached == null) {
+                            cache.put(key(i), image(100, i));
+                        } else {
+                            assertEquals(image(100, i).toString(), cached.toString());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Map<String, Object> counters = cache.getCounters();
+        assertTrue((Long) counters.get("diskBytes") <= 1000);
+        try (Stream<Path> files = Files.list(dir)) {
+            assertEquals(counters.get("diskEntries"), (int) files.count(),
+                    "Every disk entry has its file and no file is left behind");
+        }
+    }
+
+    @Test
+    void testStaleFilesDeletedOnStart(@TempDir Path dir) throws Exception {
+        Path stale = Files.write(dir.resolve(key(1) + ".jpg"), new byte[10]);
+        Path other = Files.write(dir.resolve("notes.txt"), new byte[10]);
+        new RenderCache(100, dir, 1000);
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(other));
+    }
+
+    @Test
+    void testScopeKeyFollowsHomeRevisions() {
+        RenderCache cache = new RenderCache(1000, null, 0);
+        Home home = new Home();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        HomeAccessor accessor = new HomeAccessor(home, null);
+
+        String key = cache.scope(accessor, "standard", false).key(800, 600);
+        assertEquals(key, cache.scope(accessor, "standard", false).key(800, 600));
+        assertNotEquals(key, cache.scope(accessor, "standard", false).key(800, 601));
+        assertNotEquals(key, cache.scope(accessor, "overhead", false).key(800, 600));
+
+        wall.setHeight(300f);
+        assertNotEquals(key, cache.scope(accessor, "standard", false).key(800, 600));
+
+        home.getCompass().setLatitude(0.7f);
+        String afterCompass = cache.scope(accessor, "standard", false).key(800, 600);
+        home.getCompass().setLatitude(0.8f);
+        assertNotEquals(afterCompass, cache.scope(accessor, "standard", false).key(800, 600));
+    }
+
+    @Test
+    void testScopeKeyUsesGivenSnapshot() {
+        RenderCache cache = new RenderCache(1000, null, 0);
+        Home home = new Home();
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        HomeAccessor accessor = new HomeAccessor(home, null);
+        long[] before = accessor.getRevisions().snapshot();
+        String key = cache.scope(accessor, "overhead", false).key(1);
+
+        wall.setHeight(300f);
+        assertEquals(key, cache.scope(accessor, before, "overhead", false).key(1),
+                "A clone taken before the change keeps the key of the state it shows");
+        assertNotEquals(key, cache.scope(accessor, "overhead", false).key(1));
+    }
+
+    @Test
+    void testScopeKeySeparatesHomesAndInstances() {
+        RenderCache cache = new RenderCache(1000, null, 0);
+        HomeAccessor first = new HomeAccessor(new Home(), null);
+        HomeAccessor second = new HomeAccessor(new Home(), null);
+        // Both homes are at the same revisions
+        assertNotEquals(cache.scope(first, "standard", false).key(1),
+                cache.scope(second, "standard", false).key(1));
+        assertNotEquals(cache.scope(first, "standard", false).key(1),
+                new RenderCache(1000, null, 0).scope(first, "standard", false).key(1));
+    }
+
+    @Test
+    void testScopeCountsAndRefresh() {
+        RenderCache cache = new RenderCache(1000, null, 0);
+        HomeAccessor accessor = new HomeAccessor(new Home(), null);
+        RenderCache.Scope scope = cache.scope(accessor, "standard", false);
+        String key = scope.key(1);
+        assertNull(scope.get(key));
+        scope.put(key, image(10, 1));
+        assertNotNull(scope.get(key));
+        Map<String, Object> info = scope.describe();
+        assertEquals(1, info.get("hits"));
+        assertEquals(1, info.get("misses"));
+
+        RenderCache.Scope refresh = cache.scope(accessor, "standard", true);
+        assertNull(refresh.get(refresh.key(1)));
+        assertEquals(0, refresh.describe().get("hits"));
+        assertEquals(2L, refresh.describe().get("totalMisses"));
+    }
+}
@@ -6,6 +6,7 @@ import com.eteks.sweethome3d.model.HomePieceOfFurniture;
 import com.eteks.sweethome3d.model.Room;
 import com.eteks.sweethome3d.model.Wall;
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.protocol.EncodedImage;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
 import org.junit.jupiter.api.BeforeEach;
@@ -102,6 +103,11 @@ class RenderPhotoHandlerTest {
         assertNull(handler.getToolName());
     }
 
+    @Test
+    void testCostClassHeavy() {
+        assertEquals(CostClass.HEAVY, handler.getCostClass());
+    }
+
     @Test
     void testDescriptionNotEmpty() {
         String desc = handler.getDescription();
@@ -640,6 +646,22 @@ class RenderPhotoHandlerTest {
         assertTrue(bounds.sceneDepth >= 400, "Padding should ensure minimum depth, got " + bounds.sceneDepth);
     }
 
+    @Test
+    void testFocusBoundsFollowMovedFurniture() {
+        HomePieceOfFurniture piece = new HomePieceOfFurniture(
+                new com.eteks.sweethome3d.model.CatalogPieceOfFurniture(
+                        "Chair", null, null, 50f, 50f, 90f, true, false));
+        piece.setX(100);
+        piece.setY(100);
+        home.addPieceOfFurniture(piece);
+        assertEquals(100, handler.computeFocusBounds(accessor, "furniture", piece.getId()).centerX, 0.01);
+
+        piece.setX(700);
+        RenderPhotoHandler.SceneBounds bounds = handler.computeFocusBounds(accessor, "furniture", piece.getId());
+        assertEquals(700, bounds.centerX, 0.01, "Memoized bounds are dropped when the piece moves");
+        assertEquals(100, bounds.maxZ, 0.01);
+    }
+
     @Test
     void testFocusBoundsFurnitureNotFound() {
         RenderPhotoHandler.SceneBounds bounds = handler.computeFocusBounds(accessor, "furniture", "nonexistent");
@@ -662,6 +684,139 @@ class RenderPhotoHandlerTest {
     // Overhead environment tests
     // ==========================================================
 
+    @Test
+    void testTilesOutOfRange() {
+        Response resp = execute("tiles", 9.0);
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("tiles"));
+        assertTrue(execute("tiles", 0.0).isError());
+    }
+
+    @Test
+    void testRegionValidation() {
+        assertTrue(execute("region", "top").isError());
+        Map<String, Object> missing = new LinkedHashMap<>();
+        missing.put("x", 0.5);
+        assertTrue(execute("region", missing).getMessage().contains("'y'"));
+        assertTrue(execute("region", region(0.75, 0, 0.5, 0.5)).getMessage().contains("within the frame"));
+    }
+
+    @Test
+    void testRegionSetsOutputSize() {
+        addWalls();
+        Response resp = execute("width", 800.0, "height", 600.0, "tiles", 2.0,
+                "region", region(0.5, 0.5, 0.5, 0.25));
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertEquals(800, resp.getData().get("width"));
+        assertEquals(300, resp.getData().get("height"));
+        assertEquals(2, resp.getData().get("tiles"));
+    }
+
+    @Test
+    void testTilesRejectedForFisheyeLens() {
+        addWalls();
+        home.getCamera().setLens(Camera.Lens.FISHEYE);
+        Response resp = execute("tiles", 2.0);
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("lens"), resp.getMessage());
+        assertTrue(execute("view", "overhead", "region", region(0, 0, 0.5, 0.5)).isError());
+
+        home.getCamera().setLens(Camera.Lens.NORMAL);
+        assertTrue(execute("tiles", 2.0).isOk());
+    }
+
+    @Test
+    void testPngCompressionOutOfRange() {
+        Response resp = execute("format", "png", "pngCompression", 10.0);
+        assertTrue(resp.isError());
+        assertTrue(resp.getMessage().contains("pngCompression"));
+    }
+
+    @Test
+    void testInlineImageIsEncodedImage() {
+        addWalls();
+        Response resp = execute("width", 64.0, "height", 48.0, "format", "png", "pngCompression", 1.0);
+        assertTrue(resp.isOk(), resp.getMessage());
+        EncodedImage image = (EncodedImage) resp.getData().get("_image");
+        assertEquals("image/png", image.getMimeType());
+        assertEquals(image.getMimeType(), resp.getData().get("_mimeType"));
+        assertEquals(image.size(), resp.getData().get("size_bytes"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testIdenticalRenderServedFromCache() {
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+
+        Response first = execute("width", 64.0, "height", 48.0);
+        assertTrue(first.isOk(), first.getMessage());
+        assertEquals(false, first.getData().get("cached"));
+        Response second = execute("width", 64.0, "height", 48.0);
+        assertEquals(true, second.getData().get("cached"));
+        assertSame(first.getData().get("_image"), second.getData().get("_image"));
+        Map<String, Object> counts = (Map<String, Object>) second.getData().get("renderCache");
+        assertEquals(1, counts.get("hits"));
+        assertEquals(0, counts.get("misses"));
+
+        // Other options, a changed scene and refresh all render again
+        assertEquals(false, execute("width", 64.0, "height", 48.0, "format", "png").getData().get("cached"));
+        assertEquals(false, execute("width", 64.0, "height", 48.0, "refresh", true).getData().get("cached"));
+        wall.setXEnd(700);
+        assertEquals(false, execute("width", 64.0, "height", 48.0).getData().get("cached"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testOverheadImagesCachedPerAngle() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        execute("view", "overhead", "angles", 1.0);
+        Response resp = execute("view", "overhead", "angles", 4.0);
+        assertTrue(resp.isOk(), resp.getMessage());
+        Map<String, Object> counts = (Map<String, Object>) resp.getData().get("renderCache");
+        // The NW view of the first call is reused, the other three are new
+        assertEquals(1, counts.get("hits"));
+        assertEquals(3, counts.get("misses"));
+        List<Object> images = (List<Object>) resp.getData().get("images");
+        assertEquals(true, ((Map<String, Object>) images.get(0)).get("cached"));
+    }
+
+    @Test
+    void testCacheDisabled() {
+        handler = new RenderPhotoHandler(new RenderCache(0, null, 0));
+        addWalls();
+        Response resp = execute("width", 64.0, "height", 48.0);
+        assertTrue(resp.isOk(), resp.getMessage());
+        assertFalse(resp.getData().containsKey("cached"));
+        assertFalse(resp.getData().containsKey("renderCache"));
+    }
+
+    private static Map<String, Object> region(double x, double y, double width, double height) {
+        Map<String, Object> region = new LinkedHashMap<>();
+        region.put("x", x);
+        region.put("y", y);
+        region.put("width", width);
+        region.put("height", height);
+        return region;
+    }
+
+    @Test
+    void testOverheadReusesPreparedSceneUntilChange() {
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+
+        Response first = execute("view", "overhead", "angles", 1.0);
+        assertTrue(first.isOk(), first.getMessage());
+        assertEquals(false, first.getData().get("sceneReused"));
+        Response second = execute("view", "overhead", "angles", 1.0, "pitch", 45.0);
+        assertEquals(true, second.getData().get("sceneReused"));
+
+        wall.setXEnd(700);
+        assertEquals(false, execute("view", "overhead", "angles", 1.0).getData().get("sceneReused"));
+        assertEquals(false, execute("view", "overhead", "angles", 1.0, "hideWalls", false)
+                .getData().get("sceneReused"), "Other options prepare their own clone");
+    }
+
     @Test
     void testOverheadWallHeightConstant() {
         assertTrue(RenderPhotoHandler.OVERHEAD_WALL_HEIGHT > 0,
@@ -0,0 +1,127 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.Level;
+import com.eteks.sweethome3d.model.Polyline;
+import com.eteks.sweethome3d.model.Room;
+import com.eteks.sweethome3d.model.Wall;
+import com.sh3d.mcp.bridge.HomeAccessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RenderSceneCacheTest {
+
+    private Home home;
+    private HomeAccessor accessor;
+    private RenderSceneCache cache;
+    private AtomicInteger prepared;
+
+    @BeforeEach
+    void setUp() {
+        home = new Home();
+        accessor = new HomeAccessor(home, null);
+        cache = new RenderSceneCache();
+        prepared = new AtomicInteger();
+    }
+
+    private Supplier<Home> prepare(boolean hideWalls) {
+        return () -> {
+            prepared.incrementAndGet();
+            return RenderPhotoHandler.prepareOverheadHome(home, hideWalls);
+        };
+    }
+
+    @Test
+    void testUnchangedHomeReusesClone() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        RenderSceneCache.Scene first = cache.get(accessor, "overhead", prepare(true));
+        RenderSceneCache.Scene second = cache.get(accessor, "overhead", prepare(true));
+
+        assertFalse(first.reused);
+        assertTrue(second.reused);
+        assertSame(first.home, second.home);
+        assertEquals(1, prepared.get());
+    }
+
+    @Test
+    void testChangeInvalidatesClone() {
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        Home first = cache.get(accessor, "overhead", prepare(true)).home;
+
+        wall.setXEnd(800);
+        RenderSceneCache.Scene second = cache.get(accessor, "overhead", prepare(true));
+        assertFalse(second.reused);
+        assertNotSame(first, second.home);
+        assertEquals(800, second.home.getWalls().iterator().next().getXEnd(), 0.01);
+        assertEquals(2, prepared.get());
+    }
+
+    @Test
+    void testEnvironmentChangeInvalidatesClone() {
+        cache.get(accessor, "overhead", prepare(true));
+        home.getEnvironment().setSkyColor(0x102030);
+        assertFalse(cache.get(accessor, "overhead", prepare(true)).reused);
+    }
+
+    @Test
+    void testPolylineChangeInvalidatesClone() {
+        Polyline polyline = new Polyline(new float[][] {{0, 0}, {100, 0}});
+        home.addPolyline(polyline);
+        cache.get(accessor, "overhead", prepare(true));
+        polyline.setLevel(new Level("Upper", 250, 12, 250));
+        assertFalse(cache.get(accessor, "overhead", prepare(true)).reused, "Polyline changes count");
+
+        cache.get(accessor, "overhead", prepare(true));
+        home.deletePolyline(polyline);
+        assertFalse(cache.get(accessor, "overhead", prepare(true)).reused);
+    }
+
+    @Test
+    void testCompassChangeInvalidatesClone() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        cache.get(accessor, "overhead", prepare(true));
+        assertTrue(cache.get(accessor, "overhead", prepare(true)).reused);
+
+        home.getCompass().setLatitude((float) Math.toRadians(48.85));
+        RenderSceneCache.Scene moved = cache.get(accessor, "overhead", prepare(true));
+        assertFalse(moved.reused, "Sun position depends on the compass");
+        assertEquals((float) Math.toRadians(48.85), moved.home.getCompass().getLatitude(), 1e-6);
+
+        home.getCompass().setTimeZone("Asia/Tokyo");
+        assertFalse(cache.get(accessor, "overhead", prepare(true)).reused);
+        assertTrue(cache.get(accessor, "overhead", prepare(true)).reused);
+    }
+
+    @Test
+    void testOptionsKeptApart() {
+        home.addWall(new Wall(0, 0, 500, 0, 10, 250));
+        Home hidden = cache.get(accessor, "overhead:hideWalls", prepare(true)).home;
+        Home shown = cache.get(accessor, "overhead", prepare(false)).home;
+
+        assertEquals(RenderPhotoHandler.OVERHEAD_WALL_HEIGHT,
+                hidden.getWalls().iterator().next().getHeight(), 0.01);
+        assertEquals(250, shown.getWalls().iterator().next().getHeight(), 0.01);
+        assertTrue(cache.get(accessor, "overhead:hideWalls", prepare(true)).reused);
+        assertTrue(cache.get(accessor, "overhead", prepare(false)).reused);
+    }
+
+    @Test
+    void testPreparationLeavesLiveHomeUntouched() {
+        Wall wall = new Wall(0, 0, 500, 0, 10, 250);
+        home.addWall(wall);
+        Room room = new Room(new float[][]{{0, 0}, {500, 0}, {500, 400}, {0, 400}});
+        home.addRoom(room);
+
+        Home clone = cache.get(accessor, "overhead:hideWalls", prepare(true)).home;
+        assertEquals(250, wall.getHeight(), 0.01);
+        assertNull(room.getFloorColor());
+        assertEquals(RenderPhotoHandler.DEFAULT_FLOOR_COLOR,
+                (int) clone.getRooms().get(0).getFloorColor());
+    }
+}
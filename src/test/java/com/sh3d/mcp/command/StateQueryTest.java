@@ -0,0 +1,99 @@
+package com.sh3d.mcp.command;
+
+import com.sh3d.mcp.protocol.Request;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StateQueryTest {
+
+    @Test
+    void testNoParamsSelectsEverything() {
+        StateQuery query = parse(new HashMap<>());
+        for (String section : StateQuery.SECTIONS) {
+            assertTrue(query.includes(section), section);
+        }
+        assertNull(query.fieldsOf("walls"));
+        assertFalse(query.isFiltered());
+        assertFalse(query.isPaged());
+        assertFalse(query.hasCursor());
+    }
+
+    @Test
+    void testFieldsAlwaysKeepId() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("walls", Arrays.asList("xStart", "yStart"));
+        StateQuery query = parse(params("fields", fields));
+        assertEquals(Arrays.asList("id", "xStart", "yStart"), Arrays.asList(query.fieldsOf("walls").toArray()));
+    }
+
+    @Test
+    void testFieldsForNonCollectionRejected() {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("camera", Collections.singletonList("x"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse(params("fields", fields)));
+        assertTrue(e.getMessage().contains("collections only"));
+    }
+
+    @Test
+    void testBboxValidated() {
+        Map<String, Object> box = new HashMap<>();
+        box.put("minX", 0);
+        box.put("minY", 0);
+        box.put("maxX", 100);
+        assertThrows(IllegalArgumentException.class, () -> parse(params("bbox", box)));
+
+        box.put("maxY", -5);
+        assertThrows(IllegalArgumentException.class, () -> parse(params("bbox", box)));
+
+        box.put("maxY", 50);
+        assertArrayEquals(new float[]{0, 0, 100, 50}, parse(params("bbox", box)).getBbox());
+    }
+
+    @Test
+    void testLimitRange() {
+        assertEquals(10, parse(params("limit", 10)).getLimit());
+        assertThrows(IllegalArgumentException.class, () -> parse(params("limit", StateQuery.MAX_LIMIT + 1)));
+        assertThrows(IllegalArgumentException.class, () -> parse(params("limit", -1)));
+    }
+
+    @Test
+    void testCursorRoundTrip() {
+        Map<String, Object> params = params("limit", 5);
+        params.put("cursor", StateQuery.cursor(0xCAFEBABE, 15));
+        StateQuery query = parse(params);
+        assertTrue(query.hasCursor());
+        assertEquals(0xCAFEBABE, query.getCursorFingerprint());
+        assertEquals(15, query.getCursorPosition());
+    }
+
+    @Test
+    void testCursorRequiresLimitAndValidFormat() {
+        assertThrows(IllegalArgumentException.class, () -> parse(params("cursor", "1-2")));
+        Map<String, Object> params = params("limit", 5);
+        params.put("cursor", "1--2");
+        assertThrows(IllegalArgumentException.class, () -> parse(params));
+    }
+
+    @Test
+    void testSelectionHashDependsOnFilters() {
+        int all = parse(new HashMap<>()).selectionHash();
+        assertNotEquals(all, parse(params("levelId", "level-1")).selectionHash());
+        assertEquals(all, parse(params("limit", 3)).selectionHash(), "Page size may change between pages");
+    }
+
+    private static StateQuery parse(Map<String, Object> params) {
+        return StateQuery.parse(new Request("get_state", params), GetStateHandler.FIELDS);
+    }
+
+    private static Map<String, Object> params(String key, Object value) {
+        Map<String, Object> params = new HashMap<>();
+        params.put(key, value);
+        return params;
+    }
+}
@@ -0,0 +1,259 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Camera;
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TiledRendererTest {
+
+    private static final int WIDTH = 120;
+    private static final int HEIGHT = 90;
+    /** Largest color difference allowed after resampling. */
+    private static final int TOLERANCE = 3;
+
+    private final Camera camera = new Camera(100, 200, 170,
+            (float) Math.toRadians(30), (float) Math.toRadians(25), (float) Math.toRadians(63));
+
+    /**
+     * Colors every pixel by the direction of its ray: smooth, but steep enough (several levels
+     * per pixel) that a misplaced pixel shows.
+     */
+    private static int shade(double[] ray) {
+        double length = Math.sqrt(ray[0] * ray[0] + ray[1] * ray[1] + ray[2] * ray[2]);
+        int r = (int) Math.round(128 + 127 * Math.sin(6 * ray[0] / length));
+        int g = (int) Math.round(128 + 127 * Math.sin(6 * ray[1] / length));
+        int b = (int) Math.round(128 + 127 * Math.sin(6 * ray[2] / length));
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /** Fake renderer: shades each pixel center of a whole frame of the camera. */
+    private static final class RayRenderer implements TiledRenderer.TileRenderer {
+        final AtomicInteger renders;
+        final AtomicInteger disposed;
+
+        RayRenderer(AtomicInteger renders, AtomicInteger disposed) {
+            this.renders = renders;
+            this.disposed = disposed;
+        }
+
+        @Override
+        public void render(BufferedImage image, Camera camera) {
+            renders.incrementAndGet();
+            int width = image.getWidth();
+            int height = image.getHeight();
+            double[][] basis = TiledRenderer.basis(camera.getYaw(), camera.getPitch());
+            double tanX = Math.tan(camera.getFieldOfView() / 2);
+            double tanY = tanX * height / width;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    double sx = (2 * (x + 0.5) / width - 1) * tanX;
+                    double sy = (1 - 2 * (y + 0.5) / height) * tanY;
+                    double[] ray = new double[3];
+                    for (int k = 0; k < 3; k++) {
+                        ray[k] = basis[0][k] + sx * basis[1][k] + sy * basis[2][k];
+                    }
+                    image.setRGB(x, y, shade(ray));
+                }
+            }
+        }
+
+        @Override
+        public void dispose() {
+            disposed.incrementAndGet();
+        }
+    }
+
+    private static void assertClose(BufferedImage expected, BufferedImage actual) {
+        assertEquals(expected.getWidth(), actual.getWidth());
+        assertEquals(expected.getHeight(), actual.getHeight());
+        for (int y = 0; y < expected.getHeight(); y++) {
+            for (int x = 0; x < expected.getWidth(); x++) {
+                int e = expected.getRGB(x, y);
+                int a = actual.getRGB(x, y);
+                for (int shift = 0; shift <= 16; shift += 8) {
+                    int diff = Math.abs(((e >> shift) & 0xFF) - ((a >> shift) & 0xFF));
+                    assertTrue(diff <= TOLERANCE, "Pixel " + x + "," + y + " differs by " + diff);
+                }
+            }
+        }
+    }
+
+    private BufferedImage direct(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        new RayRenderer(new AtomicInteger(), new AtomicInteger()).render(image, camera);
+        return image;
+    }
+
+    @Test
+    void testTilesMatchWholeFrame() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        AtomicInteger disposed = new AtomicInteger();
+        AtomicInteger created = new AtomicInteger();
+        BufferedImage tiled = TiledRenderer.render(camera, TiledRenderer.Region.FULL,
+                (float) HEIGHT / WIDTH, WIDTH, HEIGHT, 3, 1, () -> {
+                    created.incrementAndGet();
+                    return new RayRenderer(renders, disposed);
+                });
+
+        assertClose(direct(WIDTH, HEIGHT), tiled);
+        assertEquals(9, renders.get(), "One render per tile");
+        assertTrue(created.get() <= TiledRenderer.MAX_WORKERS, "Renderers are reused across tiles");
+        assertEquals(created.get(), disposed.get());
+    }
+
+    @Test
+    void testSupersampledTilesMatchWholeFrame() throws Exception {
+        BufferedImage tiled = TiledRenderer.render(camera, TiledRenderer.Region.FULL,
+                (float) HEIGHT / WIDTH, WIDTH, HEIGHT, 2, 2,
+                () -> new RayRenderer(new AtomicInteger(), new AtomicInteger()));
+        assertClose(direct(WIDTH, HEIGHT), tiled);
+    }
+
+    @Test
+    void testRegionMatchesPartOfLargerFrame() throws Exception {
+        // The right half, lower third of the frame at 4x: same pixels as a 4x frame cropped
+        TiledRenderer.Region region = new TiledRenderer.Region(0.5f, 2 / 3f, 0.5f, 1 / 3f);
+        int width = WIDTH * 2;
+        int height = HEIGHT * 4 / 3;
+        BufferedImage detail = TiledRenderer.render(camera, region, (float) HEIGHT / WIDTH,
+                width, height, 1, 1, () -> new RayRenderer(new AtomicInteger(), new AtomicInteger()));
+
+        BufferedImage large = direct(WIDTH * 4, HEIGHT * 4);
+        BufferedImage crop = large.getSubimage(WIDTH * 2, HEIGHT * 4 * 2 / 3, width, height);
+        assertClose(crop, detail);
+    }
+
+    @Test
+    void testTileCamerasUsePinholeLens() throws Exception {
+        Camera normal = camera.clone();
+        normal.setLens(Camera.Lens.NORMAL);
+        List<Camera.Lens> lenses = new CopyOnWriteArrayList<>();
+        BufferedImage tiled = TiledRenderer.render(normal, TiledRenderer.Region.FULL,
+                (float) HEIGHT / WIDTH, WIDTH, HEIGHT, 2, 1, () -> new TiledRenderer.TileRenderer() {
+                    private final RayRenderer rays = new RayRenderer(new AtomicInteger(), new AtomicInteger());
+
+                    @Override
+                    public void render(BufferedImage image, Camera tileCamera) {
+                        lenses.add(tileCamera.getLens());
+                        rays.render(image, tileCamera);
+                    }
+
+                    @Override
+                    public void dispose() {
+                    }
+                });
+
+        assertClose(direct(WIDTH, HEIGHT), tiled);
+        assertEquals(Collections.nCopies(4, Camera.Lens.PINHOLE), lenses);
+        assertEquals(Camera.Lens.NORMAL, normal.getLens(), "Caller's camera is not modified");
+    }
+
+    @Test
+    void testLensValidation() {
+        Camera other = camera.clone();
+        assertNull(TiledRenderer.validateLens(other));
+        other.setLens(Camera.Lens.NORMAL);
+        assertNull(TiledRenderer.validateLens(other));
+        other.setLens(Camera.Lens.FISHEYE);
+        assertTrue(TiledRenderer.validateLens(other).contains("fisheye"));
+        other.setLens(Camera.Lens.SPHERICAL);
+        assertNotNull(TiledRenderer.validateLens(other));
+    }
+
+    @Test
+    void testRendererFailurePropagates() {
+        Exception e = assertThrows(IllegalStateException.class, () -> TiledRenderer.render(camera,
+                TiledRenderer.Region.FULL, 0.75f, 40, 30, 2, 1, () -> new TiledRenderer.TileRenderer() {
+                    @Override
+                    public void render(BufferedImage image, Camera camera) {
+                        throw new IllegalStateException("boom");
+                    }
+
+                    @Override
+                    public void dispose() {
+                    }
+                }));
+        assertEquals("boom", e.getMessage());
+    }
+
+    @Test
+    void testOutOfMemoryErrorRethrownAsIs() {
+        assertThrows(OutOfMemoryError.class, () -> TiledRenderer.render(camera,
+                TiledRenderer.Region.FULL, 0.75f, 40, 30, 2, 1, () -> new TiledRenderer.TileRenderer() {
+                    @Override
+                    public void render(BufferedImage image, Camera camera) {
+                        throw new OutOfMemoryError("Java heap space");
+                    }
+
+                    @Override
+                    public void dispose() {
+                    }
+                }));
+    }
+
+    @Test
+    void testInterruptStopsWorkers() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch workerInterrupted = new CountDownLatch(1);
+        AtomicReference<Throwable> thrown = new AtomicReference<>();
+        AtomicBoolean interruptFlag = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            try {
+                TiledRenderer.render(camera, TiledRenderer.Region.FULL, 0.75f, 40, 30, 2, 1,
+                        () -> new TiledRenderer.TileRenderer() {
+                            @Override
+                            public void render(BufferedImage image, Camera camera) {
+                                started.countDown();
+                                try {
+                                    Thread.sleep(30_000);
+                                } catch (InterruptedException e) {
+                                    workerInterrupted.countDown();
+                                }
+                            }
+
+                            @Override
+                            public void dispose() {
+                            }
+                        });
+            } catch (Throwable t) {
+                thrown.set(t);
+            }
+            interruptFlag.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        caller.interrupt();
+        caller.join(5000);
+
+        assertInstanceOf(InterruptedException.class, thrown.get());
+        assertTrue(interruptFlag.get(), "Interrupt flag is restored");
+        assertTrue(workerInterrupted.await(5, TimeUnit.SECONDS), "Running workers are interrupted");
+    }
+
+    @Test
+    void testRegionValidation() {
+        assertNull(new TiledRenderer.Region(0, 0, 1, 1).validate());
+        assertNull(new TiledRenderer.Region(0.25f, 0.5f, 0.5f, 0.5f).validate());
+        assertNotNull(new TiledRenderer.Region(0, 0, 0, 0.5f).validate());
+        assertNotNull(new TiledRenderer.Region(-0.1f, 0, 0.5f, 0.5f).validate());
+        assertNotNull(new TiledRenderer.Region(0.75f, 0, 0.5f, 0.5f).validate());
+    }
+
+    @Test
+    void testOutputHeightFollowsRegion() {
+        TiledRenderer.Layout layout = new TiledRenderer.Layout(1, new TiledRenderer.Region(0, 0, 0.5f, 0.25f));
+        assertEquals(300, layout.outputHeight(800, 600, 4096));
+        assertEquals(600, new TiledRenderer.Layout(2, TiledRenderer.Region.FULL).outputHeight(800, 600, 4096));
+    }
+}
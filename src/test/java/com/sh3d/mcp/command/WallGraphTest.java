@@ -0,0 +1,136 @@
+package com.sh3d.mcp.command;
+
+import com.eteks.sweethome3d.model.Wall;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WallGraphTest {
+
+    @Test
+    void testRectangle() {
+        List<WallGraph.Face> faces = WallGraph.faces(rectangle(0, 0, 400, 300, 10), 1);
+
+        assertEquals(1, faces.size());
+        assertEquals(4, faces.get(0).points.length);
+        assertEquals(120000, faces.get(0).area(), 0.01);
+    }
+
+    @Test
+    void testInsetFollowsInnerWallSides() {
+        WallGraph.Face face = WallGraph.faces(rectangle(0, 0, 400, 300, 10), 1).get(0);
+
+        double[][] inner = WallGraph.inset(face);
+
+        assertNotNull(inner);
+        assertEquals(390 * 290, WallGraph.signedArea(inner), 0.01);
+    }
+
+    @Test
+    void testPartitionWallSplitsRoomInTwo() {
+        // Перегородка упирается в середины стен (T-стыки)
+        List<Wall> walls = rectangle(0, 0, 600, 300, 10);
+        walls.add(new Wall(200, 0, 200, 300, 10));
+
+        List<WallGraph.Face> faces = WallGraph.faces(walls, 1);
+
+        assertEquals(2, faces.size());
+        double total = faces.get(0).area() + faces.get(1).area();
+        assertEquals(180000, total, 0.01);
+    }
+
+    @Test
+    void testCrossingWallsSplitEachOther() {
+        List<Wall> walls = rectangle(0, 0, 400, 400, 10);
+        // Крест из двух стен от края до края
+        walls.add(new Wall(200, 0, 200, 400, 10));
+        walls.add(new Wall(0, 200, 400, 200, 10));
+
+        assertEquals(4, WallGraph.faces(walls, 1).size());
+    }
+
+    @Test
+    void testGapsWithinToleranceClose() {
+        List<Wall> walls = Arrays.asList(
+                new Wall(0, 0, 300, 0, 10),
+                new Wall(300.5f, 0.5f, 300, 300, 10),
+                new Wall(300, 300, 0, 300, 10),
+                new Wall(0, 300, 0, 0.8f, 10));
+
+        assertEquals(1, WallGraph.faces(walls, 1).size());
+        assertTrue(WallGraph.faces(walls, 0.1).isEmpty());
+    }
+
+    @Test
+    void testDeadEndsPruned() {
+        List<Wall> walls = rectangle(0, 0, 400, 300, 10);
+        // Стена внутрь комнаты, никуда не ведущая, и стена наружу
+        walls.add(new Wall(0, 150, 150, 150, 10));
+        walls.add(new Wall(400, 150, 600, 150, 10));
+
+        List<WallGraph.Face> faces = WallGraph.faces(walls, 1);
+
+        assertEquals(1, faces.size());
+        assertEquals(120000, faces.get(0).area(), 0.01);
+    }
+
+    @Test
+    void testOpenOutlineHasNoFaces() {
+        List<Wall> walls = Arrays.asList(
+                new Wall(0, 0, 300, 0, 10),
+                new Wall(300, 0, 300, 300, 10),
+                new Wall(300, 300, 0, 300, 10));
+
+        assertTrue(WallGraph.faces(walls, 1).isEmpty());
+    }
+
+    @Test
+    void testInsetOfTooThinRoomIsNull() {
+        WallGraph.Face face = WallGraph.faces(rectangle(0, 0, 400, 20, 30), 1).get(0);
+        assertNull(WallGraph.inset(face));
+    }
+
+    @Test
+    void testMixedThicknessInset() {
+        List<Wall> walls = rectangle(0, 0, 400, 300, 10);
+        walls.set(0, new Wall(0, 0, 400, 0, 30));
+
+        double[][] inner = WallGraph.inset(WallGraph.faces(walls, 1).get(0));
+
+        assertEquals(390 * 280, WallGraph.signedArea(inner), 0.01);
+    }
+
+    @Test
+    void testLargeGridFindsAllCells() {
+        // 40x40 комнат из стен во всю длину: только пересечения, без общих концов
+        int n = 40;
+        List<Wall> walls = new ArrayList<>();
+        for (int i = 0; i <= n; i++) {
+            walls.add(new Wall(0, i * 100, n * 100, i * 100, 10));
+            walls.add(new Wall(i * 100, 0, i * 100, n * 100, 10));
+        }
+
+        long start = System.nanoTime();
+        List<WallGraph.Face> faces = WallGraph.faces(walls, 1);
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(n * n, faces.size());
+        for (WallGraph.Face face : faces) {
+            assertEquals(4, face.points.length, "Split points on straight edges are dropped");
+            assertEquals(10000, face.area(), 0.01);
+        }
+        assertTrue(elapsedMs < 5000, "Took " + elapsedMs + " ms");
+    }
+
+    private static List<Wall> rectangle(float x, float y, float width, float depth, float thickness) {
+        return new ArrayList<>(Arrays.asList(
+                new Wall(x, y, x + width, y, thickness),
+                new Wall(x + width, y, x + width, y + depth, thickness),
+                new Wall(x + width, y + depth, x, y + depth, thickness),
+                new Wall(x, y + depth, x, y, thickness)));
+    }
+}
@@ -61,4 +61,237 @@ class PluginConfigTest {
         assertTrue(pathStr.endsWith("sh3d-mcp.log"),
                 "Log path should end with sh3d-mcp.log, got: " + pathStr);
     }
+
+    @Test
+    void testDefaultRateLimits() {
+        PluginConfig config = PluginConfig.load();
+        assertTrue(config.isRateLimitEnabled());
+        assertEquals(PluginConfig.DEFAULT_HEAVY_RATE_LIMIT.getPerMinute(),
+                config.getHeavyRateLimit().getPerMinute());
+        assertEquals(PluginConfig.DEFAULT_LIGHT_RATE_LIMIT.getMaxInFlight(),
+                config.getLightRateLimit().getMaxInFlight());
+    }
+
+    @Test
+    void testRateLimitSystemPropertyOverride() {
+        System.setProperty("sh3d.mcp.rateLimit.heavy.perMinute", "30");
+        System.setProperty("sh3d.mcp.rateLimit.heavy.maxInFlight", "2");
+        try {
+            PluginConfig config = PluginConfig.load();
+            assertEquals(30, config.getHeavyRateLimit().getPerMinute());
+            assertEquals(2, config.getHeavyRateLimit().getMaxInFlight());
+            assertEquals(PluginConfig.DEFAULT_HEAVY_RATE_LIMIT.getBurst(),
+                    config.getHeavyRateLimit().getBurst());
+        } finally {
+            System.clearProperty("sh3d.mcp.rateLimit.heavy.perMinute");
+            System.clearProperty("sh3d.mcp.rateLimit.heavy.maxInFlight");
+        }
+    }
+
+    @Test
+    void testNegativeRateLimitRejected() {
+        System.setProperty("sh3d.mcp.rateLimit.light.burst", "-1");
+        try {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, PluginConfig::load);
+            assertEquals("Invalid sh3d.mcp.rateLimit.light.burst: -1 (must be >= 0)", e.getMessage());
+        } finally {
+            System.clearProperty("sh3d.mcp.rateLimit.light.burst");
+        }
+    }
+
+    @Test
+    void testDefaultHttpSettings() {
+        PluginConfig config = PluginConfig.load();
+        assertEquals(PluginConfig.HTTP_BACKEND_JDK, config.getHttpBackend());
+        assertEquals(PluginConfig.DEFAULT_KEEP_ALIVE_SECONDS, config.getKeepAliveSeconds());
+        assertEquals(PluginConfig.DEFAULT_MAX_IDLE_CONNECTIONS, config.getMaxIdleConnections());
+        assertEquals(PluginConfig.DEFAULT_MAX_CONNECTIONS, config.getMaxConnections());
+        assertEquals(PluginConfig.DEFAULT_BACKLOG, config.getBacklog());
+    }
+
+    @Test
+    void testHttpBackendOverride() {
+        System.setProperty("sh3d.mcp.http.backend", "NIO");
+        System.setProperty("sh3d.mcp.http.keepAliveSeconds", "5");
+        try {
+            PluginConfig config = PluginConfig.load();
+            assertEquals(PluginConfig.HTTP_BACKEND_NIO, config.getHttpBackend());
+            assertEquals(5, config.getKeepAliveSeconds());
+        } finally {
+            System.clearProperty("sh3d.mcp.http.backend");
+            System.clearProperty("sh3d.mcp.http.keepAliveSeconds");
+        }
+    }
+
+    @Test
+    void testInvalidHttpBackendRejected() {
+        System.setProperty("sh3d.mcp.http.backend", "netty");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.http.backend");
+        }
+    }
+
+    @Test
+    void testNonPositiveMaxConnectionsRejected() {
+        System.setProperty("sh3d.mcp.http.maxConnections", "0");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.http.maxConnections");
+        }
+    }
+
+    @Test
+    void testEdtWatchdogSettings() {
+        PluginConfig defaults = PluginConfig.load();
+        assertEquals(PluginConfig.DEFAULT_EDT_STALL_THRESHOLD_MS, defaults.getEdtStallThresholdMs());
+        assertEquals(PluginConfig.DEFAULT_EDT_STALL_HISTORY, defaults.getEdtStallHistory());
+
+        System.setProperty("sh3d.mcp.edt.stallThresholdMs", "100");
+        try {
+            assertEquals(100, PluginConfig.load().getEdtStallThresholdMs());
+        } finally {
+            System.clearProperty("sh3d.mcp.edt.stallThresholdMs");
+        }
+    }
+
+    @Test
+    void testTraceSettings() {
+        PluginConfig defaults = PluginConfig.load();
+        assertEquals(0.0, defaults.getTraceSampleRate());
+        assertEquals(PluginConfig.DEFAULT_TRACE_MAX_FILE_BYTES, defaults.getTraceMaxFileBytes());
+        assertEquals(PluginConfig.DEFAULT_TRACE_MAX_FILES, defaults.getTraceMaxFiles());
+
+        System.setProperty("sh3d.mcp.trace.sampleRate", "0.25");
+        try {
+            assertEquals(0.25, PluginConfig.load().getTraceSampleRate());
+        } finally {
+            System.clearProperty("sh3d.mcp.trace.sampleRate");
+        }
+    }
+
+    @Test
+    void testInvalidTraceSampleRateRejected() {
+        System.setProperty("sh3d.mcp.trace.sampleRate", "2");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.trace.sampleRate");
+        }
+    }
+
+    @Test
+    void testLogBufferSettings() {
+        PluginConfig defaults = PluginConfig.load();
+        assertEquals(PluginConfig.DEFAULT_LOG_BUFFER_CAPACITY, defaults.getLogBufferCapacity());
+        assertEquals("drop", defaults.getLogOverflowPolicy());
+
+        System.setProperty("sh3d.mcp.log.overflowPolicy", "Block");
+        System.setProperty("sh3d.mcp.log.bufferCapacity", "256");
+        try {
+            PluginConfig config = PluginConfig.load();
+            assertEquals("block", config.getLogOverflowPolicy());
+            assertEquals(256, config.getLogBufferCapacity());
+        } finally {
+            System.clearProperty("sh3d.mcp.log.overflowPolicy");
+            System.clearProperty("sh3d.mcp.log.bufferCapacity");
+        }
+    }
+
+    @Test
+    void testInvalidLogOverflowPolicyRejected() {
+        System.setProperty("sh3d.mcp.log.overflowPolicy", "wait");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.log.overflowPolicy");
+        }
+    }
+
+    @Test
+    void testCaptureSetting() {
+        assertFalse(PluginConfig.load().isCaptureEnabled());
+        System.setProperty("sh3d.mcp.capture.enabled", "true");
+        try {
+            assertTrue(PluginConfig.load().isCaptureEnabled());
+        } finally {
+            System.clearProperty("sh3d.mcp.capture.enabled");
+        }
+    }
+
+    @Test
+    void testHomesSettings() {
+        PluginConfig defaults = PluginConfig.load();
+        assertEquals(PluginConfig.DEFAULT_HOMES_MAX_LOADED, defaults.getHomesMaxLoaded());
+        assertEquals(PluginConfig.DEFAULT_HOMES_IDLE_EVICT_MINUTES, defaults.getHomesIdleEvictMinutes());
+        assertEquals(PluginConfig.DEFAULT_HOMES_EXPIRE_MINUTES, defaults.getHomesExpireMinutes());
+        assertEquals(PluginConfig.DEFAULT_HOMES_MAX_HEAP_PERCENT, defaults.getHomesMaxHeapPercent());
+
+        System.setProperty("sh3d.mcp.homes.maxLoaded", "0");
+        System.setProperty("sh3d.mcp.homes.idleEvictMinutes", "3");
+        System.setProperty("sh3d.mcp.homes.expireMinutes", "60");
+        System.setProperty("sh3d.mcp.homes.maxHeapPercent", "70");
+        try {
+            PluginConfig config = PluginConfig.load();
+            assertEquals(0, config.getHomesMaxLoaded());
+            assertEquals(3, config.getHomesIdleEvictMinutes());
+            assertEquals(60, config.getHomesExpireMinutes());
+            assertEquals(70, config.getHomesMaxHeapPercent());
+        } finally {
+            System.clearProperty("sh3d.mcp.homes.maxLoaded");
+            System.clearProperty("sh3d.mcp.homes.idleEvictMinutes");
+            System.clearProperty("sh3d.mcp.homes.expireMinutes");
+            System.clearProperty("sh3d.mcp.homes.maxHeapPercent");
+        }
+    }
+
+    @Test
+    void testInvalidHomesSettingsRejected() {
+        System.setProperty("sh3d.mcp.homes.maxHeapPercent", "150");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.homes.maxHeapPercent");
+        }
+        System.setProperty("sh3d.mcp.homes.maxLoaded", "-1");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.homes.maxLoaded");
+        }
+    }
+
+    @Test
+    void testRenderCacheSettings() {
+        PluginConfig defaults = PluginConfig.load();
+        assertEquals(PluginConfig.DEFAULT_RENDER_CACHE_MAX_BYTES, defaults.getRenderCacheMaxBytes());
+        assertFalse(defaults.isRenderCacheDiskEnabled());
+        assertEquals(PluginConfig.DEFAULT_RENDER_CACHE_MAX_DISK_BYTES, defaults.getRenderCacheMaxDiskBytes());
+
+        System.setProperty("sh3d.mcp.renderCache.maxBytes", "0");
+        System.setProperty("sh3d.mcp.renderCache.disk", "true");
+        System.setProperty("sh3d.mcp.renderCache.maxDiskBytes", "1000000");
+        try {
+            PluginConfig config = PluginConfig.load();
+            assertEquals(0, config.getRenderCacheMaxBytes());
+            assertTrue(config.isRenderCacheDiskEnabled());
+            assertEquals(1000000, config.getRenderCacheMaxDiskBytes());
+        } finally {
+            System.clearProperty("sh3d.mcp.renderCache.maxBytes");
+            System.clearProperty("sh3d.mcp.renderCache.disk");
+            System.clearProperty("sh3d.mcp.renderCache.maxDiskBytes");
+        }
+    }
+
+    @Test
+    void testNegativeRenderCacheSizeRejected() {
+        System.setProperty("sh3d.mcp.renderCache.maxBytes", "-1");
+        try {
+            assertThrows(IllegalArgumentException.class, PluginConfig::load);
+        } finally {
+            System.clearProperty("sh3d.mcp.renderCache.maxBytes");
+        }
+    }
 }
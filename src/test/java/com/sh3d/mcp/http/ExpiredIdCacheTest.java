@@ -0,0 +1,118 @@
+package com.sh3d.mcp.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpiredIdCacheTest {
+
+    @Test
+    void testContainsAddedIds() {
+        ExpiredIdCache cache = new ExpiredIdCache(4);
+        cache.add("a");
+        cache.add("b");
+
+        assertTrue(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertFalse(cache.contains("c"));
+        assertFalse(cache.contains(null));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testEvictsOldestOverCapacity() {
+        ExpiredIdCache cache = new ExpiredIdCache(2);
+        cache.add("a");
+        cache.add("b");
+        cache.add("c");
+
+        assertFalse(cache.contains("a"));
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testReAddMovesIdToMostRecent() {
+        ExpiredIdCache cache = new ExpiredIdCache(2);
+        cache.add("a");
+        cache.add("b");
+        cache.add("a");
+        cache.add("c");
+
+        assertTrue(cache.contains("a"), "Re-added ID should survive eviction");
+        assertFalse(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+    }
+
+    @Test
+    void testRepeatedReAddStaysBounded() {
+        ExpiredIdCache cache = new ExpiredIdCache(2);
+        for (int i = 0; i < 1000; i++) {
+            cache.add("same");
+        }
+        assertEquals(1, cache.size());
+        assertTrue(cache.contains("same"));
+        assertTrue(cache.queueLength() <= 4, "queue: " + cache.queueLength());
+    }
+
+    @Test
+    void testRepeatedReAddKeepsOtherIds() {
+        ExpiredIdCache cache = new ExpiredIdCache(3);
+        cache.add("a");
+        cache.add("b");
+        cache.add("c");
+        for (int i = 0; i < 1000; i++) {
+            cache.add("c");
+            cache.add("b");
+        }
+
+        assertTrue(cache.contains("a"), "Live ID under capacity must not be evicted");
+        assertTrue(cache.contains("b"));
+        assertTrue(cache.contains("c"));
+        assertEquals(3, cache.size());
+        assertTrue(cache.queueLength() <= 6, "queue: " + cache.queueLength());
+
+        cache.add("d");
+        assertFalse(cache.contains("a"), "Oldest live ID is still evicted first");
+    }
+
+    @Test
+    void testRejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new ExpiredIdCache(0));
+    }
+
+    @Test
+    void testConcurrentAddsStayNearCapacity() throws Exception {
+        int capacity = 64;
+        ExpiredIdCache cache = new ExpiredIdCache(capacity);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int base = t * 10_000;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    cache.add("id-" + (base + i));
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertTrue(cache.size() <= capacity + threads, "size: " + cache.size());
+    }
+}
@@ -121,4 +121,35 @@ class HttpMcpServerTest {
         assertThrows(IllegalStateException.class, () -> server.setPort(8080));
         server.stop();
     }
+
+    // === NIO backend ===
+
+    @Test
+    void testNioBackendStartsAndStops() throws Exception {
+        int freePort;
+        try (java.net.ServerSocket probe = new java.net.ServerSocket(0)) {
+            freePort = probe.getLocalPort();
+        }
+        PluginConfig config = mock(PluginConfig.class);
+        when(config.getPort()).thenReturn(freePort);
+        when(config.getHttpBackend()).thenReturn(PluginConfig.HTTP_BACKEND_NIO);
+        when(config.getKeepAliveSeconds()).thenReturn(30);
+        when(config.getMaxIdleConnections()).thenReturn(8);
+        when(config.getMaxConnections()).thenReturn(16);
+        HttpMcpServer nioServer = new HttpMcpServer(config, new CommandRegistry(), mock(HomeAccessor.class));
+
+        nioServer.start();
+        for (int i = 0; i < 100 && !nioServer.isRunning(); i++) {
+            Thread.sleep(20);
+        }
+        try {
+            assertTrue(nioServer.isRunning(), "NIO backend should reach RUNNING");
+            try (java.net.Socket socket = new java.net.Socket("127.0.0.1", freePort)) {
+                assertTrue(socket.isConnected());
+            }
+        } finally {
+            nioServer.stop();
+        }
+        assertEquals(ServerState.STOPPED, nioServer.getState());
+    }
 }
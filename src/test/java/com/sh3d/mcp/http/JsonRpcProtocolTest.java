@@ -1,12 +1,15 @@
 package com.sh3d.mcp.http;
 
 import com.sh3d.mcp.plugin.SH3DMcpPlugin;
+import com.sh3d.mcp.protocol.EncodedImage;
 import com.sh3d.mcp.protocol.JsonUtil;
 import com.sh3d.mcp.protocol.Response;
 import org.junit.jupiter.api.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -347,6 +350,37 @@ class JsonRpcProtocolTest {
         assertEquals("tool_b", ((Map<String, Object>) parsedTools.get(1)).get("name"));
     }
 
+    // === formatRawResult / formatNotification ===
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFormatRawResultWrapsSerializedResult() {
+        byte[] resultJson = "{\"tools\":[{\"name\":\"a\"}]}".getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = JsonRpcProtocol.formatRawResult(7, resultJson);
+
+        Map<String, Object> parsed = parseJson(new String(bytes, StandardCharsets.UTF_8));
+        assertEquals("2.0", parsed.get("jsonrpc"));
+        assertEquals(7, parsed.get("id"));
+        Map<String, Object> result = (Map<String, Object>) parsed.get("result");
+        assertEquals(1, ((List<Object>) result.get("tools")).size());
+    }
+
+    @Test
+    void testFormatRawResultWithStringId() {
+        byte[] bytes = JsonRpcProtocol.formatRawResult("abc", "{}".getBytes(StandardCharsets.UTF_8));
+        assertEquals("{\"jsonrpc\":\"2.0\",\"id\":\"abc\",\"result\":{}}",
+                new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testFormatNotificationHasNoId() {
+        String json = JsonRpcProtocol.formatNotification("notifications/tools/list_changed");
+        Map<String, Object> parsed = parseJson(json);
+        assertEquals("2.0", parsed.get("jsonrpc"));
+        assertEquals("notifications/tools/list_changed", parsed.get("method"));
+        assertFalse(parsed.containsKey("id"));
+    }
+
     // === formatToolCallResult ===
 
     @Test
@@ -451,6 +485,23 @@ class JsonRpcProtocolTest {
 
     // === formatToolCallResult: multi-content (_image, _images) ===
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFormatToolCallResultEncodedImage() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10, 0, 0};
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("size_bytes", png.length);
+        data.put("_image", new EncodedImage(png, "image/png"));
+        data.put("_mimeType", "image/png");
+
+        String json = JsonRpcProtocol.formatToolCallResult(12, Response.ok(data));
+        Map<String, Object> result = (Map<String, Object>) parseJson(json).get("result");
+        List<Object> content = (List<Object>) result.get("content");
+        Map<String, Object> imageBlock = (Map<String, Object>) content.get(1);
+        assertEquals(Base64.getEncoder().encodeToString(png), imageBlock.get("data"));
+        assertEquals("image/png", imageBlock.get("mimeType"));
+    }
+
     @Test
     @SuppressWarnings("unchecked")
     void testFormatToolCallResultNewImageWithMetadata() {
@@ -642,6 +693,27 @@ class JsonRpcProtocolTest {
         assertEquals(-32603, JsonRpcProtocol.INTERNAL_ERROR);
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFormatErrorWithData() {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("retryAfterMs", 1500L);
+        String json = JsonRpcProtocol.formatError(7, JsonRpcProtocol.RATE_LIMITED, "Slow down", data);
+
+        Map<String, Object> error = (Map<String, Object>) parseJson(json).get("error");
+        assertEquals(-32029, ((Number) error.get("code")).intValue());
+        assertEquals("Slow down", error.get("message"));
+        Map<String, Object> parsedData = (Map<String, Object>) error.get("data");
+        assertEquals(1500, ((Number) parsedData.get("retryAfterMs")).intValue());
+    }
+
+    @Test
+    void testFormatErrorWithNullDataOmitsField() {
+        String json = JsonRpcProtocol.formatError(7, JsonRpcProtocol.INTERNAL_ERROR, "x", null);
+        assertFalse(json.contains("\"data\""));
+        assertEquals(JsonRpcProtocol.formatError(7, JsonRpcProtocol.INTERNAL_ERROR, "x"), json);
+    }
+
     // === Helper ===
 
     @SuppressWarnings("unchecked")
@@ -1,23 +1,36 @@
 package com.sh3d.mcp.http;
 
 import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.bridge.HomeRegistry;
+import com.sh3d.mcp.command.BatchCommandsHandler;
 import com.sh3d.mcp.command.CommandDescriptor;
 import com.sh3d.mcp.command.CommandHandler;
 import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.command.CostClass;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sh3d.mcp.metrics.QueueTiming;
+import com.sh3d.mcp.metrics.ToolMetrics;
 import com.sh3d.mcp.protocol.Request;
 import com.sh3d.mcp.protocol.Response;
+import com.sh3d.mcp.trace.RequestCapture;
+import com.sh3d.mcp.trace.Tracer;
 import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -149,6 +162,128 @@ class McpRequestHandlerTest {
         assertTrue(response.contains("\"create_wall\""));
     }
 
+    @Test
+    void testToolsListReturnsEtag() throws Exception {
+        registerTestTool("create_wall", "Create a wall", null);
+        String sessionId = initializeSession();
+
+        HttpExchange exchange = createPostExchange(
+                "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/list\"}", sessionId, null);
+        captureResponseBody(exchange);
+
+        handler.handle(exchange);
+
+        String etag = exchange.getResponseHeaders().getFirst("ETag");
+        assertNotNull(etag);
+        assertTrue(etag.startsWith("\"") && etag.endsWith("\""), "ETag should be quoted: " + etag);
+    }
+
+    @Test
+    void testToolsListIfNoneMatchStillAnswersRequest() throws Exception {
+        registerTestTool("create_wall", "Create a wall", null);
+        String sessionId = initializeSession();
+        String etag = fetchToolsListEtag(sessionId);
+
+        HttpExchange exchange = createPostExchange(
+                "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/list\"}", sessionId, null);
+        exchange.getRequestHeaders().set("If-None-Match", etag);
+        ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+
+        handler.handle(exchange);
+
+        verify(exchange).sendResponseHeaders(eq(200), anyLong());
+        verify(exchange, never()).sendResponseHeaders(eq(304), anyLong());
+        assertEquals(etag, exchange.getResponseHeaders().getFirst("ETag"));
+        String response = responseBody.toString(StandardCharsets.UTF_8.name());
+        assertTrue(response.contains("\"id\":3"));
+        assertTrue(response.contains("\"create_wall\""));
+    }
+
+    @Test
+    void testToolsListRebuiltAfterRegister() throws Exception {
+        registerTestTool("create_wall", "Create a wall", null);
+        String sessionId = initializeSession();
+        String etagBefore = fetchToolsListEtag(sessionId);
+
+        registerTestTool("delete_wall", "Delete a wall", null);
+
+        HttpExchange exchange = createPostExchange(
+                "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"tools/list\"}", sessionId, null);
+        exchange.getRequestHeaders().set("If-None-Match", etagBefore);
+        ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+
+        handler.handle(exchange);
+
+        verify(exchange).sendResponseHeaders(eq(200), anyLong());
+        assertNotEquals(etagBefore, exchange.getResponseHeaders().getFirst("ETag"));
+        String response = responseBody.toString(StandardCharsets.UTF_8.name());
+        assertTrue(response.contains("\"delete_wall\""));
+        assertTrue(response.contains("\"id\":4"));
+    }
+
+    // === GET SSE stream ===
+
+    @Test
+    void testGetWithEventStreamOpensStreamAndReceivesListChanged() throws Exception {
+        String sessionId = initializeSession();
+
+        HttpExchange exchange = createExchange("GET", null, sessionId, null);
+        exchange.getRequestHeaders().set("Accept", "text/event-stream");
+        ByteArrayOutputStream stream = captureResponseBody(exchange);
+
+        handler.handle(exchange);
+
+        verify(exchange).sendResponseHeaders(200, 0);
+        verify(exchange, never()).close();
+        assertEquals("text/event-stream", exchange.getResponseHeaders().getFirst("Content-Type"));
+
+        registerTestTool("create_wall", "Create a wall", null);
+
+        String events = stream.toString(StandardCharsets.UTF_8.name());
+        assertTrue(events.startsWith("event: message\ndata: "));
+        assertTrue(events.contains("\"method\":\"notifications/tools/list_changed\""));
+    }
+
+    @Test
+    void testGetEventStreamWithoutSessionReturns400() throws Exception {
+        HttpExchange exchange = createExchange("GET", null, null, null);
+        exchange.getRequestHeaders().set("Accept", "text/event-stream");
+        captureResponseBody(exchange);
+
+        handler.handle(exchange);
+
+        verify(exchange).sendResponseHeaders(eq(400), anyLong());
+        verify(exchange).close();
+    }
+
+    @Test
+    void testDeleteClosesEventStream() throws Exception {
+        String sessionId = initializeSession();
+        HttpExchange sse = createExchange("GET", null, sessionId, null);
+        sse.getRequestHeaders().set("Accept", "text/event-stream");
+        captureResponseBody(sse);
+        handler.handle(sse);
+
+        handler.handle(createExchange("DELETE", null, sessionId, null));
+
+        verify(sse).close();
+    }
+
+    @Test
+    void testCloseDetachesFromRegistry() throws Exception {
+        String sessionId = initializeSession();
+        HttpExchange sse = createExchange("GET", null, sessionId, null);
+        sse.getRequestHeaders().set("Accept", "text/event-stream");
+        ByteArrayOutputStream stream = captureResponseBody(sse);
+        handler.handle(sse);
+
+        handler.close();
+        registerTestTool("create_wall", "Create a wall", null);
+
+        verify(sse).close();
+        assertEquals(0, stream.size());
+    }
+
     // === POST tools/call ===
 
     @Test
@@ -175,6 +310,222 @@ class McpRequestHandlerTest {
         assertTrue(response.contains("walls"));
     }
 
+    @Test
+    void testToolsCallRecordsPayloadAndQueueWait() throws Exception {
+        handler.close();
+        MetricsRegistry metrics = new MetricsRegistry();
+        commandRegistry.setMetrics(metrics);
+        handler = new McpRequestHandler(commandRegistry, mockAccessor);
+        commandRegistry.register("get_state", (req, acc) ->
+                Response.ok(Collections.singletonMap("walls", 5)));
+        String sessionId = initializeSession();
+
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"get_state\",\"arguments\":{}}}";
+        HttpExchange exchange = createPostExchange(body, sessionId, null);
+        ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+
+        QueueTiming.wrap(Runnable::run).execute(() -> {
+            try {
+                handler.handle(exchange);
+            } catch (java.io.IOException e) {
+                throw new AssertionError(e);
+            }
+        });
+
+        ToolMetrics toolMetrics = metrics.forAction("get_state");
+        assertEquals(1, toolMetrics.getCalls());
+        assertEquals(1, toolMetrics.getQueueWait().getCount());
+        assertEquals(body.length(), toolMetrics.getRequestBytes().snapshot().getMax());
+        assertEquals(responseBody.size(), toolMetrics.getResponseBytes().snapshot().getMax());
+    }
+
+    @Test
+    void testToolsCallRoutedToSessionHome(@TempDir Path dir) throws Exception {
+        handler.close();
+        HomeRegistry homes = new HomeRegistry(mockAccessor, dir, 2, 60_000, 100);
+        handler = new McpRequestHandler(commandRegistry, homes, null, null, null);
+        commandRegistry.register("which_home", (req, acc) -> Response.ok(
+                Collections.singletonMap("home", acc == mockAccessor ? "default-home" : "own-home")));
+        try {
+            String first = initializeSession();
+            String second = initializeSession();
+            homes.attach(second, homes.createHome("a"));
+
+            assertTrue(callTool(first, "which_home").contains("default-home"));
+            assertTrue(callTool(second, "which_home").contains("own-home"));
+
+            handler.handle(createExchange("DELETE", null, second, null));
+            assertEquals(HomeRegistry.DEFAULT_HOME_ID, homes.getHomeId(second),
+                    "Removed session is detached from its home");
+        } finally {
+            homes.close();
+        }
+    }
+
+    @Test
+    void testTracedToolsCallWritesSpans(@TempDir Path dir) throws Exception {
+        handler.close();
+        Path traceFile = dir.resolve("trace.jsonl");
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, null,
+                new Tracer(1.0, traceFile, 1 << 20, 2));
+        commandRegistry.register("get_state", (req, acc) ->
+                Response.ok(Collections.singletonMap("walls", 5)));
+        String sessionId = initializeSession();
+
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"get_state\",\"arguments\":{}}}";
+        HttpExchange exchange = createPostExchange(body, sessionId, null);
+        captureResponseBody(exchange);
+        handler.handle(exchange);
+        handler.close(); // flushes the trace writer
+
+        String traceId = exchange.getResponseHeaders().getFirst("X-Trace-Id");
+        assertNotNull(traceId);
+        String line = Files.readAllLines(traceFile, StandardCharsets.UTF_8).stream()
+                .filter(l -> l.contains(traceId)).findFirst().orElseThrow(AssertionError::new);
+        for (String span : new String[]{"parse", "session", "dispatch", "execute", "serialize", "write"}) {
+            assertTrue(line.contains("\"" + span + "\""), "Missing span " + span + ": " + line);
+        }
+        assertTrue(line.contains("\"tool\":\"get_state\""));
+        assertTrue(line.contains("\"outcome\":\"ok\""), line);
+    }
+
+    @Test
+    void testCaptureRecordsPostBodies(@TempDir Path dir) throws Exception {
+        handler.close();
+        Path captureFile = dir.resolve("capture.jsonl");
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, null, null,
+                new RequestCapture(captureFile, 1 << 20, 2));
+        commandRegistry.register("get_state", (req, acc) ->
+                Response.ok(Collections.singletonMap("walls", 5)));
+        String sessionId = initializeSession();
+
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"get_state\",\"arguments\":{}}}";
+        HttpExchange exchange = createPostExchange(body, sessionId, null);
+        captureResponseBody(exchange);
+        when(exchange.getResponseCode()).thenReturn(200);
+        handler.handle(exchange);
+        handler.close();
+
+        List<String> lines = Files.readAllLines(captureFile, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("\"newSession\":\"" + sessionId + "\""), lines.get(0));
+        assertTrue(lines.get(0).contains("initialize"));
+        String call = lines.get(1);
+        assertTrue(call.contains("\"session\":\"" + sessionId + "\""), call);
+        assertTrue(call.contains("\"status\":200"), call);
+        assertTrue(call.contains("tools/call"), call);
+    }
+
+    @Test
+    void testSessionsSectionRegisteredWhileOpen() throws Exception {
+        handler.close();
+        MetricsRegistry metrics = new MetricsRegistry();
+        commandRegistry.setMetrics(metrics);
+        handler = new McpRequestHandler(commandRegistry, mockAccessor);
+        initializeSession();
+
+        assertEquals(1, metrics.getSections().get("sessions").get("active"));
+
+        handler.close();
+        assertFalse(metrics.getSections().containsKey("sessions"));
+    }
+
+    @Test
+    void testToolsCallRejectedByRateLimitReturnsRetryHint() throws Exception {
+        handler.close();
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, new RateLimiter(
+                new PluginConfig.RateLimit(0, 0, 0), new PluginConfig.RateLimit(60, 1, 1), () -> 0L));
+        registerHeavyTool("render_photo");
+        String sessionId = initializeSession();
+
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"render_photo\",\"arguments\":{}}}";
+        HttpExchange first = createPostExchange(body, sessionId, null);
+        ByteArrayOutputStream firstBody = captureResponseBody(first);
+        handler.handle(first);
+        assertTrue(firstBody.toString(StandardCharsets.UTF_8.name()).contains("\"isError\":false"));
+
+        HttpExchange second = createPostExchange(body, sessionId, null);
+        ByteArrayOutputStream secondBody = captureResponseBody(second);
+        handler.handle(second);
+
+        verify(second).sendResponseHeaders(eq(200), anyLong());
+        String response = secondBody.toString(StandardCharsets.UTF_8.name());
+        assertTrue(response.contains("\"code\":" + JsonRpcProtocol.RATE_LIMITED));
+        assertTrue(response.contains("\"retryAfterMs\":1000"));
+        assertTrue(response.contains("\"costClass\":\"heavy\""));
+        assertEquals("1", second.getResponseHeaders().getFirst("Retry-After"));
+    }
+
+    @Test
+    void testRateLimitIsPerSession() throws Exception {
+        handler.close();
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, new RateLimiter(
+                new PluginConfig.RateLimit(0, 0, 0), new PluginConfig.RateLimit(60, 1, 1), () -> 0L));
+        registerHeavyTool("render_photo");
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"render_photo\",\"arguments\":{}}}";
+
+        for (int i = 0; i < 2; i++) {
+            String sessionId = initializeSession();
+            HttpExchange exchange = createPostExchange(body, sessionId, null);
+            ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+            handler.handle(exchange);
+            assertTrue(responseBody.toString(StandardCharsets.UTF_8.name()).contains("\"isError\":false"),
+                    "First heavy call of each session should pass");
+        }
+    }
+
+    @Test
+    void testBatchWithHeavyCommandUsesHeavyQuota() throws Exception {
+        handler.close();
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, new RateLimiter(
+                new PluginConfig.RateLimit(0, 0, 0), new PluginConfig.RateLimit(60, 1, 1), () -> 0L));
+        registerHeavyTool("render_photo");
+        commandRegistry.register("batch_commands", new BatchCommandsHandler(commandRegistry, null));
+        String sessionId = initializeSession();
+
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"batch_commands\",\"arguments\":"
+                + "{\"commands\":[{\"action\":\"ping\"},{\"action\":\"render_photo\"}]}}}";
+        HttpExchange first = createPostExchange(body, sessionId, null);
+        ByteArrayOutputStream firstBody = captureResponseBody(first);
+        handler.handle(first);
+        assertTrue(firstBody.toString(StandardCharsets.UTF_8.name()).contains("\"isError\":false"));
+
+        String renderBody = "{\"jsonrpc\":\"2.0\",\"id\":4,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"render_photo\",\"arguments\":{}}}";
+        HttpExchange second = createPostExchange(renderBody, sessionId, null);
+        ByteArrayOutputStream secondBody = captureResponseBody(second);
+        handler.handle(second);
+
+        String response = secondBody.toString(StandardCharsets.UTF_8.name());
+        assertTrue(response.contains("\"code\":" + JsonRpcProtocol.RATE_LIMITED),
+                "Batch with render_photo should have used up the heavy budget");
+        assertTrue(response.contains("\"costClass\":\"heavy\""));
+    }
+
+    @Test
+    void testLightToolsNotLimitedByHeavyQuota() throws Exception {
+        handler.close();
+        handler = new McpRequestHandler(commandRegistry, mockAccessor, new RateLimiter(
+                new PluginConfig.RateLimit(0, 0, 0), new PluginConfig.RateLimit(60, 1, 1), () -> 0L));
+        registerTestTool("get_state", "State", null);
+        String sessionId = initializeSession();
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":3,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"get_state\",\"arguments\":{}}}";
+
+        for (int i = 0; i < 5; i++) {
+            HttpExchange exchange = createPostExchange(body, sessionId, null);
+            ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+            handler.handle(exchange);
+            assertTrue(responseBody.toString(StandardCharsets.UTF_8.name()).contains("\"isError\":false"));
+        }
+    }
+
     @Test
     void testToolsCallUnknownTool() throws Exception {
         String sessionId = initializeSession();
@@ -566,6 +917,26 @@ class McpRequestHandlerTest {
         return exchange.getResponseHeaders().getFirst("Mcp-Session-Id");
     }
 
+    /**
+     * Performs tools/list and returns the ETag response header.
+     */
+    private String callTool(String sessionId, String toolName) throws Exception {
+        String body = "{\"jsonrpc\":\"2.0\",\"id\":7,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"" + toolName + "\",\"arguments\":{}}}";
+        HttpExchange exchange = createPostExchange(body, sessionId, null);
+        ByteArrayOutputStream responseBody = captureResponseBody(exchange);
+        handler.handle(exchange);
+        return responseBody.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private String fetchToolsListEtag(String sessionId) throws Exception {
+        HttpExchange exchange = createPostExchange(
+                "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/list\"}", sessionId, null);
+        captureResponseBody(exchange);
+        handler.handle(exchange);
+        return exchange.getResponseHeaders().getFirst("ETag");
+    }
+
     /**
      * Creates a mock HttpExchange for POST requests.
      */
@@ -652,4 +1023,30 @@ class McpRequestHandlerTest {
 
         commandRegistry.register(action, new TestDescriptorHandler());
     }
+
+    private void registerHeavyTool(String action) {
+        class HeavyHandler implements CommandHandler, CommandDescriptor {
+            @Override
+            public Response execute(Request request, HomeAccessor accessor) {
+                return Response.ok(Collections.singletonMap("status", "done"));
+            }
+
+            @Override
+            public CostClass getCostClass() {
+                return CostClass.HEAVY;
+            }
+
+            @Override
+            public String getDescription() {
+                return "Heavy test tool";
+            }
+
+            @Override
+            public Map<String, Object> getSchema() {
+                return Collections.singletonMap("type", "object");
+            }
+        }
+
+        commandRegistry.register(action, new HeavyHandler());
+    }
 }
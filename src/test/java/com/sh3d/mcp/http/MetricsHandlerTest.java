@@ -0,0 +1,73 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.metrics.MetricsRegistry;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsHandlerTest {
+
+    private HttpServer server;
+    private MetricsRegistry metrics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metrics = new MetricsRegistry();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/metrics", new MetricsHandler(metrics));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    void testGetReturnsPrometheusText() throws Exception {
+        metrics.forAction("get_state").recordCall(0, 1_000_000, false);
+
+        HttpURLConnection conn = open("GET");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals(MetricsHandler.CONTENT_TYPE, conn.getHeaderField("Content-Type"));
+        try (InputStream in = conn.getInputStream()) {
+            String body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(body.contains("sh3d_mcp_tool_calls_total{tool=\"get_state\"} 1"));
+        }
+    }
+
+    @Test
+    void testPostReturns405() throws Exception {
+        assertEquals(405, open("POST").getResponseCode());
+    }
+
+    @Test
+    void testForeignOriginReturns403() throws Exception {
+        // HttpURLConnection drops the restricted Origin header, so use a raw socket
+        try (Socket socket = new Socket("127.0.0.1", server.getAddress().getPort())) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(("GET /metrics HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Origin: http://evil.example\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            String response = new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII);
+            assertTrue(response.startsWith("HTTP/1.1 403"), response);
+        }
+    }
+
+    private HttpURLConnection open(String method) throws Exception {
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/metrics");
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        return conn;
+    }
+}
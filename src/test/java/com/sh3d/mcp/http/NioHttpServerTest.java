@@ -0,0 +1,387 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.protocol.Response;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class NioHttpServerTest {
+
+    private NioHttpServer server;
+    private ExecutorService executor;
+    private McpRequestHandler mcpHandler;
+
+    @AfterEach
+    void tearDown() {
+        if (mcpHandler != null) {
+            mcpHandler.close();
+        }
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testKeepAliveReusesConnection() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            for (int i = 0; i < 3; i++) {
+                send(socket, "POST /echo HTTP/1.1\r\nHost: x\r\nContent-Length: 5\r\n\r\nhello");
+                HttpResponse response = readResponse(socket.getInputStream());
+                assertEquals(200, response.status);
+                assertEquals("hello", response.body);
+            }
+        }
+    }
+
+    @Test
+    void testPipelinedRequests() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\na"
+                    + "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\nb");
+            assertEquals("a", readResponse(socket.getInputStream()).body);
+            assertEquals("b", readResponse(socket.getInputStream()).body);
+        }
+    }
+
+    @Test
+    void testConnectionCloseHonored() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nConnection: close\r\nContent-Length: 2\r\n\r\nhi");
+            HttpResponse response = readResponse(socket.getInputStream());
+            assertEquals("close", response.headers.get("connection"));
+            assertEquals(-1, socket.getInputStream().read(), "Server should close the connection");
+        }
+    }
+
+    @Test
+    void testChunkedResponse() throws Exception {
+        start(30_000, 16, "/stream", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            os.write("part1".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            os.write("part2".getBytes(StandardCharsets.UTF_8));
+            os.close();
+            exchange.close();
+        });
+        try (Socket socket = connect()) {
+            send(socket, "GET /stream HTTP/1.1\r\n\r\n");
+            HttpResponse response = readResponse(socket.getInputStream());
+            assertEquals("chunked", response.headers.get("transfer-encoding"));
+            assertEquals("part1part2", response.body);
+
+            // Connection is reusable after the terminating chunk
+            send(socket, "GET /stream HTTP/1.1\r\n\r\n");
+            assertEquals("part1part2", readResponse(socket.getInputStream()).body);
+        }
+    }
+
+    @Test
+    void testResponseLargerThanPendingLimit() throws Exception {
+        byte[] payload = new byte[(int) (NioHttpServer.MAX_PENDING_WRITE_BYTES * 2 + 123)];
+        Arrays.fill(payload, (byte) 'x');
+        start(30_000, 16, "/big", exchange -> {
+            boolean chunked = exchange.getRequestURI().getQuery() != null;
+            exchange.sendResponseHeaders(200, chunked ? 0 : payload.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(payload);
+            }
+            exchange.close();
+        });
+        try (Socket socket = connect()) {
+            send(socket, "GET /big HTTP/1.1\r\n\r\n");
+            HttpResponse fixed = readResponse(socket.getInputStream());
+            assertEquals(200, fixed.status);
+            assertEquals(payload.length, fixed.body.length());
+
+            send(socket, "GET /big?chunked HTTP/1.1\r\n\r\n");
+            HttpResponse chunked = readResponse(socket.getInputStream());
+            assertEquals("chunked", chunked.headers.get("transfer-encoding"));
+            assertEquals(payload.length, chunked.body.length());
+        }
+    }
+
+    @Test
+    void testStalledClientBacklogRejected() throws Exception {
+        CompletableFuture<IOException> failure = new CompletableFuture<>();
+        server = new NioHttpServer(30_000, 16, 16, 1024, 200);
+        server.bind(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(2);
+        server.setExecutor(executor);
+        server.createContext("/events", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream os = exchange.getResponseBody();
+            byte[] event = new byte[1024 * 1024];
+            try {
+                for (int i = 0; i < 100; i++) {
+                    os.write(event);
+                    os.flush();
+                    Thread.sleep(20);
+                }
+                failure.complete(null);
+            } catch (IOException e) {
+                failure.complete(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+        try (Socket socket = connect()) {
+            send(socket, "GET /events HTTP/1.1\r\n\r\n");
+            // Never read: the backlog grows past the limit and the socket stops draining
+            IOException e = failure.get(30, TimeUnit.SECONDS);
+            assertNotNull(e, "Writes to a client that stopped reading should fail");
+            assertTrue(e.getMessage().contains("not reading"));
+        }
+    }
+
+    @Test
+    void testFiltersRunAroundHandler() throws Exception {
+        HttpContext context = startEcho(30_000, 16);
+        context.getFilters().add(new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (exchange.getRequestHeaders().containsKey("X-Deny")) {
+                    exchange.sendResponseHeaders(403, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("X-Filtered", "yes");
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "test";
+            }
+        });
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nContent-Length: 5\r\n\r\nhello");
+            HttpResponse response = readResponse(socket.getInputStream());
+            assertEquals(200, response.status);
+            assertEquals("yes", response.headers.get("x-filtered"));
+            assertEquals("hello", response.body);
+
+            send(socket, "POST /echo HTTP/1.1\r\nX-Deny: 1\r\nContent-Length: 5\r\n\r\nhello");
+            assertEquals(403, readResponse(socket.getInputStream()).status);
+        }
+    }
+
+    @Test
+    void testUnknownContextReturns404() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            send(socket, "GET /other HTTP/1.1\r\n\r\n");
+            assertEquals(404, readResponse(socket.getInputStream()).status);
+        }
+    }
+
+    @Test
+    void testOversizedBodyReturns413() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nContent-Length: 2048\r\n\r\n");
+            assertEquals(413, readResponse(socket.getInputStream()).status);
+        }
+    }
+
+    @Test
+    void testChunkedRequestBodyReturns411() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            send(socket, "POST /echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+            assertEquals(411, readResponse(socket.getInputStream()).status);
+        }
+    }
+
+    @Test
+    void testIdleConnectionClosed() throws Exception {
+        startEcho(200, 16);
+        try (Socket socket = connect()) {
+            socket.setSoTimeout(5000);
+            send(socket, "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\nx");
+            readResponse(socket.getInputStream());
+            assertEquals(-1, socket.getInputStream().read(), "Idle connection should be closed");
+        }
+    }
+
+    @Test
+    void testMaxIdleConnectionsEnforced() throws Exception {
+        startEcho(30_000, 1);
+        try (Socket first = connect()) {
+            first.setSoTimeout(5000);
+            send(first, "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\nx");
+            readResponse(first.getInputStream());
+            Thread.sleep(20);
+            try (Socket second = connect()) {
+                send(second, "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\ny");
+                readResponse(second.getInputStream());
+
+                assertEquals(-1, first.getInputStream().read(),
+                        "Longest-idle connection should be closed");
+            }
+        }
+    }
+
+    @Test
+    void testMcpHandlerOverSingleConnection() throws Exception {
+        CommandRegistry registry = new CommandRegistry();
+        registry.register("ping", (req, acc) -> Response.ok(Collections.singletonMap("pong", true)));
+        mcpHandler = new McpRequestHandler(registry, mock(HomeAccessor.class));
+        start(30_000, 16, "/mcp", mcpHandler);
+
+        try (Socket socket = connect()) {
+            String init = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}";
+            send(socket, post(init, null));
+            HttpResponse initResponse = readResponse(socket.getInputStream());
+            assertEquals(200, initResponse.status);
+            String sessionId = initResponse.headers.get("mcp-session-id");
+            assertNotNull(sessionId);
+
+            String call = "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\","
+                    + "\"params\":{\"name\":\"ping\",\"arguments\":{}}}";
+            send(socket, post(call, sessionId));
+            HttpResponse callResponse = readResponse(socket.getInputStream());
+            assertEquals(200, callResponse.status);
+            assertTrue(callResponse.body.contains("pong"));
+        }
+    }
+
+    @Test
+    void testStopClosesConnections() throws Exception {
+        startEcho(30_000, 16);
+        try (Socket socket = connect()) {
+            socket.setSoTimeout(5000);
+            send(socket, "POST /echo HTTP/1.1\r\nContent-Length: 1\r\n\r\nx");
+            readResponse(socket.getInputStream());
+
+            server.stop(0);
+            server = null;
+            assertEquals(-1, socket.getInputStream().read());
+        }
+    }
+
+    // === Helpers ===
+
+    private HttpContext startEcho(long idleTimeoutMs, int maxIdle) throws IOException {
+        return start(idleTimeoutMs, maxIdle, "/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+            exchange.close();
+        });
+    }
+
+    private HttpContext start(long idleTimeoutMs, int maxIdle, String path,
+                              com.sun.net.httpserver.HttpHandler handler) throws IOException {
+        server = new NioHttpServer(idleTimeoutMs, maxIdle, 16, 1024);
+        server.bind(new InetSocketAddress("127.0.0.1", 0), 0);
+        executor = Executors.newFixedThreadPool(2);
+        server.setExecutor(executor);
+        HttpContext context = server.createContext(path, handler);
+        server.start();
+        return context;
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket("127.0.0.1", server.getAddress().getPort());
+        socket.setSoTimeout(5000);
+        return socket;
+    }
+
+    private static String post(String json, String sessionId) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        return "POST /mcp HTTP/1.1\r\nContent-Type: application/json\r\n"
+                + (sessionId != null ? "Mcp-Session-Id: " + sessionId + "\r\n" : "")
+                + "Content-Length: " + body.length + "\r\n\r\n" + json;
+    }
+
+    private static void send(Socket socket, String raw) throws IOException {
+        socket.getOutputStream().write(raw.getBytes(StandardCharsets.UTF_8));
+        socket.getOutputStream().flush();
+    }
+
+    private static HttpResponse readResponse(InputStream in) throws IOException {
+        HttpResponse response = new HttpResponse();
+        String statusLine = readLine(in);
+        response.status = Integer.parseInt(statusLine.split(" ")[1]);
+        String line;
+        while (!(line = readLine(in)).isEmpty()) {
+            int colon = line.indexOf(':');
+            response.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                    line.substring(colon + 1).trim());
+        }
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if ("chunked".equals(response.headers.get("transfer-encoding"))) {
+            int size;
+            while ((size = Integer.parseInt(readLine(in), 16)) > 0) {
+                body.write(in.readNBytes(size));
+                readLine(in);
+            }
+            readLine(in);
+        } else {
+            String length = response.headers.get("content-length");
+            if (length != null) {
+                body.write(in.readNBytes(Integer.parseInt(length)));
+            }
+        }
+        response.body = body.toString(StandardCharsets.UTF_8.name());
+        return response;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                break;
+            }
+            if (c != '\r') {
+                sb.append((char) c);
+            }
+        }
+        if (c == -1 && sb.length() == 0) {
+            throw new IOException("Connection closed");
+        }
+        return sb.toString();
+    }
+
+    private static class HttpResponse {
+        int status;
+        final Map<String, String> headers = new LinkedHashMap<>();
+        String body;
+    }
+}
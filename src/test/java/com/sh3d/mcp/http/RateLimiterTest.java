@@ -0,0 +1,144 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.command.CostClass;
+import com.sh3d.mcp.config.PluginConfig;
+import com.sh3d.mcp.config.PluginConfig.RateLimit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+
+    private AtomicLong nanos;
+    private McpSession session;
+
+    @BeforeEach
+    void setUp() {
+        nanos = new AtomicLong(0);
+        session = new McpSession("s1", "2025-03-26");
+    }
+
+    @Test
+    void testBurstThenRejectWithRetryHint() {
+        RateLimiter limiter = limiter(new RateLimit(60, 2, 0));
+
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+
+        RateLimiter.Permit rejected = limiter.acquire(session, CostClass.HEAVY);
+        assertFalse(rejected.isGranted());
+        assertEquals(CostClass.HEAVY, rejected.getCostClass());
+        assertEquals(1000, rejected.getRetryAfterMs());
+        assertTrue(rejected.getReason().contains("Rate limit"));
+    }
+
+    @Test
+    void testTokensRefillOverTime() {
+        RateLimiter limiter = limiter(new RateLimit(60, 1, 0));
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+        assertFalse(limiter.acquire(session, CostClass.HEAVY).isGranted());
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        RateLimiter.Permit halfway = limiter.acquire(session, CostClass.HEAVY);
+        assertFalse(halfway.isGranted());
+        assertEquals(500, halfway.getRetryAfterMs());
+
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(500));
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+    }
+
+    @Test
+    void testInFlightLimitAndRelease() {
+        RateLimiter limiter = limiter(new RateLimit(0, 0, 1));
+
+        RateLimiter.Permit first = limiter.acquire(session, CostClass.HEAVY);
+        assertTrue(first.isGranted());
+
+        RateLimiter.Permit second = limiter.acquire(session, CostClass.HEAVY);
+        assertFalse(second.isGranted());
+        assertEquals(RateLimiter.IN_FLIGHT_RETRY_MS, second.getRetryAfterMs());
+        assertTrue(second.getReason().contains("concurrent"));
+
+        first.release();
+        assertTrue(limiter.acquire(session, CostClass.HEAVY).isGranted());
+    }
+
+    @Test
+    void testInFlightRejectionDoesNotConsumeToken() {
+        RateLimiter limiter = limiter(new RateLimit(60, 1, 1));
+
+        RateLimiter.Permit first = limiter.acquire(session, CostClass.HEAVY);
+        assertTrue(first.isGranted());
+        first.release();
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        RateLimiter.Permit second = limiter.acquire(session, CostClass.HEAVY);
+        assertTrue(second.isGranted());
+        assertFalse(limiter.acquire(session, CostClass.HEAVY).isGranted());
+        second.release();
+
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.acquire(session, CostClass.HEAVY).isGranted(),
+                "Token must still be available after an in-flight rejection");
+    }
+
+    @Test
+    void testRateRejectionReleasesInFlightSlot() {
+        RateLimiter limiter = limiter(new RateLimit(60, 1, 1));
+        limiter.acquire(session, CostClass.HEAVY).release();
+
+        assertFalse(limiter.acquire(session, CostClass.HEAVY).isGranted());
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertTrue(limiter.acquire(session, CostClass.HEAVY).isGranted());
+    }
+
+    @Test
+    void testCostClassesAreIndependent() {
+        RateLimiter limiter = new RateLimiter(new RateLimit(60, 1, 0), new RateLimit(60, 1, 0), nanos::get);
+
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+        assertFalse(limiter.acquire(session, CostClass.HEAVY).isGranted());
+        assertGranted(limiter.acquire(session, CostClass.LIGHT));
+    }
+
+    @Test
+    void testSessionsAreIndependent() {
+        RateLimiter limiter = limiter(new RateLimit(60, 1, 0));
+        McpSession other = new McpSession("s2", "2025-03-26");
+
+        assertGranted(limiter.acquire(session, CostClass.HEAVY));
+        assertGranted(limiter.acquire(other, CostClass.HEAVY));
+    }
+
+    @Test
+    void testZeroLimitsMeanUnlimited() {
+        RateLimiter limiter = limiter(new RateLimit(0, 0, 0));
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.acquire(session, CostClass.HEAVY).isGranted());
+        }
+    }
+
+    @Test
+    void testFromConfigDisabledReturnsNull() {
+        System.setProperty("sh3d.mcp.rateLimit.enabled", "false");
+        try {
+            assertNull(RateLimiter.fromConfig(PluginConfig.load()));
+        } finally {
+            System.clearProperty("sh3d.mcp.rateLimit.enabled");
+        }
+        assertNotNull(RateLimiter.fromConfig(PluginConfig.load()));
+    }
+
+    private RateLimiter limiter(RateLimit heavy) {
+        return new RateLimiter(new RateLimit(0, 0, 0), heavy, nanos::get);
+    }
+
+    private static void assertGranted(RateLimiter.Permit permit) {
+        assertTrue(permit.isGranted(), permit.getReason());
+        permit.release();
+    }
+}
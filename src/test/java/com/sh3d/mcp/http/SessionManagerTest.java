@@ -4,11 +4,17 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class SessionManagerTest {
 
+    private static final long TTL_MS = 30 * 60 * 1000;
+
     private SessionManager sessionManager;
 
     @BeforeEach
@@ -170,19 +176,114 @@ class SessionManagerTest {
     }
 
     @Test
-    void testExpiredSessionIsCleanedUpOnCreate() throws Exception {
-        McpSession old = sessionManager.createSession("2025-03-26");
-        assertEquals(1, sessionManager.size());
+    void testExpiredSessionIsCleanedUpBySweep() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession old = manager.createSession("2025-03-26");
+        assertEquals(1, manager.size());
+
+        now.addAndGet(TTL_MS + 1);
+        manager.createSession("2025-03-26");
+        // Handshakes no longer scan: the expired session stays until the sweep
+        assertEquals(2, manager.size());
+
+        assertEquals(1, manager.expireDue());
+        assertEquals(1, manager.size());
+        assertNull(manager.getSession(old.getSessionId()));
+    }
 
-        // Expire the old session
-        setLastAccessedAt(old, System.currentTimeMillis() - 31 * 60 * 1000);
+    @Test
+    void testSweepBeforeDeadlineExpiresNothing() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        manager.createSession("2025-03-26");
+
+        now.addAndGet(TTL_MS);
+        assertEquals(0, manager.expireDue());
+        assertEquals(1, manager.size());
+    }
 
-        // Creating a new session triggers cleanupExpired()
-        sessionManager.createSession("2025-03-26");
+    @Test
+    void testTouchedSessionIsRequeuedBySweep() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession session = manager.createSession("2025-03-26");
+
+        now.addAndGet(TTL_MS / 2);
+        assertNotNull(manager.getSession(session.getSessionId()));
+
+        // Original deadline passed, but the session was used since
+        now.addAndGet(TTL_MS / 2 + 1);
+        assertEquals(0, manager.expireDue());
+        assertEquals(1, manager.size());
+        assertEquals(1, manager.getMetrics().get("pendingExpiry"));
+
+        now.addAndGet(TTL_MS / 2);
+        assertEquals(1, manager.expireDue());
+        assertEquals(0, manager.size());
+    }
 
-        // Old expired session should be removed, only the new one remains
-        assertEquals(1, sessionManager.size());
-        assertNull(sessionManager.getSession(old.getSessionId()));
+    @Test
+    void testSweepIgnoresRemovedAndReplacedSessions() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession removed = manager.createSession("2025-03-26");
+        McpSession replaced = manager.createSession("2025-03-26");
+        manager.removeSession(removed.getSessionId());
+
+        now.addAndGet(TTL_MS / 2);
+        McpSession recreated = manager.createSessionWithId(replaced.getSessionId(), "2025-03-26");
+
+        now.addAndGet(TTL_MS / 2 + 1);
+        assertEquals(0, manager.expireDue(), "Stale deadlines must not expire the recreated session");
+        assertSame(recreated, manager.getSession(replaced.getSessionId()));
+    }
+
+    @Test
+    void testRemovalListenerNotifiedOnRemoveAndExpiry() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        List<String> removed = new ArrayList<>();
+        manager.setRemovalListener(removed::add);
+        McpSession a = manager.createSession("2025-03-26");
+        McpSession b = manager.createSession("2025-03-26");
+
+        manager.removeSession(a.getSessionId());
+        manager.removeSession(a.getSessionId());
+        now.addAndGet(TTL_MS + 1);
+        manager.expireDue();
+
+        assertEquals(List.of(a.getSessionId(), b.getSessionId()), removed);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMetrics() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession a = manager.createSession("2025-03-26");
+        manager.createSession("2025-03-26");
+        manager.removeSession(a.getSessionId());
+        manager.createSessionWithId(a.getSessionId(), "2025-03-26");
+        now.addAndGet(TTL_MS + 1);
+        manager.expireDue();
+
+        Map<String, Object> metrics = manager.getMetrics();
+        assertEquals(0, metrics.get("active"));
+        assertEquals(2L, metrics.get("created"));
+        assertEquals(1L, metrics.get("recreated"));
+        assertEquals(2L, metrics.get("expired"));
+        assertEquals(1L, metrics.get("removed"));
+        assertEquals(2, metrics.get("knownExpired"));
+        assertEquals(0, metrics.get("pendingExpiry"));
+    }
+
+    @Test
+    void testStartExpiryTimerIsIdempotent() {
+        sessionManager.startExpiryTimer();
+        sessionManager.startExpiryTimer();
+        sessionManager.close();
+        sessionManager.close();
     }
 
     // === isKnownExpired ===
@@ -226,18 +327,17 @@ class SessionManagerTest {
     }
 
     @Test
-    void testExpiredSessionBecomesKnownExpiredOnCleanup() throws Exception {
-        McpSession session = sessionManager.createSession("2025-03-26");
+    void testExpiredSessionBecomesKnownExpiredOnSweep() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession session = manager.createSession("2025-03-26");
         String id = session.getSessionId();
 
-        // Expire the session
-        setLastAccessedAt(session, System.currentTimeMillis() - 31 * 60 * 1000);
-
-        // Creating a new session triggers cleanupExpired() which remembers expired IDs
-        sessionManager.createSession("2025-03-26");
+        now.addAndGet(TTL_MS + 1);
+        manager.expireDue();
 
-        assertTrue(sessionManager.isKnownExpired(id),
-                "Session expired during cleanup should be tracked as known-expired");
+        assertTrue(manager.isKnownExpired(id),
+                "Session expired during sweep should be tracked as known-expired");
     }
 
     @Test
@@ -276,19 +376,19 @@ class SessionManagerTest {
     }
 
     @Test
-    void testNonExpiredSessionSurvivesCleanup() throws Exception {
-        McpSession fresh = sessionManager.createSession("2025-03-26");
-        McpSession old = sessionManager.createSession("2025-03-26");
-
-        // Expire only the old session
-        setLastAccessedAt(old, System.currentTimeMillis() - 31 * 60 * 1000);
+    void testNonExpiredSessionSurvivesSweep() {
+        AtomicLong now = new AtomicLong(1_000_000);
+        SessionManager manager = new SessionManager(now::get, TTL_MS);
+        McpSession old = manager.createSession("2025-03-26");
+        now.addAndGet(TTL_MS / 2);
+        McpSession fresh = manager.createSession("2025-03-26");
 
-        // Trigger cleanup
-        sessionManager.createSession("2025-03-26");
+        now.addAndGet(TTL_MS / 2 + 1);
+        manager.expireDue();
 
         // Fresh session still accessible, old is gone
-        assertNotNull(sessionManager.getSession(fresh.getSessionId()));
-        assertNull(sessionManager.getSession(old.getSessionId()));
+        assertNotNull(manager.getSession(fresh.getSessionId()));
+        assertNull(manager.getSession(old.getSessionId()));
     }
 
     /**
@@ -0,0 +1,114 @@
+package com.sh3d.mcp.http;
+
+import com.sh3d.mcp.bridge.HomeAccessor;
+import com.sh3d.mcp.command.CommandDescriptor;
+import com.sh3d.mcp.command.CommandHandler;
+import com.sh3d.mcp.command.CommandRegistry;
+import com.sh3d.mcp.protocol.JsonUtil;
+import com.sh3d.mcp.protocol.Request;
+import com.sh3d.mcp.protocol.Response;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ToolsListCacheTest {
+
+    private CommandRegistry registry;
+    private ToolsListCache cache;
+
+    @BeforeEach
+    void setUp() {
+        registry = new CommandRegistry();
+        cache = new ToolsListCache(registry);
+    }
+
+    @Test
+    void testEntryReusedWhileRegistryUnchanged() {
+        registry.register("create_wall", new DescribedHandler("Create a wall", null));
+
+        ToolsListCache.Entry first = cache.get();
+        ToolsListCache.Entry second = cache.get();
+
+        assertSame(first, second);
+        assertSame(first.getResultJson(), second.getResultJson());
+    }
+
+    @Test
+    void testEntryRebuiltAfterRegister() {
+        registry.register("create_wall", new DescribedHandler("Create a wall", null));
+        ToolsListCache.Entry first = cache.get();
+
+        registry.register("delete_wall", new DescribedHandler("Delete a wall", null));
+        ToolsListCache.Entry second = cache.get();
+
+        assertNotSame(first, second);
+        assertEquals(registry.getVersion(), second.getVersion());
+        assertEquals(2, second.getToolCount());
+        assertNotEquals(first.getEtag(), second.getEtag());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSkipsHandlersWithoutDescriptorAndUsesToolName() {
+        registry.register("ping", (req, acc) -> Response.ok(Collections.emptyMap()));
+        registry.register("create_walls", new DescribedHandler("Create a room", "create_room"));
+
+        ToolsListCache.Entry entry = cache.get();
+        Map<String, Object> result = (Map<String, Object>) JsonUtil.parse(
+                new String(entry.getResultJson(), StandardCharsets.UTF_8));
+        List<Object> tools = (List<Object>) result.get("tools");
+
+        assertEquals(1, tools.size());
+        Map<String, Object> tool = (Map<String, Object>) tools.get(0);
+        assertEquals("create_room", tool.get("name"));
+        assertEquals("Create a room", tool.get("description"));
+        assertNotNull(tool.get("inputSchema"));
+    }
+
+    @Test
+    void testEmptyRegistry() {
+        ToolsListCache.Entry entry = cache.get();
+        assertEquals(0, entry.getToolCount());
+        assertEquals("{\"tools\":[]}", new String(entry.getResultJson(), StandardCharsets.UTF_8));
+    }
+
+    private static class DescribedHandler implements CommandHandler, CommandDescriptor {
+        private final String description;
+        private final String toolName;
+
+        DescribedHandler(String description, String toolName) {
+            this.description = description;
+            this.toolName = toolName;
+        }
+
+        @Override
+        public Response execute(Request request, HomeAccessor accessor) {
+            return Response.ok(Collections.emptyMap());
+        }
+
+        @Override
+        public String getToolName() {
+            return toolName;
+        }
+
+        @Override
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public Map<String, Object> getSchema() {
+            Map<String, Object> schema = new LinkedHashMap<>();
+            schema.put("type", "object");
+            schema.put("properties", new LinkedHashMap<>());
+            return schema;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.sh3d.mcp.logging;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLogHandlerTest {
+
+    private AsyncLogHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) {
+            handler.close();
+        }
+    }
+
+    @Test
+    void testRecordsWrittenInOrderOnWriterThread() throws Exception {
+        RecordingHandler delegate = new RecordingHandler();
+        handler = new AsyncLogHandler(delegate, 16, AsyncLogHandler.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 5; i++) {
+            handler.publish(new LogRecord(Level.INFO, "msg" + i));
+        }
+        handler.close();
+
+        assertEquals(5, delegate.records.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("msg" + i, delegate.records.get(i).getMessage());
+        }
+        assertEquals("sh3d-mcp-log-writer", delegate.threadName);
+        assertTrue(delegate.flushed > 0);
+        assertTrue(delegate.closed, "Delegate closed with the handler");
+        assertEquals(5, handler.getWritten());
+    }
+
+    @Test
+    void testCallerInferredOnPublishingThread() {
+        RecordingHandler delegate = new RecordingHandler();
+        handler = new AsyncLogHandler(delegate, 16, AsyncLogHandler.OverflowPolicy.DROP);
+
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        logger.addHandler(handler);
+        logger.info("from test");
+        handler.close();
+
+        LogRecord record = delegate.records.get(0);
+        assertEquals(AsyncLogHandlerTest.class.getName(), record.getSourceClassName());
+        assertEquals("testCallerInferredOnPublishingThread", record.getSourceMethodName());
+    }
+
+    @Test
+    void testLevelFilteredBeforeQueueing() {
+        RecordingHandler delegate = new RecordingHandler();
+        handler = new AsyncLogHandler(delegate, 16, AsyncLogHandler.OverflowPolicy.DROP);
+        handler.setLevel(Level.WARNING);
+
+        handler.publish(new LogRecord(Level.INFO, "skipped"));
+        handler.publish(new LogRecord(Level.SEVERE, "kept"));
+        handler.close();
+
+        assertEquals(1, delegate.records.size());
+        assertEquals("kept", delegate.records.get(0).getMessage());
+        assertEquals(1L, handler.getCounters().get("published"));
+    }
+
+    @Test
+    void testDropPolicyCountsAndReportsDrops() throws Exception {
+        BlockingHandler delegate = new BlockingHandler();
+        handler = new AsyncLogHandler(delegate, 2, AsyncLogHandler.OverflowPolicy.DROP);
+
+        handler.publish(new LogRecord(Level.INFO, "first")); // taken by the writer, which then blocks
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "q1"));
+        handler.publish(new LogRecord(Level.INFO, "q2"));
+        handler.publish(new LogRecord(Level.INFO, "lost1"));
+        handler.publish(new LogRecord(Level.INFO, "lost2"));
+
+        assertEquals(2, handler.getDropped());
+        delegate.release.countDown();
+        handler.close();
+
+        List<LogRecord> records = delegate.records;
+        assertEquals(4, records.size());
+        assertEquals("q2", records.get(2).getMessage());
+        LogRecord warning = records.get(3);
+        assertEquals(Level.WARNING, warning.getLevel());
+        assertTrue(warning.getMessage().contains("2 record(s) dropped"), warning.getMessage());
+    }
+
+    @Test
+    void testBlockPolicyWaitsForSpace() throws Exception {
+        BlockingHandler delegate = new BlockingHandler();
+        handler = new AsyncLogHandler(delegate, 2, AsyncLogHandler.OverflowPolicy.BLOCK);
+
+        handler.publish(new LogRecord(Level.INFO, "first"));
+        assertTrue(delegate.entered.await(5, TimeUnit.SECONDS));
+        handler.publish(new LogRecord(Level.INFO, "q1"));
+        handler.publish(new LogRecord(Level.INFO, "q2"));
+
+        CountDownLatch published = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            handler.publish(new LogRecord(Level.INFO, "waited"));
+            published.countDown();
+        });
+        producer.start();
+        assertFalse(published.await(100, TimeUnit.MILLISECONDS), "Producer waits while full");
+
+        delegate.release.countDown();
+        assertTrue(published.await(5, TimeUnit.SECONDS));
+        producer.join();
+        handler.close();
+
+        assertEquals(0, handler.getDropped());
+        assertEquals(4, delegate.records.size());
+        assertEquals("waited", delegate.records.get(3).getMessage());
+        assertEquals(1L, handler.getCounters().get("blocked"));
+    }
+
+    @Test
+    void testPublishAfterCloseIgnored() {
+        RecordingHandler delegate = new RecordingHandler();
+        handler = new AsyncLogHandler(delegate, 4, AsyncLogHandler.OverflowPolicy.DROP);
+        handler.close();
+
+        handler.publish(new LogRecord(Level.INFO, "late"));
+        assertTrue(delegate.records.isEmpty());
+    }
+
+    @Test
+    void testCounters() {
+        handler = new AsyncLogHandler(new RecordingHandler(), 100, AsyncLogHandler.OverflowPolicy.BLOCK);
+        Map<String, Object> counters = handler.getCounters();
+        assertEquals("block", counters.get("policy"));
+        assertEquals(128, counters.get("capacity"));
+        assertEquals(0L, counters.get("dropped"));
+    }
+
+    @Test
+    void testParsePolicy() {
+        assertEquals(AsyncLogHandler.OverflowPolicy.DROP, AsyncLogHandler.OverflowPolicy.parse("drop"));
+        assertEquals(AsyncLogHandler.OverflowPolicy.BLOCK, AsyncLogHandler.OverflowPolicy.parse(" BLOCK "));
+        assertThrows(IllegalArgumentException.class, () -> AsyncLogHandler.OverflowPolicy.parse("wait"));
+    }
+
+    private static class RecordingHandler extends Handler {
+        final List<LogRecord> records = new CopyOnWriteArrayList<>();
+        volatile String threadName;
+        volatile int flushed;
+        volatile boolean closed;
+
+        @Override
+        public void publish(LogRecord record) {
+            threadName = Thread.currentThread().getName();
+            records.add(record);
+        }
+
+        @Override
+        public void flush() {
+            flushed++;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /** Blocks on the first record until released, simulating a stalled disk. */
+    private static class BlockingHandler extends RecordingHandler {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void publish(LogRecord record) {
+            super.publish(record);
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.sh3d.mcp.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LogRingBufferTest {
+
+    @Test
+    void testCapacityRoundedUpToPowerOfTwo() {
+        assertEquals(2, new LogRingBuffer<String>(1).capacity());
+        assertEquals(8, new LogRingBuffer<String>(5).capacity());
+        assertEquals(8, new LogRingBuffer<String>(8).capacity());
+        assertThrows(IllegalArgumentException.class, () -> new LogRingBuffer<String>(0));
+    }
+
+    @Test
+    void testFifoAndFull() {
+        LogRingBuffer<String> buffer = new LogRingBuffer<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer("r" + i));
+        }
+        assertFalse(buffer.offer("overflow"));
+        assertEquals(4, buffer.size());
+
+        assertEquals("r0", buffer.poll());
+        assertTrue(buffer.offer("r4"), "Freed slot is reusable");
+        assertEquals("r1", buffer.poll());
+        assertEquals("r2", buffer.poll());
+        assertEquals("r3", buffer.poll());
+        assertEquals("r4", buffer.poll());
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    void testSmallestBufferNeverOverwrites() {
+        LogRingBuffer<String> buffer = new LogRingBuffer<>(1);
+        assertTrue(buffer.offer("a"));
+        assertEquals("a", buffer.poll());
+        assertTrue(buffer.offer("b"));
+        assertTrue(buffer.offer("c"));
+        assertFalse(buffer.offer("d"));
+        assertEquals("b", buffer.poll());
+        assertEquals("c", buffer.poll());
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void testWrapsAroundManyTimes() {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(2);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(buffer.offer(i));
+            assertEquals(i, buffer.poll());
+        }
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothing() throws Exception {
+        LogRingBuffer<Integer> buffer = new LogRingBuffer<>(64);
+        int producers = 4;
+        int perProducer = 10_000;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!buffer.offer(base + i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        Set<Integer> seen = new HashSet<>();
+        int[] lastPerProducer = new int[producers];
+        java.util.Arrays.fill(lastPerProducer, -1);
+        while (seen.size() < producers * perProducer) {
+            Integer value = buffer.poll();
+            if (value == null) {
+                Thread.yield();
+                continue;
+            }
+            assertTrue(seen.add(value), "Duplicate " + value);
+            int producer = value / perProducer;
+            assertTrue(value > lastPerProducer[producer], "Per-producer order kept");
+            lastPerProducer[producer] = value;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(buffer.poll());
+    }
+}
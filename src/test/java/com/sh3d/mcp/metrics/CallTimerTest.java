@@ -0,0 +1,45 @@
+package com.sh3d.mcp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallTimerTest {
+
+    @Test
+    void testRecordWithoutTimerIsNoOp() {
+        CallTimer.recordEdtWait(1000);
+        CallTimer timer = CallTimer.start();
+        assertEquals(0, timer.stop());
+    }
+
+    @Test
+    void testAccumulatesAndNests() {
+        CallTimer outer = CallTimer.start();
+        CallTimer.recordEdtWait(100);
+        CallTimer inner = CallTimer.start();
+        CallTimer.recordEdtWait(50);
+        assertEquals(50, inner.stop());
+        CallTimer.recordEdtWait(10);
+        assertEquals(160, outer.stop());
+
+        // No active timer after the outermost stop
+        CallTimer.recordEdtWait(1000);
+        assertEquals(0, CallTimer.start().stop());
+    }
+
+    @Test
+    void testCurrentActionIsInnermostNamedCall() {
+        assertNull(CallTimer.currentAction());
+        CallTimer outer = CallTimer.start("batch_commands");
+        CallTimer inner = CallTimer.start("create_walls");
+        assertEquals("create_walls", CallTimer.currentAction());
+        CallTimer anonymous = CallTimer.start();
+        assertEquals("create_walls", CallTimer.currentAction());
+        anonymous.stop();
+        inner.stop();
+        assertEquals("batch_commands", CallTimer.currentAction());
+        outer.stop();
+        assertNull(CallTimer.currentAction());
+    }
+}
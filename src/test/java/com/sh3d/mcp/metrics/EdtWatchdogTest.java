@@ -0,0 +1,121 @@
+package com.sh3d.mcp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdtWatchdogTest {
+
+    @Test
+    void testFastTaskNotRecordedAsStall() {
+        EdtWatchdog watchdog = new EdtWatchdog(1000, 4);
+        watchdog.end(watchdog.begin("get_state"));
+
+        assertEquals(1L, watchdog.getCounters().get("tasks"));
+        assertEquals(0L, watchdog.getCounters().get("stalls"));
+        assertTrue(watchdog.getRecentStalls().isEmpty());
+    }
+
+    @Test
+    void testSlowTaskRecordedWithActionAndStack() throws Exception {
+        EdtWatchdog watchdog = new EdtWatchdog(20, 4);
+        EdtWatchdog.Task task = watchdog.begin("load_home");
+        Thread.sleep(40);
+        watchdog.check(); // monitor sample while the task is still running
+        watchdog.end(task);
+
+        List<EdtWatchdog.Stall> stalls = watchdog.getRecentStalls();
+        assertEquals(1, stalls.size());
+        EdtWatchdog.Stall stall = stalls.get(0);
+        assertEquals("load_home", stall.getAction());
+        assertTrue(stall.getDurationMs() >= 40);
+        assertNotNull(stall.getStack());
+        assertTrue(stall.getStack().length <= EdtWatchdog.MAX_STACK_FRAMES);
+        assertEquals(1L, watchdog.getCounters().get("stalls"));
+    }
+
+    @Test
+    void testCheckIgnoresTaskBelowThreshold() {
+        EdtWatchdog watchdog = new EdtWatchdog(10_000, 4);
+        EdtWatchdog.Task task = watchdog.begin("get_state");
+        watchdog.check();
+        assertNull(task.stack);
+        watchdog.end(task);
+    }
+
+    @Test
+    void testRingBufferKeepsMostRecent() throws Exception {
+        EdtWatchdog watchdog = new EdtWatchdog(1, 2);
+        for (String action : new String[]{"a", "b", "c"}) {
+            EdtWatchdog.Task task = watchdog.begin(action);
+            Thread.sleep(3);
+            watchdog.end(task);
+        }
+
+        List<EdtWatchdog.Stall> stalls = watchdog.getRecentStalls();
+        assertEquals(2, stalls.size());
+        assertEquals("b", stalls.get(0).getAction());
+        assertEquals("c", stalls.get(1).getAction());
+        assertEquals(3L, watchdog.getCounters().get("stalls"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testReportSortsSlowestFirstAndShowsCurrent() throws Exception {
+        EdtWatchdog watchdog = new EdtWatchdog(1, 8);
+        EdtWatchdog.Task slow = watchdog.begin("slow");
+        Thread.sleep(30);
+        watchdog.end(slow);
+        EdtWatchdog.Task fast = watchdog.begin("fast");
+        Thread.sleep(3);
+        watchdog.end(fast);
+        EdtWatchdog.Task running = watchdog.begin("running");
+
+        Map<String, Object> report = watchdog.report();
+
+        List<Map<String, Object>> stalls = (List<Map<String, Object>>) report.get("recentStalls");
+        assertEquals("slow", stalls.get(0).get("action"));
+        assertEquals("fast", stalls.get(1).get("action"));
+        assertEquals("running", ((Map<String, Object>) report.get("current")).get("action"));
+        assertEquals(1L, report.get("thresholdMs"));
+        watchdog.end(running);
+    }
+
+    @Test
+    void testClear() throws Exception {
+        EdtWatchdog watchdog = new EdtWatchdog(1, 4);
+        EdtWatchdog.Task task = watchdog.begin("x");
+        Thread.sleep(3);
+        watchdog.end(task);
+
+        watchdog.clear();
+
+        assertTrue(watchdog.getRecentStalls().isEmpty());
+        assertEquals(0L, watchdog.getCounters().get("tasks"));
+        assertEquals(0L, watchdog.getCounters().get("maxTaskMs"));
+    }
+
+    @Test
+    void testMonitorThreadStartsAndStops() throws Exception {
+        EdtWatchdog watchdog = new EdtWatchdog(20, 4);
+        watchdog.start();
+        watchdog.start(); // idempotent
+        try {
+            EdtWatchdog.Task task = watchdog.begin("render_photo");
+            Thread.sleep(150);
+            assertNotNull(task.stack, "Monitor should sample a task running past the threshold");
+            watchdog.end(task);
+        } finally {
+            watchdog.close();
+        }
+    }
+
+    @Test
+    void testInvalidArgumentsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new EdtWatchdog(0, 4));
+        assertThrows(IllegalArgumentException.class, () -> new EdtWatchdog(100, 0));
+    }
+}
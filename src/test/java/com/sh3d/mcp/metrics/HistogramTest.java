@@ -0,0 +1,102 @@
+package com.sh3d.mcp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void testEmptySnapshot() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getQuantile(0.99));
+        assertEquals(0.0, snapshot.getMean());
+    }
+
+    @Test
+    void testSmallValuesAreExact() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10, snapshot.getCount());
+        assertEquals(55, snapshot.getSum());
+        assertEquals(5, snapshot.getQuantile(0.5));
+        assertEquals(9, snapshot.getQuantile(0.9));
+        assertEquals(10, snapshot.getMax());
+    }
+
+    @Test
+    void testQuantileRelativeErrorBounded() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100_000; i++) {
+            histogram.record(i);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        long p50 = snapshot.getQuantile(0.5);
+        long p99 = snapshot.getQuantile(0.99);
+        assertTrue(p50 >= 50_000 && p50 <= 50_000 * 1.125, "p50=" + p50);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, "p99=" + p99);
+        assertEquals(100_000, snapshot.getQuantile(1.0));
+    }
+
+    @Test
+    void testBucketBoundsAreContiguous() {
+        for (int i = 0; i < Histogram.BUCKET_COUNT - 1; i++) {
+            long upper = Histogram.bucketUpperBound(i);
+            assertEquals(i, Histogram.bucketIndex(upper), "upper bound of bucket " + i);
+            assertEquals(i + 1, Histogram.bucketIndex(upper + 1), "first value after bucket " + i);
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testNegativeValuesCountAsZero() {
+        Histogram histogram = new Histogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    void testReset() {
+        Histogram histogram = new Histogram();
+        histogram.record(1000);
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    void testToMapScalesValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(2000);
+        Map<String, Object> map = histogram.snapshot().toMap(1000);
+        assertEquals(1L, map.get("count"));
+        assertEquals(2.0, map.get("max"));
+        assertEquals(2.0, map.get("mean"));
+    }
+
+    @Test
+    void testConcurrentRecording() throws InterruptedException {
+        Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, histogram.getCount());
+        assertEquals(40_000, histogram.snapshot().getCount());
+    }
+}
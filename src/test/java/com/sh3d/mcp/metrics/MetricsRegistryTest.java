@@ -0,0 +1,89 @@
+package com.sh3d.mcp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsRegistryTest {
+
+    @Test
+    void testForActionReturnsSameInstance() {
+        MetricsRegistry registry = new MetricsRegistry();
+        assertSame(registry.forAction("ping"), registry.forAction("ping"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testSnapshotContainsToolsAndSections() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.forAction("get_state").recordCall(1_000_000, 4_000_000, false);
+        registry.forAction("get_state").recordPayload(120, 5000);
+        registry.registerSection("sessions", () -> Collections.singletonMap("active", 2));
+
+        Map<String, Object> snapshot = registry.snapshot();
+
+        Map<String, Object> tools = (Map<String, Object>) snapshot.get("tools");
+        Map<String, Object> getState = (Map<String, Object>) tools.get("get_state");
+        assertEquals(1L, getState.get("calls"));
+        assertEquals(0L, getState.get("errors"));
+        Map<String, Object> execution = (Map<String, Object>) getState.get("executionMs");
+        assertEquals(4.0, execution.get("max"));
+        Map<String, Object> response = (Map<String, Object>) getState.get("responseBytes");
+        assertEquals(5000.0, response.get("max"));
+        assertEquals(2, ((Map<String, Object>) snapshot.get("sessions")).get("active"));
+        assertNotNull(snapshot.get("uptimeMs"));
+    }
+
+    @Test
+    void testUnregisterSection() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.registerSection("sessions", Collections::emptyMap);
+        registry.unregisterSection("sessions");
+        assertTrue(registry.getSections().isEmpty());
+    }
+
+    @Test
+    void testResetClearsToolMetrics() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.forAction("ping").recordCall(0, 1000, true);
+        registry.reset();
+        assertEquals(0, registry.forAction("ping").getCalls());
+        assertEquals(0, registry.forAction("ping").getErrors());
+    }
+
+    @Test
+    void testPrometheusFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.forAction("get_state").recordCall(0, 2_000_000, false);
+        registry.forAction("get_state").recordQueueWait(500_000);
+        registry.forAction("render_photo").recordCall(0, 1_000_000, true);
+        Map<String, Object> sessions = new LinkedHashMap<>();
+        sessions.put("active", 3);
+        sessions.put("knownExpired", 1L);
+        sessions.put("label", "ignored");
+        registry.registerSection("sessions", () -> sessions);
+
+        String text = registry.formatPrometheus();
+
+        assertTrue(text.contains("# TYPE sh3d_mcp_tool_calls_total counter\n"));
+        assertTrue(text.contains("sh3d_mcp_tool_calls_total{tool=\"get_state\"} 1\n"));
+        assertTrue(text.contains("sh3d_mcp_tool_errors_total{tool=\"render_photo\"} 1\n"));
+        assertTrue(text.contains("# TYPE sh3d_mcp_tool_execution_seconds summary\n"));
+        assertTrue(text.contains("sh3d_mcp_tool_execution_seconds{tool=\"get_state\",quantile=\"0.5\"} "));
+        assertTrue(text.contains("sh3d_mcp_tool_execution_seconds_count{tool=\"get_state\"} 1\n"));
+        assertTrue(text.contains("sh3d_mcp_tool_queue_wait_seconds_sum{tool=\"get_state\"} 5.0E-4\n"));
+        assertTrue(text.contains("sh3d_mcp_sessions_active 3.0\n"));
+        assertTrue(text.contains("sh3d_mcp_sessions_known_expired 1.0\n"));
+        assertFalse(text.contains("label"));
+    }
+
+    @Test
+    void testSnakeCase() {
+        assertEquals("known_expired", PrometheusFormat.snakeCase("knownExpired"));
+        assertEquals("pending_expiry", PrometheusFormat.snakeCase("pending-expiry"));
+    }
+}
@@ -0,0 +1,42 @@
+package com.sh3d.mcp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueueTimingTest {
+
+    @Test
+    void testUnknownOutsideWrappedTask() {
+        assertEquals(QueueTiming.UNKNOWN, QueueTiming.enqueuedAtNanos());
+    }
+
+    @Test
+    void testWrappedTaskSeesSubmissionTime() {
+        AtomicLong seen = new AtomicLong();
+        Executor direct = Runnable::run;
+        long before = System.nanoTime();
+
+        QueueTiming.wrap(direct).execute(() -> seen.set(QueueTiming.enqueuedAtNanos()));
+
+        assertTrue(seen.get() >= before);
+        assertTrue(seen.get() <= System.nanoTime());
+        assertEquals(QueueTiming.UNKNOWN, QueueTiming.enqueuedAtNanos(), "Stamp cleared after task");
+    }
+
+    @Test
+    void testStampClearedWhenTaskThrows() {
+        Executor direct = Runnable::run;
+        try {
+            QueueTiming.wrap(direct).execute(() -> {
+                throw new IllegalStateException("boom");
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException expected) {
+            assertEquals(QueueTiming.UNKNOWN, QueueTiming.enqueuedAtNanos());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.sh3d.mcp.plugin;
+
+import com.eteks.sweethome3d.model.Home;
+import com.eteks.sweethome3d.model.UserPreferences;
+import com.sh3d.mcp.config.PluginConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class HeadlessLauncherTest {
+
+    private HeadlessLauncher launcher;
+
+    @AfterEach
+    void tearDown() {
+        if (launcher != null) {
+            launcher.close();
+        }
+        System.clearProperty("sh3d.mcp.port");
+    }
+
+    @Test
+    void testServesToolsWithoutSwingUi() throws Exception {
+        int port = freePort();
+        System.setProperty("sh3d.mcp.port", String.valueOf(port));
+        launcher = HeadlessLauncher.start(PluginConfig.load(), new Home(), mock(UserPreferences.class));
+        assertTrue(launcher.getServer().isRunning());
+
+        HttpURLConnection init = post(port, "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\",\"params\":{}}", null);
+        assertEquals(200, init.getResponseCode());
+        String sessionId = init.getHeaderField("Mcp-Session-Id");
+        assertNotNull(sessionId);
+
+        HttpURLConnection call = post(port, "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\","
+                + "\"params\":{\"name\":\"get_state\",\"arguments\":{}}}", sessionId);
+        assertEquals(200, call.getResponseCode());
+        String body = read(call.getInputStream());
+        assertTrue(body.contains("\"result\""), body);
+        assertFalse(body.contains("\"isError\":true"), body);
+    }
+
+    @Test
+    void testStartFailsWhenPortTaken() throws Exception {
+        try (ServerSocket taken = new ServerSocket(0, 50, java.net.InetAddress.getByName("127.0.0.1"))) {
+            System.setProperty("sh3d.mcp.port", String.valueOf(taken.getLocalPort()));
+            PluginConfig config = PluginConfig.load();
+            assertThrows(IllegalStateException.class,
+                    () -> HeadlessLauncher.start(config, new Home(), mock(UserPreferences.class)));
+        }
+    }
+
+    private static HttpURLConnection post(int port, String json, String sessionId) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/mcp").openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        if (sessionId != null) {
+            conn.setRequestProperty("Mcp-Session-Id", sessionId);
+        }
+        try (OutputStream out = conn.getOutputStream()) {
+            out.write(json.getBytes(StandardCharsets.UTF_8));
+        }
+        return conn;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -125,4 +126,47 @@ class JsonUtilTest {
         assertTrue(result.contains("\"msg\": \"line1\\nline2\""));
         assertTrue(result.contains("\"path\": \"C:\\\\Users\\\\test\""));
     }
+
+    @Test
+    void testJsonFragmentWrittenVerbatim() {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("id", "w1");
+        item.put("x", 1.5);
+        JsonFragment fragment = JsonFragment.of(new ArrayList<>(Arrays.asList(item, "s")));
+
+        assertEquals("[{\"id\":\"w1\",\"x\":1.5},\"s\"]", fragment.getJson());
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("walls", fragment);
+        assertEquals("{\"walls\":" + fragment.getJson() + "}", JsonUtil.serialize(root));
+    }
+
+    @Test
+    void testJsonFragmentReadsAsList() {
+        JsonFragment fragment = JsonFragment.of(new ArrayList<>(Arrays.asList(1, 2)));
+        assertEquals(2, fragment.size());
+        assertEquals(2, fragment.get(1));
+        assertThrows(UnsupportedOperationException.class, () -> fragment.add(3));
+    }
+
+    @Test
+    void testEncodedImageWrittenAsBase64() {
+        // Non-multiple of 3 and longer than one encoder chunk
+        byte[] bytes = new byte[3 * 8192 + 7];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        EncodedImage image = new EncodedImage(bytes, "image/png");
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("data", image);
+
+        String base64 = Base64.getEncoder().encodeToString(bytes);
+        assertEquals("{\"data\":\"" + base64 + "\"}", JsonUtil.serialize(root));
+        assertEquals(base64.length(), image.base64Length());
+        assertEquals(base64, image.toString());
+    }
+
+    @Test
+    void testEmptyEncodedImage() {
+        assertEquals("\"\"", JsonUtil.serialize(new EncodedImage(new byte[0], "image/png")));
+    }
 }
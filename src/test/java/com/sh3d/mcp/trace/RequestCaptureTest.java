@@ -0,0 +1,51 @@
+package com.sh3d.mcp.trace;
+
+import com.sh3d.mcp.protocol.JsonUtil;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestCaptureTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testRecordsLinePerRequest() throws Exception {
+        Path file = dir.resolve("capture.jsonl");
+        RequestCapture capture = new RequestCapture(file, 1 << 20, 2);
+        long now = System.nanoTime();
+        String init = "{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"initialize\"}";
+        String call = "{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\",\"params\":{\"name\":\"x\\ny\"}}";
+        capture.record(null, "s-1", init, 200, now, 1_500_000);
+        capture.record("s-1", "s-1", call, 200, now + 20_000_000, 2_000);
+        capture.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(2, lines.size());
+
+        Map<String, Object> first = (Map<String, Object>) JsonUtil.parse(lines.get(0));
+        assertNull(first.get("session"));
+        assertEquals("s-1", first.get("newSession"));
+        assertEquals(200, ((Number) first.get("status")).intValue());
+        assertEquals(1500, ((Number) first.get("durUs")).longValue());
+        assertEquals(init, first.get("body"));
+
+        Map<String, Object> second = (Map<String, Object>) JsonUtil.parse(lines.get(1));
+        assertEquals("s-1", second.get("session"));
+        assertFalse(second.containsKey("newSession"), "Echoed session ID is not a new session");
+        assertEquals(call, second.get("body"), "Body round-trips exactly, including escapes");
+        long t1 = ((Number) first.get("t")).longValue();
+        long t2 = ((Number) second.get("t")).longValue();
+        assertEquals(20, t2 - t1);
+        assertEquals(2, capture.getWritten());
+    }
+}
@@ -0,0 +1,66 @@
+package com.sh3d.mcp.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceFileWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testAppendsLines() throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        TraceFileWriter writer = new TraceFileWriter(file, 1 << 20, 3);
+        writer.offer("{\"a\":1}");
+        writer.offer("{\"a\":2}");
+        writer.close();
+
+        assertEquals("{\"a\":1}\n{\"a\":2}\n", new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        assertEquals(2, writer.getWritten());
+    }
+
+    @Test
+    void testRotatesAndKeepsMaxFiles() throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        TraceFileWriter writer = new TraceFileWriter(file, 20, 3);
+        for (int i = 0; i < 6; i++) {
+            writer.offer("line-" + i + "-xxxxxxxx"); // 16 bytes with newline: one line per file
+        }
+        writer.close();
+
+        assertTrue(Files.readString(file).startsWith("line-5"));
+        assertTrue(Files.readString(dir.resolve("trace.jsonl.1")).startsWith("line-4"));
+        assertTrue(Files.readString(dir.resolve("trace.jsonl.2")).startsWith("line-3"));
+        assertFalse(Files.exists(dir.resolve("trace.jsonl.3")));
+    }
+
+    @Test
+    void testSingleFileTruncatesOnRotation() throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        TraceFileWriter writer = new TraceFileWriter(file, 20, 1);
+        writer.offer("first-xxxxxxxxxx");
+        writer.offer("second-xxxxxxxxx");
+        writer.close();
+
+        assertEquals("second-xxxxxxxxx\n", Files.readString(file));
+        assertFalse(Files.exists(dir.resolve("trace.jsonl.1")));
+    }
+
+    @Test
+    void testAppendsToExistingFile() throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        Files.write(file, "old\n".getBytes(StandardCharsets.UTF_8));
+        TraceFileWriter writer = new TraceFileWriter(file, 1 << 20, 2);
+        writer.offer("new");
+        writer.close();
+
+        assertEquals("old\nnew\n", Files.readString(file));
+    }
+}
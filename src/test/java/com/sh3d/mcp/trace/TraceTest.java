@@ -0,0 +1,101 @@
+package com.sh3d.mcp.trace;
+
+import com.sh3d.mcp.protocol.JsonUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceTest {
+
+    private Trace trace;
+
+    @AfterEach
+    void tearDown() {
+        if (trace != null) {
+            trace.unbind();
+        }
+    }
+
+    @Test
+    void testSpanIsNoopWithoutTrace() {
+        assertNull(Trace.current());
+        assertSame(Span.NOOP, Trace.span("parse"));
+        Span.NOOP.attr("k", 1).close(); // no-op, no exception
+        Trace.record("edt_wait", 0, 10);
+        Trace.annotate("rpc", "tools/call");
+    }
+
+    @Test
+    @SuppressWarnings("try") // the spans are only opened and closed
+    void testSpansNestByOpenSpan() {
+        trace = new Trace("abc", "POST /mcp");
+        trace.bind();
+
+        try (Span dispatch = Trace.span("dispatch")) {
+            try (Span outer = Trace.span("execute").attr("action", "batch_commands")) {
+                try (Span inner = Trace.span("execute").attr("action", "create_walls")) {
+                    Trace.record("edt_wait", System.nanoTime(), System.nanoTime());
+                }
+            }
+        }
+        try (Span write = Trace.span("write")) {
+            write.attr("status", 200);
+        }
+        trace.end();
+
+        List<Span> spans = trace.getSpans();
+        assertEquals(6, spans.size());
+        Span dispatch = spans.get(1);
+        Span outer = spans.get(2);
+        Span inner = spans.get(3);
+        Span edtWait = spans.get(4);
+        Span write = spans.get(5);
+        assertEquals(0, dispatch.getParentId());
+        assertEquals(dispatch.id, outer.getParentId());
+        assertEquals(outer.id, inner.getParentId());
+        assertEquals(inner.id, edtWait.getParentId());
+        assertEquals(0, write.getParentId(), "Closed spans restore their parent");
+    }
+
+    @Test
+    void testEndClosesSpansLeftOpen() {
+        trace = new Trace("abc", "POST /mcp");
+        trace.bind();
+        Trace.span("dispatch"); // never closed, e.g. after an exception
+        trace.end();
+
+        for (Span span : trace.getSpans()) {
+            assertTrue(span.endNanos >= span.startNanos);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testJsonLineFormat() {
+        trace = new Trace("00ff00ff00ff00ff", "POST /mcp");
+        trace.bind();
+        Trace.annotate("rpc", "tools/call");
+        try (Span span = Trace.span("execute")) {
+            span.attr("action", "get_state");
+        }
+        trace.end();
+
+        String line = trace.toJsonLine();
+        assertFalse(line.contains("\n"));
+        Map<String, Object> parsed = (Map<String, Object>) JsonUtil.parse(line);
+        assertEquals("00ff00ff00ff00ff", parsed.get("trace"));
+        assertEquals("POST /mcp", parsed.get("name"));
+        assertEquals("tools/call", ((Map<String, Object>) parsed.get("attrs")).get("rpc"));
+        List<Object> spans = (List<Object>) parsed.get("spans");
+        assertEquals(1, spans.size());
+        List<Object> span = (List<Object>) spans.get(0);
+        assertEquals(1, ((Number) span.get(0)).intValue());
+        assertEquals(0, ((Number) span.get(1)).intValue());
+        assertEquals("execute", span.get(2));
+        assertEquals("get_state", ((Map<String, Object>) span.get(5)).get("action"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.sh3d.mcp.trace;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TracerTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testFullSamplingWritesEveryTrace() throws Exception {
+        Path file = dir.resolve("trace.jsonl");
+        Tracer tracer = new Tracer(1.0, file, 1 << 20, 2);
+        for (int i = 0; i < 3; i++) {
+            Trace trace = tracer.start("POST /mcp");
+            assertNotNull(trace);
+            assertSame(trace, Trace.current());
+            try (Span span = Trace.span("parse")) {
+                span.attr("i", i);
+            }
+            tracer.finish(trace);
+            assertNull(Trace.current(), "Trace unbound after finish");
+        }
+        tracer.close();
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        assertTrue(lines.get(0).contains("\"parse\""));
+        assertEquals(3, tracer.getWritten());
+        assertEquals(0, tracer.getDropped());
+    }
+
+    @Test
+    void testZeroSamplingTracesNothing() {
+        Tracer tracer = new Tracer(0.0, dir.resolve("trace.jsonl"), 1 << 20, 2);
+        try {
+            for (int i = 0; i < 100; i++) {
+                assertNull(tracer.start("POST /mcp"));
+            }
+        } finally {
+            tracer.close();
+        }
+    }
+
+    @Test
+    void testPartialSamplingTracesSome() {
+        Tracer tracer = new Tracer(0.5, dir.resolve("trace.jsonl"), 1 << 20, 2);
+        int sampled = 0;
+        try {
+            for (int i = 0; i < 1000; i++) {
+                Trace trace = tracer.start("POST /mcp");
+                if (trace != null) {
+                    sampled++;
+                    tracer.finish(trace);
+                }
+            }
+        } finally {
+            tracer.close();
+        }
+        assertTrue(sampled > 350 && sampled < 650, "sampled=" + sampled);
+    }
+
+    @Test
+    void testInvalidSampleRateRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new Tracer(1.5, dir.resolve("trace.jsonl"), 1 << 20, 2));
+    }
+}